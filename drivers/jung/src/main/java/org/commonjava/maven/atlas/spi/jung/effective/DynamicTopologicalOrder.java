@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.jung.effective;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+
+import edu.uci.ics.jung.graph.DirectedGraph;
+
+/**
+ * Topological order of an acyclic graph, kept up to date as edges are added (Pearce &amp; Kelly's dynamic topological
+ * sort). Adding an edge that already agrees with the order costs O(1); otherwise only the nodes ordered between its two
+ * ends are searched and shuffled. That same bounded search finds the paths that would close a cycle, so the edge can
+ * be rejected before it is added.
+ * <p/>
+ * Edges added to the graph some other way must be passed to {@link #add(DirectedGraph, ProjectVersionRef, ProjectVersionRef)}
+ * as well. If one of those closes a cycle the order can't be kept any more, and is {@link #invalidate()}d.
+ */
+final class DynamicTopologicalOrder
+{
+
+    private final Map<ProjectVersionRef, Integer> order = new HashMap<ProjectVersionRef, Integer>();
+
+    private int next;
+
+    private boolean valid = true;
+
+    private final Comparator<ProjectVersionRef> byOrder = new Comparator<ProjectVersionRef>()
+    {
+        public int compare( final ProjectVersionRef first, final ProjectVersionRef second )
+        {
+            return order.get( first ) - order.get( second );
+        }
+    };
+
+    boolean isValid()
+    {
+        return valid;
+    }
+
+    void invalidate()
+    {
+        valid = false;
+        order.clear();
+    }
+
+    void clear()
+    {
+        valid = true;
+        order.clear();
+        next = 0;
+    }
+
+    void addNode( final ProjectVersionRef ref )
+    {
+        if ( valid && !order.containsKey( ref ) )
+        {
+            order.put( ref, next++ );
+        }
+    }
+
+    void removeNode( final ProjectVersionRef ref )
+    {
+        order.remove( ref );
+    }
+
+    /**
+     * Make room in the order for an edge about to be added to the graph. Both ends must already be nodes in the graph.
+     *
+     * @return The paths (in the graph, from 'to' back to 'from') that the edge would close into cycles. If there are
+     * any, the order is unchanged and the edge must not be added.
+     */
+    List<List<ProjectRelationship<?>>> add( final DirectedGraph<ProjectVersionRef, ProjectRelationship<?>> graph,
+                                            final ProjectVersionRef from, final ProjectVersionRef to )
+    {
+        final Set<ProjectVersionRef> forward = new HashSet<ProjectVersionRef>();
+        if ( search( graph, from, to, forward ) )
+        {
+            return pathsBack( graph, from, to, forward );
+        }
+
+        if ( !forward.isEmpty() )
+        {
+            reorder( graph, from, to, forward );
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Same check as {@link #add(DirectedGraph, ProjectVersionRef, ProjectVersionRef)}, without changing the order.
+     */
+    List<List<ProjectRelationship<?>>> check( final DirectedGraph<ProjectVersionRef, ProjectRelationship<?>> graph,
+                                              final ProjectVersionRef from, final ProjectVersionRef to )
+    {
+        final Set<ProjectVersionRef> forward = new HashSet<ProjectVersionRef>();
+        if ( search( graph, from, to, forward ) )
+        {
+            return pathsBack( graph, from, to, forward );
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Depth-first search from 'to', limited to nodes ordered no later than 'from'.
+     *
+     * @return Whether 'from' was reached. Either way, visited nodes are added to the given set.
+     */
+    private boolean search( final DirectedGraph<ProjectVersionRef, ProjectRelationship<?>> graph,
+                            final ProjectVersionRef from, final ProjectVersionRef to,
+                            final Set<ProjectVersionRef> visited )
+    {
+        if ( from.equals( to ) )
+        {
+            return false;
+        }
+
+        final Integer upper = order.get( from );
+        final Integer lower = order.get( to );
+        if ( upper == null || lower == null || lower > upper )
+        {
+            return false;
+        }
+
+        boolean found = false;
+
+        final LinkedList<ProjectVersionRef> stack = new LinkedList<ProjectVersionRef>();
+        stack.add( to );
+        visited.add( to );
+        while ( !stack.isEmpty() )
+        {
+            final ProjectVersionRef node = stack.removeLast();
+            for ( final ProjectVersionRef succ : graph.getSuccessors( node ) )
+            {
+                if ( succ.equals( from ) )
+                {
+                    found = true;
+                }
+                else if ( order.get( succ ) < upper && visited.add( succ ) )
+                {
+                    stack.add( succ );
+                }
+            }
+        }
+
+        return found;
+    }
+
+    private void reorder( final DirectedGraph<ProjectVersionRef, ProjectRelationship<?>> graph,
+                          final ProjectVersionRef from, final ProjectVersionRef to,
+                          final Set<ProjectVersionRef> forward )
+    {
+        final int lower = order.get( to );
+
+        // everything ordered after 'to' that reaches 'from' has to move ahead of everything 'to' reaches.
+        final Set<ProjectVersionRef> backward = new HashSet<ProjectVersionRef>();
+        final LinkedList<ProjectVersionRef> stack = new LinkedList<ProjectVersionRef>();
+        stack.add( from );
+        backward.add( from );
+        while ( !stack.isEmpty() )
+        {
+            final ProjectVersionRef node = stack.removeLast();
+            for ( final ProjectVersionRef pred : graph.getPredecessors( node ) )
+            {
+                if ( order.get( pred ) > lower && backward.add( pred ) )
+                {
+                    stack.add( pred );
+                }
+            }
+        }
+
+        final List<ProjectVersionRef> back = new ArrayList<ProjectVersionRef>( backward );
+        final List<ProjectVersionRef> fwd = new ArrayList<ProjectVersionRef>( forward );
+        Collections.sort( back, byOrder );
+        Collections.sort( fwd, byOrder );
+
+        final List<Integer> slots = new ArrayList<Integer>( back.size() + fwd.size() );
+        for ( final ProjectVersionRef ref : back )
+        {
+            slots.add( order.get( ref ) );
+        }
+        for ( final ProjectVersionRef ref : fwd )
+        {
+            slots.add( order.get( ref ) );
+        }
+        Collections.sort( slots );
+
+        int i = 0;
+        for ( final ProjectVersionRef ref : back )
+        {
+            order.put( ref, slots.get( i++ ) );
+        }
+        for ( final ProjectVersionRef ref : fwd )
+        {
+            order.put( ref, slots.get( i++ ) );
+        }
+    }
+
+    /**
+     * Every path from 'to' to 'from', through the nodes found by the bounded search. The graph is acyclic, so they are
+     * all simple paths.
+     */
+    private List<List<ProjectRelationship<?>>> pathsBack( final DirectedGraph<ProjectVersionRef, ProjectRelationship<?>> graph,
+                                                          final ProjectVersionRef from, final ProjectVersionRef to,
+                                                          final Set<ProjectVersionRef> region )
+    {
+        // narrow the region down to the nodes that can actually reach 'from'.
+        final Set<ProjectVersionRef> useful = new HashSet<ProjectVersionRef>();
+        final LinkedList<ProjectVersionRef> stack = new LinkedList<ProjectVersionRef>();
+        stack.add( from );
+        useful.add( from );
+        while ( !stack.isEmpty() )
+        {
+            final ProjectVersionRef node = stack.removeLast();
+            for ( final ProjectVersionRef pred : graph.getPredecessors( node ) )
+            {
+                if ( region.contains( pred ) && useful.add( pred ) )
+                {
+                    stack.add( pred );
+                }
+            }
+        }
+
+        final List<List<ProjectRelationship<?>>> paths = new ArrayList<List<ProjectRelationship<?>>>();
+
+        final LinkedList<ProjectRelationship<?>> path = new LinkedList<ProjectRelationship<?>>();
+        final LinkedList<Iterator<ProjectRelationship<?>>> edges = new LinkedList<Iterator<ProjectRelationship<?>>>();
+        edges.add( graph.getOutEdges( to )
+                        .iterator() );
+
+        while ( !edges.isEmpty() )
+        {
+            final Iterator<ProjectRelationship<?>> it = edges.getLast();
+            if ( !it.hasNext() )
+            {
+                edges.removeLast();
+                if ( !path.isEmpty() )
+                {
+                    path.removeLast();
+                }
+                continue;
+            }
+
+            final ProjectRelationship<?> edge = it.next();
+            final ProjectVersionRef dest = graph.getDest( edge );
+            if ( dest.equals( from ) )
+            {
+                final List<ProjectRelationship<?>> found = new ArrayList<ProjectRelationship<?>>( path );
+                found.add( edge );
+                paths.add( found );
+            }
+            else if ( useful.contains( dest ) && !dest.equals( graph.getSource( edge ) ) )
+            {
+                path.add( edge );
+                edges.add( graph.getOutEdges( dest )
+                                .iterator() );
+            }
+        }
+
+        return paths;
+    }
+
+}
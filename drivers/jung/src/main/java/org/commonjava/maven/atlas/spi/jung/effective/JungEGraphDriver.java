@@ -29,6 +29,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.maven.graph.common.ref.ArtifactRef;
@@ -45,8 +47,11 @@ import org.apache.maven.graph.effective.rel.RelationshipPathComparator;
 import org.apache.maven.graph.effective.traverse.AbstractTraversal;
 import org.apache.maven.graph.effective.traverse.FilteringTraversal;
 import org.apache.maven.graph.effective.traverse.ProjectNetTraversal;
+import org.apache.maven.graph.effective.traverse.model.PathGraph;
+import org.apache.maven.graph.effective.util.CycleIndex;
 import org.apache.maven.graph.effective.util.RelationshipUtils;
 import org.apache.maven.graph.spi.GraphDriverException;
+import org.apache.maven.graph.spi.effective.AbstractEGraphDriver;
 import org.apache.maven.graph.spi.effective.EGraphDriver;
 import org.commonjava.util.logging.Logger;
 
@@ -54,7 +59,7 @@ import edu.uci.ics.jung.graph.DirectedGraph;
 import edu.uci.ics.jung.graph.DirectedSparseMultigraph;
 
 public class JungEGraphDriver
-    implements EGraphDriver
+    extends AbstractEGraphDriver
 {
     //    private final Logger logger = new Logger( getClass() );
 
@@ -78,8 +83,17 @@ public class JungEGraphDriver
 
     private transient Set<EProjectCycle> cycles = new HashSet<EProjectCycle>();
 
+    private transient CycleIndex cycleIndex;
+
+    private transient DynamicTopologicalOrder topology = new DynamicTopologicalOrder();
+
     private ProjectVersionRef[] roots;
 
+    private final String graphId = UUID.randomUUID()
+                                       .toString();
+
+    private final AtomicLong version = new AtomicLong();
+
     public JungEGraphDriver()
     {
     }
@@ -92,7 +106,7 @@ public class JungEGraphDriver
         Collection<ProjectRelationship<?>> rels;
         if ( filter != null && roots.length > 0 )
         {
-            rels = filterRelationships( filter, net, roots );
+            rels = from.filterRelationships( filter, net, roots );
         }
         else
         {
@@ -164,6 +178,7 @@ public class JungEGraphDriver
             if ( !graph.containsVertex( rel.getDeclaring() ) )
             {
                 graph.addVertex( rel.getDeclaring() );
+                topology.addNode( rel.getDeclaring() );
             }
 
             final ProjectVersionRef target = rel.getTarget()
@@ -181,42 +196,70 @@ public class JungEGraphDriver
             if ( !graph.containsVertex( target ) )
             {
                 graph.addVertex( target );
-            }
-
-            if ( !graph.containsEdge( rel ) )
-            {
-                graph.addEdge( rel, rel.getDeclaring(), target );
+                topology.addNode( target );
             }
 
             incompleteSubgraphs.remove( rel.getDeclaring() );
-        }
 
-        for ( final ProjectRelationship<?> rel : rels )
-        {
-            if ( skipped.contains( rel ) )
+            if ( graph.containsEdge( rel ) )
             {
                 continue;
             }
 
-            final CycleDetectionTraversal traversal = new CycleDetectionTraversal( rel );
+            if ( !topology.isValid() )
+            {
+                // the graph already holds a cycle (see selectVersionFor()), so fall back to searching all of it.
+                graph.addEdge( rel, rel.getDeclaring(), target );
+
+                final CycleDetectionTraversal traversal = new CycleDetectionTraversal( rel );
+                dfsTraverse( traversal, 0, target );
 
-            dfsTraverse( traversal, 0, rel.getTarget()
-                                          .asProjectVersionRef() );
+                if ( !traversal.getCycles()
+                               .isEmpty() )
+                {
+                    skipped.add( rel );
+                    graph.removeEdge( rel );
+                    addCycles( traversal.getCycles() );
+                }
 
-            final List<EProjectCycle> cycles = traversal.getCycles();
+                continue;
+            }
 
-            if ( !cycles.isEmpty() )
+            final List<List<ProjectRelationship<?>>> paths = topology.add( graph, rel.getDeclaring(), target );
+            if ( paths.isEmpty() )
+            {
+                graph.addEdge( rel, rel.getDeclaring(), target );
+            }
+            else
             {
                 skipped.add( rel );
-
-                graph.removeEdge( rel );
-                this.cycles.addAll( cycles );
+                addCycles( toCycles( rel, paths ) );
             }
         }
 
+        if ( rels.length > 0 )
+        {
+            version.incrementAndGet();
+        }
+
         return skipped;
     }
 
+    private List<EProjectCycle> toCycles( final ProjectRelationship<?> rel,
+                                          final List<List<ProjectRelationship<?>>> paths )
+    {
+        final List<EProjectCycle> cycles = new ArrayList<EProjectCycle>( paths.size() );
+        for ( final List<ProjectRelationship<?>> path : paths )
+        {
+            final List<ProjectRelationship<?>> cycle = new ArrayList<ProjectRelationship<?>>( path );
+            cycle.add( rel );
+
+            cycles.add( new EProjectCycle( cycle ) );
+        }
+
+        return cycles;
+    }
+
     public Set<List<ProjectRelationship<?>>> getAllPathsTo( final ProjectVersionRef... refs )
     {
         final PathDetectionTraversal traversal = new PathDetectionTraversal( refs );
@@ -236,8 +279,54 @@ public class JungEGraphDriver
         return traversal.getPaths();
     }
 
+    public PathGraph getPathGraph( final ProjectVersionRef... refs )
+    {
+        if ( roots == null )
+        {
+            new Logger( getClass() ).warn( "Cannot retrieve paths targeting %s. No roots specified for this project network!",
+                                           join( refs, ", " ) );
+            return new PathGraph.Builder( Collections.<ProjectVersionRef> emptySet(), refs ).build();
+        }
+
+        final PathGraph.Builder builder = new PathGraph.Builder( Arrays.asList( roots ), refs );
+
+        // only the targets' ancestors can be on a path, so walk backwards from the targets rather than forward from
+        // the roots.
+        final LinkedList<ProjectVersionRef> queue = new LinkedList<ProjectVersionRef>();
+        final Set<ProjectVersionRef> seen = new HashSet<ProjectVersionRef>();
+        for ( final ProjectVersionRef ref : refs )
+        {
+            if ( graph.containsVertex( ref ) && seen.add( ref ) )
+            {
+                queue.add( ref );
+            }
+        }
+
+        while ( !queue.isEmpty() )
+        {
+            final ProjectVersionRef ref = queue.removeFirst();
+            for ( final ProjectRelationship<?> rel : graph.getInEdges( ref ) )
+            {
+                builder.withRelationship( rel );
+                if ( seen.add( rel.getDeclaring() ) )
+                {
+                    queue.add( rel.getDeclaring() );
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
     public boolean introducesCycle( final ProjectRelationship<?> rel )
     {
+        if ( topology.isValid() )
+        {
+            return !topology.check( graph, rel.getDeclaring(), rel.getTarget()
+                                                                  .asProjectVersionRef() )
+                            .isEmpty();
+        }
+
         final CycleDetectionTraversal traversal = new CycleDetectionTraversal( rel );
 
         dfsTraverse( traversal, 0, rel.getTarget()
@@ -482,8 +571,10 @@ public class JungEGraphDriver
     public void restrictRelationshipMembership( final Collection<ProjectRelationship<?>> rels )
     {
         graph = new DirectedSparseMultigraph<ProjectVersionRef, ProjectRelationship<?>>();
+        topology.clear();
         incompleteSubgraphs.clear();
         variableSubgraphs.clear();
+        version.incrementAndGet();
 
         addRelationships( rels.toArray( new ProjectRelationship<?>[] {} ) );
 
@@ -528,11 +619,7 @@ public class JungEGraphDriver
 
     public boolean addCycle( final EProjectCycle cycle )
     {
-        boolean changed = false;
-        synchronized ( this.cycles )
-        {
-            changed = this.cycles.add( cycle );
-        }
+        final boolean changed = addCycles( Collections.singleton( cycle ) );
 
         for ( final ProjectRelationship<?> rel : cycle )
         {
@@ -542,35 +629,48 @@ public class JungEGraphDriver
         return changed;
     }
 
-    public Set<EProjectCycle> getCycles()
-    {
-        return new HashSet<EProjectCycle>( cycles );
-    }
-
-    public boolean isCycleParticipant( final ProjectRelationship<?> rel )
+    private boolean addCycles( final Collection<EProjectCycle> found )
     {
-        for ( final EProjectCycle cycle : cycles )
+        synchronized ( this.cycles )
         {
-            if ( cycle.contains( rel ) )
+            final boolean changed = this.cycles.addAll( found );
+            if ( changed )
             {
-                return true;
+                cycleIndex = null;
+                version.incrementAndGet();
             }
-        }
 
-        return false;
+            return changed;
+        }
     }
 
-    public boolean isCycleParticipant( final ProjectVersionRef ref )
+    private CycleIndex getCycleIndex()
     {
-        for ( final EProjectCycle cycle : cycles )
+        synchronized ( this.cycles )
         {
-            if ( cycle.contains( ref ) )
+            if ( cycleIndex == null )
             {
-                return true;
+                // cycles are only ever added, so the count works as a version number for the cycle set.
+                cycleIndex = new CycleIndex( cycles, cycles.size() );
             }
+
+            return cycleIndex;
         }
+    }
 
-        return false;
+    public Set<EProjectCycle> getCycles()
+    {
+        return new HashSet<EProjectCycle>( getCycleIndex().getCycles() );
+    }
+
+    public boolean isCycleParticipant( final ProjectRelationship<?> rel )
+    {
+        return getCycleIndex().containsRelationship( rel );
+    }
+
+    public boolean isCycleParticipant( final ProjectVersionRef ref )
+    {
+        return getCycleIndex().containsProject( ref );
     }
 
     public void recomputeIncompleteSubgraphs()
@@ -697,11 +797,12 @@ public class JungEGraphDriver
             }
 
             graph.removeEdge( rel );
-            graph.addEdge( repl, repl.getDeclaring(), repl.getTarget()
-                                                          .asProjectVersionRef() );
+            addUncheckedEdge( repl );
 
             replaced.put( rel, repl );
         }
+
+        version.incrementAndGet();
     }
 
     public Map<ProjectVersionRef, ProjectVersionRef> clearSelectedVersions()
@@ -709,7 +810,7 @@ public class JungEGraphDriver
         final Map<ProjectVersionRef, ProjectVersionRef> selected =
             new HashMap<ProjectVersionRef, ProjectVersionRef>( this.selected );
 
-        selected.clear();
+        this.selected.clear();
 
         for ( final Map.Entry<ProjectRelationship<?>, ProjectRelationship<?>> entry : replaced.entrySet() )
         {
@@ -717,22 +818,49 @@ public class JungEGraphDriver
             final ProjectRelationship<?> repl = entry.getValue();
 
             graph.removeEdge( repl );
-            graph.addEdge( rel, rel.getDeclaring(), rel.getTarget()
-                                                       .asProjectVersionRef() );
+            addUncheckedEdge( rel );
         }
 
+        replaced.clear();
+
         for ( final ProjectVersionRef select : new HashSet<ProjectVersionRef>( selected.values() ) )
         {
             final Collection<ProjectRelationship<?>> edges = graph.getInEdges( select );
             if ( edges.isEmpty() )
             {
                 graph.removeVertex( select );
+                topology.removeNode( select );
             }
         }
 
+        version.incrementAndGet();
+
         return selected;
     }
 
+    /**
+     * Add an edge that must not be rejected, even if it closes a cycle. If it does, incremental cycle detection is
+     * abandoned for this graph.
+     */
+    private void addUncheckedEdge( final ProjectRelationship<?> rel )
+    {
+        final ProjectVersionRef target = rel.getTarget()
+                                            .asProjectVersionRef();
+        if ( !graph.containsVertex( target ) )
+        {
+            graph.addVertex( target );
+            topology.addNode( target );
+        }
+
+        if ( topology.isValid() && !topology.add( graph, rel.getDeclaring(), target )
+                                            .isEmpty() )
+        {
+            topology.invalidate();
+        }
+
+        graph.addEdge( rel, rel.getDeclaring(), target );
+    }
+
     public Map<ProjectVersionRef, ProjectVersionRef> getSelectedVersions()
     {
         return selected;
@@ -827,7 +955,23 @@ public class JungEGraphDriver
         if ( !graph.containsVertex( ref ) )
         {
             graph.addVertex( ref );
+            topology.addNode( ref );
+            version.incrementAndGet();
         }
     }
 
+    public long getGraphVersion()
+    {
+        return version.get();
+    }
+
+    /**
+     * Each instance holds a graph of its own (derived instances copy what they see of their parent's), so the id is
+     * random.
+     */
+    public String getGraphId()
+    {
+        return graphId;
+    }
+
 }
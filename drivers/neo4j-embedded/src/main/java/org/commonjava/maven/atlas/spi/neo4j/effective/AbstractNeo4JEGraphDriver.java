@@ -19,19 +19,18 @@ package org.commonjava.maven.atlas.spi.neo4j.effective;
 import static org.apache.commons.lang.StringUtils.join;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.GAV;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.RELATIONSHIP_ID;
-import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.cloneRelationshipProperties;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.convertToProjects;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.convertToRelationships;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.getInjectedCycles;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.getMetadataMap;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.getStringProperty;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.id;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.isAtlasType;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.isCloneFor;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.isConnected;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.markConnected;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.markCycleInjection;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.markDeselectedFor;
-import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.markSelectedFor;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.removeSelectionAnnotationsFor;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.setMetadata;
 import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.toNodeProperties;
@@ -49,10 +48,18 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
 
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
 import org.apache.maven.graph.common.RelationshipType;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.common.version.SingleVersion;
@@ -61,12 +68,18 @@ import org.apache.maven.graph.effective.EProjectCycle;
 import org.apache.maven.graph.effective.EProjectNet;
 import org.apache.maven.graph.effective.filter.AbstractAggregatingFilter;
 import org.apache.maven.graph.effective.filter.AbstractTypedFilter;
+import org.apache.maven.graph.effective.filter.AndFilter;
 import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
 import org.apache.maven.graph.effective.traverse.AbstractFilteringTraversal;
 import org.apache.maven.graph.effective.traverse.ProjectNetTraversal;
 import org.apache.maven.graph.effective.traverse.TraversalType;
+import org.apache.maven.graph.effective.traverse.model.PathGraph;
+import org.apache.maven.graph.effective.util.CloseableIterator;
+import org.apache.maven.graph.effective.util.CloseableIterators;
+import org.apache.maven.graph.effective.util.CycleIndex;
 import org.apache.maven.graph.spi.GraphDriverException;
+import org.apache.maven.graph.spi.effective.AbstractEGraphDriver;
 import org.apache.maven.graph.spi.effective.EGraphDriver;
 import org.apache.maven.graph.spi.effective.GloballyBackedGraphDriver;
 import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.AtlasCollector;
@@ -74,11 +87,21 @@ import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.ConnectingPathsCo
 import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.EndGAVsPathsCollector;
 import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.EndNodesCollector;
 import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.MembershipWrappedTraversalEvaluator;
+import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.PathRelationshipsCollector;
 import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.RootedNodesCollector;
 import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.RootedRelationshipsCollector;
 import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.SelectionFinderAtlasCollector;
+import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.SelectionOverlayExpander;
+import org.commonjava.maven.atlas.spi.neo4j.effective.util.CycleInjectionDetector;
+import org.commonjava.maven.atlas.spi.neo4j.effective.util.QueryTiming;
 import org.commonjava.maven.atlas.spi.neo4j.io.Conversions;
+import org.commonjava.maven.atlas.spi.neo4j.io.GraphPropertyDictionary;
 import org.commonjava.maven.atlas.spi.neo4j.io.NodeIdProjector;
+import org.commonjava.maven.atlas.spi.neo4j.io.PropertyDictionary;
+import org.commonjava.maven.atlas.spi.neo4j.io.ProjectIterator;
+import org.commonjava.maven.atlas.spi.neo4j.io.ProjectRelationshipIterator;
+import org.commonjava.maven.atlas.spi.neo4j.io.RelationshipHandle;
+import org.commonjava.maven.atlas.spi.neo4j.io.RelationshipHandleIterator;
 import org.commonjava.util.logging.Logger;
 import org.neo4j.cypher.javacompat.ExecutionEngine;
 import org.neo4j.cypher.javacompat.ExecutionResult;
@@ -95,24 +118,32 @@ import org.neo4j.graphdb.traversal.TraversalDescription;
 import org.neo4j.graphdb.traversal.Traverser;
 import org.neo4j.kernel.Traversal;
 import org.neo4j.kernel.Uniqueness;
+import org.neo4j.tooling.GlobalGraphOperations;
 
 public abstract class AbstractNeo4JEGraphDriver
+    extends AbstractEGraphDriver
     implements Runnable, GloballyBackedGraphDriver, Neo4JEGraphDriver
 {
 
     private final Logger logger = new Logger( getClass() );
 
-    private static final String ALL_RELATIONSHIPS = "all_relationships";
+    static final String ALL_RELATIONSHIPS = "all_relationships";
 
-    private static final String ALL_NODES = "all_nodes";
+    static final String ALL_NODES = "all_nodes";
 
-    private static final String CYCLE_INJECTION_IDX = "cycle_injections";
+    static final String CYCLE_INJECTION_IDX = "cycle_injections";
 
-    private static final String VARIABLE_NODES_IDX = "variable_nodes";
+    static final String VARIABLE_NODES_IDX = "variable_nodes";
 
-    private static final String MISSING_NODES_IDX = "missing_nodes";
+    static final String MISSING_NODES_IDX = "missing_nodes";
 
-    private static final String METADATA_INDEX_PREFIX = "has_metadata_";
+    public static final int DEFAULT_REINDEX_CHUNK_SIZE = 1000;
+
+    private static final String ROOTS_PARAM = "atlas_roots";
+
+    private static final String ROOT_REL_PARAM = "atlas_root_rel";
+
+    static final int MAX_CACHED_QUERIES = 256;
 
     //    private static final String GRAPH_ATLAS_TYPES_CLAUSE = join( GraphRelType.atlasRelationshipTypes(), "|" );
 
@@ -148,10 +179,32 @@ public abstract class AbstractNeo4JEGraphDriver
 
     private boolean useShutdownHook;
 
+    private final boolean readOnly;
+
     private ProjectRelationshipFilter filter;
 
     private ExecutionEngine queryEngine;
 
+    private final Map<String, QueryTiming> queries;
+
+    private final SelectionOverlay selections;
+
+    private final GraphCounters counters;
+
+    private final MetadataIndexes metadataIndexes;
+
+    private final MembershipFilter membership;
+
+    private final RelationshipIds relationshipIds;
+
+    private volatile WriteBehindQueue writeBehind;
+
+    private boolean deferCycleDetection;
+
+    private CycleIndex cycleIndex;
+
+    private final GraphPropertyDictionary dictionary;
+
     protected AbstractNeo4JEGraphDriver( final AbstractNeo4JEGraphDriver driver,
                                          final ProjectRelationshipFilter filter, final ProjectVersionRef... rootRefs )
         throws GraphDriverException
@@ -161,10 +214,33 @@ public abstract class AbstractNeo4JEGraphDriver
 
         this.filter = filter;
         this.graph = driver.graph;
+        this.readOnly = driver.readOnly;
+        this.deferCycleDetection = driver.deferCycleDetection;
+        this.queries = driver.queries;
+        this.selections = driver.selections;
+        this.counters = driver.counters;
+        this.metadataIndexes = driver.metadataIndexes;
+        this.membership = driver.membership;
+        this.relationshipIds = driver.relationshipIds;
+        this.dictionary = driver.dictionary;
         this.ancestry.addAll( driver.ancestry );
         this.ancestry.add( driver );
 
-        if ( rootRefs.length > 0 )
+        if ( rootRefs.length > 0 && readOnly )
+        {
+            for ( final ProjectVersionRef ref : rootRefs )
+            {
+                final Node n = getNode( ref );
+                if ( n == null )
+                {
+                    throw new GraphDriverException( "Cannot use %s as a root; it isn't in the (read-only) database.",
+                                                    ref );
+                }
+
+                roots.add( n );
+            }
+        }
+        else if ( rootRefs.length > 0 )
         {
             Transaction tx = null;
             try
@@ -190,25 +266,56 @@ public abstract class AbstractNeo4JEGraphDriver
 
                 //                logger.debug( "Committing graph transaction." );
                 tx.success();
+                counters.success();
             }
             finally
             {
                 if ( tx != null )
                 {
-                    tx.finish();
+                    counters.finish( tx );
                 }
             }
         }
     }
 
     protected AbstractNeo4JEGraphDriver( final GraphDatabaseService graph, final boolean useShutdownHook )
+    {
+        this( graph, useShutdownHook, false );
+    }
+
+    /**
+     * @param readOnly If true, the database was opened read-only: write operations are refused, and none of the
+     *        driver's own bookkeeping is stored.
+     */
+    protected AbstractNeo4JEGraphDriver( final GraphDatabaseService graph, final boolean useShutdownHook,
+                                         final boolean readOnly )
     {
         this.graph = graph;
-        this.useShutdownHook = useShutdownHook;
+        this.readOnly = readOnly;
+        this.useShutdownHook = useShutdownHook && !readOnly;
+        this.selections = new SelectionOverlay();
+        this.queries = new LinkedHashMap<String, QueryTiming>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<String, QueryTiming> eldest )
+            {
+                return size() > MAX_CACHED_QUERIES;
+            }
+        };
+
+        dictionary = new GraphPropertyDictionary( graph, readOnly );
+        PropertyDictionary.register( graph, dictionary );
+
+        counters = new GraphCounters( graph, readOnly );
+        metadataIndexes = new MetadataIndexes( graph, readOnly );
+        membership = new MembershipFilter( graph, counters, readOnly );
+        relationshipIds = new RelationshipIds( graph, counters, readOnly );
 
         printGraphStats();
 
-        if ( useShutdownHook )
+        if ( this.useShutdownHook )
         {
             Runtime.getRuntime()
                    .addShutdownHook( new Thread( this ) );
@@ -245,18 +352,53 @@ public abstract class AbstractNeo4JEGraphDriver
         return useShutdownHook;
     }
 
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
     private void printGraphStats()
     {
         final Logger logger = new Logger( getClass() );
-        logger.info( "Loaded approximately %d nodes.", graph.index()
-                                                            .forNodes( ALL_NODES )
-                                                            .query( GAV, "*" )
-                                                            .size() );
+        logger.info( "Loaded graph: %s", counters.getStatistics() );
+    }
 
-        logger.info( "Loaded approximately %d relationships.", graph.index()
-                                                                    .forRelationships( ALL_RELATIONSHIPS )
-                                                                    .query( RELATIONSHIP_ID, "*" )
-                                                                    .size() );
+    /**
+     * Node and relationship counts for the whole database, maintained as relationships are added rather than counted
+     * on demand.
+     */
+    public GraphStatistics getGraphStatistics()
+    {
+        return counters.getStatistics();
+    }
+
+    /**
+     * @return The estimated chance that {@link #containsProject(ProjectVersionRef)} has to query the index for a
+     *         project that isn't stored, or 1 while the bloom filters are being rebuilt.
+     */
+    public double getProjectFilterFalsePositiveRate()
+    {
+        return membership.getProjectFalsePositiveRate();
+    }
+
+    /**
+     * @return The estimated chance that {@link #containsRelationship(ProjectRelationship)} has to query the index for
+     *         a relationship that isn't stored, or 1 while the bloom filters are being rebuilt.
+     */
+    public double getRelationshipFilterFalsePositiveRate()
+    {
+        return membership.getRelationshipFalsePositiveRate();
+    }
+
+    private Iterable<Node> getNodesById( final long[] ids )
+    {
+        final List<Node> nodes = new ArrayList<Node>( ids.length );
+        for ( final long id : ids )
+        {
+            nodes.add( graph.getNodeById( id ) );
+        }
+
+        return nodes;
     }
 
     public Collection<? extends ProjectRelationship<?>> getRelationshipsDeclaredBy( final ProjectVersionRef ref )
@@ -290,6 +432,15 @@ public abstract class AbstractNeo4JEGraphDriver
         }
     }
 
+    private void checkWritable()
+    {
+        checkClosed();
+        if ( readOnly )
+        {
+            throw new IllegalStateException( "Graph database is read-only!" );
+        }
+    }
+
     public Collection<? extends ProjectRelationship<?>> getRelationshipsTargeting( final ProjectVersionRef ref )
     {
         checkClosed();
@@ -301,13 +452,54 @@ public abstract class AbstractNeo4JEGraphDriver
         if ( hits.hasNext() )
         {
             final Node node = hits.next();
-            final Iterable<Relationship> relationships = node.getRelationships( Direction.INCOMING );
+            final Iterable<Relationship> relationships =
+                selections.redirectIncoming( getRootIds(), node, node.getRelationships( Direction.INCOMING ) );
             return convertToRelationships( relationships );
         }
 
         return null;
     }
 
+    /**
+     * Searches the graph as traversals from the roots see it: through this graph's filter as well as the given one, and
+     * with the version selections applied.
+     */
+    @Override
+    public List<ProjectRelationship<?>> getShortestPath( final ProjectVersionRef root, final ProjectVersionRef target,
+                                                         final ProjectRelationshipFilter filter )
+    {
+        checkClosed();
+
+        final ProjectRelationshipFilter f;
+        if ( this.filter == null || filter == null )
+        {
+            f = this.filter == null ? filter : this.filter;
+        }
+        else
+        {
+            f = new AndFilter( Arrays.asList( this.filter, filter ) );
+        }
+
+        return super.getShortestPath( root, target, f );
+    }
+
+    /**
+     * Outgoing relationships with the version selections applied, matching
+     * {@link #getRelationshipsTargeting(ProjectVersionRef)}.
+     */
+    @Override
+    protected Collection<? extends ProjectRelationship<?>> getPathRelationshipsDeclaredBy( final ProjectVersionRef ref )
+    {
+        final Node node = getNode( ref );
+        if ( node == null )
+        {
+            return null;
+        }
+
+        return convertToRelationships( selections.redirectOutgoing( getRootIds(),
+                                                                    node.getRelationships( Direction.OUTGOING ) ) );
+    }
+
     public Collection<ProjectRelationship<?>> getAllRelationships()
     {
         if ( roots != null && !roots.isEmpty() )
@@ -339,11 +531,115 @@ public abstract class AbstractNeo4JEGraphDriver
         }
         else
         {
-            final IndexHits<Relationship> hits = graph.index()
-                                                      .forRelationships( ALL_RELATIONSHIPS )
-                                                      .query( RELATIONSHIP_ID, "*" );
-            return convertToRelationships( hits );
+            final List<Relationship> atlasRels = new ArrayList<Relationship>();
+            for ( final Relationship r : GlobalGraphOperations.at( graph )
+                                                             .getAllRelationships() )
+            {
+                if ( isAtlasType( r ) )
+                {
+                    atlasRels.add( r );
+                }
+            }
+
+            return convertToRelationships( atlasRels );
+        }
+    }
+
+    /**
+     * Relationships are decoded one at a time as they're consumed, and type restrictions are checked against the stored
+     * relationship type before decoding. Without roots, this streams straight from the relationship store; with roots,
+     * only the (undecoded) relationships reachable from them are held while iterating.
+     */
+    @Override
+    public CloseableIterator<ProjectRelationship<?>> iterateAllRelationships( final RelationshipType... types )
+    {
+        checkClosed();
+
+        final Set<RelationshipType> typeSet = CloseableIterators.toTypeSet( types );
+        if ( roots != null && !roots.isEmpty() )
+        {
+            final RootedRelationshipsCollector checker = new RootedRelationshipsCollector( roots, filter, false );
+            collectAtlasRelationships( checker, roots );
+
+            return new ProjectRelationshipIterator( new RelationshipHandleIterator( checker.iterator(), true, typeSet ) );
+        }
+
+        return new ProjectRelationshipIterator( new RelationshipHandleIterator( GlobalGraphOperations.at( graph )
+                                                                                                     .getAllRelationships()
+                                                                                                     .iterator(),
+                                                                                false, typeSet ) );
+    }
+
+    @Override
+    public CloseableIterator<ProjectVersionRef> iterateAllProjects()
+    {
+        checkClosed();
+
+        if ( roots != null && !roots.isEmpty() )
+        {
+            final RootedNodesCollector agg = new RootedNodesCollector( roots, filter, false );
+            collectAtlasRelationships( agg, roots );
+
+            return new ProjectIterator( agg.iterator() );
         }
+
+        return new ProjectIterator( graph, counters.getNodes() );
+    }
+
+    /**
+     * Same relationships as {@link #getRelationshipsDeclaredBy(ProjectVersionRef)}, wrapped in lazily-decoded
+     * {@link RelationshipHandle}s as they're iterated. Empty if the project isn't stored.
+     */
+    public Iterable<RelationshipHandle> getRelationshipHandlesDeclaredBy( final ProjectVersionRef ref )
+    {
+        checkClosed();
+
+        final Node node = ref == null ? null : getNode( ref, false );
+        if ( node == null )
+        {
+            return Collections.emptyList();
+        }
+
+        return new RelationshipHandleIterator( node.getRelationships( Direction.OUTGOING ), false );
+    }
+
+    /**
+     * Same relationships as {@link #getRelationshipsTargeting(ProjectVersionRef)}, wrapped in lazily-decoded
+     * {@link RelationshipHandle}s as they're iterated. Empty if the project isn't stored.
+     */
+    public Iterable<RelationshipHandle> getRelationshipHandlesTargeting( final ProjectVersionRef ref )
+    {
+        checkClosed();
+
+        final Node node = ref == null ? null : getNode( ref, false );
+        if ( node == null )
+        {
+            return Collections.emptyList();
+        }
+
+        return new RelationshipHandleIterator( selections.redirectIncoming( getRootIds(), node,
+                                                                            node.getRelationships( Direction.INCOMING ) ),
+                                               false );
+    }
+
+    /**
+     * Same relationships as {@link #getAllRelationships()}, wrapped in lazily-decoded {@link RelationshipHandle}s as
+     * they're iterated. Without roots, this streams straight from the relationship store.
+     */
+    public Iterable<RelationshipHandle> getAllRelationshipHandles()
+    {
+        checkClosed();
+
+        if ( roots != null && !roots.isEmpty() )
+        {
+            final RootedRelationshipsCollector checker = new RootedRelationshipsCollector( roots, filter, false );
+            collectAtlasRelationships( checker, roots );
+
+            return new RelationshipHandleIterator( checker, true );
+        }
+
+        return new RelationshipHandleIterator( GlobalGraphOperations.at( graph )
+                                                                    .getAllRelationships(), false );
     }
 
     public Set<List<ProjectRelationship<?>>> getAllPathsTo( final ProjectVersionRef... refs )
@@ -378,12 +674,42 @@ public abstract class AbstractNeo4JEGraphDriver
         return result;
     }
 
-    public Set<ProjectRelationship<?>> addRelationships( final ProjectRelationship<?>... rels )
+    public PathGraph getPathGraph( final ProjectVersionRef... refs )
     {
         checkClosed();
 
+        final PathGraph.Builder builder = new PathGraph.Builder( getRoots(), refs );
+        if ( roots.isEmpty() )
+        {
+            return builder.build();
+        }
+
+        // each reachable relationship is visited once (not once per path), and the builder prunes those that don't
+        // lead to a target.
+        final PathRelationshipsCollector checker = new PathRelationshipsCollector( roots, filter );
+        collectAtlasRelationships( checker, roots );
+
+        for ( final Relationship r : checker )
+        {
+            builder.withRelationship( toProjectRelationship( r ) );
+        }
+
+        return builder.build();
+    }
+
+    public Set<ProjectRelationship<?>> addRelationships( final ProjectRelationship<?>... rels )
+    {
+        checkWritable();
+
+        return storeRelationships( rels );
+    }
+
+    private Set<ProjectRelationship<?>> storeRelationships( final ProjectRelationship<?>... rels )
+    {
         Transaction tx = graph.beginTx();
         final Set<ProjectRelationship<?>> skipped = new HashSet<ProjectRelationship<?>>();
+        final Map<Relationship, ProjectRelationship<?>> created =
+            new LinkedHashMap<Relationship, ProjectRelationship<?>>();
         try
         {
             for ( final ProjectRelationship<?> rel : rels )
@@ -401,8 +727,10 @@ public abstract class AbstractNeo4JEGraphDriver
                 int i = 0;
                 for ( final ProjectVersionRef ref : new ProjectVersionRef[] { declaring, target } )
                 {
-                    final IndexHits<Node> hits = index.get( GAV, ref.toString() );
-                    if ( !hits.hasNext() )
+                    final IndexHits<Node> hits =
+                        membership.mightContainProject( ref ) ? index.get( GAV, ref.toString() ) : null;
+
+                    if ( hits == null || !hits.hasNext() )
                     {
                         final Node node = newProjectNode( ref );
                         logger.debug( "Created project node: %s with id: %d", ref, node.getId() );
@@ -422,9 +750,7 @@ public abstract class AbstractNeo4JEGraphDriver
                 final RelationshipIndex relIdx = graph.index()
                                                       .forRelationships( ALL_RELATIONSHIPS );
 
-                final String relId = id( rel );
-                final IndexHits<Relationship> relHits = relIdx.get( RELATIONSHIP_ID, relId );
-                if ( relHits.size() < 1 )
+                if ( !membership.mightContainRelationship( rel ) || relationshipIds.find( relIdx, rel ) == null )
                 {
                     final Node from = graph.getNodeById( ids[0] );
 
@@ -435,19 +761,28 @@ public abstract class AbstractNeo4JEGraphDriver
                         logger.debug( "Creating graph relationship for: %s between node: %d and node: %d", rel, ids[0],
                                       ids[1] );
 
-                        final Relationship relationship =
-                            from.createRelationshipTo( to, GraphRelType.map( rel.getType(), rel.isManaged() ) );
+                        final GraphRelType type = GraphRelType.map( rel.getType(), rel.isManaged() );
+                        final Relationship relationship = from.createRelationshipTo( to, type );
+                        counters.addRelationship( type );
 
                         logger.debug( "New relationship is: %s", relationship );
 
                         toRelationshipProperties( rel, relationship );
-                        relIdx.add( relationship, RELATIONSHIP_ID, relId );
+                        relationshipIds.index( relIdx, relationship, rel );
+                        membership.addRelationship( rel );
+
+                        created.put( relationship, rel );
                     }
 
-                    graph.index()
-                         .forNodes( MISSING_NODES_IDX )
-                         .remove( from );
-                    markConnected( from, true );
+                    // a self-referential (terminal) parent is never stored, so it lands here every time it's added.
+                    if ( !isConnected( from ) )
+                    {
+                        graph.index()
+                             .forNodes( MISSING_NODES_IDX )
+                             .remove( from );
+                        markConnected( from, true );
+                        counters.connected( from.getId() );
+                    }
                 }
                 else
                 {
@@ -456,41 +791,256 @@ public abstract class AbstractNeo4JEGraphDriver
                 }
             }
 
+            // the new relationships may refer to dictionary codes handed out just now.
+            dictionary.flush();
+
             //            logger.debug( "Committing graph transaction." );
             tx.success();
+            counters.success();
         }
         finally
         {
-            tx.finish();
+            counters.finish( tx );
         }
 
         tx = graph.beginTx();
         try
         {
-            for ( final ProjectRelationship<?> rel : rels )
+            if ( deferCycleDetection )
             {
-                if ( skipped.contains( rel ) )
+                final Set<ProjectRelationship<?>> added = new HashSet<ProjectRelationship<?>>( created.values() );
+                for ( final ProjectRelationship<?> rel : rels )
                 {
-                    continue;
+                    if ( added.contains( rel ) )
+                    {
+                        continue;
+                    }
+
+                    final Relationship r = getRelationship( rel );
+                    if ( r == null || r.hasProperty( Conversions.CYCLE_INJECTION ) )
+                    {
+                        skipped.add( rel );
+                    }
                 }
 
-                final Relationship r = getRelationship( rel );
-                if ( r == null || markCycle( rel, r ) )
+                skipped.addAll( markCycles( created ) );
+            }
+            else
+            {
+                for ( final ProjectRelationship<?> rel : rels )
                 {
-                    skipped.add( rel );
+                    if ( skipped.contains( rel ) )
+                    {
+                        continue;
+                    }
+
+                    final Relationship r = getRelationship( rel );
+                    if ( r == null || markCycle( rel, r ) )
+                    {
+                        skipped.add( rel );
+                    }
                 }
             }
 
             tx.success();
+            counters.success();
         }
         finally
         {
-            tx.finish();
+            counters.finish( tx );
         }
 
         return skipped;
     }
 
+    /**
+     * When enabled, {@link #addRelationships(ProjectRelationship...)} marks the cycles introduced by each batch of
+     * relationships in a single strongly-connected-components pass at the end of the batch, instead of searching for a
+     * path back to the declaring project once per relationship.
+     * Drivers derived from this one afterward inherit the setting.
+     */
+    public void setDeferredCycleDetection( final boolean deferCycleDetection )
+    {
+        this.deferCycleDetection = deferCycleDetection;
+    }
+
+    public boolean isDeferredCycleDetection()
+    {
+        return deferCycleDetection;
+    }
+
+    /**
+     * Mark the cycle injections among a batch of newly created relationships. Any cycle closed by a new relationship
+     * lies within the region of the graph that is both reachable from the new relationships' targets and able to reach
+     * their declaring projects, so only that region is handed to {@link CycleInjectionDetector}. Within it,
+     * relationships that existed before this batch count as already checked, and the new ones are considered in the
+     * order they were added (each one is checked against the graph as it stood when it was added).
+     * <p/>
+     * Paths are restricted to the relationship types admitted by this driver's filter, as with the traversal used by
+     * {@link #markCycle(ProjectRelationship, Relationship)}, but the rest of the filter's path-dependent logic is not
+     * applied.
+     * 
+     * @return The new relationships that inject cycles.
+     */
+    private Set<ProjectRelationship<?>> markCycles( final Map<Relationship, ProjectRelationship<?>> created )
+    {
+        final Set<ProjectRelationship<?>> injecting = new HashSet<ProjectRelationship<?>>();
+        if ( created.isEmpty() )
+        {
+            return injecting;
+        }
+
+        final Set<GraphRelType> relTypes = getRelTypes( filter );
+        final GraphRelType[] types = relTypes.toArray( new GraphRelType[relTypes.size()] );
+
+        final Set<Long> forward = new HashSet<Long>();
+        final LinkedList<Node> queue = new LinkedList<Node>();
+        for ( final Relationship r : created.keySet() )
+        {
+            final Node n = r.getEndNode();
+            if ( forward.add( n.getId() ) )
+            {
+                queue.add( n );
+            }
+        }
+
+        while ( !queue.isEmpty() )
+        {
+            final Node n = queue.removeFirst();
+            for ( final Relationship r : n.getRelationships( Direction.OUTGOING, types ) )
+            {
+                final Node m = r.getEndNode();
+                if ( forward.add( m.getId() ) )
+                {
+                    queue.add( m );
+                }
+            }
+        }
+
+        final Set<Long> region = new HashSet<Long>();
+        for ( final Relationship r : created.keySet() )
+        {
+            final Node n = r.getStartNode();
+            if ( forward.contains( n.getId() ) && region.add( n.getId() ) )
+            {
+                queue.add( n );
+            }
+        }
+
+        while ( !queue.isEmpty() )
+        {
+            final Node n = queue.removeFirst();
+            for ( final Relationship r : n.getRelationships( Direction.INCOMING, types ) )
+            {
+                final Node m = r.getStartNode();
+                if ( forward.contains( m.getId() ) && region.add( m.getId() ) )
+                {
+                    queue.add( m );
+                }
+            }
+        }
+
+        logger.debug( "Checking %d new relationships for cycles within a region of %d projects.", created.size(),
+                      region.size() );
+
+        if ( region.isEmpty() )
+        {
+            return injecting;
+        }
+
+        final CycleInjectionDetector detector = new CycleInjectionDetector( region.size() * 4 );
+        for ( final Long id : region )
+        {
+            final Node n = graph.getNodeById( id );
+            for ( final Relationship r : n.getRelationships( Direction.OUTGOING, types ) )
+            {
+                final long end = r.getEndNode()
+                                  .getId();
+
+                if ( region.contains( end ) && !created.containsKey( r ) )
+                {
+                    detector.addEdge( r.getId(), id, end, false );
+                }
+            }
+        }
+
+        final Map<Integer, Relationship> candidates = new HashMap<Integer, Relationship>();
+        for ( final Relationship r : created.keySet() )
+        {
+            final long start = r.getStartNode()
+                                .getId();
+            final long end = r.getEndNode()
+                              .getId();
+
+            if ( region.contains( start ) && region.contains( end ) )
+            {
+                candidates.put( detector.addEdge( r.getId(), start, end, true ), r );
+            }
+        }
+
+        final RelationshipIndex cycleIdx = graph.index()
+                                                .forRelationships( CYCLE_INJECTION_IDX );
+
+        for ( final Map.Entry<Integer, long[]> entry : detector.detect()
+                                                               .entrySet() )
+        {
+            final Relationship r = candidates.get( entry.getKey() );
+            final ProjectRelationship<?> rel = created.get( r );
+
+            markCycleInjection( r, entry.getValue() );
+            cycleIdx.add( r, RELATIONSHIP_ID, id( rel ) );
+            counters.addCycleInjection( r.getId() );
+
+            injecting.add( rel );
+        }
+
+        return injecting;
+    }
+
+    /**
+     * Route {@link #addRelationshipsAsync(ProjectRelationship...)} through a group-commit queue, which coalesces writes
+     * from many threads into transactions of up to batchSize relationships, waiting at most maxLatency milliseconds for
+     * a batch to fill. Callers block once more than maxQueued relationships are waiting to be written.
+     */
+    public synchronized void enableWriteBehind( final int batchSize, final long maxLatency, final int maxQueued )
+    {
+        checkWritable();
+        if ( writeBehind != null )
+        {
+            writeBehind.shutdown();
+        }
+
+        writeBehind = new WriteBehindQueue( this, batchSize, maxLatency, maxQueued );
+    }
+
+    /**
+     * Queue the given relationships for writing, if write-behind is enabled (see
+     * {@link #enableWriteBehind(int, long, int)}); otherwise, add them immediately.
+     * 
+     * @return Future of the relationships that introduce cycles, as returned by
+     * {@link #addRelationships(ProjectRelationship...)}.
+     */
+    public Future<Set<ProjectRelationship<?>>> addRelationshipsAsync( final ProjectRelationship<?>... rels )
+        throws GraphDriverException
+    {
+        final WriteBehindQueue queue = writeBehind;
+        if ( queue == null )
+        {
+            return WriteBehindQueue.completed( addRelationships( rels ) );
+        }
+
+        try
+        {
+            return queue.submit( rels );
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread()
+                  .interrupt();
+            throw new GraphDriverException( "Interrupted while waiting for room in the write-behind queue.", e );
+        }
+    }
+
     public boolean markCycle( final ProjectRelationship<?> rel, final Relationship relationship )
     {
         //        if ( roots == null || roots.isEmpty() )
@@ -504,10 +1054,10 @@ public abstract class AbstractNeo4JEGraphDriver
         {
             markCycleInjection( relationship, cycles );
 
-            final String relId = id( rel );
             graph.index()
                  .forRelationships( CYCLE_INJECTION_IDX )
-                 .add( relationship, RELATIONSHIP_ID, relId );
+                 .add( relationship, RELATIONSHIP_ID, id( rel ) );
+            counters.addCycleInjection( relationship.getId() );
 
             return true;
         }
@@ -599,6 +1149,9 @@ public abstract class AbstractNeo4JEGraphDriver
                  .add( node, GAV, gav );
         }
 
+        counters.addNode( node.getId(), ref.isVariableVersion() );
+        membership.addProject( gav );
+
         return node;
     }
 
@@ -613,10 +1166,7 @@ public abstract class AbstractNeo4JEGraphDriver
         }
         else
         {
-            final IndexHits<Node> hits = graph.index()
-                                              .forNodes( ALL_NODES )
-                                              .query( GAV, "*" );
-            nodes = hits;
+            nodes = getNodesById( counters.getNodes() );
         }
 
         return new HashSet<ProjectVersionRef>( convertToProjects( nodes ) );
@@ -632,13 +1182,11 @@ public abstract class AbstractNeo4JEGraphDriver
         }
         else
         {
-            final IndexHits<Node> hits = graph.index()
-                                              .forNodes( ALL_NODES )
-                                              .query( GAV, "*" );
-            return toSet( hits );
+            return toSet( getNodesById( counters.getNodes() ) );
         }
     }
 
+    @SuppressWarnings( "unchecked" )
     public void traverse( final ProjectNetTraversal traversal, final EProjectNet net, final ProjectVersionRef root )
         throws GraphDriverException
     {
@@ -681,7 +1229,7 @@ public abstract class AbstractNeo4JEGraphDriver
             final MembershipWrappedTraversalEvaluator checker =
                 new MembershipWrappedTraversalEvaluator( this, traversal, i );
 
-            description = description.expand( checker )
+            description = description.expand( new SelectionOverlayExpander( checker, selections ) )
                                      .evaluator( checker );
 
             final Traverser traverser = description.traverse( rootNode );
@@ -772,74 +1320,239 @@ public abstract class AbstractNeo4JEGraphDriver
                     }
                 }
 
-                if ( typedFilter.isConcreteInfoIncluded() )
+                if ( typedFilter.isConcreteInfoIncluded() )
+                {
+                    final GraphRelType grt = GraphRelType.map( rt, false );
+                    if ( grt != null )
+                    {
+                        result.add( grt );
+                    }
+                }
+            }
+        }
+        else if ( filter instanceof AbstractAggregatingFilter )
+        {
+            final List<? extends ProjectRelationshipFilter> filters =
+                ( (AbstractAggregatingFilter) filter ).getFilters();
+
+            for ( final ProjectRelationshipFilter f : filters )
+            {
+                result.addAll( getRelTypes( f ) );
+            }
+        }
+        else
+        {
+            result.addAll( GraphRelType.atlasRelationshipTypes() );
+        }
+
+        return result;
+    }
+
+    private void printCaller( final String label )
+    {
+        //        logger.debug( "\n\n\n\n%s called from:\n\n%s\n\n\n\n", label, join( new Throwable().getStackTrace(), "\n" ) );
+    }
+
+    public long getGraphVersion()
+    {
+        return counters.getVersion();
+    }
+
+    /**
+     * Drivers derived from the same one share the store's id and version, so their roots and filter are added to it.
+     */
+    public String getGraphId()
+    {
+        final StringBuilder sb = new StringBuilder( counters.getGraphId() );
+        if ( roots != null && !roots.isEmpty() )
+        {
+            sb.append( " roots:" )
+              .append( new TreeSet<Long>( getRootIds() ) );
+        }
+
+        if ( filter != null )
+        {
+            sb.append( " filter:" );
+            filter.render( sb );
+        }
+
+        return sb.toString();
+    }
+
+    public boolean containsProject( final ProjectVersionRef ref )
+    {
+        return getNode( ref ) != null;
+    }
+
+    public boolean containsRelationship( final ProjectRelationship<?> rel )
+    {
+        return getRelationship( rel ) != null;
+    }
+
+    public Node getNode( final ProjectVersionRef ref )
+    {
+        return getNode( ref, true );
+    }
+
+    public Node getNode( final ProjectVersionRef ref, final boolean inCurrentGraph )
+    {
+        checkClosed();
+
+        if ( !membership.mightContainProject( ref ) )
+        {
+            return null;
+        }
+
+        final Index<Node> idx = graph.index()
+                                     .forNodes( ALL_NODES );
+
+        final IndexHits<Node> hits = idx.get( GAV, ref.toString() );
+
+        final Node node = hits.hasNext() ? hits.next() : null;
+
+        logger.debug( "Query result for node: %s is: %s\nChecking for path to root(s): %s", ref, node,
+                      join( roots, "|" ) );
+
+        if ( inCurrentGraph && !hasPathTo( node ) )
+        {
+            return null;
+        }
+
+        return node;
+    }
+
+    /**
+     * Batch form of {@link #getNode(ProjectVersionRef, boolean)}: the refs are screened by the bloom filter, the rest
+     * are looked up with one index query (per {@link BooleanQuery#getMaxClauseCount()} refs), and the nodes found are
+     * checked for membership in the current graph with one traversal from the roots.
+     * 
+     * @return The nodes found, keyed by project.
+     */
+    public Map<ProjectVersionRef, Node> getNodes( final Collection<ProjectVersionRef> refs,
+                                                  final boolean inCurrentGraph )
+    {
+        checkClosed();
+
+        final Index<Node> idx = graph.index()
+                                     .forNodes( ALL_NODES );
+
+        final Map<String, ProjectVersionRef> screened = new HashMap<String, ProjectVersionRef>();
+        for ( final ProjectVersionRef ref : refs )
+        {
+            if ( membership.mightContainProject( ref ) )
+            {
+                screened.put( ref.toString(), ref );
+            }
+        }
+
+        final Map<ProjectVersionRef, Node> nodes = new HashMap<ProjectVersionRef, Node>();
+        final List<String> gavs = new ArrayList<String>( screened.keySet() );
+        final int batchSize = BooleanQuery.getMaxClauseCount();
+        for ( int i = 0; i < gavs.size(); i += batchSize )
+        {
+            final BooleanQuery query = new BooleanQuery();
+            for ( final String gav : gavs.subList( i, Math.min( i + batchSize, gavs.size() ) ) )
+            {
+                query.add( new TermQuery( new Term( GAV, gav ) ), Occur.SHOULD );
+            }
+
+            final IndexHits<Node> hits = idx.query( query );
+            try
+            {
+                for ( final Node node : hits )
                 {
-                    final GraphRelType grt = GraphRelType.map( rt, false );
-                    if ( grt != null )
+                    final ProjectVersionRef ref = screened.get( getStringProperty( GAV, node ) );
+                    if ( ref != null )
                     {
-                        result.add( grt );
+                        nodes.put( ref, node );
                     }
                 }
             }
-        }
-        else if ( filter instanceof AbstractAggregatingFilter )
-        {
-            final List<? extends ProjectRelationshipFilter> filters =
-                ( (AbstractAggregatingFilter) filter ).getFilters();
-
-            for ( final ProjectRelationshipFilter f : filters )
+            finally
             {
-                result.addAll( getRelTypes( f ) );
+                hits.close();
             }
         }
-        else
+
+        if ( !inCurrentGraph || nodes.isEmpty() || roots == null || roots.isEmpty() )
         {
-            result.addAll( GraphRelType.atlasRelationshipTypes() );
+            return nodes;
         }
 
-        return result;
-    }
+        final Set<Node> targets = new HashSet<Node>( nodes.values() );
+        targets.removeAll( roots );
+        if ( targets.isEmpty() )
+        {
+            return nodes;
+        }
 
-    private void printCaller( final String label )
-    {
-        //        logger.debug( "\n\n\n\n%s called from:\n\n%s\n\n\n\n", label, join( new Throwable().getStackTrace(), "\n" ) );
-    }
+        final EndNodesCollector checker = new EndNodesCollector( roots, targets, filter, false );
+        collectAtlasRelationships( checker, roots );
 
-    public boolean containsProject( final ProjectVersionRef ref )
-    {
-        return getNode( ref ) != null;
-    }
+        final Set<Node> found = checker.getFoundNodes();
+        for ( final Iterator<Node> it = nodes.values()
+                                             .iterator(); it.hasNext(); )
+        {
+            final Node node = it.next();
+            if ( !roots.contains( node ) && !found.contains( node ) )
+            {
+                it.remove();
+            }
+        }
 
-    public boolean containsRelationship( final ProjectRelationship<?> rel )
-    {
-        return getRelationship( rel ) != null;
+        return nodes;
     }
 
-    public Node getNode( final ProjectVersionRef ref )
+    @Override
+    public Set<ProjectVersionRef> containsProjects( final Collection<ProjectVersionRef> refs )
     {
-        return getNode( ref, true );
+        return new HashSet<ProjectVersionRef>( getNodes( refs, true ).keySet() );
     }
 
-    public Node getNode( final ProjectVersionRef ref, final boolean inCurrentGraph )
+    @Override
+    public Set<ProjectVersionRef> getMissingProjects( final Collection<ProjectVersionRef> refs )
     {
-        checkClosed();
+        final Set<ProjectVersionRef> missing = new HashSet<ProjectVersionRef>();
+        for ( final Map.Entry<ProjectVersionRef, Node> entry : getNodes( refs, false ).entrySet() )
+        {
+            if ( !isConnected( entry.getValue() ) )
+            {
+                missing.add( entry.getKey() );
+            }
+        }
 
-        final Index<Node> idx = graph.index()
-                                     .forNodes( ALL_NODES );
+        return missing;
+    }
 
-        final IndexHits<Node> hits = idx.get( GAV, ref.toString() );
+    @Override
+    public Map<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>> getRelationshipsDeclaredBy( final Collection<ProjectVersionRef> refs )
+    {
+        final Map<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>> result =
+            new HashMap<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>>();
 
-        final Node node = hits.hasNext() ? hits.next() : null;
+        for ( final Map.Entry<ProjectVersionRef, Node> entry : getNodes( refs, false ).entrySet() )
+        {
+            result.put( entry.getKey(), convertToRelationships( entry.getValue()
+                                                                     .getRelationships( Direction.OUTGOING ) ) );
+        }
 
-        logger.debug( "Query result for node: %s is: %s\nChecking for path to root(s): %s", ref, node,
-                      join( roots, "|" ) );
+        return result;
+    }
 
-        if ( inCurrentGraph && !hasPathTo( node ) )
+    @Override
+    public Map<ProjectVersionRef, Map<String, String>> getProjectMetadata( final Collection<ProjectVersionRef> refs )
+    {
+        final Map<ProjectVersionRef, Map<String, String>> result = new HashMap<ProjectVersionRef, Map<String, String>>();
+        for ( final Map.Entry<ProjectVersionRef, Node> entry : getNodes( refs, false ).entrySet() )
         {
-            return null;
+            final Map<String, String> metadata = getMetadataMap( entry.getValue() );
+            if ( metadata != null )
+            {
+                result.put( entry.getKey(), metadata );
+            }
         }
 
-        return node;
+        return result;
     }
 
     private boolean hasPathTo( final Node node )
@@ -867,29 +1580,38 @@ public abstract class AbstractNeo4JEGraphDriver
     }
 
     public Relationship getRelationship( final ProjectRelationship<?> rel )
-    {
-        return getRelationship( id( rel ) );
-    }
-
-    Relationship getRelationship( final String relId )
     {
         checkClosed();
 
-        final RelationshipIndex idx = graph.index()
-                                           .forRelationships( ALL_RELATIONSHIPS );
-
-        final IndexHits<Relationship> hits = idx.get( RELATIONSHIP_ID, relId );
+        if ( !membership.mightContainRelationship( rel ) )
+        {
+            return null;
+        }
 
-        return hits.hasNext() ? hits.next() : null;
+        return relationshipIds.find( graph.index()
+                                          .forRelationships( ALL_RELATIONSHIPS ), rel );
     }
 
     public synchronized void close()
         throws IOException
     {
+        if ( writeBehind != null )
+        {
+            writeBehind.shutdown();
+            writeBehind = null;
+        }
+
         if ( ancestry.isEmpty() )
         {
             if ( graph != null )
             {
+                metadataIndexes.close();
+                membership.close();
+                counters.checkpoint();
+
+                PropertyDictionary.unregister( graph );
+                dictionary.close();
+
                 try
                 {
                     graph.shutdown();
@@ -947,18 +1669,14 @@ public abstract class AbstractNeo4JEGraphDriver
 
     public boolean hasMissingProjects()
     {
-        final IndexHits<Node> hits = graph.index()
-                                          .forNodes( MISSING_NODES_IDX )
-                                          .query( GAV, "*" );
+        final Iterable<Node> hits = getNodesById( counters.getMissing() );
 
         return hasIndexedProjects( hits );
     }
 
     public Set<ProjectVersionRef> getMissingProjects()
     {
-        final IndexHits<Node> hits = graph.index()
-                                          .forNodes( MISSING_NODES_IDX )
-                                          .query( GAV, "*" );
+        final Iterable<Node> hits = getNodesById( counters.getMissing() );
 
         return getIndexedProjects( hits );
         //        return getAllFlaggedProjects( CONNECTED, false );
@@ -993,6 +1711,7 @@ public abstract class AbstractNeo4JEGraphDriver
         return checker.hasFoundNodes();
     }
 
+    @SuppressWarnings( { "rawtypes", "unchecked" } )
     private void collectAtlasRelationships( final AtlasCollector<?> checker, final Set<Node> from )
     {
         if ( from == null || from.isEmpty() )
@@ -1015,7 +1734,7 @@ public abstract class AbstractNeo4JEGraphDriver
 
         description = description.breadthFirst();
 
-        description = description.expand( checker )
+        description = description.expand( new SelectionOverlayExpander( checker, selections ) )
                                  .evaluator( checker );
 
         final Traverser traverser = description.traverse( from.toArray( new Node[] {} ) );
@@ -1029,18 +1748,14 @@ public abstract class AbstractNeo4JEGraphDriver
 
     public boolean hasVariableProjects()
     {
-        final IndexHits<Node> hits = graph.index()
-                                          .forNodes( VARIABLE_NODES_IDX )
-                                          .query( GAV, "*" );
+        final Iterable<Node> hits = getNodesById( counters.getVariable() );
 
         return hasIndexedProjects( hits );
     }
 
     public Set<ProjectVersionRef> getVariableProjects()
     {
-        final IndexHits<Node> hits = graph.index()
-                                          .forNodes( VARIABLE_NODES_IDX )
-                                          .query( GAV, "*" );
+        final Iterable<Node> hits = getNodesById( counters.getVariable() );
 
         //        logger.info( "Getting variable projects" );
         return getIndexedProjects( hits );
@@ -1057,14 +1772,49 @@ public abstract class AbstractNeo4JEGraphDriver
     {
         printCaller( "GET-CYCLES" );
 
-        final IndexHits<Relationship> hits = graph.index()
-                                                  .forRelationships( CYCLE_INJECTION_IDX )
-                                                  .query( RELATIONSHIP_ID, "*" );
+        return new HashSet<EProjectCycle>( getCycleIndex().getCycles() );
+    }
+
+    /**
+     * Cycles visible from this graph's roots through its filter, recomputed only when the graph has changed since the
+     * last call (see {@link GraphCounters#getVersion()}).
+     */
+    private synchronized CycleIndex getCycleIndex()
+    {
+        final long version = counters.getVersion();
+        if ( cycleIndex == null || cycleIndex.getVersion() != version )
+        {
+            // the version is only bumped once a write has committed, so a write committing while this runs leaves the
+            // index tagged with the older version, and it's recomputed next time.
+            cycleIndex = new CycleIndex( findCycles(), version );
+        }
+
+        return cycleIndex;
+    }
 
+    private Set<EProjectCycle> findCycles()
+    {
+        final long[] hitIds = counters.getCycleInjections();
         final Set<EProjectCycle> cycles = new HashSet<EProjectCycle>();
-        for ( final Relationship hit : hits )
+        if ( hitIds.length < 1 )
+        {
+            return cycles;
+        }
+
+        // one traversal from the roots, instead of a path check per cycle-injecting relationship.
+        Set<Node> reachable = null;
+        if ( roots != null && !roots.isEmpty() )
+        {
+            final RootedNodesCollector agg = new RootedNodesCollector( roots, filter, false );
+            collectAtlasRelationships( agg, roots );
+            reachable = agg.getFoundNodes();
+        }
+
+        for ( final long hitId : hitIds )
         {
-            if ( hasPathTo( hit.getStartNode() ) )
+            final Relationship hit = graph.getRelationshipById( hitId );
+            final Node start = hit.getStartNode();
+            if ( reachable == null || reachable.contains( start ) || roots.contains( start ) )
             {
                 final Set<Set<Long>> cycleIds = getInjectedCycles( hit );
                 nextCycle: for ( final Set<Long> cycle : cycleIds )
@@ -1161,28 +1911,12 @@ public abstract class AbstractNeo4JEGraphDriver
 
     public boolean isCycleParticipant( final ProjectRelationship<?> rel )
     {
-        for ( final EProjectCycle cycle : getCycles() )
-        {
-            if ( cycle.contains( rel ) )
-            {
-                return true;
-            }
-        }
-
-        return false;
+        return getCycleIndex().containsRelationship( rel );
     }
 
     public boolean isCycleParticipant( final ProjectVersionRef ref )
     {
-        for ( final EProjectCycle cycle : getCycles() )
-        {
-            if ( cycle.contains( ref ) )
-            {
-                return true;
-            }
-        }
-
-        return false;
+        return getCycleIndex().containsProject( ref );
     }
 
     public void recomputeIncompleteSubgraphs()
@@ -1203,6 +1937,8 @@ public abstract class AbstractNeo4JEGraphDriver
 
     public void addProjectMetadata( final ProjectVersionRef ref, final String key, final String value )
     {
+        checkWritable();
+
         final Transaction tx = graph.beginTx();
         try
         {
@@ -1224,6 +1960,8 @@ public abstract class AbstractNeo4JEGraphDriver
 
     public void addProjectMetadata( final ProjectVersionRef ref, final Map<String, String> metadata )
     {
+        checkWritable();
+
         final Transaction tx = graph.beginTx();
         try
         {
@@ -1271,26 +2009,22 @@ public abstract class AbstractNeo4JEGraphDriver
                                             cypher );
         }
 
-        final StringBuilder sb = new StringBuilder();
+        final List<Long> ids = new ArrayList<Long>( roots.length );
         for ( final ProjectVersionRef root : roots )
         {
             final Node node = getNode( root );
             if ( node != null )
             {
-                if ( sb.length() > 0 )
-                {
-                    sb.append( ", " );
-                }
-                sb.append( node.getId() );
+                ids.add( node.getId() );
             }
         }
 
-        if ( sb.length() < 1 )
+        if ( ids.isEmpty() )
         {
-            sb.append( "*" );
+            return execute( "START n=node(*) " + cypher, params );
         }
 
-        return execute( String.format( "START n=node(%s) %s", sb, cypher ), params );
+        return execute( "START n=node({" + ROOTS_PARAM + "}) " + cypher, withParam( params, ROOTS_PARAM, ids ) );
     }
 
     public ExecutionResult executeFrom( final String cypher, final ProjectRelationship<?> rootRel )
@@ -1310,17 +2044,33 @@ public abstract class AbstractNeo4JEGraphDriver
                                             cypher );
         }
 
-        String id = "*";
-        if ( rootRel != null )
+        final Relationship r = rootRel == null ? null : getRelationship( rootRel );
+        if ( r == null )
+        {
+            return execute( "START r=relationship(*) " + cypher, params );
+        }
+
+        return execute( "START r=relationship({" + ROOT_REL_PARAM + "}) " + cypher,
+                        withParam( params, ROOT_REL_PARAM, r.getId() ) );
+    }
+
+    private Map<String, Object> withParam( final Map<String, Object> params, final String key, final Object value )
+        throws GraphDriverException
+    {
+        final Map<String, Object> result = new HashMap<String, Object>();
+        if ( params != null )
         {
-            final Relationship r = getRelationship( rootRel );
-            if ( r != null )
+            if ( params.containsKey( key ) )
             {
-                id = Long.toString( r.getId() );
+                throw new GraphDriverException( "Query parameter: '%s' is reserved for the query roots.", key );
             }
+
+            result.putAll( params );
         }
 
-        return execute( String.format( "START r=relationship(%s) %s", id, cypher ), params );
+        result.put( key, value );
+
+        return result;
     }
 
     public ExecutionResult execute( final String cypher )
@@ -1328,72 +2078,205 @@ public abstract class AbstractNeo4JEGraphDriver
         return execute( cypher, null );
     }
 
+    /**
+     * Run a Cypher query. Queries should pass varying values as parameters rather than formatting them into the query
+     * text, so that repeated runs share the execution plan Neo4J caches for each distinct query string. Whitespace
+     * normalization is cached per query too, and execution times are tracked per query (see {@link #getQueryTimings()}
+     * ).
+     */
     public ExecutionResult execute( final String cypher, final Map<String, Object> params )
     {
         checkExecutionEngine();
 
-        logger.debug( "Running query:\n\n%s\n\nWith params:\n\n%s\n\n", cypher, params );
+        QueryTiming timing;
+        synchronized ( queries )
+        {
+            timing = queries.get( cypher );
+            if ( timing == null )
+            {
+                timing = new QueryTiming( cypher.replaceAll( "(\\s)\\s+", "$1" ) );
+                queries.put( cypher, timing );
+            }
+        }
+
+        final String query = timing.getQuery();
 
-        final String query = cypher.replaceAll( "(\\s)\\s+", "$1" );
+        logger.debug( "Running query:\n\n%s\n\nWith params:\n\n%s\n\n", query, params );
+
+        final long start = System.nanoTime();
 
         final ExecutionResult result =
             params == null ? queryEngine.execute( query ) : queryEngine.execute( query, params );
 
+        final long elapsed = System.nanoTime() - start;
+        timing.record( elapsed );
+
+        logger.debug( "Query started in %.2fms", elapsed / 1000000D );
+
         //        logger.info( "Execution plan:\n%s", result.executionPlanDescription() );
 
         return result;
     }
 
+    /**
+     * Execution times of the most recently used queries (up to {@link #MAX_CACHED_QUERIES}), shared by all drivers on
+     * this database.
+     */
+    public List<QueryTiming> getQueryTimings()
+    {
+        synchronized ( queries )
+        {
+            return new ArrayList<QueryTiming>( queries.values() );
+        }
+    }
+
     private synchronized void checkExecutionEngine()
     {
         if ( queryEngine == null )
         {
-            queryEngine = new ExecutionEngine( graph );
+            if ( ancestry.isEmpty() )
+            {
+                queryEngine = new ExecutionEngine( graph );
+            }
+            else
+            {
+                // share the root driver's engine (and its plan cache).
+                final AbstractNeo4JEGraphDriver root = ancestry.get( 0 );
+                root.checkExecutionEngine();
+                queryEngine = root.queryEngine;
+            }
         }
     }
 
+    /**
+     * Rebuild the metadata indices used by {@link #getProjectsWithMetadata(String)}, waiting for the background job
+     * started by {@link #startReindex(int)} to finish.
+     */
     public void reindex()
         throws GraphDriverException
     {
-        final Transaction tx = graph.beginTx();
+        if ( readOnly )
+        {
+            throw new GraphDriverException( "Cannot reindex a read-only graph database." );
+        }
+
+        final ReindexJob job = startReindex( DEFAULT_REINDEX_CHUNK_SIZE );
         try
         {
-            final Iterable<Node> nodes = getAllProjectNodes();
-            for ( final Node node : nodes )
-            {
-                final String gav = getStringProperty( GAV, node );
-                if ( gav == null )
-                {
-                    continue;
-                }
+            job.await();
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread()
+                  .interrupt();
+            throw new GraphDriverException( "Interrupted while waiting for metadata reindex.", e );
+        }
 
-                final Map<String, String> md = getMetadataMap( node );
-                if ( md == null || md.isEmpty() )
-                {
-                    continue;
-                }
+        if ( job.getError() != null )
+        {
+            throw new GraphDriverException( "Metadata reindex failed: %s", job.getError(), job.getError()
+                                                                                             .getMessage() );
+        }
+        else if ( job.isCancelled() )
+        {
+            throw new GraphDriverException( "Metadata reindex was stopped before completing." );
+        }
+    }
+
+    /**
+     * Start rebuilding the metadata indices of all projects in the database in the background, in transactions of at
+     * most chunkSize nodes, or resume a reindex interrupted by a crash or by closing the database. Reads use the
+     * previous indices until the returned job completes. If a reindex is already running, its job is returned.
+     */
+    public ReindexJob startReindex( final int chunkSize )
+    {
+        checkWritable();
+        return metadataIndexes.start( counters.getNodes(), chunkSize );
+    }
+
+    /**
+     * @return true if a reindex was started and hasn't completed yet, whether it's running now or waiting to be resumed.
+     */
+    public boolean isReindexPending()
+    {
+        return metadataIndexes.isReindexPending();
+    }
 
-                for ( final String key : md.keySet() )
+    /**
+     * Rewrite relationship properties stored before the property dictionary was introduced (URIs, scope, type,
+     * classifier and excludes as strings) into dictionary codes. Legacy relationships are readable without this; it
+     * only reclaims the store space. Runs in transactions of at most batchSize relationships, so it can be interrupted
+     * and simply run again.
+     * 
+     * @return The number of relationships rewritten.
+     */
+    public int compactRelationshipProperties( final int batchSize )
+    {
+        checkWritable();
+
+        final PropertyDictionary dict = PropertyDictionary.forGraph( graph );
+        final Iterator<Relationship> it = GlobalGraphOperations.at( graph )
+                                                               .getAllRelationships()
+                                                               .iterator();
+
+        int count = 0;
+        while ( it.hasNext() )
+        {
+            final Transaction tx = graph.beginTx();
+            try
+            {
+                int batch = 0;
+                while ( batch < batchSize && it.hasNext() )
                 {
-                    graph.index()
-                         .forNodes( METADATA_INDEX_PREFIX + key )
-                         .add( node, GAV, gav );
+                    if ( Conversions.compactRelationshipProperties( it.next(), dict ) )
+                    {
+                        batch++;
+                    }
                 }
+
+                count += batch;
+                dict.flush();
+                tx.success();
+            }
+            finally
+            {
+                tx.finish();
             }
 
-            tx.success();
-        }
-        finally
-        {
-            tx.finish();
+            logger.info( "Compacted properties of %d relationships so far.", count );
         }
+
+        return count;
+    }
+
+    /**
+     * @return True if the store still keys some relationships by the ids used before relationship identities existed.
+     *         See {@link #migrateRelationshipIds(int)}.
+     */
+    public boolean isLegacyRelationshipIds()
+    {
+        return relationshipIds.isLegacy();
+    }
+
+    /**
+     * Re-key relationships stored by earlier versions of this driver under their identity, committing every batchSize
+     * relationships. Lookups work before (and during) migration, but have to fall back to the legacy key when they
+     * miss.
+     * 
+     * @return The number of relationships re-keyed.
+     */
+    public int migrateRelationshipIds( final int batchSize )
+    {
+        checkWritable();
+
+        return relationshipIds.migrate( graph.index()
+                                             .forRelationships( ALL_RELATIONSHIPS ), batchSize );
     }
 
     public Set<ProjectVersionRef> getProjectsWithMetadata( final String key )
     {
-        final IndexHits<Node> nodes = graph.index()
-                                           .forNodes( METADATA_INDEX_PREFIX + key )
-                                           .query( GAV, "*" );
+        final IndexHits<Node> nodes = metadataIndexes.forKey( key )
+                                                     .query( GAV, "*" );
 
         final Set<Node> connected = new HashSet<Node>();
         for ( final Node node : nodes )
@@ -1444,85 +2327,65 @@ public abstract class AbstractNeo4JEGraphDriver
 
         collectAtlasRelationships( checker, roots );
 
+        Node selectedNode = null;
         for ( final Path p : checker )
         {
-            final Relationship from = p.lastRelationship();
-            final ProjectRelationship<?> rel = toProjectRelationship( from );
-            final ProjectRelationship<?> sel = rel.selectTarget( (SingleVersion) select.getVersionSpec() );
-
-            selectRelationship( p.startNode(), from, sel );
-        }
-    }
-
-    private Relationship selectRelationship( final Node root, final Relationship from, final ProjectRelationship<?> toPR )
-    {
-        //        logger.info( "\n\n\n\nSELECT: %s\n\n\n\n", toPR );
-        Relationship to = null;
-        Transaction tx = null;
-        try
-        {
-            final RelationshipIndex relIdx = graph.index()
-                                                  .forRelationships( ALL_RELATIONSHIPS );
-
-            final String toId = id( toPR );
-
-            Node fromNode = from.getStartNode();
-
-            tx = graph.beginTx();
-
-            //            logger.info( "\n\nLooking for relationship with id: %s", toId );
-            final IndexHits<Relationship> hits = relIdx.get( RELATIONSHIP_ID, toId );
-            if ( hits.size() < 1 )
+            if ( selectedNode == null )
             {
-                fromNode = getNode( toPR.getDeclaring() );
-
-                Node toNode = getNode( toPR.getTarget()
-                                           .asProjectVersionRef() );
-
-                if ( toNode == null )
+                selectedNode = getNode( select );
+                if ( selectedNode == null && readOnly )
                 {
-                    toNode = newProjectNode( toPR.getTarget()
-                                                 .asProjectVersionRef() );
-                    //                    logger.info( "Created node %s for selected project version: %s", toNode, toPR.getTarget()
-                    //                                                                                                 .asProjectVersionRef() );
+                    throw new GraphDriverException( "Cannot select %s; it isn't in the (read-only) database.", select );
+                }
+                else if ( selectedNode == null )
+                {
+                    final Transaction tx = graph.beginTx();
+                    try
+                    {
+                        selectedNode = newProjectNode( select );
+                        tx.success();
+                        counters.success();
+                    }
+                    finally
+                    {
+                        counters.finish( tx );
+                    }
                 }
-
-                //                logger.info( "\n\nCreating relationship for selected: %s from node: %s to node: %s\n\n", toPR,
-                //                             fromNode, toNode );
-
-                to = fromNode.createRelationshipTo( toNode, from.getType() );
-
-                cloneRelationshipProperties( from, to );
-                relIdx.add( to, RELATIONSHIP_ID, toId );
-
-                markConnected( fromNode, true );
-                markSelectedFor( to, root );
-            }
-            else
-            {
-                to = hits.next();
-                //                logger.info( "Got relationship: %s", to );
-                fromNode = to.getStartNode();
             }
 
-            markDeselectedFor( from, root );
+            selections.select( p.startNode()
+                                .getId(), p.endNode()
+                                           .getId(), selectedNode.getId() );
+        }
+
+        counters.changed();
+    }
 
-            tx.success();
+    public Map<ProjectVersionRef, ProjectVersionRef> clearSelectedVersions()
+        throws GraphDriverException
+    {
+        if ( roots == null || roots.isEmpty() )
+        {
+            throw new GraphDriverException(
+                                            "Cannot manage version selections unless current network has one or more root projects." );
         }
-        finally
+
+        final Map<ProjectVersionRef, ProjectVersionRef> cleared = toProjectsMap( selections.clear( getRootIds() ) );
+        if ( !readOnly )
         {
-            if ( tx != null )
-            {
-                tx.finish();
-            }
+            cleared.putAll( clearStoredSelections() );
         }
 
-        //        logger.info( "SELECTION DONE; returning: %s", to );
+        counters.changed();
 
-        return to;
+        return cleared;
     }
 
-    public Map<ProjectVersionRef, ProjectVersionRef> clearSelectedVersions()
+    /**
+     * Remove version selections stored as cloned relationships with {@link Conversions#SELECTED_FOR} /
+     * {@link Conversions#DESELECTED_FOR} annotations, by earlier versions of this driver.
+     */
+    private Map<ProjectVersionRef, ProjectVersionRef> clearStoredSelections()
         throws GraphDriverException
     {
         final Set<SelectionInfo> infos = getSelectionInfo();
@@ -1566,6 +2429,9 @@ public abstract class AbstractNeo4JEGraphDriver
                     logger.debug( "Deleting cloned relationship from previous selection operation: %s",
                                   info.getSelectedRelationship() );
                     deleted.add( srId );
+                    counters.removeRelationship( GraphRelType.valueOf( info.getSelectedRelationship()
+                                                                           .getType()
+                                                                           .name() ) );
                     info.getSelectedRelationship()
                         .delete();
                 }
@@ -1586,13 +2452,14 @@ public abstract class AbstractNeo4JEGraphDriver
             if ( tx != null )
             {
                 tx.success();
+                counters.success();
             }
         }
         finally
         {
             if ( tx != null )
             {
-                tx.finish();
+                counters.finish( tx );
             }
         }
 
@@ -1603,7 +2470,25 @@ public abstract class AbstractNeo4JEGraphDriver
         throws GraphDriverException
     {
         final Set<SelectionInfo> infos = getSelectionInfo();
-        return createVariableToSelectedMap( infos );
+
+        final Map<ProjectVersionRef, ProjectVersionRef> result = createVariableToSelectedMap( infos );
+        result.putAll( toProjectsMap( selections.getSelections( getRootIds() ) ) );
+
+        return result;
+    }
+
+    private Map<ProjectVersionRef, ProjectVersionRef> toProjectsMap( final Map<Long, Long> ids )
+    {
+        final Map<ProjectVersionRef, ProjectVersionRef> result =
+            new HashMap<ProjectVersionRef, ProjectVersionRef>( ids.size() );
+
+        for ( final Map.Entry<Long, Long> entry : ids.entrySet() )
+        {
+            result.put( toProjectVersionRef( graph.getNodeById( entry.getKey() ) ),
+                        toProjectVersionRef( graph.getNodeById( entry.getValue() ) ) );
+        }
+
+        return result;
     }
 
     private Map<ProjectVersionRef, ProjectVersionRef> createVariableToSelectedMap( final Set<SelectionInfo> infos )
@@ -1619,6 +2504,10 @@ public abstract class AbstractNeo4JEGraphDriver
         return result;
     }
 
+    /**
+     * Version selections stored in the graph by earlier versions of this driver; current selections are held in memory
+     * (see {@link #getSelectedVersions()}).
+     */
     public Set<SelectionInfo> getSelectionInfo()
         throws GraphDriverException
     {
@@ -1664,6 +2553,8 @@ public abstract class AbstractNeo4JEGraphDriver
 
     public void addDisconnectedProject( final ProjectVersionRef ref )
     {
+        checkWritable();
+
         if ( !containsProject( ref ) )
         {
             final Transaction tx = graph.beginTx();
@@ -1672,10 +2563,11 @@ public abstract class AbstractNeo4JEGraphDriver
                 newProjectNode( ref );
 
                 tx.success();
+                counters.success();
             }
             finally
             {
-                tx.finish();
+                counters.finish( tx );
             }
         }
     }
@@ -0,0 +1,422 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective;
+
+import static org.commonjava.maven.atlas.spi.neo4j.effective.AbstractNeo4JEGraphDriver.ALL_NODES;
+import static org.commonjava.maven.atlas.spi.neo4j.effective.AbstractNeo4JEGraphDriver.ALL_RELATIONSHIPS;
+import static org.commonjava.maven.atlas.spi.neo4j.effective.AbstractNeo4JEGraphDriver.CYCLE_INJECTION_IDX;
+import static org.commonjava.maven.atlas.spi.neo4j.effective.AbstractNeo4JEGraphDriver.MISSING_NODES_IDX;
+import static org.commonjava.maven.atlas.spi.neo4j.effective.AbstractNeo4JEGraphDriver.VARIABLE_NODES_IDX;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.CONNECTED;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.CYCLES_INJECTED;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.CYCLE_INJECTION;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.GAV;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.ID_CHECK;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.NODE_TYPE;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.RELATIONSHIP_ID;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.id;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.idCheck;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.toNodePropertyMap;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.toRelationshipPropertyMap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.spi.GraphDriverException;
+import org.commonjava.maven.atlas.spi.neo4j.effective.util.CycleInjectionDetector;
+import org.commonjava.maven.atlas.spi.neo4j.io.GraphPropertyDictionary;
+import org.commonjava.maven.atlas.spi.neo4j.io.PropertyDictionary;
+import org.commonjava.util.logging.Logger;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.index.lucene.unsafe.batchinsert.LuceneBatchInserterIndexProvider;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserterIndex;
+import org.neo4j.unsafe.batchinsert.BatchInserterIndexProvider;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+/**
+ * Offline bulk-import for seeding a new graph database, using Neo4J's batch inserter. This skips transactions and the
+ * per-relationship cycle detection done by {@link AbstractNeo4JEGraphDriver#addRelationships(ProjectRelationship...)};
+ * cycle injections are marked in one pass when the loader is closed, using {@link CycleInjectionDetector}. The result
+ * is a store that {@link FileNeo4JEGraphDriver} can open as if the relationships had been added through it.
+ * <p/>
+ * The database directory must not be in use by any other driver while loading, and must not already contain projects.
+ * Bookkeeping for the loaded nodes and relationship ids is held in memory until {@link #close()}.
+ */
+public final class FileNeo4JBatchLoader
+    implements Closeable
+{
+
+    private static final Map<String, String> EXACT_INDEX = MapUtil.stringMap( "type", "exact" );
+
+    private final Logger logger = new Logger( getClass() );
+
+    private BatchInserter inserter;
+
+    private final BatchInserterIndexProvider indexProvider;
+
+    private final BatchInserterIndex allNodes;
+
+    private final BatchInserterIndex allRelationships;
+
+    private final BatchInserterIndex missingNodes;
+
+    private final BatchInserterIndex variableNodes;
+
+    private final BatchInserterIndex cycleInjections;
+
+    private final Map<String, Long> nodes = new HashMap<String, Long>();
+
+    private final Set<Long> connected = new HashSet<Long>();
+
+    /**
+     * Relationship index key to identity check value, for de-duplication and collision probing (see
+     * {@link RelationshipIds}).
+     */
+    private final Map<String, Long> relationships = new HashMap<String, Long>();
+
+    private final List<String> edgeIds = new ArrayList<String>();
+
+    private final CycleInjectionDetector detector = new CycleInjectionDetector();
+
+    private final BatchDictionary dictionary;
+
+    private int cycleInjectionCount;
+
+    public FileNeo4JBatchLoader( final File dbPath )
+        throws GraphDriverException
+    {
+        this( dbPath, Collections.<String, String> emptyMap() );
+    }
+
+    /**
+     * @param config Neo4J configuration for the batch inserter (mapped memory sizes, for instance).
+     */
+    public FileNeo4JBatchLoader( final File dbPath, final Map<String, String> config )
+        throws GraphDriverException
+    {
+        inserter = BatchInserters.inserter( dbPath.getAbsolutePath(), config );
+        indexProvider = new LuceneBatchInserterIndexProvider( inserter );
+
+        allNodes = indexProvider.nodeIndex( ALL_NODES, EXACT_INDEX );
+        missingNodes = indexProvider.nodeIndex( MISSING_NODES_IDX, EXACT_INDEX );
+        variableNodes = indexProvider.nodeIndex( VARIABLE_NODES_IDX, EXACT_INDEX );
+        allRelationships = indexProvider.relationshipIndex( ALL_RELATIONSHIPS, EXACT_INDEX );
+        cycleInjections = indexProvider.relationshipIndex( CYCLE_INJECTION_IDX, EXACT_INDEX );
+
+        final IndexHits<Long> existing = allNodes.query( GAV, "*" );
+        final boolean empty = !existing.hasNext();
+        existing.close();
+
+        if ( !empty )
+        {
+            indexProvider.shutdown();
+            inserter.shutdown();
+            inserter = null;
+
+            throw new GraphDriverException( "Cannot bulk-load into: %s. It already contains projects.", dbPath );
+        }
+
+        dictionary =
+            new BatchDictionary( inserter, indexProvider.nodeIndex( GraphPropertyDictionary.DICTIONARY_IDX,
+                                                                    EXACT_INDEX ) );
+
+        // counters and filters stored by a driver that opened this (empty) database don't cover what we're about to
+        // load.
+        markDirty( GraphCounters.STATISTICS_IDX, NodeType.STATISTICS, GraphCounters.CLEAN );
+        markDirty( MembershipFilter.FILTER_IDX, NodeType.MEMBERSHIP_FILTER, MembershipFilter.CLEAN );
+
+        final BatchInserterIndex idsIdx = indexProvider.nodeIndex( RelationshipIds.IDS_IDX, EXACT_INDEX );
+        final IndexHits<Long> hits = idsIdx.get( NODE_TYPE, NodeType.RELATIONSHIP_IDS.name() );
+        if ( hits.hasNext() )
+        {
+            inserter.setNodeProperty( hits.next(), RelationshipIds.FORMAT, RelationshipIds.HASHED_FORMAT );
+        }
+        else
+        {
+            final Map<String, Object> props = MapUtil.map( NODE_TYPE, NodeType.RELATIONSHIP_IDS.name() );
+            idsIdx.add( inserter.createNode( MapUtil.map( NODE_TYPE, NodeType.RELATIONSHIP_IDS.name(),
+                                                          RelationshipIds.FORMAT, RelationshipIds.HASHED_FORMAT ) ),
+                        props );
+        }
+        hits.close();
+    }
+
+    private void markDirty( final String indexName, final NodeType type, final String cleanProperty )
+    {
+        final IndexHits<Long> hits = indexProvider.nodeIndex( indexName, EXACT_INDEX )
+                                                  .get( NODE_TYPE, type.name() );
+        if ( hits.hasNext() )
+        {
+            inserter.setNodeProperty( hits.next(), cleanProperty, false );
+        }
+        hits.close();
+    }
+
+    public int addRelationships( final Collection<? extends ProjectRelationship<?>> rels )
+    {
+        return addRelationships( rels.toArray( new ProjectRelationship<?>[rels.size()] ) );
+    }
+
+    /**
+     * @return The number of new relationships stored (duplicates and self-references aren't).
+     */
+    public int addRelationships( final ProjectRelationship<?>... rels )
+    {
+        checkClosed();
+
+        int added = 0;
+        for ( final ProjectRelationship<?> rel : rels )
+        {
+            final String id = id( rel );
+            final long check = idCheck( rel );
+
+            String relId = null;
+            for ( int probe = 0; relId == null; probe++ )
+            {
+                final String key = RelationshipIds.probeKey( id, probe );
+                final Long existing = relationships.get( key );
+                if ( existing == null )
+                {
+                    relId = key;
+                }
+                else if ( existing == check )
+                {
+                    break;
+                }
+            }
+
+            if ( relId == null )
+            {
+                continue;
+            }
+
+            relationships.put( relId, check );
+
+            final long from = getOrCreateNode( rel.getDeclaring() );
+            final long to = getOrCreateNode( rel.getTarget()
+                                                .asProjectVersionRef() );
+
+            connected.add( from );
+
+            if ( from == to )
+            {
+                continue;
+            }
+
+            final long r =
+                inserter.createRelationship( from, to, GraphRelType.map( rel.getType(), rel.isManaged() ),
+                                             toRelationshipPropertyMap( rel, dictionary ) );
+            inserter.setRelationshipProperty( r, ID_CHECK, check );
+
+            allRelationships.add( r, MapUtil.map( RELATIONSHIP_ID, relId ) );
+
+            detector.addEdge( r, from, to, true );
+            edgeIds.add( relId );
+            added++;
+
+            if ( edgeIds.size() % 100000 == 0 )
+            {
+                logger.info( "Bulk-loaded %d relationships between %d projects so far.", edgeIds.size(), nodes.size() );
+            }
+        }
+
+        return added;
+    }
+
+    private long getOrCreateNode( final ProjectVersionRef ref )
+    {
+        final String gav = ref.toString();
+        final Long existing = nodes.get( gav );
+        if ( existing != null )
+        {
+            return existing;
+        }
+
+        final long node = inserter.createNode( toNodePropertyMap( ref, false ) );
+        nodes.put( gav, node );
+
+        final Map<String, Object> idx = MapUtil.map( GAV, gav );
+        allNodes.add( node, idx );
+
+        if ( ref.isVariableVersion() )
+        {
+            variableNodes.add( node, idx );
+        }
+
+        return node;
+    }
+
+    /**
+     * Number of relationships marked as cycle injections. Only available after {@link #close()}.
+     */
+    public int getCycleInjectionCount()
+    {
+        return cycleInjectionCount;
+    }
+
+    /**
+     * Finish the connected / missing node bookkeeping, mark cycle injections, and shut down the batch inserter.
+     */
+    public synchronized void close()
+        throws IOException
+    {
+        if ( inserter == null )
+        {
+            return;
+        }
+
+        try
+        {
+            for ( final Map.Entry<String, Long> entry : nodes.entrySet() )
+            {
+                final long node = entry.getValue();
+                if ( connected.contains( node ) )
+                {
+                    inserter.setNodeProperty( node, CONNECTED, true );
+                }
+                else
+                {
+                    missingNodes.add( node, MapUtil.map( GAV, entry.getKey() ) );
+                }
+            }
+
+            logger.info( "Marking cycle injections among %d bulk-loaded relationships.", edgeIds.size() );
+
+            final Map<Integer, long[]> cycles = detector.detect();
+            for ( final Map.Entry<Integer, long[]> entry : cycles.entrySet() )
+            {
+                final long[] cycle = entry.getValue();
+                final long r = cycle[cycle.length - 1];
+
+                inserter.setRelationshipProperty( r, CYCLE_INJECTION, true );
+                inserter.setRelationshipProperty( r, CYCLES_INJECTED, cycle );
+                cycleInjections.add( r, MapUtil.map( RELATIONSHIP_ID, edgeIds.get( entry.getKey() ) ) );
+            }
+
+            cycleInjectionCount = cycles.size();
+
+            logger.info( "Bulk-loaded %d relationships between %d projects; %d relationships inject cycles.",
+                         edgeIds.size(), nodes.size(), cycleInjectionCount );
+
+            indexProvider.shutdown();
+            inserter.shutdown();
+        }
+        catch ( final RuntimeException e )
+        {
+            throw new IOException( "Failed to finish bulk-load: " + e.getMessage(), e );
+        }
+        finally
+        {
+            inserter = null;
+        }
+    }
+
+    private void checkClosed()
+    {
+        if ( inserter == null )
+        {
+            throw new IllegalStateException( "Batch loader has been closed!" );
+        }
+    }
+
+    /**
+     * Batch-inserter counterpart of {@link GraphPropertyDictionary}, writing to the same dictionary nodes so the loaded
+     * store can be read by the driver. There are no transactions to wait for, so entries are written as they're added.
+     */
+    private static final class BatchDictionary
+        extends PropertyDictionary
+    {
+        private final BatchInserter inserter;
+
+        private final BatchInserterIndex index;
+
+        private final Map<Integer, Long> chunks = new HashMap<Integer, Long>();
+
+        BatchDictionary( final BatchInserter inserter, final BatchInserterIndex index )
+        {
+            this.inserter = inserter;
+            this.index = index;
+
+            final IndexHits<Long> hits = index.get( NODE_TYPE, NodeType.DICTIONARY.name() );
+            try
+            {
+                for ( final Long node : hits )
+                {
+                    for ( final Map.Entry<String, Object> entry : inserter.getNodeProperties( node )
+                                                                          .entrySet() )
+                    {
+                        final String key = entry.getKey();
+                        if ( key.equals( CHUNK ) )
+                        {
+                            chunks.put( (Integer) entry.getValue(), node );
+                        }
+                        else if ( key.startsWith( ENTRY_PREFIX ) )
+                        {
+                            load( Integer.parseInt( key.substring( ENTRY_PREFIX.length() ) ),
+                                  (String) entry.getValue() );
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                hits.close();
+            }
+        }
+
+        @Override
+        protected void entryAdded()
+        {
+            persistPending();
+        }
+
+        @Override
+        protected void persist( final SortedMap<Integer, String> entries )
+        {
+            for ( final Map.Entry<Integer, String> entry : entries.entrySet() )
+            {
+                final int chunk = chunkOf( entry.getKey() );
+
+                Long node = chunks.get( chunk );
+                if ( node == null )
+                {
+                    final Map<String, Object> props = MapUtil.map( NODE_TYPE, NodeType.DICTIONARY.name() );
+                    node = inserter.createNode( MapUtil.map( NODE_TYPE, NodeType.DICTIONARY.name(), CHUNK, chunk ) );
+                    index.add( node, props );
+                    chunks.put( chunk, node );
+                }
+
+                inserter.setNodeProperty( node, ENTRY_PREFIX + entry.getKey(), entry.getValue() );
+            }
+        }
+    }
+
+}
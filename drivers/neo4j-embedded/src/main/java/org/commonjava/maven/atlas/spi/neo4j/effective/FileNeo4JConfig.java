@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings for the embedded database opened by {@link FileNeo4JEGraphDriver}: object cache type, memory-mapped region
+ * sizes per store file, Lucene index cache sizes, and read-only mode. Anything left unset keeps the Neo4J default.
+ * <p/>
+ * A read-only driver opens the store with Neo4J's read_only setting and refuses every write operation, registers no
+ * shutdown hook, and skips the bookkeeping it would otherwise store (missing-node and metadata index updates, counter
+ * checkpoints, new property-dictionary entries). Version selections are still possible, since they're held in memory,
+ * as long as the selected project is already in the store.
+ */
+public final class FileNeo4JConfig
+{
+
+    /**
+     * Store files whose memory-mapped region can be sized, with the Neo4J setting for each.
+     */
+    public enum StoreFile
+    {
+        NODES( "neostore.nodestore.db.mapped_memory" ), RELATIONSHIPS( "neostore.relationshipstore.db.mapped_memory" ), PROPERTIES(
+            "neostore.propertystore.db.mapped_memory" ), STRINGS( "neostore.propertystore.db.strings.mapped_memory" ), ARRAYS(
+            "neostore.propertystore.db.arrays.mapped_memory" ), PROPERTY_INDEX(
+            "neostore.propertystore.db.index.mapped_memory" ), PROPERTY_INDEX_KEYS(
+            "neostore.propertystore.db.index.keys.mapped_memory" );
+
+        private final String setting;
+
+        private StoreFile( final String setting )
+        {
+            this.setting = setting;
+        }
+
+        public String getSetting()
+        {
+            return setting;
+        }
+    }
+
+    public static final String CACHE_TYPE = "cache_type";
+
+    public static final String USE_MEMORY_MAPPED_BUFFERS = "use_memory_mapped_buffers";
+
+    public static final String INDEX_SEARCHER_CACHE_SIZE = "lucene_searcher_cache_size";
+
+    public static final String INDEX_WRITER_CACHE_SIZE = "lucene_writer_cache_size";
+
+    public static final String READ_ONLY = "read_only";
+
+    private final Map<String, String> settings = new HashMap<String, String>();
+
+    private boolean useShutdownHook = true;
+
+    private boolean readOnly;
+
+    /**
+     * @param cacheType One of Neo4J's object cache types: none, soft, weak or strong (or gcr, in the enterprise
+     *        edition).
+     */
+    public FileNeo4JConfig withCacheType( final String cacheType )
+    {
+        settings.put( CACHE_TYPE, cacheType );
+        return this;
+    }
+
+    /**
+     * @param size Size of the memory-mapped region for the store file, in Neo4J's notation (for instance, 500M).
+     */
+    public FileNeo4JConfig withMappedMemory( final StoreFile file, final String size )
+    {
+        settings.put( file.getSetting(), size );
+        return this;
+    }
+
+    public FileNeo4JConfig withMemoryMappedBuffers( final boolean useMemoryMappedBuffers )
+    {
+        settings.put( USE_MEMORY_MAPPED_BUFFERS, Boolean.toString( useMemoryMappedBuffers ) );
+        return this;
+    }
+
+    /**
+     * @param size Maximum number of open Lucene index searchers, which bounds how many indices stay cached for reading.
+     */
+    public FileNeo4JConfig withIndexSearcherCacheSize( final int size )
+    {
+        settings.put( INDEX_SEARCHER_CACHE_SIZE, Integer.toString( size ) );
+        return this;
+    }
+
+    /**
+     * @param size Maximum number of open Lucene index writers.
+     */
+    public FileNeo4JConfig withIndexWriterCacheSize( final int size )
+    {
+        settings.put( INDEX_WRITER_CACHE_SIZE, Integer.toString( size ) );
+        return this;
+    }
+
+    /**
+     * Read-only mode also disables the shutdown hook; the store can't be left dirty by a reader.
+     */
+    public FileNeo4JConfig withReadOnly( final boolean readOnly )
+    {
+        this.readOnly = readOnly;
+        return this;
+    }
+
+    public FileNeo4JConfig withShutdownHook( final boolean useShutdownHook )
+    {
+        this.useShutdownHook = useShutdownHook;
+        return this;
+    }
+
+    /**
+     * Any other Neo4J setting, by name.
+     */
+    public FileNeo4JConfig withSetting( final String name, final String value )
+    {
+        settings.put( name, value );
+        return this;
+    }
+
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+    public boolean isUseShutdownHook()
+    {
+        return useShutdownHook && !readOnly;
+    }
+
+    /**
+     * @return The Neo4J settings to open the database with.
+     */
+    public Map<String, String> getSettings()
+    {
+        final Map<String, String> result = new HashMap<String, String>( settings );
+        if ( readOnly )
+        {
+            result.put( READ_ONLY, Boolean.TRUE.toString() );
+        }
+
+        return Collections.unmodifiableMap( result );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "FileNeo4JConfig [readOnly=%s, useShutdownHook=%s, settings=%s]", readOnly,
+                              useShutdownHook, settings );
+    }
+
+}
@@ -41,6 +41,13 @@ public class FileNeo4JEGraphDriver
         super( new GraphDatabaseFactory().newEmbeddedDatabase( dbPath.getAbsolutePath() ), useShutdownHook );
     }
 
+    public FileNeo4JEGraphDriver( final File dbPath, final FileNeo4JConfig config )
+    {
+        super( new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( dbPath.getAbsolutePath() )
+                                         .setConfig( config.getSettings() )
+                                         .newGraphDatabase(), config.isUseShutdownHook(), config.isReadOnly() );
+    }
+
     private FileNeo4JEGraphDriver( final FileNeo4JEGraphDriver driver, final ProjectRelationshipFilter filter,
                                    final ProjectVersionRef... refs )
         throws GraphDriverException
@@ -48,6 +55,16 @@ public class FileNeo4JEGraphDriver
         super( driver, filter, refs );
     }
 
+    /**
+     * Open the (new, unused) database at dbPath for offline bulk-import. Close the loader before opening a driver on
+     * the same path.
+     */
+    public static FileNeo4JBatchLoader newBatchLoader( final File dbPath )
+        throws GraphDriverException
+    {
+        return new FileNeo4JBatchLoader( dbPath );
+    }
+
     public EGraphDriver newInstance()
         throws GraphDriverException
     {
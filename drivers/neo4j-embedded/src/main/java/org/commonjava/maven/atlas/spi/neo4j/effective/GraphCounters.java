@@ -0,0 +1,529 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective;
+
+import static org.commonjava.maven.atlas.spi.neo4j.effective.AbstractNeo4JEGraphDriver.ALL_NODES;
+import static org.commonjava.maven.atlas.spi.neo4j.effective.AbstractNeo4JEGraphDriver.CYCLE_INJECTION_IDX;
+import static org.commonjava.maven.atlas.spi.neo4j.effective.AbstractNeo4JEGraphDriver.MISSING_NODES_IDX;
+import static org.commonjava.maven.atlas.spi.neo4j.effective.AbstractNeo4JEGraphDriver.VARIABLE_NODES_IDX;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.GAV;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.NODE_TYPE;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.RELATIONSHIP_ID;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.commonjava.maven.atlas.spi.neo4j.effective.util.LongHashSet;
+import org.commonjava.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Id sets for all project nodes, missing and variable nodes and cycle-injecting relationships, plus relationship counts
+ * per {@link GraphRelType}, maintained by {@link AbstractNeo4JEGraphDriver} as it writes, so the project, missing,
+ * variable and cycle listings and the counts don't need wildcard index queries or store scans. Relationship listings
+ * aren't backed by them: without roots, those still read the relationship store.
+ * <p/>
+ * Changes are recorded per thread while a write transaction is open, and only applied once the driver finishes it
+ * successfully (see {@link #finish(Transaction)}), so a rolled-back write never shows up in the id sets.
+ * <p/>
+ * They are checkpointed to a statistics node when the database is closed, and loaded from it when opened. The node is
+ * marked dirty while the database is open; if it's still dirty (or missing) on the next open, the counters are rebuilt
+ * from the indices and relationship store once.
+ * <p/>
+ * Every committed write also bumps a version number (see {@link #getVersion()}), which caches of derived results (like
+ * the cycle index) compare against to tell whether they're still current. It's checkpointed along with the counters
+ * and a random id for the store (see {@link #getGraphId()}), and a clean restart picks up both exactly where they
+ * left off, so results cached against them stay usable. After an unclean shutdown, the versions handed out since the
+ * last checkpoint are unknown, so the store gets a new id instead.
+ */
+final class GraphCounters
+{
+
+    static final String STATISTICS_IDX = "graph_statistics";
+
+    static final String CLEAN = "_stats_clean";
+
+    private static final String NODES = "_stats_nodes";
+
+    private static final String MISSING = "_stats_missing";
+
+    private static final String VARIABLE = "_stats_variable";
+
+    private static final String CYCLE_INJECTIONS = "_stats_cycle_injections";
+
+    private static final String RELATIONSHIP_COUNTS = "_stats_relationships";
+
+    private static final String VERSION = "_stats_version";
+
+    private static final String GRAPH_ID = "_stats_graph_id";
+
+    private final Logger logger = new Logger( getClass() );
+
+    private final GraphDatabaseService graph;
+
+    private LongHashSet nodes;
+
+    private LongHashSet missing;
+
+    private LongHashSet variable;
+
+    private LongHashSet cycleInjections;
+
+    private long[] relationships;
+
+    private volatile boolean valid;
+
+    private long version;
+
+    private final String storeId;
+
+    private String graphId;
+
+    private final boolean readOnly;
+
+    private final ThreadLocal<Changes> pending = new ThreadLocal<Changes>();
+
+    /**
+     * Held shared by writers from finishing their transaction until their changes are applied, and exclusively by a
+     * rebuild, so a rebuild never counts a committed write that's about to be applied on top of it.
+     */
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    /**
+     * @param readOnly If true, the counters are loaded (or rebuilt) in memory but never stored.
+     */
+    GraphCounters( final GraphDatabaseService graph, final boolean readOnly )
+    {
+        this.graph = graph;
+        this.readOnly = readOnly;
+
+        String id = null;
+        final Node stats = getStatisticsNode( true );
+        if ( stats != null && (Boolean) stats.getProperty( CLEAN, false ) )
+        {
+            version = (Long) stats.getProperty( VERSION, 0L );
+            id = (String) stats.getProperty( GRAPH_ID, null );
+
+            nodes = new LongHashSet( (long[]) stats.getProperty( NODES ) );
+            missing = new LongHashSet( (long[]) stats.getProperty( MISSING ) );
+            variable = new LongHashSet( (long[]) stats.getProperty( VARIABLE ) );
+            cycleInjections = new LongHashSet( (long[]) stats.getProperty( CYCLE_INJECTIONS ) );
+
+            final long[] counts = (long[]) stats.getProperty( RELATIONSHIP_COUNTS );
+            relationships = new long[GraphRelType.values().length];
+            System.arraycopy( counts, 0, relationships, 0, Math.min( counts.length, relationships.length ) );
+
+            valid = true;
+        }
+
+        storeId = id == null ? UUID.randomUUID()
+                                   .toString() : id;
+        graphId = storeId;
+
+        if ( !readOnly )
+        {
+            markClean( false );
+        }
+    }
+
+    /**
+     * Mark the changes recorded on this thread as part of a successful transaction, right after calling
+     * {@link Transaction#success()} on it.
+     */
+    void success()
+    {
+        final Changes changes = pending.get();
+        if ( changes != null )
+        {
+            changes.succeeded = true;
+        }
+    }
+
+    /**
+     * Finish the transaction in place of {@link Transaction#finish()}. If it was marked successful (see
+     * {@link #success()}) and committed, the changes recorded on this thread are applied, and the version bumped if there
+     * were any. Bumping only now means a reader that sees the new version also sees the committed data. Either way,
+     * the recorded changes are dropped.
+     */
+    void finish( final Transaction tx )
+    {
+        rebuildLock.readLock()
+                   .lock();
+        try
+        {
+            tx.finish();
+            commit();
+        }
+        finally
+        {
+            pending.remove();
+            rebuildLock.readLock()
+                       .unlock();
+        }
+    }
+
+    private synchronized void commit()
+    {
+        final Changes changes = pending.get();
+        if ( changes == null || !changes.succeeded )
+        {
+            return;
+        }
+
+        version++;
+        if ( !valid )
+        {
+            return;
+        }
+
+        for ( final long id : changes.nodes.toArray() )
+        {
+            nodes.add( id );
+            missing.add( id );
+        }
+
+        for ( final long id : changes.variable.toArray() )
+        {
+            variable.add( id );
+        }
+
+        for ( final long id : changes.connected.toArray() )
+        {
+            missing.remove( id );
+        }
+
+        for ( final long id : changes.cycleInjections.toArray() )
+        {
+            cycleInjections.add( id );
+        }
+
+        for ( int i = 0; i < relationships.length; i++ )
+        {
+            relationships[i] += changes.relationships[i];
+        }
+    }
+
+    void addNode( final long id, final boolean isVariable )
+    {
+        final Changes changes = changes();
+        changes.nodes.add( id );
+        if ( isVariable )
+        {
+            changes.variable.add( id );
+        }
+    }
+
+    void connected( final long id )
+    {
+        changes().connected.add( id );
+    }
+
+    void addRelationship( final GraphRelType type )
+    {
+        changes().relationships[type.ordinal()]++;
+    }
+
+    void removeRelationship( final GraphRelType type )
+    {
+        changes().relationships[type.ordinal()]--;
+    }
+
+    void addCycleInjection( final long id )
+    {
+        changes().cycleInjections.add( id );
+    }
+
+    /**
+     * Record a change that isn't counted, but still changes what the graph looks like (like a version selection).
+     * These aren't stored, so from now on the graph gets an id of its own for this session: results cached against it
+     * can't be mistaken for ones from the store alone after a restart.
+     */
+    synchronized void changed()
+    {
+        version++;
+        if ( graphId.equals( storeId ) )
+        {
+            graphId = storeId + "/" + UUID.randomUUID();
+        }
+    }
+
+    synchronized long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return The random id stored with the counters, unless this session changed the graph in ways that aren't stored
+     *         (see {@link #changed()}).
+     */
+    synchronized String getGraphId()
+    {
+        return graphId;
+    }
+
+    long[] getNodes()
+    {
+        check();
+        synchronized ( this )
+        {
+            return nodes.toArray();
+        }
+    }
+
+    long[] getMissing()
+    {
+        check();
+        synchronized ( this )
+        {
+            return missing.toArray();
+        }
+    }
+
+    long[] getVariable()
+    {
+        check();
+        synchronized ( this )
+        {
+            return variable.toArray();
+        }
+    }
+
+    long[] getCycleInjections()
+    {
+        check();
+        synchronized ( this )
+        {
+            return cycleInjections.toArray();
+        }
+    }
+
+    GraphStatistics getStatistics()
+    {
+        check();
+        synchronized ( this )
+        {
+            final Map<GraphRelType, Long> counts = new EnumMap<GraphRelType, Long>( GraphRelType.class );
+            for ( final GraphRelType type : GraphRelType.values() )
+            {
+                if ( relationships[type.ordinal()] > 0 )
+                {
+                    counts.put( type, relationships[type.ordinal()] );
+                }
+            }
+
+            return new GraphStatistics( nodes.size(), missing.size(), variable.size(), cycleInjections.size(),
+                                        counts );
+        }
+    }
+
+    /**
+     * Store the counters and mark them clean, just before the database is shut down.
+     */
+    void checkpoint()
+    {
+        if ( readOnly )
+        {
+            return;
+        }
+
+        // rebuilding now (if needed) is cheaper than on the next startup, where nothing else can proceed meanwhile.
+        check();
+
+        synchronized ( this )
+        {
+            final Transaction tx = graph.beginTx();
+            try
+            {
+                final Node stats = getStatisticsNode( false );
+                stats.setProperty( NODES, nodes.toArray() );
+                stats.setProperty( MISSING, missing.toArray() );
+                stats.setProperty( VARIABLE, variable.toArray() );
+                stats.setProperty( CYCLE_INJECTIONS, cycleInjections.toArray() );
+                stats.setProperty( RELATIONSHIP_COUNTS, relationships.clone() );
+                stats.setProperty( VERSION, version );
+                stats.setProperty( GRAPH_ID, storeId );
+                stats.setProperty( CLEAN, true );
+
+                tx.success();
+            }
+            finally
+            {
+                tx.finish();
+            }
+        }
+    }
+
+    private Changes changes()
+    {
+        Changes changes = pending.get();
+        if ( changes == null )
+        {
+            changes = new Changes();
+            pending.set( changes );
+        }
+
+        return changes;
+    }
+
+    /**
+     * Rebuild the counters if they weren't loaded. Must not be called while holding this object's lock: writers take
+     * the rebuild lock before it.
+     */
+    private void check()
+    {
+        if ( valid )
+        {
+            return;
+        }
+
+        rebuildLock.writeLock()
+                   .lock();
+        try
+        {
+            synchronized ( this )
+            {
+                if ( !valid )
+                {
+                    rebuild();
+                }
+            }
+        }
+        finally
+        {
+            rebuildLock.writeLock()
+                       .unlock();
+        }
+    }
+
+    private void rebuild()
+    {
+        logger.info( "Rebuilding graph statistics from indices and relationship store..." );
+
+        nodes = idsOf( graph.index()
+                            .forNodes( ALL_NODES )
+                            .query( GAV, "*" ) );
+
+        missing = idsOf( graph.index()
+                              .forNodes( MISSING_NODES_IDX )
+                              .query( GAV, "*" ) );
+
+        variable = idsOf( graph.index()
+                               .forNodes( VARIABLE_NODES_IDX )
+                               .query( GAV, "*" ) );
+
+        cycleInjections = idsOf( graph.index()
+                                      .forRelationships( CYCLE_INJECTION_IDX )
+                                      .query( RELATIONSHIP_ID, "*" ) );
+
+        relationships = new long[GraphRelType.values().length];
+        for ( final Relationship r : GlobalGraphOperations.at( graph )
+                                                         .getAllRelationships() )
+        {
+            try
+            {
+                relationships[GraphRelType.valueOf( r.getType()
+                                                     .name() )
+                                          .ordinal()]++;
+            }
+            catch ( final IllegalArgumentException e )
+            {
+                // not one of ours.
+            }
+        }
+
+        valid = true;
+
+        logger.info( "Graph statistics: %s", getStatistics() );
+    }
+
+    private LongHashSet idsOf( final IndexHits<? extends PropertyContainer> hits )
+    {
+        final LongHashSet ids = new LongHashSet( hits.size() );
+        for ( final PropertyContainer hit : hits )
+        {
+            ids.add( hit instanceof Node ? ( (Node) hit ).getId() : ( (Relationship) hit ).getId() );
+        }
+
+        return ids;
+    }
+
+    private void markClean( final boolean clean )
+    {
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            getStatisticsNode( false ).setProperty( CLEAN, clean );
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    private Node getStatisticsNode( final boolean existingOnly )
+    {
+        final Index<Node> idx = graph.index()
+                                     .forNodes( STATISTICS_IDX );
+
+        final IndexHits<Node> hits = idx.get( NODE_TYPE, NodeType.STATISTICS.name() );
+        if ( hits.hasNext() )
+        {
+            final Node node = hits.next();
+            hits.close();
+
+            return node;
+        }
+
+        if ( existingOnly )
+        {
+            return null;
+        }
+
+        final Node node = graph.createNode();
+        node.setProperty( NODE_TYPE, NodeType.STATISTICS.name() );
+        idx.add( node, NODE_TYPE, NodeType.STATISTICS.name() );
+
+        return node;
+    }
+
+    private static final class Changes
+    {
+        private final LongHashSet nodes = new LongHashSet();
+
+        private final LongHashSet variable = new LongHashSet();
+
+        private final LongHashSet connected = new LongHashSet();
+
+        private final LongHashSet cycleInjections = new LongHashSet();
+
+        private final long[] relationships = new long[GraphRelType.values().length];
+
+        private boolean succeeded;
+    }
+
+}
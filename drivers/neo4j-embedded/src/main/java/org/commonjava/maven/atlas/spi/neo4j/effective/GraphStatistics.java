@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Snapshot of the counts kept by the Neo4J driver for the whole database (not just the subgraph reachable from a
+ * driver's roots), available without scanning the store or its indices.
+ */
+public final class GraphStatistics
+{
+
+    private final long nodes;
+
+    private final long missing;
+
+    private final long variable;
+
+    private final long cycleInjections;
+
+    private final Map<GraphRelType, Long> relationships;
+
+    GraphStatistics( final long nodes, final long missing, final long variable, final long cycleInjections,
+                     final Map<GraphRelType, Long> relationships )
+    {
+        this.nodes = nodes;
+        this.missing = missing;
+        this.variable = variable;
+        this.cycleInjections = cycleInjections;
+        this.relationships = Collections.unmodifiableMap( new EnumMap<GraphRelType, Long>( relationships ) );
+    }
+
+    public long getProjectCount()
+    {
+        return nodes;
+    }
+
+    public long getMissingProjectCount()
+    {
+        return missing;
+    }
+
+    public long getVariableProjectCount()
+    {
+        return variable;
+    }
+
+    public long getCycleInjectionCount()
+    {
+        return cycleInjections;
+    }
+
+    public long getRelationshipCount()
+    {
+        long count = 0;
+        for ( final Long c : relationships.values() )
+        {
+            count += c;
+        }
+
+        return count;
+    }
+
+    public long getRelationshipCount( final GraphRelType type )
+    {
+        final Long count = relationships.get( type );
+        return count == null ? 0 : count;
+    }
+
+    public Map<GraphRelType, Long> getRelationshipCounts()
+    {
+        return relationships;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "%d projects (%d missing, %d variable), %d relationships %s (%d inject cycles)", nodes,
+                              missing, variable, getRelationshipCount(), relationships, cycleInjections );
+    }
+
+}
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective;
+
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.GAV;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.NODE_TYPE;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.getStringProperty;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.id;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.isAtlasType;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.toProjectRelationship;
+
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.spi.neo4j.effective.util.ScalableBloomFilter;
+import org.commonjava.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Bloom filters over the GAVs of stored projects and the keys of stored relationships, so the driver can answer
+ * "definitely not stored" without querying Lucene. Keys are added as nodes and
+ * relationships are created (a rolled-back creation only costs a false positive later).
+ * <p/>
+ * Like {@link GraphCounters}, the filters are stored on a node of their own when the database is closed, and marked
+ * dirty while it's open. If they're dirty or missing when the database is opened, they're rebuilt from the store on a
+ * background thread; until that finishes every key is reported as possibly stored, so lookups just fall through to the
+ * indices.
+ */
+final class MembershipFilter
+    implements Runnable
+{
+
+    static final String FILTER_IDX = "membership_filter";
+
+    static final String CLEAN = "_bloom_clean";
+
+    private static final String PROJECTS = "_bloom_projects";
+
+    private static final String RELATIONSHIPS = "_bloom_relationships";
+
+    /**
+     * Format of the stored filters; filters stored in any other format are rebuilt. Version 2 keys relationships by their
+     * identity rather than their string form.
+     */
+    private static final String VERSION = "_bloom_version";
+
+    private static final int CURRENT_VERSION = 2;
+
+    private static final int INITIAL_CAPACITY = 10000;
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final Logger logger = new Logger( getClass() );
+
+    private final GraphDatabaseService graph;
+
+    private final GraphCounters counters;
+
+    private final boolean readOnly;
+
+    private ScalableBloomFilter projects;
+
+    private ScalableBloomFilter relationships;
+
+    private boolean available;
+
+    private Thread rebuilder;
+
+    private volatile boolean stopped;
+
+    MembershipFilter( final GraphDatabaseService graph, final GraphCounters counters, final boolean readOnly )
+    {
+        this.graph = graph;
+        this.counters = counters;
+        this.readOnly = readOnly;
+
+        final Node node = getFilterNode( true );
+        if ( node != null && (Boolean) node.getProperty( CLEAN, false )
+            && ( (Number) node.getProperty( VERSION, 1 ) ).intValue() == CURRENT_VERSION )
+        {
+            projects = ScalableBloomFilter.fromArray( (long[]) node.getProperty( PROJECTS ) );
+            relationships = ScalableBloomFilter.fromArray( (long[]) node.getProperty( RELATIONSHIPS ) );
+            available = true;
+        }
+        else
+        {
+            projects = new ScalableBloomFilter( INITIAL_CAPACITY, FALSE_POSITIVE_RATE );
+            relationships = new ScalableBloomFilter( INITIAL_CAPACITY, FALSE_POSITIVE_RATE );
+
+            rebuilder = new Thread( this, "atlas-neo4j-bloom-rebuild" );
+            rebuilder.setDaemon( true );
+        }
+
+        if ( !readOnly )
+        {
+            markClean( false );
+        }
+
+        if ( rebuilder != null )
+        {
+            rebuilder.start();
+        }
+    }
+
+    static String key( final ProjectRelationship<?> rel )
+    {
+        return id( rel );
+    }
+
+    synchronized boolean mightContainProject( final ProjectVersionRef ref )
+    {
+        return !available || projects.mightContain( ref.toString() );
+    }
+
+    synchronized boolean mightContainRelationship( final ProjectRelationship<?> rel )
+    {
+        return !available || relationships.mightContain( key( rel ) );
+    }
+
+    synchronized void addProject( final String gav )
+    {
+        projects.add( gav );
+    }
+
+    synchronized void addRelationship( final ProjectRelationship<?> rel )
+    {
+        relationships.add( key( rel ) );
+    }
+
+    synchronized boolean isAvailable()
+    {
+        return available;
+    }
+
+    synchronized double getProjectFalsePositiveRate()
+    {
+        return available ? projects.getFalsePositiveRate() : 1D;
+    }
+
+    synchronized double getRelationshipFalsePositiveRate()
+    {
+        return available ? relationships.getFalsePositiveRate() : 1D;
+    }
+
+    /**
+     * Rebuild from the store. Keys for nodes and relationships created meanwhile are added by the driver as usual, so
+     * the filters are complete once the scan finishes.
+     */
+    public void run()
+    {
+        logger.info( "Rebuilding project and relationship bloom filters." );
+        try
+        {
+            for ( final long id : counters.getNodes() )
+            {
+                if ( stopped )
+                {
+                    return;
+                }
+
+                try
+                {
+                    final String gav = getStringProperty( GAV, graph.getNodeById( id ) );
+                    if ( gav != null )
+                    {
+                        addProject( gav );
+                    }
+                }
+                catch ( final NotFoundException e )
+                {
+                    // deleted meanwhile.
+                }
+            }
+
+            for ( final Relationship r : GlobalGraphOperations.at( graph )
+                                                             .getAllRelationships() )
+            {
+                if ( stopped )
+                {
+                    return;
+                }
+
+                if ( isAtlasType( r ) )
+                {
+                    final ProjectRelationship<?> rel = toProjectRelationship( r );
+                    if ( rel != null )
+                    {
+                        addRelationship( rel );
+                    }
+                }
+            }
+
+            synchronized ( this )
+            {
+                available = true;
+            }
+
+            logger.info( "Bloom filters rebuilt: %d projects, %d relationships.", projects.getCount(),
+                         relationships.getCount() );
+        }
+        catch ( final RuntimeException e )
+        {
+            logger.error( "Failed to rebuild bloom filters; lookups will use the indices only. Error: %s", e,
+                          e.getMessage() );
+        }
+    }
+
+    /**
+     * Stop any rebuild, then store the filters (if they're complete) and mark them clean.
+     */
+    void close()
+    {
+        if ( rebuilder != null )
+        {
+            stopped = true;
+            try
+            {
+                rebuilder.join();
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread()
+                      .interrupt();
+            }
+        }
+
+        synchronized ( this )
+        {
+            if ( readOnly || !available )
+            {
+                return;
+            }
+
+            final Transaction tx = graph.beginTx();
+            try
+            {
+                final Node node = getFilterNode( false );
+                node.setProperty( PROJECTS, projects.toArray() );
+                node.setProperty( RELATIONSHIPS, relationships.toArray() );
+                node.setProperty( VERSION, CURRENT_VERSION );
+                node.setProperty( CLEAN, true );
+
+                tx.success();
+            }
+            finally
+            {
+                tx.finish();
+            }
+        }
+    }
+
+    private void markClean( final boolean clean )
+    {
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            getFilterNode( false ).setProperty( CLEAN, clean );
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    private Node getFilterNode( final boolean existingOnly )
+    {
+        final Index<Node> idx = graph.index()
+                                     .forNodes( FILTER_IDX );
+
+        final IndexHits<Node> hits = idx.get( NODE_TYPE, NodeType.MEMBERSHIP_FILTER.name() );
+        if ( hits.hasNext() )
+        {
+            final Node node = hits.next();
+            hits.close();
+
+            return node;
+        }
+
+        hits.close();
+        if ( existingOnly )
+        {
+            return null;
+        }
+
+        final Node node = graph.createNode();
+        node.setProperty( NODE_TYPE, NodeType.MEMBERSHIP_FILTER.name() );
+        idx.add( node, NODE_TYPE, NodeType.MEMBERSHIP_FILTER.name() );
+
+        return node;
+    }
+
+}
@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective;
+
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.NODE_TYPE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.commonjava.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+
+/**
+ * Tracks which generation of the per-key metadata indices (has_metadata_*) is readable, and the reindex building the
+ * next one. Generation 0 uses the original index names, so stores written before reindexing was generational stay
+ * readable. A reindex writes into a new generation, checkpointing the last node it finished in the same transaction as
+ * each chunk of index writes; only when it completes does the readable generation switch over and the old indices get
+ * deleted. If the database is closed (or dies) part way through, the next {@link #start(long[], int)} picks up after the
+ * checkpoint.
+ */
+final class MetadataIndexes
+{
+
+    static final String METADATA_INDEX_PREFIX = "has_metadata_";
+
+    private static final String STATE_IDX = "metadata_index_state";
+
+    private static final String GENERATION = "_metadata_generation";
+
+    private static final String BUILDING = "_metadata_building";
+
+    private static final String POSITION = "_metadata_position";
+
+    private final Logger logger = new Logger( getClass() );
+
+    private final GraphDatabaseService graph;
+
+    private final long stateId;
+
+    private volatile int generation;
+
+    private ReindexJob running;
+
+    /**
+     * @param readOnly If true, a missing state node isn't created; the original (generation 0) indices are read.
+     */
+    MetadataIndexes( final GraphDatabaseService graph, final boolean readOnly )
+    {
+        this.graph = graph;
+
+        if ( readOnly )
+        {
+            final IndexHits<Node> hits = graph.index()
+                                              .forNodes( STATE_IDX )
+                                              .get( NODE_TYPE, NodeType.METADATA_INDEX.name() );
+
+            final Node state = hits.hasNext() ? hits.next() : null;
+            hits.close();
+
+            stateId = state == null ? -1 : state.getId();
+            generation = state == null ? 0 : (Integer) state.getProperty( GENERATION, 0 );
+            return;
+        }
+
+        Node state;
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            final Index<Node> idx = graph.index()
+                                         .forNodes( STATE_IDX );
+
+            final IndexHits<Node> hits = idx.get( NODE_TYPE, NodeType.METADATA_INDEX.name() );
+            if ( hits.hasNext() )
+            {
+                state = hits.next();
+                hits.close();
+            }
+            else
+            {
+                state = graph.createNode();
+                state.setProperty( NODE_TYPE, NodeType.METADATA_INDEX.name() );
+                state.setProperty( GENERATION, 0 );
+                idx.add( state, NODE_TYPE, NodeType.METADATA_INDEX.name() );
+            }
+
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+
+        stateId = state.getId();
+        generation = (Integer) state.getProperty( GENERATION, 0 );
+
+        if ( state.hasProperty( BUILDING ) )
+        {
+            logger.info( "Metadata reindex into generation %s was interrupted; it will resume from node %s when restarted.",
+                         state.getProperty( BUILDING ), state.getProperty( POSITION ) );
+        }
+    }
+
+    /**
+     * @return The readable index for the given metadata key.
+     */
+    Index<Node> forKey( final String key )
+    {
+        return graph.index()
+                    .forNodes( indexName( generation, key ) );
+    }
+
+    boolean isReindexPending()
+    {
+        return stateId > -1 && graph.getNodeById( stateId )
+                    .hasProperty( BUILDING );
+    }
+
+    /**
+     * Start reindexing the given project nodes in the background, or resume the interrupted reindex. If a reindex is
+     * already running, that one is returned instead.
+     */
+    synchronized ReindexJob start( final long[] nodes, final int chunkSize )
+    {
+        if ( running != null && !running.isDone() )
+        {
+            return running;
+        }
+
+        deleteIndicesExcept( generation, -1 );
+
+        Arrays.sort( nodes );
+
+        int building;
+        int offset = 0;
+
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            final Node state = graph.getNodeById( stateId );
+            if ( state.hasProperty( BUILDING ) )
+            {
+                building = (Integer) state.getProperty( BUILDING );
+
+                final long position = (Long) state.getProperty( POSITION, -1L );
+                offset = Arrays.binarySearch( nodes, position );
+                offset = offset < 0 ? -offset - 1 : offset + 1;
+
+                logger.info( "Resuming metadata reindex into generation %d after node %d (%d of %d nodes done).",
+                             building, position, offset, nodes.length );
+            }
+            else
+            {
+                building = generation + 1;
+                state.setProperty( BUILDING, building );
+                state.setProperty( POSITION, -1L );
+
+                logger.info( "Starting metadata reindex of %d nodes into generation %d.", nodes.length, building );
+            }
+
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+
+        running = new ReindexJob( this, graph, nodes, offset, chunkSize, building );
+
+        final Thread t = new Thread( running, "atlas-neo4j-reindex" );
+        t.setDaemon( true );
+        t.start();
+
+        return running;
+    }
+
+    /**
+     * Stop the running reindex (if any) at the end of its current chunk, leaving its checkpoint for a later resume.
+     */
+    synchronized void close()
+    {
+        if ( running != null )
+        {
+            running.cancel();
+            try
+            {
+                running.await();
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread()
+                      .interrupt();
+            }
+
+            running = null;
+        }
+    }
+
+    String indexName( final int generation, final String key )
+    {
+        return generation == 0 ? METADATA_INDEX_PREFIX + key : METADATA_INDEX_PREFIX + "g" + generation + "_" + key;
+    }
+
+    /**
+     * Record the chunk's progress; called inside the transaction that wrote the chunk's index entries.
+     */
+    void checkpoint( final long lastNode )
+    {
+        graph.getNodeById( stateId )
+             .setProperty( POSITION, lastNode );
+    }
+
+    /**
+     * Make the completed generation readable, then drop the indices of the old one.
+     */
+    void completed( final int built )
+    {
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            final Node state = graph.getNodeById( stateId );
+            state.setProperty( GENERATION, built );
+            state.removeProperty( BUILDING );
+            state.removeProperty( POSITION );
+
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+
+        final int old = generation;
+        generation = built;
+
+        logger.info( "Metadata reindex complete; switched from generation %d to %d.", old, built );
+
+        deleteIndicesExcept( built, built );
+    }
+
+    /**
+     * Delete metadata indices belonging to neither the readable generation nor the one being built (-1 for none).
+     */
+    private void deleteIndicesExcept( final int readable, final int building )
+    {
+        final Node state = graph.getNodeById( stateId );
+        final int inProgress = building > -1 ? building : (Integer) state.getProperty( BUILDING, -1 );
+
+        final List<String> names = new ArrayList<String>();
+        for ( final String name : graph.index()
+                                       .nodeIndexNames() )
+        {
+            if ( name.startsWith( METADATA_INDEX_PREFIX ) && !isGeneration( name, readable )
+                && ( inProgress < 0 || !isGeneration( name, inProgress ) ) )
+            {
+                names.add( name );
+            }
+        }
+
+        if ( names.isEmpty() )
+        {
+            return;
+        }
+
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            for ( final String name : names )
+            {
+                logger.debug( "Deleting stale metadata index: %s", name );
+                graph.index()
+                     .forNodes( name )
+                     .delete();
+            }
+
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    private boolean isGeneration( final String name, final int gen )
+    {
+        if ( gen == 0 )
+        {
+            return !name.matches( METADATA_INDEX_PREFIX + "g\\d+_.*" );
+        }
+
+        return name.startsWith( METADATA_INDEX_PREFIX + "g" + gen + "_" );
+    }
+
+}
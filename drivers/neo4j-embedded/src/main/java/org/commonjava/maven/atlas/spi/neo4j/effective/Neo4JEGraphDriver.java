@@ -16,12 +16,15 @@
  ******************************************************************************/
 package org.commonjava.maven.atlas.spi.neo4j.effective;
 
+import java.util.List;
 import java.util.Map;
 
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
 import org.apache.maven.graph.spi.GraphDriverException;
 import org.apache.maven.graph.spi.effective.EGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.effective.util.QueryTiming;
+import org.commonjava.maven.atlas.spi.neo4j.io.RelationshipHandle;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
@@ -48,10 +51,26 @@ public interface Neo4JEGraphDriver
     ExecutionResult execute( String cypher, Map<String, Object> params )
         throws GraphDriverException;
 
+    List<QueryTiming> getQueryTimings();
+
+    GraphStatistics getGraphStatistics();
+
+    double getProjectFilterFalsePositiveRate();
+
+    double getRelationshipFilterFalsePositiveRate();
+
+    ReindexJob startReindex( int chunkSize );
+
     Node getNode( ProjectVersionRef ref )
         throws GraphDriverException;
 
     Relationship getRelationship( ProjectRelationship<?> rel )
         throws GraphDriverException;
 
+    Iterable<RelationshipHandle> getRelationshipHandlesDeclaredBy( ProjectVersionRef ref );
+
+    Iterable<RelationshipHandle> getRelationshipHandlesTargeting( ProjectVersionRef ref );
+
+    Iterable<RelationshipHandle> getAllRelationshipHandles();
+
 }
@@ -19,6 +19,6 @@ package org.commonjava.maven.atlas.spi.neo4j.effective;
 public enum NodeType
 {
 
-    PROJECT, CYCLE;
+    PROJECT, CYCLE, DICTIONARY, STATISTICS, METADATA_INDEX, MEMBERSHIP_FILTER, RELATIONSHIP_IDS;
 
 }
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective;
+
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.GAV;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.getMetadataMap;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.getStringProperty;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.commonjava.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Handle on a background metadata reindex started by {@link AbstractNeo4JEGraphDriver#startReindex(int)}. Nodes are
+ * indexed in transactions of at most chunkSize nodes, so the job never holds more than one chunk of writes and other
+ * writers only wait for a chunk at a time. Until it completes, {@link AbstractNeo4JEGraphDriver#getProjectsWithMetadata(String)}
+ * keeps reading the previous indices.
+ */
+public final class ReindexJob
+    implements Runnable
+{
+
+    private final Logger logger = new Logger( getClass() );
+
+    private final MetadataIndexes indexes;
+
+    private final GraphDatabaseService graph;
+
+    private final long[] nodes;
+
+    private final int chunkSize;
+
+    private final int generation;
+
+    private final CountDownLatch done = new CountDownLatch( 1 );
+
+    private volatile int position;
+
+    private volatile boolean cancelled;
+
+    private volatile Throwable error;
+
+    ReindexJob( final MetadataIndexes indexes, final GraphDatabaseService graph, final long[] nodes, final int offset,
+                final int chunkSize, final int generation )
+    {
+        if ( chunkSize < 1 )
+        {
+            throw new IllegalArgumentException( "Invalid reindex chunk size: " + chunkSize );
+        }
+
+        this.indexes = indexes;
+        this.graph = graph;
+        this.nodes = nodes;
+        this.position = offset;
+        this.chunkSize = chunkSize;
+        this.generation = generation;
+    }
+
+    public void run()
+    {
+        try
+        {
+            while ( !cancelled && position < nodes.length )
+            {
+                final int end = Math.min( position + chunkSize, nodes.length );
+                indexChunk( position, end );
+                position = end;
+
+                logger.debug( "Reindexed metadata for %d of %d nodes.", position, nodes.length );
+            }
+
+            if ( !cancelled )
+            {
+                indexes.completed( generation );
+            }
+            else
+            {
+                logger.info( "Metadata reindex stopped after %d of %d nodes.", position, nodes.length );
+            }
+        }
+        catch ( final RuntimeException e )
+        {
+            logger.error( "Metadata reindex failed after %d of %d nodes: %s", e, position, nodes.length,
+                          e.getMessage() );
+            error = e;
+        }
+        finally
+        {
+            done.countDown();
+        }
+    }
+
+    private void indexChunk( final int start, final int end )
+    {
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            for ( int i = start; i < end; i++ )
+            {
+                final Node node;
+                try
+                {
+                    node = graph.getNodeById( nodes[i] );
+                }
+                catch ( final NotFoundException e )
+                {
+                    continue;
+                }
+
+                final String gav = getStringProperty( GAV, node );
+                if ( gav == null )
+                {
+                    continue;
+                }
+
+                final Map<String, String> md = getMetadataMap( node );
+                if ( md == null || md.isEmpty() )
+                {
+                    continue;
+                }
+
+                for ( final String key : md.keySet() )
+                {
+                    graph.index()
+                         .forNodes( indexes.indexName( generation, key ) )
+                         .add( node, GAV, gav );
+                }
+            }
+
+            indexes.checkpoint( nodes[end - 1] );
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    void cancel()
+    {
+        cancelled = true;
+    }
+
+    public void await()
+        throws InterruptedException
+    {
+        done.await();
+    }
+
+    public boolean await( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        return done.await( timeout, unit );
+    }
+
+    public boolean isDone()
+    {
+        return done.getCount() < 1;
+    }
+
+    /**
+     * @return true if the job was stopped (because its driver was closed) before finishing. Starting a reindex again
+     *         resumes it.
+     */
+    public boolean isCancelled()
+    {
+        return cancelled && isDone() && position < nodes.length;
+    }
+
+    public Throwable getError()
+    {
+        return error;
+    }
+
+    public int getProcessedCount()
+    {
+        return position;
+    }
+
+    public int getTotalCount()
+    {
+        return nodes.length;
+    }
+
+    /**
+     * @return Progress from 0 to 1.
+     */
+    public double getProgress()
+    {
+        return nodes.length == 0 ? 1D : (double) position / nodes.length;
+    }
+
+    public int getGeneration()
+    {
+        return generation;
+    }
+
+}
@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective;
+
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.ID_CHECK;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.NODE_TYPE;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.RELATIONSHIP_ID;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.id;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.idCheck;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.isAtlasType;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.legacyId;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.toProjectRelationship;
+
+import java.util.Iterator;
+
+import org.apache.maven.graph.effective.rel.AbstractProjectRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.commonjava.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.graphdb.index.RelationshipIndex;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Keys relationships in the relationship index by their identity (see
+ * {@link AbstractProjectRelationship#getIdentity()}), rather than the SHA-1 of their string form used by earlier
+ * versions of the driver.
+ * <p/>
+ * Each relationship also stores its identity check value ({@link org.commonjava.maven.atlas.spi.neo4j.io.Conversions#ID_CHECK}).
+ * If two relationships ever hash to the same identity, the later one is keyed with the first free probe suffix
+ * (<code>id~1</code>, <code>id~2</code>, ...), and lookups walk the probe sequence comparing check values, so the
+ * collision resolves the same way every time.
+ * <p/>
+ * Stores written with the old keys are in legacy format until {@link #migrate(int)} re-keys them; meanwhile, lookups
+ * that miss fall back to the old key.
+ */
+final class RelationshipIds
+{
+
+    static final String IDS_IDX = "relationship_ids";
+
+    static final String FORMAT = "_id_format";
+
+    static final int LEGACY_FORMAT = 1;
+
+    static final int HASHED_FORMAT = 2;
+
+    private static final char PROBE_SEPARATOR = '~';
+
+    private final Logger logger = new Logger( getClass() );
+
+    private final GraphDatabaseService graph;
+
+    private volatile boolean legacy;
+
+    RelationshipIds( final GraphDatabaseService graph, final GraphCounters counters, final boolean readOnly )
+    {
+        this.graph = graph;
+
+        final Node node = getStateNode( true );
+        if ( node != null )
+        {
+            legacy = ( (Number) node.getProperty( FORMAT, LEGACY_FORMAT ) ).intValue() < HASHED_FORMAT;
+        }
+        else
+        {
+            // no state node: either a new store, or one written before relationship identities existed.
+            legacy = counters.getStatistics()
+                             .getRelationshipCount() > 0;
+
+            if ( !readOnly )
+            {
+                setFormat( legacy ? LEGACY_FORMAT : HASHED_FORMAT );
+            }
+        }
+
+        if ( legacy )
+        {
+            logger.info( "Relationship index uses legacy ids; lookups will fall back to them until the store is migrated." );
+        }
+    }
+
+    static String probeKey( final String id, final int probe )
+    {
+        return probe == 0 ? id : id + PROBE_SEPARATOR + probe;
+    }
+
+    boolean isLegacy()
+    {
+        return legacy;
+    }
+
+    /**
+     * @return The stored relationship matching rel, or null if there isn't one.
+     */
+    Relationship find( final RelationshipIndex idx, final ProjectRelationship<?> rel )
+    {
+        final String id = id( rel );
+        final long check = idCheck( rel );
+
+        for ( int probe = 0;; probe++ )
+        {
+            final Relationship r = first( idx.get( RELATIONSHIP_ID, probeKey( id, probe ) ) );
+            if ( r == null )
+            {
+                break;
+            }
+            else if ( matches( r, rel, check ) )
+            {
+                return r;
+            }
+        }
+
+        if ( legacy )
+        {
+            return first( idx.get( RELATIONSHIP_ID, legacyId( rel ) ) );
+        }
+
+        return null;
+    }
+
+    /**
+     * Add a newly created relationship to the index, under the first free key in its probe sequence, and store its
+     * check value.
+     */
+    void index( final RelationshipIndex idx, final Relationship relationship, final ProjectRelationship<?> rel )
+    {
+        final String id = id( rel );
+
+        int probe = 0;
+        IndexHits<Relationship> hits;
+        while ( ( hits = idx.get( RELATIONSHIP_ID, probeKey( id, probe ) ) ).hasNext() )
+        {
+            hits.close();
+            probe++;
+        }
+        hits.close();
+
+        if ( probe > 0 )
+        {
+            logger.warn( "Relationship identity collision for: %s (id: %s). Using probe key: %s", rel, id,
+                         probeKey( id, probe ) );
+        }
+
+        relationship.setProperty( ID_CHECK, idCheck( rel ) );
+        idx.add( relationship, RELATIONSHIP_ID, probeKey( id, probe ) );
+    }
+
+    /**
+     * Re-key relationships stored without a check value, committing every batchSize relationships, then mark the store
+     * as migrated. Safe to run again if interrupted.
+     * 
+     * @return The number of relationships re-keyed.
+     */
+    int migrate( final RelationshipIndex idx, final int batchSize )
+    {
+        final Iterator<Relationship> it = GlobalGraphOperations.at( graph )
+                                                               .getAllRelationships()
+                                                               .iterator();
+
+        int count = 0;
+        while ( it.hasNext() )
+        {
+            final Transaction tx = graph.beginTx();
+            try
+            {
+                int batch = 0;
+                while ( batch < batchSize && it.hasNext() )
+                {
+                    final Relationship r = it.next();
+                    if ( !isAtlasType( r ) || r.hasProperty( ID_CHECK ) )
+                    {
+                        continue;
+                    }
+
+                    final ProjectRelationship<?> rel = toProjectRelationship( r );
+                    if ( rel == null )
+                    {
+                        continue;
+                    }
+
+                    idx.remove( r, RELATIONSHIP_ID );
+                    index( idx, r, rel );
+                    batch++;
+                }
+
+                count += batch;
+                tx.success();
+            }
+            finally
+            {
+                tx.finish();
+            }
+
+            logger.info( "Migrated ids of %d relationships so far.", count );
+        }
+
+        setFormat( HASHED_FORMAT );
+        legacy = false;
+
+        return count;
+    }
+
+    private boolean matches( final Relationship r, final ProjectRelationship<?> rel, final long check )
+    {
+        final Object stored = r.getProperty( ID_CHECK, null );
+        if ( stored != null )
+        {
+            return ( (Number) stored ).longValue() == check;
+        }
+
+        // not written by this class; compare the hard way.
+        return rel.equals( toProjectRelationship( r ) );
+    }
+
+    private Relationship first( final IndexHits<Relationship> hits )
+    {
+        try
+        {
+            return hits.hasNext() ? hits.next() : null;
+        }
+        finally
+        {
+            hits.close();
+        }
+    }
+
+    private void setFormat( final int format )
+    {
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            getStateNode( false ).setProperty( FORMAT, format );
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    private Node getStateNode( final boolean existingOnly )
+    {
+        final Index<Node> idx = graph.index()
+                                     .forNodes( IDS_IDX );
+
+        final IndexHits<Node> hits = idx.get( NODE_TYPE, NodeType.RELATIONSHIP_IDS.name() );
+        if ( hits.hasNext() )
+        {
+            final Node node = hits.next();
+            hits.close();
+
+            return node;
+        }
+
+        hits.close();
+        if ( existingOnly )
+        {
+            return null;
+        }
+
+        final Node node = graph.createNode();
+        node.setProperty( NODE_TYPE, NodeType.RELATIONSHIP_IDS.name() );
+        idx.add( node, NODE_TYPE, NodeType.RELATIONSHIP_IDS.name() );
+
+        return node;
+    }
+
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.SelectedRelationship;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * In-memory version selections: for each root node id, a map of variable-version node id to the id of the node for
+ * the version selected in its place. Traversals consult it (see
+ * {@link org.commonjava.maven.atlas.spi.neo4j.effective.traverse.SelectionOverlayExpander}) to follow a relationship
+ * to the selected node rather than the variable one, so making or clearing a selection doesn't touch the store.
+ * <p/>
+ * Selections are kept per root, as they were when stored on the relationships, so one overlay is shared by all the
+ * drivers on a database. Lookups of the relationships declared by or targeting a project apply them too (see
+ * {@link #redirectOutgoing(Collection, Iterable)} and {@link #redirectIncoming(Collection, Node, Iterable)}), from the
+ * point of view of the looking driver's roots.
+ */
+public final class SelectionOverlay
+{
+
+    private final Map<Long, Map<Long, Long>> selections = new ConcurrentHashMap<Long, Map<Long, Long>>();
+
+    public boolean isEmpty()
+    {
+        return selections.isEmpty();
+    }
+
+    public void select( final long root, final long variable, final long selected )
+    {
+        Map<Long, Long> forRoot = selections.get( root );
+        if ( forRoot == null )
+        {
+            synchronized ( selections )
+            {
+                forRoot = selections.get( root );
+                if ( forRoot == null )
+                {
+                    forRoot = new ConcurrentHashMap<Long, Long>();
+                    selections.put( root, forRoot );
+                }
+            }
+        }
+
+        forRoot.put( variable, selected );
+    }
+
+    /**
+     * @return The selected node id for the variable node, in the context of root, or -1 if there is none.
+     */
+    public long getSelected( final long root, final long variable )
+    {
+        final Map<Long, Long> forRoot = selections.get( root );
+        if ( forRoot == null )
+        {
+            return -1;
+        }
+
+        final Long selected = forRoot.get( variable );
+        return selected == null ? -1 : selected;
+    }
+
+    /**
+     * @return Variable node id to selected node id, for all the given roots.
+     */
+    public Map<Long, Long> getSelections( final Collection<Long> roots )
+    {
+        final Map<Long, Long> result = new HashMap<Long, Long>();
+        for ( final Long root : roots )
+        {
+            final Map<Long, Long> forRoot = selections.get( root );
+            if ( forRoot != null )
+            {
+                result.putAll( forRoot );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the selections for the given roots.
+     * 
+     * @return Variable node id to selected node id, for the removed selections.
+     */
+    public Map<Long, Long> clear( final Collection<Long> roots )
+    {
+        final Map<Long, Long> result = new HashMap<Long, Long>();
+        for ( final Long root : roots )
+        {
+            final Map<Long, Long> forRoot = selections.remove( root );
+            if ( forRoot != null )
+            {
+                result.putAll( forRoot );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The relationship to follow from root's point of view: the given one, or a stand-in for it that ends at
+     *         the selected node if its end node has a selection for root.
+     */
+    public Relationship redirect( final Node root, final Relationship relationship )
+    {
+        final long selected = getSelected( root.getId(), relationship.getEndNode()
+                                                                     .getId() );
+        if ( selected < 0 )
+        {
+            return relationship;
+        }
+
+        return new SelectedRelationship( relationship, relationship.getGraphDatabase()
+                                                                   .getNodeById( selected ) );
+    }
+
+    /**
+     * Counterpart of {@link #redirect(Node, Relationship)} for lookups of the relationships starting at a node on behalf
+     * of the given roots, outside a traversal: relationships to a variable node that has a selection are replaced by
+     * stand-ins ending at the selected node.
+     * 
+     * @param outgoing The stored relationships starting at a node.
+     */
+    public Iterable<Relationship> redirectOutgoing( final Collection<Long> roots, final Iterable<Relationship> outgoing )
+    {
+        if ( roots == null || roots.isEmpty() || selections.isEmpty() )
+        {
+            return outgoing;
+        }
+
+        final Map<Long, Long> selected = getSelections( roots );
+        if ( selected.isEmpty() )
+        {
+            return outgoing;
+        }
+
+        final List<Relationship> result = new ArrayList<Relationship>();
+        for ( final Relationship r : outgoing )
+        {
+            final Long id = selected.get( r.getEndNode()
+                                           .getId() );
+
+            result.add( id == null ? r : new SelectedRelationship( r, r.getGraphDatabase()
+                                                                       .getNodeById( id ) ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * Reverse counterpart of {@link #redirect(Node, Relationship)}, for lookups of the relationships ending at a node
+     * on behalf of the given roots. Relationships to a variable node that has a selection are moved to the selected
+     * node: they're left out when the variable node is asked for, and stand-ins for them are added when the selected
+     * node is.
+     * 
+     * @param incoming The stored relationships ending at node.
+     */
+    public Iterable<Relationship> redirectIncoming( final Collection<Long> roots, final Node node,
+                                                   final Iterable<Relationship> incoming )
+    {
+        if ( roots == null || roots.isEmpty() || selections.isEmpty() )
+        {
+            return incoming;
+        }
+
+        final Map<Long, Long> selected = getSelections( roots );
+        if ( selected.isEmpty() )
+        {
+            return incoming;
+        }
+
+        final List<Relationship> result = new ArrayList<Relationship>();
+        if ( !selected.containsKey( node.getId() ) )
+        {
+            for ( final Relationship r : incoming )
+            {
+                result.add( r );
+            }
+        }
+
+        for ( final Map.Entry<Long, Long> entry : selected.entrySet() )
+        {
+            if ( entry.getValue() == node.getId() )
+            {
+                final Node variable = node.getGraphDatabase()
+                                          .getNodeById( entry.getKey() );
+
+                for ( final Relationship r : variable.getRelationships( Direction.INCOMING ) )
+                {
+                    result.add( new SelectedRelationship( r, node ) );
+                }
+            }
+        }
+
+        return result;
+    }
+
+}
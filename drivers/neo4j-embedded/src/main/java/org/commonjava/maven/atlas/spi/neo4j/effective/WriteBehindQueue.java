@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.commonjava.util.logging.Logger;
+
+/**
+ * Group-commit queue behind {@link AbstractNeo4JEGraphDriver#addRelationshipsAsync(ProjectRelationship...)}. Writes
+ * submitted from any number of threads are coalesced by a single writer thread into one
+ * {@link AbstractNeo4JEGraphDriver#addRelationships(ProjectRelationship...)} call, once the batch reaches batchSize
+ * relationships or the oldest write has waited maxLatency milliseconds, whichever comes first. Submitting blocks while
+ * more than maxQueued relationships are waiting to be written.
+ */
+final class WriteBehindQueue
+    implements Runnable
+{
+
+    private final Logger logger = new Logger( getClass() );
+
+    private final AbstractNeo4JEGraphDriver driver;
+
+    private final int batchSize;
+
+    private final long maxLatency;
+
+    private final int maxQueued;
+
+    private final Semaphore capacity;
+
+    private final LinkedBlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<PendingWrite>();
+
+    private final Thread writer;
+
+    // guards stopped against queue.add(), so nothing can be enqueued once shutdown has begun.
+    private final Object lock = new Object();
+
+    private volatile boolean stopped;
+
+    WriteBehindQueue( final AbstractNeo4JEGraphDriver driver, final int batchSize, final long maxLatency,
+                      final int maxQueued )
+    {
+        if ( batchSize < 1 || maxLatency < 0 || maxQueued < 1 )
+        {
+            throw new IllegalArgumentException( "Invalid write-behind configuration: batchSize=" + batchSize
+                + ", maxLatency=" + maxLatency + ", maxQueued=" + maxQueued );
+        }
+
+        this.driver = driver;
+        this.batchSize = batchSize;
+        this.maxLatency = maxLatency;
+        this.maxQueued = maxQueued;
+        this.capacity = new Semaphore( maxQueued, true );
+
+        writer = new Thread( this, "atlas-neo4j-write-behind" );
+        writer.setDaemon( true );
+        writer.start();
+    }
+
+    Future<Set<ProjectRelationship<?>>> submit( final ProjectRelationship<?>... rels )
+        throws InterruptedException
+    {
+        checkRunning();
+
+        // a single write larger than the whole queue is admitted on its own, rather than blocking forever.
+        final int permits = Math.max( 1, Math.min( rels.length, maxQueued ) );
+        capacity.acquire( permits );
+
+        final PendingWrite write = new PendingWrite( rels, permits );
+        synchronized ( lock )
+        {
+            if ( stopped )
+            {
+                // shutdown() may have handed us these permits to wake us up; pass them on to the next waiter.
+                capacity.release( permits );
+                checkRunning();
+            }
+
+            queue.add( write );
+        }
+
+        return write;
+    }
+
+    private void checkRunning()
+    {
+        if ( stopped )
+        {
+            throw new IllegalStateException( "Write-behind queue has been shut down!" );
+        }
+    }
+
+    /**
+     * Already-completed result, for callers of the asynchronous API when write-behind isn't enabled.
+     */
+    static Future<Set<ProjectRelationship<?>>> completed( final Set<ProjectRelationship<?>> skipped )
+    {
+        final PendingWrite write = new PendingWrite( new ProjectRelationship<?>[0], 0 );
+        write.complete( skipped );
+
+        return write;
+    }
+
+    /**
+     * Stop accepting writes, wait for the queued ones to be written, then stop the writer thread. Callers still waiting
+     * for room in the queue fail with {@link IllegalStateException}.
+     */
+    void shutdown()
+    {
+        synchronized ( lock )
+        {
+            stopped = true;
+        }
+
+        // wake anyone blocked in submit(); each passes the permits on when it sees we've stopped.
+        capacity.release( maxQueued );
+
+        try
+        {
+            writer.join();
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread()
+                  .interrupt();
+        }
+
+        // catch anything enqueued between the writer's last poll and its exit.
+        final List<PendingWrite> rest = new ArrayList<PendingWrite>();
+        queue.drainTo( rest );
+        if ( !rest.isEmpty() )
+        {
+            int count = 0;
+            for ( final PendingWrite write : rest )
+            {
+                count += write.rels.length;
+            }
+
+            write( rest, count );
+        }
+    }
+
+    public void run()
+    {
+        final List<PendingWrite> batch = new ArrayList<PendingWrite>();
+        while ( true )
+        {
+            PendingWrite first;
+            try
+            {
+                first = queue.poll( 100, TimeUnit.MILLISECONDS );
+            }
+            catch ( final InterruptedException e )
+            {
+                first = null;
+            }
+
+            if ( first == null )
+            {
+                if ( stopped && queue.isEmpty() )
+                {
+                    return;
+                }
+
+                continue;
+            }
+
+            batch.add( first );
+            int count = first.rels.length;
+
+            final long deadline = System.currentTimeMillis() + maxLatency;
+            while ( count < batchSize )
+            {
+                PendingWrite next = queue.poll();
+                if ( next == null )
+                {
+                    final long wait = deadline - System.currentTimeMillis();
+                    if ( wait < 1 || stopped )
+                    {
+                        break;
+                    }
+
+                    try
+                    {
+                        next = queue.poll( wait, TimeUnit.MILLISECONDS );
+                    }
+                    catch ( final InterruptedException e )
+                    {
+                        break;
+                    }
+
+                    if ( next == null )
+                    {
+                        break;
+                    }
+                }
+
+                batch.add( next );
+                count += next.rels.length;
+            }
+
+            write( batch, count );
+            batch.clear();
+        }
+    }
+
+    private void write( final List<PendingWrite> batch, final int count )
+    {
+        Set<ProjectRelationship<?>> skipped = null;
+        Throwable error = null;
+        try
+        {
+            final Set<ProjectRelationship<?>> all = new LinkedHashSet<ProjectRelationship<?>>( count );
+            for ( final PendingWrite write : batch )
+            {
+                Collections.addAll( all, write.rels );
+            }
+
+            logger.debug( "Writing %d relationships from %d queued writes.", all.size(), batch.size() );
+
+            skipped = driver.addRelationships( all.toArray( new ProjectRelationship<?>[all.size()] ) );
+        }
+        catch ( final Throwable e )
+        {
+            // errors too (say, a stack overflow in a deep cycle check): they'd kill the writer thread, leaving this
+            // batch's callers and everything queued after it waiting forever.
+            logger.error( "Failed to write %d queued relationships: %s", e, count, e.getMessage() );
+            error = e;
+        }
+
+        for ( final PendingWrite write : batch )
+        {
+            if ( error != null )
+            {
+                write.fail( error );
+            }
+            else
+            {
+                final Set<ProjectRelationship<?>> result = new HashSet<ProjectRelationship<?>>();
+                for ( final ProjectRelationship<?> rel : write.rels )
+                {
+                    if ( skipped.contains( rel ) )
+                    {
+                        result.add( rel );
+                    }
+                }
+
+                write.complete( result );
+            }
+
+            capacity.release( write.permits );
+        }
+    }
+
+    private static final class PendingWrite
+        implements Future<Set<ProjectRelationship<?>>>
+    {
+        private final ProjectRelationship<?>[] rels;
+
+        private final int permits;
+
+        private final CountDownLatch done = new CountDownLatch( 1 );
+
+        private Set<ProjectRelationship<?>> skipped;
+
+        private Throwable error;
+
+        PendingWrite( final ProjectRelationship<?>[] rels, final int permits )
+        {
+            this.rels = rels;
+            this.permits = permits;
+        }
+
+        void complete( final Set<ProjectRelationship<?>> skipped )
+        {
+            this.skipped = skipped;
+            done.countDown();
+        }
+
+        void fail( final Throwable error )
+        {
+            this.error = error;
+            done.countDown();
+        }
+
+        public boolean cancel( final boolean mayInterruptIfRunning )
+        {
+            return false;
+        }
+
+        public boolean isCancelled()
+        {
+            return false;
+        }
+
+        public boolean isDone()
+        {
+            return done.getCount() < 1;
+        }
+
+        public Set<ProjectRelationship<?>> get()
+            throws InterruptedException, ExecutionException
+        {
+            done.await();
+            return result();
+        }
+
+        public Set<ProjectRelationship<?>> get( final long timeout, final TimeUnit unit )
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            if ( !done.await( timeout, unit ) )
+            {
+                throw new TimeoutException();
+            }
+
+            return result();
+        }
+
+        private Set<ProjectRelationship<?>> result()
+            throws ExecutionException
+        {
+            if ( error != null )
+            {
+                throw new ExecutionException( error );
+            }
+
+            return skipped;
+        }
+    }
+
+}
@@ -77,6 +77,7 @@ public abstract class AbstractAtlasCollector<T>
         if ( seen.contains( endId ) )
         {
             log( "Rejecting path; already seen it:\n\t%s", path );
+            revisited( path );
             return Collections.emptySet();
         }
 
@@ -94,6 +95,13 @@ public abstract class AbstractAtlasCollector<T>
 
     protected abstract boolean returnChildren( Path path );
 
+    /**
+     * Called instead of {@link #returnChildren(Path)} for a path ending at a node that's already been expanded.
+     */
+    protected void revisited( final Path path )
+    {
+    }
+
     protected boolean accept( final Path path )
     {
         ProjectRelationshipFilter f = filter;
@@ -70,10 +70,11 @@ public class EndNodesCollector
                 found.add( end );
             }
 
-            return false;
+            // with more than one end node, others may only be reachable through this one.
+            return endNodes.size() > 1 && found.size() < endNodes.size();
         }
 
-        return true;
+        return found.size() < endNodes.size();
     }
 
 }
@@ -0,0 +1,77 @@
+package org.commonjava.maven.atlas.spi.neo4j.effective.traverse;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * Collects every relationship on an accepted path from the start nodes, including those leading into nodes already
+ * reached by another path (which {@link RootedRelationshipsCollector} leaves out). Each node is still expanded only
+ * once, so this visits each relationship once rather than once per path.
+ */
+@SuppressWarnings( "rawtypes" )
+public class PathRelationshipsCollector
+    extends AbstractAtlasCollector<Relationship>
+{
+
+    public PathRelationshipsCollector( final Set<Node> startNodes, final ProjectRelationshipFilter filter )
+    {
+        super( startNodes, filter, false );
+    }
+
+    private PathRelationshipsCollector( final Set<Node> startNodes, final ProjectRelationshipFilter filter,
+                                        final Direction direction )
+    {
+        super( startNodes, filter, false, direction );
+    }
+
+    public PathExpander reverse()
+    {
+        return new PathRelationshipsCollector( startNodes, filter, direction.reverse() );
+    }
+
+    public Set<Relationship> getFoundRelationships()
+    {
+        return found;
+    }
+
+    public Iterator<Relationship> iterator()
+    {
+        return found.iterator();
+    }
+
+    @Override
+    protected boolean returnChildren( final Path path )
+    {
+        return collect( path );
+    }
+
+    @Override
+    protected void revisited( final Path path )
+    {
+        collect( path );
+    }
+
+    private boolean collect( final Path path )
+    {
+        if ( !accept( path ) )
+        {
+            return false;
+        }
+
+        final Relationship last = path.lastRelationship();
+        if ( last != null )
+        {
+            found.add( last );
+        }
+
+        return true;
+    }
+
+}
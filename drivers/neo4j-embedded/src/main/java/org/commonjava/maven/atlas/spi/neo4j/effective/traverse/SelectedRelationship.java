@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective.traverse;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Read-only stand-in for a relationship to a variable-version node, ending at the node selected in its place. It is
+ * never stored; traversals see it instead of the variable relationship (see
+ * {@link org.commonjava.maven.atlas.spi.neo4j.effective.SelectionOverlay}), and it carries the variable
+ * relationship's properties, so it converts to the same relationship with the selected version as its target.
+ * <p/>
+ * Its id is negative, to keep it distinct from stored relationships for traversal uniqueness.
+ */
+public final class SelectedRelationship
+    implements Relationship
+{
+
+    private final Relationship variable;
+
+    private final Node selected;
+
+    public SelectedRelationship( final Relationship variable, final Node selected )
+    {
+        this.variable = variable;
+        this.selected = selected;
+    }
+
+    public Relationship getVariableRelationship()
+    {
+        return variable;
+    }
+
+    public GraphDatabaseService getGraphDatabase()
+    {
+        return variable.getGraphDatabase();
+    }
+
+    public boolean hasProperty( final String key )
+    {
+        return variable.hasProperty( key );
+    }
+
+    public Object getProperty( final String key )
+    {
+        return variable.getProperty( key );
+    }
+
+    public Object getProperty( final String key, final Object defaultValue )
+    {
+        return variable.getProperty( key, defaultValue );
+    }
+
+    public void setProperty( final String key, final Object value )
+    {
+        throw new UnsupportedOperationException( "Version-selection relationships are read-only." );
+    }
+
+    public Object removeProperty( final String key )
+    {
+        throw new UnsupportedOperationException( "Version-selection relationships are read-only." );
+    }
+
+    public Iterable<String> getPropertyKeys()
+    {
+        return variable.getPropertyKeys();
+    }
+
+    @SuppressWarnings( "deprecation" )
+    public Iterable<Object> getPropertyValues()
+    {
+        return variable.getPropertyValues();
+    }
+
+    public long getId()
+    {
+        return -1 - variable.getId();
+    }
+
+    public void delete()
+    {
+        throw new UnsupportedOperationException( "Version-selection relationships are read-only." );
+    }
+
+    public Node getStartNode()
+    {
+        return variable.getStartNode();
+    }
+
+    public Node getEndNode()
+    {
+        return selected;
+    }
+
+    public Node getOtherNode( final Node node )
+    {
+        if ( node.equals( selected ) )
+        {
+            return variable.getStartNode();
+        }
+
+        return selected;
+    }
+
+    public Node[] getNodes()
+    {
+        return new Node[] { variable.getStartNode(), selected };
+    }
+
+    public RelationshipType getType()
+    {
+        return variable.getType();
+    }
+
+    public boolean isType( final RelationshipType type )
+    {
+        return variable.isType( type );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return (int) ( getId() ^ ( getId() >>> 32 ) ) + 31 * selected.hashCode();
+    }
+
+    @Override
+    public boolean equals( final Object obj )
+    {
+        if ( this == obj )
+        {
+            return true;
+        }
+        if ( !( obj instanceof SelectedRelationship ) )
+        {
+            return false;
+        }
+
+        final SelectedRelationship other = (SelectedRelationship) obj;
+        return variable.equals( other.variable ) && selected.equals( other.selected );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "SelectedRelationship[%d -> %s, for: %s]", getId(), selected, variable );
+    }
+
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective.traverse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.commonjava.maven.atlas.spi.neo4j.effective.SelectionOverlay;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.BranchState;
+
+/**
+ * Applies the {@link SelectionOverlay} to the relationships another expander returns, so traversals reach the selected
+ * node (and its subgraph) wherever a root has a version selected for a variable node.
+ * <p/>
+ * Only outgoing relationships are redirected, since selections belong to the root a traversal starts from. The driver
+ * only traverses outward from its roots; reverse lookups (the relationships targeting a project) go through
+ * {@link SelectionOverlay#redirectIncoming(java.util.Collection, Node, Iterable)} instead.
+ */
+public final class SelectionOverlayExpander<STATE>
+    implements PathExpander<STATE>
+{
+
+    private final PathExpander<STATE> delegate;
+
+    private final SelectionOverlay selections;
+
+    public SelectionOverlayExpander( final PathExpander<STATE> delegate, final SelectionOverlay selections )
+    {
+        this.delegate = delegate;
+        this.selections = selections;
+    }
+
+    public Iterable<Relationship> expand( final Path path, final BranchState<STATE> state )
+    {
+        final Iterable<Relationship> rels = delegate.expand( path, state );
+        if ( rels == null || selections.isEmpty() )
+        {
+            return rels;
+        }
+
+        final Node root = path.startNode();
+        final Node from = path.endNode();
+
+        final List<Relationship> result = new ArrayList<Relationship>();
+        for ( final Relationship r : rels )
+        {
+            // only outgoing relationships lead to a (variable) target.
+            result.add( from.equals( r.getStartNode() ) ? selections.redirect( root, r ) : r );
+        }
+
+        return result;
+    }
+
+    public PathExpander<STATE> reverse()
+    {
+        return new SelectionOverlayExpander<STATE>( delegate.reverse(), selections );
+    }
+
+}
@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds the relationships that inject cycles into a graph, given as a list of (relationship id, start node id, end
+ * node id) edges in insertion order. Instead of searching for a path back to the declaring node once per relationship,
+ * this runs a single pass of Tarjan's strongly-connected-components algorithm; only edges inside a non-trivial component
+ * can close a cycle, so only those are replayed (in insertion order, searching within their component) to decide which
+ * ones actually injected a cycle, and to produce the cycle for each.
+ * <p/>
+ * Edges added as non-candidates are treated as already present and already checked (for instance, relationships stored
+ * before the current batch); they take part in the cycles, but are never reported themselves.
+ */
+public final class CycleInjectionDetector
+{
+
+    private long[] relIds;
+
+    private long[] froms;
+
+    private long[] tos;
+
+    private boolean[] candidates;
+
+    private int size;
+
+    public CycleInjectionDetector()
+    {
+        this( 1024 );
+    }
+
+    public CycleInjectionDetector( final int expectedEdges )
+    {
+        final int cap = Math.max( 16, expectedEdges );
+        relIds = new long[cap];
+        froms = new long[cap];
+        tos = new long[cap];
+        candidates = new boolean[cap];
+    }
+
+    /**
+     * Append an edge, returning its ordinal (the key used in the result of {@link #detect()}).
+     */
+    public int addEdge( final long relId, final long from, final long to, final boolean candidate )
+    {
+        if ( size == relIds.length )
+        {
+            final int cap = relIds.length + ( relIds.length >> 1 );
+            relIds = Arrays.copyOf( relIds, cap );
+            froms = Arrays.copyOf( froms, cap );
+            tos = Arrays.copyOf( tos, cap );
+            candidates = Arrays.copyOf( candidates, cap );
+        }
+
+        relIds[size] = relId;
+        froms[size] = from;
+        tos[size] = to;
+        candidates[size] = candidate;
+
+        return size++;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return Map of edge ordinal to the cycle that edge injected. Each cycle is the list of relationship ids leading
+     * from the edge's end node back to its start node, followed by the edge's own relationship id (the same layout
+     * {@link org.commonjava.maven.atlas.spi.neo4j.io.Conversions#markCycleInjection} stores). Ordered by ordinal.
+     */
+    public Map<Integer, long[]> detect()
+    {
+        final Map<Integer, long[]> result = new TreeMap<Integer, long[]>();
+        if ( size < 1 )
+        {
+            return result;
+        }
+
+        // map node ids onto a dense range, so the rest can work with int arrays.
+        final long[] nodes = new long[size * 2];
+        System.arraycopy( froms, 0, nodes, 0, size );
+        System.arraycopy( tos, 0, nodes, size, size );
+        Arrays.sort( nodes );
+
+        int n = 0;
+        for ( int i = 0; i < nodes.length; i++ )
+        {
+            if ( i == 0 || nodes[i] != nodes[i - 1] )
+            {
+                nodes[n++] = nodes[i];
+            }
+        }
+
+        final int[] src = new int[size];
+        final int[] dst = new int[size];
+        final int[] outStart = new int[n + 1];
+        for ( int e = 0; e < size; e++ )
+        {
+            src[e] = Arrays.binarySearch( nodes, 0, n, froms[e] );
+            dst[e] = Arrays.binarySearch( nodes, 0, n, tos[e] );
+            outStart[src[e] + 1]++;
+        }
+
+        for ( int v = 0; v < n; v++ )
+        {
+            outStart[v + 1] += outStart[v];
+        }
+
+        final int[] outEdges = new int[size];
+        final int[] fill = Arrays.copyOf( outStart, n );
+        for ( int e = 0; e < size; e++ )
+        {
+            outEdges[fill[src[e]]++] = e;
+        }
+
+        final int[] comp = components( n, dst, outStart, outEdges );
+
+        // replay the edges that stay within one component, in insertion order.
+        final Map<Integer, List<Integer>> replayed = new HashMap<Integer, List<Integer>>();
+        for ( int e = 0; e < size; e++ )
+        {
+            final int s = src[e];
+            final int t = dst[e];
+            if ( comp[s] != comp[t] )
+            {
+                continue;
+            }
+
+            if ( candidates[e] )
+            {
+                final long[] cycle = s == t ? new long[] { relIds[e] } : findPath( t, s, e, src, dst, replayed );
+                if ( cycle != null )
+                {
+                    result.put( e, cycle );
+                }
+            }
+
+            List<Integer> out = replayed.get( s );
+            if ( out == null )
+            {
+                out = new ArrayList<Integer>( 2 );
+                replayed.put( s, out );
+            }
+
+            out.add( e );
+        }
+
+        return result;
+    }
+
+    /**
+     * Iterative Tarjan, so deep dependency chains don't overflow the stack.
+     */
+    private static int[] components( final int n, final int[] dst, final int[] outStart, final int[] outEdges )
+    {
+        final int[] index = new int[n];
+        Arrays.fill( index, -1 );
+
+        final int[] low = new int[n];
+        final int[] comp = new int[n];
+        final boolean[] onStack = new boolean[n];
+        final int[] stack = new int[n];
+        final int[] callStack = new int[n];
+        final int[] edgePos = new int[n];
+
+        int sp = 0;
+        int counter = 0;
+        int compCount = 0;
+
+        for ( int root = 0; root < n; root++ )
+        {
+            if ( index[root] > -1 )
+            {
+                continue;
+            }
+
+            int csp = 0;
+            index[root] = low[root] = counter++;
+            stack[sp++] = root;
+            onStack[root] = true;
+            edgePos[root] = outStart[root];
+            callStack[csp++] = root;
+
+            while ( csp > 0 )
+            {
+                final int v = callStack[csp - 1];
+                if ( edgePos[v] < outStart[v + 1] )
+                {
+                    final int w = dst[outEdges[edgePos[v]++]];
+                    if ( index[w] < 0 )
+                    {
+                        index[w] = low[w] = counter++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        edgePos[w] = outStart[w];
+                        callStack[csp++] = w;
+                    }
+                    else if ( onStack[w] && index[w] < low[v] )
+                    {
+                        low[v] = index[w];
+                    }
+                }
+                else
+                {
+                    csp--;
+                    if ( low[v] == index[v] )
+                    {
+                        int w;
+                        do
+                        {
+                            w = stack[--sp];
+                            onStack[w] = false;
+                            comp[w] = compCount;
+                        }
+                        while ( w != v );
+
+                        compCount++;
+                    }
+
+                    if ( csp > 0 )
+                    {
+                        final int u = callStack[csp - 1];
+                        if ( low[v] < low[u] )
+                        {
+                            low[u] = low[v];
+                        }
+                    }
+                }
+            }
+        }
+
+        return comp;
+    }
+
+    /**
+     * Breadth-first search over the edges replayed so far, from the new edge's end node back to its start node.
+     */
+    private long[] findPath( final int from, final int to, final int edge, final int[] src, final int[] dst,
+                             final Map<Integer, List<Integer>> replayed )
+    {
+        final Map<Integer, Integer> via = new HashMap<Integer, Integer>();
+        via.put( from, -1 );
+
+        final LinkedList<Integer> queue = new LinkedList<Integer>();
+        queue.add( from );
+
+        while ( !queue.isEmpty() )
+        {
+            final int v = queue.removeFirst();
+            if ( v == to )
+            {
+                final LinkedList<Long> path = new LinkedList<Long>();
+                int cur = v;
+                Integer e;
+                while ( ( e = via.get( cur ) ) > -1 )
+                {
+                    path.addFirst( relIds[e] );
+                    cur = src[e];
+                }
+
+                final long[] cycle = new long[path.size() + 1];
+                int i = 0;
+                for ( final Long id : path )
+                {
+                    cycle[i++] = id;
+                }
+                cycle[i] = relIds[edge];
+
+                return cycle;
+            }
+
+            final List<Integer> out = replayed.get( v );
+            if ( out == null )
+            {
+                continue;
+            }
+
+            for ( final Integer e : out )
+            {
+                final int w = dst[e];
+                if ( !via.containsKey( w ) )
+                {
+                    via.put( w, e );
+                    queue.add( w );
+                }
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective.util;
+
+import java.util.Arrays;
+
+/**
+ * Compact set of long ids (node or relationship ids), using open addressing over a primitive array rather than boxed
+ * {@link Long}s in a {@link java.util.HashSet}. Not thread-safe.
+ */
+public final class LongHashSet
+{
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] slots;
+
+    private int size;
+
+    public LongHashSet()
+    {
+        this( 16 );
+    }
+
+    public LongHashSet( final int expected )
+    {
+        int cap = 16;
+        while ( cap < expected * 2 )
+        {
+            cap <<= 1;
+        }
+
+        slots = new long[cap];
+        Arrays.fill( slots, EMPTY );
+    }
+
+    public LongHashSet( final long[] values )
+    {
+        this( values.length );
+        for ( final long value : values )
+        {
+            add( value );
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public boolean contains( final long value )
+    {
+        return slots[find( value )] == value;
+    }
+
+    public boolean add( final long value )
+    {
+        if ( value == EMPTY )
+        {
+            throw new IllegalArgumentException( "Cannot store: " + value );
+        }
+
+        final int idx = find( value );
+        if ( slots[idx] == value )
+        {
+            return false;
+        }
+
+        slots[idx] = value;
+        size++;
+
+        if ( size * 2 > slots.length )
+        {
+            rehash( slots.length << 1 );
+        }
+
+        return true;
+    }
+
+    public boolean remove( final long value )
+    {
+        int idx = find( value );
+        if ( slots[idx] != value )
+        {
+            return false;
+        }
+
+        slots[idx] = EMPTY;
+        size--;
+
+        // shift later members of the same probe run back, so lookups don't stop at the hole.
+        final int mask = slots.length - 1;
+        int next = ( idx + 1 ) & mask;
+        while ( slots[next] != EMPTY )
+        {
+            final int home = slot( slots[next] );
+            if ( ( next > idx && ( home <= idx || home > next ) ) || ( next < idx && home <= idx && home > next ) )
+            {
+                slots[idx] = slots[next];
+                slots[next] = EMPTY;
+                idx = next;
+            }
+
+            next = ( next + 1 ) & mask;
+        }
+
+        return true;
+    }
+
+    public long[] toArray()
+    {
+        final long[] result = new long[size];
+        int i = 0;
+        for ( final long value : slots )
+        {
+            if ( value != EMPTY )
+            {
+                result[i++] = value;
+            }
+        }
+
+        return result;
+    }
+
+    private int find( final long value )
+    {
+        final int mask = slots.length - 1;
+        int idx = slot( value );
+        while ( slots[idx] != EMPTY && slots[idx] != value )
+        {
+            idx = ( idx + 1 ) & mask;
+        }
+
+        return idx;
+    }
+
+    private int slot( final long value )
+    {
+        long h = value * 0x9E3779B97F4A7C15L;
+        h ^= ( h >>> 32 );
+
+        return (int) h & ( slots.length - 1 );
+    }
+
+    private void rehash( final int capacity )
+    {
+        final long[] old = slots;
+        slots = new long[capacity];
+        Arrays.fill( slots, EMPTY );
+        size = 0;
+
+        for ( final long value : old )
+        {
+            if ( value != EMPTY )
+            {
+                slots[find( value )] = value;
+                size++;
+            }
+        }
+    }
+
+}
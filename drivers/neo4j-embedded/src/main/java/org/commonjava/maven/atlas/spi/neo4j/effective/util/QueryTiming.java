@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective.util;
+
+/**
+ * Running execution-time totals for one (normalized) Cypher query. Times cover parsing, planning and starting the
+ * query; rows of a lazily-evaluated result are produced while the caller iterates, outside the measured time.
+ */
+public final class QueryTiming
+{
+
+    private final String query;
+
+    private long count;
+
+    private long totalNanos;
+
+    private long maxNanos;
+
+    public QueryTiming( final String query )
+    {
+        this.query = query;
+    }
+
+    public synchronized void record( final long nanos )
+    {
+        count++;
+        totalNanos += nanos;
+        if ( nanos > maxNanos )
+        {
+            maxNanos = nanos;
+        }
+    }
+
+    public String getQuery()
+    {
+        return query;
+    }
+
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    public synchronized double getTotalMillis()
+    {
+        return totalNanos / 1000000D;
+    }
+
+    public synchronized double getMaxMillis()
+    {
+        return maxNanos / 1000000D;
+    }
+
+    public synchronized double getAverageMillis()
+    {
+        return count < 1 ? 0 : totalNanos / 1000000D / count;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format( "%d runs, avg %.2fms, max %.2fms: %s", count, getAverageMillis(), getMaxMillis(), query );
+    }
+
+}
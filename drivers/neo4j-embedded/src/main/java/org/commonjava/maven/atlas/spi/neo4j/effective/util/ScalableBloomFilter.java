@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.effective.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bloom filter over string keys that grows as keys are added, keeping its overall false-positive rate under the target
+ * (Almeida et al., "Scalable Bloom Filters"). Each time the newest stage fills to its capacity, a stage with twice the
+ * capacity and half the false-positive rate is added, so the rates of all stages sum to at most the target. A key is
+ * only added if the filter doesn't already (possibly falsely) contain it, so duplicates don't use up capacity. Not
+ * thread-safe.
+ */
+public final class ScalableBloomFilter
+{
+
+    private static final double LN2 = Math.log( 2 );
+
+    private final int initialCapacity;
+
+    private final double falsePositiveRate;
+
+    private final List<Stage> stages = new ArrayList<Stage>();
+
+    public ScalableBloomFilter( final int initialCapacity, final double falsePositiveRate )
+    {
+        if ( initialCapacity < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1 )
+        {
+            throw new IllegalArgumentException( "Invalid bloom filter configuration: initialCapacity="
+                + initialCapacity + ", falsePositiveRate=" + falsePositiveRate );
+        }
+
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * @return true if the key was added; false if the filter might already contain it.
+     */
+    public boolean add( final String key )
+    {
+        final long h1 = hash1( key );
+        final long h2 = hash2( key, h1 );
+
+        if ( contains( h1, h2 ) )
+        {
+            return false;
+        }
+
+        Stage stage = stages.isEmpty() ? null : stages.get( stages.size() - 1 );
+        if ( stage == null || stage.count >= stage.capacity )
+        {
+            final int i = stages.size();
+            final long capacity = Math.min( (long) initialCapacity << i, Integer.MAX_VALUE );
+            stage = new Stage( (int) capacity, falsePositiveRate * Math.pow( 0.5, i + 1 ) );
+            stages.add( stage );
+        }
+
+        stage.add( h1, h2 );
+        return true;
+    }
+
+    /**
+     * @return false if the key was definitely never added.
+     */
+    public boolean mightContain( final String key )
+    {
+        final long h1 = hash1( key );
+        return contains( h1, hash2( key, h1 ) );
+    }
+
+    private boolean contains( final long h1, final long h2 )
+    {
+        for ( int i = stages.size() - 1; i > -1; i-- )
+        {
+            if ( stages.get( i )
+                       .contains( h1, h2 ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The number of distinct keys added (give or take keys rejected as false positives).
+     */
+    public long getCount()
+    {
+        long count = 0;
+        for ( final Stage stage : stages )
+        {
+            count += stage.count;
+        }
+
+        return count;
+    }
+
+    public int getStageCount()
+    {
+        return stages.size();
+    }
+
+    /**
+     * @return The expected chance that {@link #mightContain(String)} returns true for a key that was never added, given
+     *         how full each stage is now.
+     */
+    public double getFalsePositiveRate()
+    {
+        double none = 1;
+        for ( final Stage stage : stages )
+        {
+            none *= 1 - stage.getFalsePositiveRate();
+        }
+
+        return 1 - none;
+    }
+
+    public double getTargetFalsePositiveRate()
+    {
+        return falsePositiveRate;
+    }
+
+    /**
+     * @return Bits of memory used by all stages.
+     */
+    public long getBitCount()
+    {
+        long bits = 0;
+        for ( final Stage stage : stages )
+        {
+            bits += stage.bits.length * 64L;
+        }
+
+        return bits;
+    }
+
+    /**
+     * Encode the filter for storage, as [initialCapacity, target rate bits, stage count, then per stage: capacity,
+     * hash count, key count, bits length, bits...].
+     */
+    public long[] toArray()
+    {
+        int len = 3;
+        for ( final Stage stage : stages )
+        {
+            len += 4 + stage.bits.length;
+        }
+
+        final long[] data = new long[len];
+        data[0] = initialCapacity;
+        data[1] = Double.doubleToLongBits( falsePositiveRate );
+        data[2] = stages.size();
+
+        int pos = 3;
+        for ( final Stage stage : stages )
+        {
+            data[pos++] = stage.capacity;
+            data[pos++] = stage.hashes;
+            data[pos++] = stage.count;
+            data[pos++] = stage.bits.length;
+            System.arraycopy( stage.bits, 0, data, pos, stage.bits.length );
+            pos += stage.bits.length;
+        }
+
+        return data;
+    }
+
+    public static ScalableBloomFilter fromArray( final long[] data )
+    {
+        final ScalableBloomFilter filter =
+            new ScalableBloomFilter( (int) data[0], Double.longBitsToDouble( data[1] ) );
+
+        int pos = 3;
+        for ( int i = 0; i < data[2]; i++ )
+        {
+            final int capacity = (int) data[pos++];
+            final int hashes = (int) data[pos++];
+            final int count = (int) data[pos++];
+            final long[] bits = new long[(int) data[pos++]];
+            System.arraycopy( data, pos, bits, 0, bits.length );
+            pos += bits.length;
+
+            filter.stages.add( new Stage( capacity, hashes, count, bits ) );
+        }
+
+        return filter;
+    }
+
+    /**
+     * 64-bit FNV-1a over the key's chars.
+     */
+    private static long hash1( final String key )
+    {
+        long h = 0xcbf29ce484222325L;
+        for ( int i = 0; i < key.length(); i++ )
+        {
+            h ^= key.charAt( i );
+            h *= 0x100000001b3L;
+        }
+
+        return mix( h );
+    }
+
+    /**
+     * Independent second hash, for double hashing (Kirsch and Mitzenmacher); always odd, so the probe sequence never
+     * repeats a single bit.
+     */
+    private static long hash2( final String key, final long h1 )
+    {
+        long h = 0x9e3779b97f4a7c15L ^ key.length();
+        for ( int i = 0; i < key.length(); i++ )
+        {
+            h = ( h ^ key.charAt( i ) ) * 0xff51afd7ed558ccdL;
+            h ^= h >>> 29;
+        }
+
+        return mix( h ^ h1 ) | 1L;
+    }
+
+    private static long mix( long h )
+    {
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Stage
+    {
+        private final int capacity;
+
+        private final int hashes;
+
+        private final long[] bits;
+
+        private final long bitCount;
+
+        private int count;
+
+        Stage( final int capacity, final double falsePositiveRate )
+        {
+            this.capacity = capacity;
+
+            final long m = Math.max( 64, (long) Math.ceil( -capacity * Math.log( falsePositiveRate ) / ( LN2 * LN2 ) ) );
+            this.bits = new long[(int) ( ( m + 63 ) / 64 )];
+            this.bitCount = bits.length * 64L;
+            this.hashes = Math.max( 1, (int) Math.round( (double) bitCount / capacity * LN2 ) );
+        }
+
+        Stage( final int capacity, final int hashes, final int count, final long[] bits )
+        {
+            this.capacity = capacity;
+            this.hashes = hashes;
+            this.count = count;
+            this.bits = bits;
+            this.bitCount = bits.length * 64L;
+        }
+
+        void add( final long h1, final long h2 )
+        {
+            for ( int i = 0; i < hashes; i++ )
+            {
+                final long bit = index( h1, h2, i );
+                bits[(int) ( bit >>> 6 )] |= 1L << bit;
+            }
+
+            count++;
+        }
+
+        boolean contains( final long h1, final long h2 )
+        {
+            for ( int i = 0; i < hashes; i++ )
+            {
+                final long bit = index( h1, h2, i );
+                if ( ( bits[(int) ( bit >>> 6 )] & ( 1L << bit ) ) == 0 )
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private long index( final long h1, final long h2, final int i )
+        {
+            final long h = h1 + i * h2;
+            return ( h & Long.MAX_VALUE ) % bitCount;
+        }
+
+        double getFalsePositiveRate()
+        {
+            return Math.pow( 1 - Math.exp( -(double) hashes * count / bitCount ), hashes );
+        }
+    }
+
+}
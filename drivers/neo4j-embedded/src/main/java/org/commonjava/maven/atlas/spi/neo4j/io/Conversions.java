@@ -23,7 +23,6 @@ import static org.apache.maven.graph.effective.util.RelationshipUtils.UNKNOWN_SO
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -37,6 +36,7 @@ import org.apache.maven.graph.common.DependencyScope;
 import org.apache.maven.graph.common.ref.ArtifactRef;
 import org.apache.maven.graph.common.ref.ProjectRef;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.AbstractProjectRelationship;
 import org.apache.maven.graph.effective.rel.DependencyRelationship;
 import org.apache.maven.graph.effective.rel.ExtensionRelationship;
 import org.apache.maven.graph.effective.rel.ParentRelationship;
@@ -58,6 +58,8 @@ public final class Conversions
 
     public static final String RELATIONSHIP_ID = "relationship_id";
 
+    public static final String ID_CHECK = "_id_check";
+
     public static final String GROUP_ID = "groupId";
 
     public static final String ARTIFACT_ID = "artifactId";
@@ -157,6 +159,15 @@ public final class Conversions
     }
 
     public static void toNodeProperties( final ProjectVersionRef ref, final Node node, final boolean connected )
+    {
+        setProperties( toNodePropertyMap( ref, connected ), node );
+    }
+
+    /**
+     * Same properties {@link #toNodeProperties(ProjectVersionRef, Node, boolean)} sets, for use where there is no
+     * {@link Node} instance to set them on (the batch inserter, for instance).
+     */
+    public static Map<String, Object> toNodePropertyMap( final ProjectVersionRef ref, final boolean connected )
     {
         final String g = ref.getGroupId();
         final String a = ref.getArtifactId();
@@ -167,19 +178,30 @@ public final class Conversions
             throw new IllegalArgumentException( String.format( "GAV cannot contain nulls: %s:%s:%s", g, a, v ) );
         }
 
-        node.setProperty( NODE_TYPE, NodeType.PROJECT.name() );
-        node.setProperty( ARTIFACT_ID, a );
-        node.setProperty( GROUP_ID, g );
-        node.setProperty( VERSION, v );
-        node.setProperty( GAV, ref.toString() );
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put( NODE_TYPE, NodeType.PROJECT.name() );
+        props.put( ARTIFACT_ID, a );
+        props.put( GROUP_ID, g );
+        props.put( VERSION, v );
+        props.put( GAV, ref.toString() );
 
         if ( ref.isVariableVersion() )
         {
             LOGGER.debug( "Marking: %s as variable.", ref );
-            node.setProperty( VARIABLE, true );
+            props.put( VARIABLE, true );
         }
 
-        markConnected( node, connected );
+        props.put( CONNECTED, connected );
+
+        return props;
+    }
+
+    private static void setProperties( final Map<String, Object> props, final PropertyContainer container )
+    {
+        for ( final Map.Entry<String, Object> entry : props.entrySet() )
+        {
+            container.setProperty( entry.getKey(), entry.getValue() );
+        }
     }
 
     public static boolean isAtlasType( final Relationship rel )
@@ -225,68 +247,96 @@ public final class Conversions
                                  .length() < 1;
     }
 
-    @SuppressWarnings( "incomplete-switch" )
     public static void toRelationshipProperties( final ProjectRelationship<?> rel, final Relationship relationship )
     {
-        relationship.setProperty( INDEX, rel.getIndex() );
-        relationship.setProperty( SOURCE_URI, rel.getSource()
-                                                 .toString() );
-        relationship.setProperty( POM_LOCATION_URI, rel.getPomLocation()
-                                                       .toString() );
+        setProperties( toRelationshipPropertyMap( rel, dictionaryFor( relationship ) ), relationship );
+    }
+
+    /**
+     * Same properties {@link #toRelationshipProperties(ProjectRelationship, Relationship)} sets, for use where there
+     * is no {@link Relationship} instance to set them on (the batch inserter, for instance). If a dictionary is given,
+     * URIs, scope, type, classifier and excludes are stored as dictionary codes; otherwise, as strings.
+     */
+    @SuppressWarnings( "incomplete-switch" )
+    public static Map<String, Object> toRelationshipPropertyMap( final ProjectRelationship<?> rel,
+                                                                 final PropertyDictionary dictionary )
+    {
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put( INDEX, rel.getIndex() );
+        props.put( SOURCE_URI, encode( rel.getSource()
+                                          .toString(), dictionary ) );
+        props.put( POM_LOCATION_URI, encode( rel.getPomLocation()
+                                                .toString(), dictionary ) );
 
         switch ( rel.getType() )
         {
             case DEPENDENCY:
             {
                 final DependencyRelationship specificRel = (DependencyRelationship) rel;
-                toRelationshipProperties( (ArtifactRef) rel.getTarget(), relationship );
-                relationship.setProperty( IS_MANAGED, specificRel.isManaged() );
-                relationship.setProperty( SCOPE, specificRel.getScope()
-                                                            .realName() );
+                toRelationshipProperties( (ArtifactRef) rel.getTarget(), props, dictionary );
+                props.put( IS_MANAGED, specificRel.isManaged() );
+                props.put( SCOPE, encode( specificRel.getScope()
+                                                     .realName(), dictionary ) );
 
                 final Set<ProjectRef> excludes = specificRel.getExcludes();
                 if ( excludes != null && !excludes.isEmpty() )
                 {
-                    final StringBuilder sb = new StringBuilder();
-                    for ( final ProjectRef exclude : excludes )
+                    if ( dictionary != null )
                     {
-                        if ( sb.length() > 0 )
+                        final int[] codes = new int[excludes.size()];
+                        int i = 0;
+                        for ( final ProjectRef exclude : excludes )
                         {
-                            sb.append( "," );
+                            codes[i++] = dictionary.encode( exclude.getGroupId() + ":" + exclude.getArtifactId() );
                         }
 
-                        sb.append( exclude.getGroupId() )
-                          .append( ":" )
-                          .append( exclude.getArtifactId() );
+                        props.put( EXCLUDES, codes );
                     }
+                    else
+                    {
+                        final StringBuilder sb = new StringBuilder();
+                        for ( final ProjectRef exclude : excludes )
+                        {
+                            if ( sb.length() > 0 )
+                            {
+                                sb.append( "," );
+                            }
+
+                            sb.append( exclude.getGroupId() )
+                              .append( ":" )
+                              .append( exclude.getArtifactId() );
+                        }
 
-                    relationship.setProperty( EXCLUDES, sb.toString() );
+                        props.put( EXCLUDES, sb.toString() );
+                    }
                 }
 
                 break;
             }
             case PLUGIN_DEP:
             {
-                toRelationshipProperties( (ArtifactRef) rel.getTarget(), relationship );
+                toRelationshipProperties( (ArtifactRef) rel.getTarget(), props, dictionary );
 
                 final PluginDependencyRelationship specificRel = (PluginDependencyRelationship) rel;
 
                 final ProjectRef plugin = specificRel.getPlugin();
-                relationship.setProperty( PLUGIN_ARTIFACT_ID, plugin.getArtifactId() );
-                relationship.setProperty( PLUGIN_GROUP_ID, plugin.getGroupId() );
-                relationship.setProperty( IS_MANAGED, specificRel.isManaged() );
+                props.put( PLUGIN_ARTIFACT_ID, plugin.getArtifactId() );
+                props.put( PLUGIN_GROUP_ID, plugin.getGroupId() );
+                props.put( IS_MANAGED, specificRel.isManaged() );
 
                 break;
             }
             case PLUGIN:
             {
                 final PluginRelationship specificRel = (PluginRelationship) rel;
-                relationship.setProperty( IS_MANAGED, specificRel.isManaged() );
-                relationship.setProperty( IS_REPORTING_PLUGIN, specificRel.isReporting() );
+                props.put( IS_MANAGED, specificRel.isManaged() );
+                props.put( IS_REPORTING_PLUGIN, specificRel.isReporting() );
 
                 break;
             }
         }
+
+        return props;
     }
 
     public static ProjectRelationship<?> toProjectRelationship( final Relationship rel )
@@ -313,60 +363,25 @@ public final class Conversions
             return null;
         }
 
+        final PropertyDictionary dictionary = dictionaryFor( rel );
+
         final ProjectVersionRef from = toProjectVersionRef( rel.getStartNode() );
         final ProjectVersionRef to = toProjectVersionRef( rel.getEndNode() );
         final int index = getIntegerProperty( INDEX, rel );
-        String uri = getStringProperty( SOURCE_URI, rel );
-        URI source;
-        try
-        {
-            source = new URI( uri );
-        }
-        catch ( final URISyntaxException e )
-        {
-            source = UNKNOWN_SOURCE_URI;
-        }
-
-        uri = getStringProperty( POM_LOCATION_URI, rel );
-        URI pomLocation;
-        try
-        {
-            pomLocation = new URI( uri );
-        }
-        catch ( final URISyntaxException e )
-        {
-            pomLocation = POM_ROOT_URI;
-        }
+        final URI source = getDictionaryURI( SOURCE_URI, rel, dictionary, UNKNOWN_SOURCE_URI );
+        final URI pomLocation = getDictionaryURI( POM_LOCATION_URI, rel, dictionary, POM_ROOT_URI );
 
         ProjectRelationship<?> result = null;
         switch ( mapper.atlasType() )
         {
             case DEPENDENCY:
             {
-                final ArtifactRef artifact = toArtifactRef( to, rel );
+                final ArtifactRef artifact = toArtifactRef( to, rel, dictionary );
                 final boolean managed = getBooleanProperty( IS_MANAGED, rel );
-                final String scopeStr = getStringProperty( SCOPE, rel );
+                final String scopeStr = getDictionaryString( SCOPE, rel, dictionary );
                 final DependencyScope scope = DependencyScope.getScope( scopeStr );
 
-                final String excludeStr = getStringProperty( EXCLUDES, rel );
-                final Set<ProjectRef> excludes = new HashSet<ProjectRef>();
-                if ( excludeStr != null )
-                {
-                    final String[] e = excludeStr.split( "\\s*,\\s*" );
-                    for ( final String ex : e )
-                    {
-                        final String[] parts = ex.split( ":" );
-                        if ( parts.length != 2 )
-                        {
-                            LOGGER.error( "In: %s -> %s skipping invalid exclude specification: '%s'", from, artifact,
-                                          ex );
-                        }
-                        else
-                        {
-                            excludes.add( new ProjectRef( parts[0], parts[1] ) );
-                        }
-                    }
-                }
+                final Set<ProjectRef> excludes = getExcludes( rel, dictionary, from, artifact );
 
                 result =
                     new DependencyRelationship( source, pomLocation, from, artifact, scope, index, managed,
@@ -375,7 +390,7 @@ public final class Conversions
             }
             case PLUGIN_DEP:
             {
-                final ArtifactRef artifact = toArtifactRef( to, rel );
+                final ArtifactRef artifact = toArtifactRef( to, rel, dictionary );
                 final String pa = getStringProperty( PLUGIN_ARTIFACT_ID, rel );
                 final String pg = getStringProperty( PLUGIN_GROUP_ID, rel );
                 final boolean managed = getBooleanProperty( IS_MANAGED, rel );
@@ -412,33 +427,216 @@ public final class Conversions
         return result;
     }
 
+    /**
+     * @return The relationship's identity (see {@link AbstractProjectRelationship#getIdentity()}), which keys it in the
+     *         relationship index.
+     */
     public static String id( final ProjectRelationship<?> rel )
+    {
+        return identified( rel ).getIdentity();
+    }
+
+    /**
+     * @return The value stored in {@link #ID_CHECK} for the relationship, to detect identity collisions.
+     */
+    public static long idCheck( final ProjectRelationship<?> rel )
+    {
+        return identified( rel ).getIdentityCheck();
+    }
+
+    /**
+     * @return The index key used for relationships by earlier versions of this driver.
+     */
+    public static String legacyId( final ProjectRelationship<?> rel )
     {
         return DigestUtils.shaHex( rel.toString() );
     }
 
-    private static ArtifactRef toArtifactRef( final ProjectVersionRef ref, final Relationship rel )
+    private static AbstractProjectRelationship<?> identified( final ProjectRelationship<?> rel )
+    {
+        if ( rel instanceof AbstractProjectRelationship )
+        {
+            return (AbstractProjectRelationship<?>) rel;
+        }
+        else if ( rel instanceof RelationshipHandle )
+        {
+            return identified( ( (RelationshipHandle) rel ).materialize() );
+        }
+
+        throw new IllegalArgumentException( "Cannot compute identity of relationship implementation: "
+            + rel.getClass()
+                 .getName() );
+    }
+
+    /**
+     * @return The target artifact of a dependency or plugin-dependency relationship, given its target project.
+     */
+    public static ArtifactRef toArtifactRef( final ProjectVersionRef ref, final Relationship rel )
+    {
+        return toArtifactRef( ref, rel, dictionaryFor( rel ) );
+    }
+
+    private static ArtifactRef toArtifactRef( final ProjectVersionRef ref, final Relationship rel,
+                                              final PropertyDictionary dictionary )
     {
         if ( ref == null )
         {
             return null;
         }
 
-        final String type = getStringProperty( TYPE, rel );
-        final String classifier = getStringProperty( CLASSIFIER, rel );
+        final String type = getDictionaryString( TYPE, rel, dictionary );
+        final String classifier = getDictionaryString( CLASSIFIER, rel, dictionary );
         final boolean optional = getBooleanProperty( OPTIONAL, rel );
 
         return new ArtifactRef( ref, type, classifier, optional );
     }
 
-    private static void toRelationshipProperties( final ArtifactRef target, final Relationship relationship )
+    private static void toRelationshipProperties( final ArtifactRef target, final Map<String, Object> props,
+                                                  final PropertyDictionary dictionary )
     {
-        relationship.setProperty( OPTIONAL, target.isOptional() );
-        relationship.setProperty( TYPE, target.getType() );
+        props.put( OPTIONAL, target.isOptional() );
+        props.put( TYPE, encode( target.getType(), dictionary ) );
         if ( target.getClassifier() != null )
         {
-            relationship.setProperty( CLASSIFIER, target.getClassifier() );
+            props.put( CLASSIFIER, encode( target.getClassifier(), dictionary ) );
+        }
+    }
+
+    private static Object encode( final String value, final PropertyDictionary dictionary )
+    {
+        return dictionary == null ? value : dictionary.encode( value );
+    }
+
+    private static PropertyDictionary dictionaryFor( final PropertyContainer container )
+    {
+        return PropertyDictionary.forGraph( container.getGraphDatabase() );
+    }
+
+    /**
+     * Read a string property that may be stored either as a dictionary code or (in databases written before the
+     * dictionary existed) as the string itself.
+     */
+    private static String getDictionaryString( final String prop, final PropertyContainer container,
+                                               final PropertyDictionary dictionary )
+    {
+        final Object value = container.getProperty( prop, null );
+        if ( value instanceof Integer )
+        {
+            return checkDictionary( prop, dictionary ).decode( (Integer) value );
+        }
+
+        return (String) value;
+    }
+
+    private static URI getDictionaryURI( final String prop, final PropertyContainer container,
+                                         final PropertyDictionary dictionary, final URI defaultValue )
+    {
+        final Object value = container.getProperty( prop, null );
+        try
+        {
+            if ( value instanceof Integer )
+            {
+                final URI uri = checkDictionary( prop, dictionary ).decodeURI( (Integer) value );
+                return uri == null ? defaultValue : uri;
+            }
+            else if ( value != null )
+            {
+                return new URI( (String) value );
+            }
+        }
+        catch ( final URISyntaxException e )
+        {
         }
+
+        return defaultValue;
+    }
+
+    private static PropertyDictionary checkDictionary( final String prop, final PropertyDictionary dictionary )
+    {
+        if ( dictionary == null )
+        {
+            throw new IllegalStateException( "Property: " + prop
+                + " is dictionary-encoded, but no property dictionary is registered for this graph database." );
+        }
+
+        return dictionary;
+    }
+
+    private static Set<ProjectRef> getExcludes( final Relationship rel, final PropertyDictionary dictionary,
+                                                final ProjectVersionRef from, final ArtifactRef artifact )
+    {
+        final Set<ProjectRef> excludes = new HashSet<ProjectRef>();
+
+        final Object value = rel.getProperty( EXCLUDES, null );
+        String[] specs = null;
+        if ( value instanceof int[] )
+        {
+            final int[] codes = (int[]) value;
+            specs = new String[codes.length];
+            for ( int i = 0; i < codes.length; i++ )
+            {
+                specs[i] = checkDictionary( EXCLUDES, dictionary ).decode( codes[i] );
+            }
+        }
+        else if ( value != null )
+        {
+            specs = ( (String) value ).split( "\\s*,\\s*" );
+        }
+
+        if ( specs != null )
+        {
+            for ( final String ex : specs )
+            {
+                final int idx = ex == null ? -1 : ex.indexOf( ':' );
+                if ( idx < 1 || idx != ex.lastIndexOf( ':' ) || idx == ex.length() - 1 )
+                {
+                    LOGGER.error( "In: %s -> %s skipping invalid exclude specification: '%s'", from, artifact, ex );
+                }
+                else
+                {
+                    excludes.add( new ProjectRef( ex.substring( 0, idx ), ex.substring( idx + 1 ) ) );
+                }
+            }
+        }
+
+        return excludes;
+    }
+
+    /**
+     * Rewrite string-valued properties on a relationship written before the property dictionary existed, into
+     * dictionary codes.
+     * 
+     * @return true if anything was rewritten
+     */
+    public static boolean compactRelationshipProperties( final Relationship relationship,
+                                                         final PropertyDictionary dictionary )
+    {
+        boolean changed = false;
+        for ( final String prop : new String[] { SOURCE_URI, POM_LOCATION_URI, SCOPE, TYPE, CLASSIFIER } )
+        {
+            final Object value = relationship.getProperty( prop, null );
+            if ( value instanceof String )
+            {
+                relationship.setProperty( prop, dictionary.encode( (String) value ) );
+                changed = true;
+            }
+        }
+
+        final Object excludes = relationship.getProperty( EXCLUDES, null );
+        if ( excludes instanceof String )
+        {
+            final String[] specs = ( (String) excludes ).split( "\\s*,\\s*" );
+            final int[] codes = new int[specs.length];
+            for ( int i = 0; i < specs.length; i++ )
+            {
+                codes[i] = dictionary.encode( specs[i] );
+            }
+
+            relationship.setProperty( EXCLUDES, codes );
+            changed = true;
+        }
+
+        return changed;
     }
 
     public static String getStringProperty( final String prop, final PropertyContainer container )
@@ -593,6 +791,53 @@ public final class Conversions
         relationship.setProperty( CYCLES_INJECTED, arry );
     }
 
+    /**
+     * Same as {@link #markCycleInjection(Relationship, Set)}, for a cycle given as the ids of its relationships.
+     */
+    public static void markCycleInjection( final Relationship relationship, final long[] cycle )
+    {
+        relationship.setProperty( CYCLE_INJECTION, true );
+
+        final Set<Long> given = new LinkedHashSet<Long>( cycle.length + 1 );
+        for ( final long id : cycle )
+        {
+            given.add( id );
+        }
+        given.add( relationship.getId() );
+
+        final List<Long> collapsed = new ArrayList<Long>();
+        final Set<Set<Long>> existing = getInjectedCycles( relationship );
+        for ( final Set<Long> c : existing )
+        {
+            if ( !collapsed.isEmpty() )
+            {
+                collapsed.add( -1L );
+            }
+
+            collapsed.addAll( c );
+        }
+
+        if ( !existing.contains( given ) )
+        {
+            if ( !collapsed.isEmpty() )
+            {
+                collapsed.add( -1L );
+            }
+
+            collapsed.addAll( given );
+        }
+
+        final long[] arry = new long[collapsed.size()];
+        int i = 0;
+        for ( final Long l : collapsed )
+        {
+            arry[i] = l;
+            i++;
+        }
+
+        relationship.setProperty( CYCLES_INJECTED, arry );
+    }
+
     public static Set<Set<Long>> getInjectedCycles( final Relationship relationship )
     {
         final Set<Set<Long>> cycles = new HashSet<Set<Long>>();
@@ -685,12 +930,15 @@ public final class Conversions
         //        LOGGER.info( "Relationship: %s\nValue of property: %s is: %s", relationship, property,
         //                     relationship.getProperty( property ) );
 
-        Arrays.sort( ids );
-        for ( final long target : targets )
+        // these listings hold a few root ids at most; scan rather than sorting on every check.
+        for ( final long id : ids )
         {
-            if ( Arrays.binarySearch( ids, target ) > -1 )
+            for ( final long target : targets )
             {
-                return true;
+                if ( id == target )
+                {
+                    return true;
+                }
             }
         }
 
@@ -709,12 +957,14 @@ public final class Conversions
         //        LOGGER.info( "Relationship: %s\nValue of property: %s is: %s", relationship, property,
         //                     relationship.getProperty( property ) );
 
-        Arrays.sort( ids );
-        for ( final Node target : targets )
+        for ( final long id : ids )
         {
-            if ( Arrays.binarySearch( ids, target.getId() ) > -1 )
+            for ( final Node target : targets )
             {
-                return true;
+                if ( id == target.getId() )
+                {
+                    return true;
+                }
             }
         }
 
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.io;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * Typed views of Cypher result columns. Each row is converted to its Atlas type only when the returned iterator reaches
+ * it, so large results can be streamed (or abandoned part way) without materializing them.
+ */
+public final class CypherResults
+{
+
+    private static final Projector<Node, ProjectVersionRef> NODE_PROJECTOR = new Projector<Node, ProjectVersionRef>()
+    {
+        public ProjectVersionRef project( final Node item )
+        {
+            return item == null ? null : Conversions.toProjectVersionRef( item );
+        }
+    };
+
+    private static final Projector<Relationship, ProjectRelationship<?>> RELATIONSHIP_PROJECTOR =
+        new Projector<Relationship, ProjectRelationship<?>>()
+        {
+            public ProjectRelationship<?> project( final Relationship item )
+            {
+                return item == null ? null : Conversions.toProjectRelationship( item );
+            }
+        };
+
+    private static final Projector<Path, List<ProjectRelationship<?>>> PATH_PROJECTOR =
+        new Projector<Path, List<ProjectRelationship<?>>>()
+        {
+            public List<ProjectRelationship<?>> project( final Path item )
+            {
+                return item == null ? null : Conversions.convertToRelationships( item.relationships() );
+            }
+        };
+
+    private CypherResults()
+    {
+    }
+
+    /**
+     * Projects in a column of {@link Node}s.
+     */
+    public static ProjectingIterator<Node, ProjectVersionRef> projects( final ExecutionResult result,
+                                                                        final String column )
+    {
+        final Iterator<Node> it = result.columnAs( column );
+        return new ProjectingIterator<Node, ProjectVersionRef>( it, NODE_PROJECTOR );
+    }
+
+    /**
+     * Relationships in a column of {@link Relationship}s.
+     */
+    public static ProjectingIterator<Relationship, ProjectRelationship<?>> relationships( final ExecutionResult result,
+                                                                                         final String column )
+    {
+        final Iterator<Relationship> it = result.columnAs( column );
+        return new ProjectingIterator<Relationship, ProjectRelationship<?>>( it, RELATIONSHIP_PROJECTOR );
+    }
+
+    /**
+     * Relationship lists in a column of {@link Path}s, in path order.
+     */
+    public static ProjectingIterator<Path, List<ProjectRelationship<?>>> paths( final ExecutionResult result,
+                                                                               final String column )
+    {
+        final Iterator<Path> it = result.columnAs( column );
+        return new ProjectingIterator<Path, List<ProjectRelationship<?>>>( it, PATH_PROJECTOR );
+    }
+
+}
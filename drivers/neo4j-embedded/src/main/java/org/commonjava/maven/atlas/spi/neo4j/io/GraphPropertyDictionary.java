@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.io;
+
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.NODE_TYPE;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.commonjava.maven.atlas.spi.neo4j.effective.NodeType;
+import org.commonjava.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+
+/**
+ * {@link PropertyDictionary} stored as properties of dictionary nodes in a live graph database. New entries are
+ * committed in batches from a separate thread, in their own transaction, so rolling back the caller's transaction
+ * can't leave codes in memory that have no stored entry. A batch is started as soon as an entry is added, and
+ * {@link #flush()} waits for whatever is still outstanding.
+ */
+public final class GraphPropertyDictionary
+    extends PropertyDictionary
+{
+
+    public static final String DICTIONARY_IDX = "property_dictionary";
+
+    private final Logger logger = new Logger( getClass() );
+
+    private final GraphDatabaseService graph;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor( new ThreadFactory()
+    {
+        public Thread newThread( final Runnable r )
+        {
+            final Thread t = new Thread( r, "atlas-neo4j-dictionary" );
+            t.setDaemon( true );
+            return t;
+        }
+    } );
+
+    private final Runnable persistTask = new Runnable()
+    {
+        public void run()
+        {
+            scheduled.set( false );
+            persistPending();
+        }
+    };
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // chunk number to node id; only used from the writer thread.
+    private final Map<Integer, Long> chunks = new HashMap<Integer, Long>();
+
+    private final boolean readOnly;
+
+    public GraphPropertyDictionary( final GraphDatabaseService graph )
+    {
+        this( graph, false );
+    }
+
+    /**
+     * @param readOnly If true, stored entries are loaded but new ones can't be added.
+     */
+    public GraphPropertyDictionary( final GraphDatabaseService graph, final boolean readOnly )
+    {
+        this.graph = graph;
+        this.readOnly = readOnly;
+
+        final IndexHits<Node> hits = graph.index()
+                                          .forNodes( DICTIONARY_IDX )
+                                          .get( NODE_TYPE, NodeType.DICTIONARY.name() );
+        try
+        {
+            for ( final Node node : hits )
+            {
+                if ( node.hasProperty( CHUNK ) )
+                {
+                    chunks.put( (Integer) node.getProperty( CHUNK ), node.getId() );
+                }
+
+                for ( final String key : node.getPropertyKeys() )
+                {
+                    if ( key.startsWith( ENTRY_PREFIX ) )
+                    {
+                        load( Integer.parseInt( key.substring( ENTRY_PREFIX.length() ) ),
+                              (String) node.getProperty( key ) );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            hits.close();
+        }
+
+        logger.info( "Loaded %d property-dictionary entries from %d dictionary nodes.", size(), chunks.size() );
+    }
+
+    @Override
+    protected boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+    @Override
+    protected void entryAdded()
+    {
+        if ( scheduled.compareAndSet( false, true ) )
+        {
+            writer.submit( persistTask );
+        }
+    }
+
+    /**
+     * Wait until every entry handed out so far has been committed. Runs on the writer thread, behind any batch already
+     * in progress.
+     */
+    @Override
+    public void flush()
+    {
+        if ( readOnly )
+        {
+            return;
+        }
+
+        try
+        {
+            writer.submit( new Runnable()
+            {
+                public void run()
+                {
+                    persistPending();
+                }
+            } )
+                  .get();
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IllegalStateException( "Interrupted while storing property-dictionary entries.", e );
+        }
+        catch ( final ExecutionException e )
+        {
+            throw new IllegalStateException( "Failed to store property-dictionary entries: " + e.getCause()
+                                                                                               .getMessage(),
+                                             e.getCause() );
+        }
+    }
+
+    @Override
+    protected void persist( final SortedMap<Integer, String> entries )
+    {
+        final Map<Integer, Long> created = new HashMap<Integer, Long>();
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            final Index<Node> idx = graph.index()
+                                         .forNodes( DICTIONARY_IDX );
+
+            Node node = null;
+            int chunk = -1;
+            for ( final Map.Entry<Integer, String> entry : entries.entrySet() )
+            {
+                final int code = entry.getKey();
+                if ( node == null || chunkOf( code ) != chunk )
+                {
+                    chunk = chunkOf( code );
+                    node = chunkNode( idx, chunk, created );
+                }
+
+                node.setProperty( ENTRY_PREFIX + code, entry.getValue() );
+            }
+
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+
+        // chunk nodes are only remembered once the transaction creating them has committed.
+        chunks.putAll( created );
+
+        logger.debug( "Stored %d property-dictionary entries.", entries.size() );
+    }
+
+    private Node chunkNode( final Index<Node> idx, final int chunk, final Map<Integer, Long> created )
+    {
+        Long id = chunks.get( chunk );
+        if ( id == null )
+        {
+            id = created.get( chunk );
+        }
+
+        if ( id != null )
+        {
+            return graph.getNodeById( id );
+        }
+
+        final Node node = graph.createNode();
+        node.setProperty( NODE_TYPE, NodeType.DICTIONARY.name() );
+        node.setProperty( CHUNK, chunk );
+        idx.add( node, NODE_TYPE, NodeType.DICTIONARY.name() );
+        created.put( chunk, node.getId() );
+
+        return node;
+    }
+
+    public void close()
+    {
+        if ( !readOnly )
+        {
+            try
+            {
+                flush();
+            }
+            catch ( final RuntimeException e )
+            {
+                logger.error( "Failed to store %d property-dictionary entries: %s", e, pendingSize(), e.getMessage() );
+            }
+        }
+
+        writer.shutdown();
+    }
+
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.io;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.util.CloseableIterator;
+import org.commonjava.maven.atlas.spi.neo4j.effective.NodeType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+
+/**
+ * Streaming counterpart of {@link Conversions#convertToProjects(Iterable)}: converts project nodes to refs as they're
+ * consumed, skipping any other nodes.
+ */
+public final class ProjectIterator
+    implements CloseableIterator<ProjectVersionRef>
+{
+
+    private Iterator<Node> nodes;
+
+    private GraphDatabaseService graph;
+
+    private long[] ids;
+
+    private int idx;
+
+    private Node next;
+
+    public ProjectIterator( final Iterator<Node> nodes )
+    {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Look nodes up by id as they're consumed; ids of nodes deleted meanwhile are skipped.
+     */
+    public ProjectIterator( final GraphDatabaseService graph, final long[] ids )
+    {
+        this.graph = graph;
+        this.ids = ids;
+    }
+
+    public boolean hasNext()
+    {
+        while ( next == null )
+        {
+            final Node node = nextNode();
+            if ( node == null )
+            {
+                return false;
+            }
+
+            if ( node.getId() != 0 && Conversions.isType( node, NodeType.PROJECT ) )
+            {
+                next = node;
+            }
+        }
+
+        return true;
+    }
+
+    private Node nextNode()
+    {
+        if ( nodes != null )
+        {
+            return nodes.hasNext() ? nodes.next() : null;
+        }
+
+        while ( ids != null && idx < ids.length )
+        {
+            try
+            {
+                return graph.getNodeById( ids[idx++] );
+            }
+            catch ( final NotFoundException e )
+            {
+                // deleted meanwhile.
+            }
+        }
+
+        return null;
+    }
+
+    public ProjectVersionRef next()
+    {
+        if ( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+
+        final Node node = next;
+        next = null;
+
+        return Conversions.toProjectVersionRef( node );
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException( "Read-only iterator." );
+    }
+
+    public void close()
+    {
+        nodes = null;
+        ids = null;
+        next = null;
+    }
+
+}
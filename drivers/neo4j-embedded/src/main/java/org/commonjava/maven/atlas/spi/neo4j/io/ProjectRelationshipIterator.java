@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.io;
+
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.util.CloseableIterator;
+
+/**
+ * Decodes the relationships selected by a {@link RelationshipHandleIterator} one at a time, as they're consumed. Each
+ * is decoded straight from the relationship the iterator yields, which may be an in-memory stand-in for a selected
+ * version rather than a stored relationship, so no handle is involved.
+ */
+public final class ProjectRelationshipIterator
+    implements CloseableIterator<ProjectRelationship<?>>
+{
+
+    private RelationshipHandleIterator handles;
+
+    public ProjectRelationshipIterator( final RelationshipHandleIterator handles )
+    {
+        this.handles = handles;
+    }
+
+    public boolean hasNext()
+    {
+        return handles != null && handles.hasNext();
+    }
+
+    public ProjectRelationship<?> next()
+    {
+        if ( handles == null )
+        {
+            throw new IllegalStateException( "Iterator has been closed." );
+        }
+
+        return Conversions.toProjectRelationship( handles.nextRelationship() );
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException( "Read-only iterator." );
+    }
+
+    public void close()
+    {
+        handles = null;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.io;
+
+import java.util.Iterator;
+
+/**
+ * Iterator that applies a {@link Projector} to each element of another iterator as it's consumed, rather than
+ * converting the whole source up front.
+ */
+public final class ProjectingIterator<T, P>
+    implements Iterator<P>, Iterable<P>
+{
+
+    private final Iterator<T> src;
+
+    private final Projector<T, P> projector;
+
+    public ProjectingIterator( final Iterator<T> src, final Projector<T, P> projector )
+    {
+        this.src = src;
+        this.projector = projector;
+    }
+
+    public boolean hasNext()
+    {
+        return src.hasNext();
+    }
+
+    public P next()
+    {
+        return projector.project( src.next() );
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException( "Read-only iterator." );
+    }
+
+    /**
+     * Single-use; returns this iterator.
+     */
+    public Iterator<P> iterator()
+    {
+        return this;
+    }
+
+}
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.io;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+
+/**
+ * Dictionary of the strings repeated across many relationships (source and POM-location URIs, scopes, types,
+ * classifiers, excluded projects), so each relationship can store a small int code instead of the string itself. Codes
+ * are assigned in order and never reused.
+ * <p/>
+ * New codes are handed out immediately and persisted in batches (see {@link #persist(SortedMap)}); writers call
+ * {@link #flush()} before committing anything that stores a code, so a stored code always resolves. Entries are
+ * spread over dictionary nodes of {@link #CHUNK_SIZE} entries each, so no single node grows with the number of
+ * distinct URIs. Lookups don't lock.
+ * <p/>
+ * {@link Conversions} finds the dictionary for a given relationship through the database it belongs to, so drivers
+ * {@link #register(GraphDatabaseService, PropertyDictionary)} their dictionary when they open a database.
+ */
+public abstract class PropertyDictionary
+{
+
+    /**
+     * Prefix for the properties holding dictionary entries on a dictionary node, followed by the entry's code.
+     */
+    public static final String ENTRY_PREFIX = "_dict_";
+
+    /**
+     * Property (and index key) holding the chunk number of a dictionary node. Nodes written before entries were
+     * chunked don't have it, and can hold any number of entries.
+     */
+    public static final String CHUNK = "_dictionary_chunk";
+
+    /**
+     * Entries per dictionary node.
+     */
+    public static final int CHUNK_SIZE = 512;
+
+    private static final Map<GraphDatabaseService, PropertyDictionary> DICTIONARIES =
+        new ConcurrentHashMap<GraphDatabaseService, PropertyDictionary>();
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<String, Integer>();
+
+    private final Map<Integer, URI> uris = new ConcurrentHashMap<Integer, URI>();
+
+    // written under this monitor only; size is published after the entry, so readers can go without the lock.
+    private volatile String[] values = new String[64];
+
+    private volatile int size;
+
+    private SortedMap<Integer, String> pending = new TreeMap<Integer, String>();
+
+    public static void register( final GraphDatabaseService graph, final PropertyDictionary dictionary )
+    {
+        DICTIONARIES.put( graph, dictionary );
+    }
+
+    public static void unregister( final GraphDatabaseService graph )
+    {
+        DICTIONARIES.remove( graph );
+    }
+
+    /**
+     * @return The dictionary registered for the given database, or null if it doesn't use one.
+     */
+    public static PropertyDictionary forGraph( final GraphDatabaseService graph )
+    {
+        return graph == null ? null : DICTIONARIES.get( graph );
+    }
+
+    /**
+     * @return The dictionary node chunk holding the entry with the given code.
+     */
+    public static int chunkOf( final int code )
+    {
+        return code / CHUNK_SIZE;
+    }
+
+    /**
+     * Store the given entries durably, in ascending order of code, independent of whatever transaction the callers of
+     * {@link #encode(String)} may have open.
+     */
+    protected abstract void persist( SortedMap<Integer, String> entries );
+
+    /**
+     * @return true if no entries can be added.
+     */
+    protected boolean isReadOnly()
+    {
+        return false;
+    }
+
+    /**
+     * Called after a new entry has been added to the pending batch. Subclasses may start persisting it early, so
+     * {@link #flush()} has less to wait for.
+     */
+    protected void entryAdded()
+    {
+    }
+
+    /**
+     * Make every code handed out so far durable. Subclasses that persist from another thread override this to run
+     * {@link #persistPending()} there, and wait for it.
+     */
+    public void flush()
+    {
+        persistPending();
+    }
+
+    /**
+     * Persist the entries added since the last call, in one batch. If that fails, they're kept for the next try.
+     */
+    protected final void persistPending()
+    {
+        final SortedMap<Integer, String> batch;
+        synchronized ( this )
+        {
+            if ( pending.isEmpty() )
+            {
+                return;
+            }
+
+            batch = pending;
+            pending = new TreeMap<Integer, String>();
+        }
+
+        try
+        {
+            persist( batch );
+        }
+        catch ( final RuntimeException e )
+        {
+            synchronized ( this )
+            {
+                pending.putAll( batch );
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Add a stored entry, while loading the dictionary.
+     */
+    protected final synchronized void load( final int code, final String value )
+    {
+        set( code, value );
+    }
+
+    public final int encode( final String value )
+    {
+        final Integer code = codes.get( value );
+        if ( code != null )
+        {
+            return code;
+        }
+
+        if ( isReadOnly() )
+        {
+            throw new IllegalStateException( "Cannot add property-dictionary entry: " + value
+                + ". Graph database is read-only." );
+        }
+
+        final int added;
+        synchronized ( this )
+        {
+            final Integer existing = codes.get( value );
+            if ( existing != null )
+            {
+                return existing;
+            }
+
+            added = size;
+            set( added, value );
+            pending.put( added, value );
+        }
+
+        entryAdded();
+
+        return added;
+    }
+
+    private void set( final int code, final String value )
+    {
+        String[] v = values;
+        if ( code >= v.length )
+        {
+            final String[] grown = new String[Math.max( code + 1, v.length * 2 )];
+            System.arraycopy( v, 0, grown, 0, v.length );
+            v = grown;
+            values = v;
+        }
+
+        v[code] = value;
+        codes.put( value, code );
+
+        if ( code >= size )
+        {
+            size = code + 1;
+        }
+    }
+
+    public final String decode( final int code )
+    {
+        // read size first: the array that goes with it is at least as new.
+        final int n = size;
+        return code < 0 || code >= n ? null : values[code];
+    }
+
+    /**
+     * Same as {@link #decode(int)}, parsed as a URI (and cached that way).
+     */
+    public final URI decodeURI( final int code )
+        throws URISyntaxException
+    {
+        URI uri = uris.get( code );
+        if ( uri == null )
+        {
+            final String value = decode( code );
+            if ( value == null )
+            {
+                return null;
+            }
+
+            uri = new URI( value );
+            uris.put( code, uri );
+        }
+
+        return uri;
+    }
+
+    public final int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The number of entries handed out but not yet persisted.
+     */
+    public final synchronized int pendingSize()
+    {
+        return pending.size();
+    }
+
+}
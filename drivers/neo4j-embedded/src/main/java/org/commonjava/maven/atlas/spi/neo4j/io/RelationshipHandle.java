@@ -0,0 +1,304 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.io;
+
+import java.io.ObjectStreamException;
+import java.net.URI;
+
+import org.apache.maven.graph.common.RelationshipType;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.common.version.SingleVersion;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.spi.neo4j.effective.GraphRelType;
+import org.commonjava.maven.atlas.spi.neo4j.effective.traverse.SelectedRelationship;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * {@link ProjectRelationship} backed by a stored relationship, holding only its id and its end node id (plus its type,
+ * which comes with the relationship record). The declaring project is read from the start node on first use, and the
+ * target from the end node (with the artifact details, for dependencies); everything else is decoded from the store
+ * the first time it's needed, by {@link #materialize()}. Handles are only usable while the database is open, and are
+ * read-only.
+ * <p/>
+ * A handle may also stand for a {@link SelectedRelationship}: it then holds the id of the stored (variable)
+ * relationship, and the id of the selected node as its end.
+ * <p/>
+ * Handles are equal to each other (and to the equivalent {@link ProjectRelationship} implementation) by their decoded
+ * value, but the plain implementations don't consider themselves equal to a handle; {@link #materialize()} before
+ * mixing the two in a collection.
+ */
+public final class RelationshipHandle
+    implements ProjectRelationship<ProjectVersionRef>
+{
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient GraphDatabaseService graph;
+
+    private final long id;
+
+    private final long targetId;
+
+    private final boolean selected;
+
+    private final GraphRelType type;
+
+    private transient ProjectVersionRef declaring;
+
+    private transient ProjectVersionRef target;
+
+    private transient ProjectRelationship<?> relationship;
+
+    /**
+     * @param relationship A stored relationship, or a {@link SelectedRelationship} standing in for one.
+     */
+    public RelationshipHandle( final Relationship relationship )
+    {
+        this.graph = relationship.getGraphDatabase();
+        this.selected = relationship instanceof SelectedRelationship;
+        this.id = selected ? ( (SelectedRelationship) relationship ).getVariableRelationship()
+                                                                     .getId() : relationship.getId();
+        this.targetId = relationship.getEndNode()
+                                    .getId();
+
+        if ( id < 0 )
+        {
+            throw new IllegalArgumentException( "Not a stored relationship: " + relationship );
+        }
+
+        this.type = GraphRelType.valueOf( relationship.getType()
+                                                      .name() );
+
+        if ( !type.isAtlasRelationship() )
+        {
+            throw new IllegalArgumentException( "Not a project relationship: " + relationship );
+        }
+    }
+
+    /**
+     * @return The id of the stored relationship; for a selected version, the one to the variable version.
+     */
+    public long getRelationshipId()
+    {
+        return id;
+    }
+
+    /**
+     * @return true if this stands for a relationship redirected to a selected version.
+     */
+    public boolean isSelected()
+    {
+        return selected;
+    }
+
+    public boolean isMaterialized()
+    {
+        return relationship != null;
+    }
+
+    /**
+     * @return The full relationship, decoded from the store (once).
+     */
+    public synchronized ProjectRelationship<?> materialize()
+    {
+        if ( relationship == null )
+        {
+            relationship = Conversions.toProjectRelationship( relationship() );
+            if ( relationship == null )
+            {
+                throw new IllegalStateException( "Relationship " + id + " is not a project relationship." );
+            }
+        }
+
+        return relationship;
+    }
+
+    public RelationshipType getType()
+    {
+        return type.atlasType();
+    }
+
+    public boolean isManaged()
+    {
+        return type.isManaged();
+    }
+
+    public synchronized ProjectVersionRef getDeclaring()
+    {
+        if ( relationship != null )
+        {
+            return relationship.getDeclaring();
+        }
+
+        if ( declaring == null )
+        {
+            declaring = Conversions.toProjectVersionRef( graph.getRelationshipById( id )
+                                                              .getStartNode() );
+        }
+
+        return declaring;
+    }
+
+    private Relationship relationship()
+    {
+        final Relationship stored = graph.getRelationshipById( id );
+        return selected ? new SelectedRelationship( stored, graph.getNodeById( targetId ) ) : stored;
+    }
+
+    /**
+     * Decoded from the end node, plus (for dependencies) the artifact details on the relationship; same as
+     * {@link #materialize()}.getTarget().
+     */
+    public synchronized ProjectVersionRef getTarget()
+    {
+        if ( relationship != null )
+        {
+            return relationship.getTarget();
+        }
+
+        if ( target == null )
+        {
+            final ProjectVersionRef ref = Conversions.toProjectVersionRef( graph.getNodeById( targetId ) );
+            switch ( type.atlasType() )
+            {
+                case DEPENDENCY:
+                case PLUGIN_DEP:
+                {
+                    target = Conversions.toArtifactRef( ref, graph.getRelationshipById( id ) );
+                    break;
+                }
+                default:
+                {
+                    target = ref;
+                }
+            }
+        }
+
+        return target;
+    }
+
+    /**
+     * Same as {@link #materialize()}.getTargetArtifact(), without decoding the rest of the relationship.
+     */
+    public ArtifactRef getTargetArtifact()
+    {
+        final ProjectVersionRef ref = getTarget();
+        switch ( type.atlasType() )
+        {
+            case DEPENDENCY:
+            case PLUGIN_DEP:
+            {
+                return (ArtifactRef) ref;
+            }
+            case PARENT:
+            {
+                return new ArtifactRef( ref, "pom", null, false );
+            }
+            case PLUGIN:
+            {
+                return new ArtifactRef( ref, "maven-plugin", null, false );
+            }
+            default:
+            {
+                return new ArtifactRef( ref, null, null, false );
+            }
+        }
+    }
+
+    public int getIndex()
+    {
+        return materialize().getIndex();
+    }
+
+    public URI getSource()
+    {
+        return materialize().getSource();
+    }
+
+    public URI getPomLocation()
+    {
+        return materialize().getPomLocation();
+    }
+
+    public void setSource( final URI source )
+    {
+        throw new UnsupportedOperationException( "Relationship handles are read-only. Materialize first." );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public ProjectRelationship<ProjectVersionRef> cloneFor( final ProjectVersionRef projectRef )
+    {
+        return (ProjectRelationship<ProjectVersionRef>) materialize().cloneFor( projectRef );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public ProjectRelationship<ProjectVersionRef> selectDeclaring( final SingleVersion version )
+    {
+        return (ProjectRelationship<ProjectVersionRef>) materialize().selectDeclaring( version );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public ProjectRelationship<ProjectVersionRef> selectTarget( final SingleVersion version )
+    {
+        return (ProjectRelationship<ProjectVersionRef>) materialize().selectTarget( version );
+    }
+
+    /**
+     * Handles don't survive the database; serialize the decoded relationship instead.
+     */
+    private Object writeReplace()
+        throws ObjectStreamException
+    {
+        return materialize();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return materialize().hashCode();
+    }
+
+    @Override
+    public boolean equals( final Object obj )
+    {
+        if ( this == obj )
+        {
+            return true;
+        }
+        if ( obj instanceof RelationshipHandle )
+        {
+            final RelationshipHandle other = (RelationshipHandle) obj;
+            if ( id == other.id && targetId == other.targetId && graph == other.graph )
+            {
+                return true;
+            }
+
+            return materialize().equals( other.materialize() );
+        }
+
+        return obj instanceof ProjectRelationship && materialize().equals( obj );
+    }
+
+    @Override
+    public String toString()
+    {
+        return materialize().toString();
+    }
+
+}
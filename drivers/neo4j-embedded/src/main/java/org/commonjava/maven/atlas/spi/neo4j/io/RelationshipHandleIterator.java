@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.io;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.maven.graph.common.RelationshipType;
+import org.commonjava.maven.atlas.spi.neo4j.effective.GraphRelType;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * Wraps stored relationships in {@link RelationshipHandle}s as they're consumed, skipping the ones that aren't project
+ * relationships (cycle markers, for instance) and, optionally, self-referential parent relationships and those not of
+ * a given set of types. All of this is decided from the stored relationship type, without decoding properties.
+ */
+public final class RelationshipHandleIterator
+    implements Iterator<RelationshipHandle>, Iterable<RelationshipHandle>
+{
+
+    private final Iterator<Relationship> src;
+
+    private final boolean skipSelfParents;
+
+    private final Set<RelationshipType> types;
+
+    private Relationship next;
+
+    public RelationshipHandleIterator( final Iterator<Relationship> src, final boolean skipSelfParents )
+    {
+        this( src, skipSelfParents, null );
+    }
+
+    /**
+     * @param types Relationship types to return, or null for all of them.
+     */
+    public RelationshipHandleIterator( final Iterator<Relationship> src, final boolean skipSelfParents,
+                                       final Set<RelationshipType> types )
+    {
+        this.src = src;
+        this.skipSelfParents = skipSelfParents;
+        this.types = types;
+    }
+
+    public RelationshipHandleIterator( final Iterable<Relationship> src, final boolean skipSelfParents )
+    {
+        this( src.iterator(), skipSelfParents );
+    }
+
+    public boolean hasNext()
+    {
+        while ( next == null && src.hasNext() )
+        {
+            final Relationship r = src.next();
+            final GraphRelType type = GraphRelType.valueOf( r.getType()
+                                                             .name() );
+
+            if ( type.isAtlasRelationship() && ( types == null || types.contains( type.atlasType() ) )
+                && !( skipSelfParents && type == GraphRelType.PARENT && r.getStartNode()
+                                                      .getId() == r.getEndNode()
+                                                                   .getId() ) )
+            {
+                next = r;
+            }
+        }
+
+        return next != null;
+    }
+
+    public RelationshipHandle next()
+    {
+        return new RelationshipHandle( nextRelationship() );
+    }
+
+    /**
+     * Same as {@link #next()}, without the handle: the stored relationship, or the in-memory stand-in for it if a
+     * version has been selected for its target.
+     */
+    public Relationship nextRelationship()
+    {
+        if ( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+
+        final Relationship r = next;
+        next = null;
+
+        return r;
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException( "Read-only iterator." );
+    }
+
+    /**
+     * Single-use; returns this iterator.
+     */
+    public Iterator<RelationshipHandle> iterator()
+    {
+        return this;
+    }
+
+}
@@ -1,8 +1,13 @@
 package org.commonjava.maven.atlas.spi.neo4j;
 
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Level;
 import org.apache.maven.graph.common.ref.ArtifactRef;
@@ -13,7 +18,9 @@ import org.apache.maven.graph.effective.EProjectGraph;
 import org.apache.maven.graph.effective.ref.EProjectKey;
 import org.apache.maven.graph.effective.rel.DependencyRelationship;
 import org.commonjava.maven.atlas.spi.neo4j.effective.AbstractNeo4JEGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.effective.util.QueryTiming;
 import org.commonjava.maven.atlas.spi.neo4j.fixture.FileDriverFixture;
+import org.commonjava.maven.atlas.spi.neo4j.io.CypherResults;
 import org.commonjava.util.logging.Log4jUtil;
 import org.junit.BeforeClass;
 import org.junit.Rule;
@@ -130,4 +137,54 @@ public class CypherQueriesTest
         }
     }
 
+    @Test
+    public void parameterizedRootsShareQueryAndStreamTypedResults()
+        throws Exception
+    {
+        final ProjectVersionRef project = new ProjectVersionRef( "org.my", "project", "1.0" );
+        final ProjectVersionRef dep = new ProjectVersionRef( "org.other", "dep", "1.0" );
+        final ProjectVersionRef dep2 = new ProjectVersionRef( "org.other", "dep2", "1.0" );
+
+        final URI source = sourceURI();
+
+        /* @formatter:off */
+        final EProjectGraph graph =
+            new EProjectGraph.Builder( new EProjectKey( source, project ), fixture.newDriverInstance() )
+                .withDependencies( 
+                    new DependencyRelationship( source, project, new ArtifactRef( dep, null, null, false ), null, 0, false ),
+                    new DependencyRelationship( source, dep,  new ArtifactRef( dep2,  null, null, false ), null, 0, false )
+                )
+            .build();
+        /* @formatter:on */
+
+        final AbstractNeo4JEGraphDriver driver = (AbstractNeo4JEGraphDriver) graph.getDriver();
+        final String cypher = "MATCH (n)-[:C_DEPENDENCY]->(m) RETURN m as target";
+
+        final Set<ProjectVersionRef> targets = new HashSet<ProjectVersionRef>();
+        for ( final ProjectVersionRef ref : new ProjectVersionRef[] { project, dep } )
+        {
+            for ( final ProjectVersionRef target : CypherResults.projects( driver.executeFrom( cypher, ref ), "target" ) )
+            {
+                targets.add( target );
+            }
+        }
+
+        assertThat( targets.size(), equalTo( 2 ) );
+        assertThat( targets.contains( dep ), equalTo( true ) );
+        assertThat( targets.contains( dep2 ), equalTo( true ) );
+
+        int runs = 0;
+        for ( final QueryTiming timing : driver.getQueryTimings() )
+        {
+            if ( timing.getQuery()
+                       .endsWith( cypher ) )
+            {
+                runs += timing.getCount();
+            }
+        }
+
+        // both roots ran the same (parameterized) query text.
+        assertThat( runs, equalTo( 2 ) );
+    }
+
 }
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Set;
+
+import org.apache.log4j.Level;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectCycle;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.spi.GraphDriverException;
+import org.apache.maven.graph.spi.effective.EGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JBatchLoader;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JEGraphDriver;
+import org.commonjava.util.logging.Log4jUtil;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileBatchLoaderTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void logging()
+    {
+        Log4jUtil.configure( Level.DEBUG );
+    }
+
+    @Test
+    public void bulkLoadThenOpenWithDriver()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+
+        final ProjectVersionRef project = new ProjectVersionRef( "org.my", "project", "1.0" );
+        final ProjectVersionRef dep = new ProjectVersionRef( "org.other", "dep", "1.0" );
+        final ProjectVersionRef dep2 = new ProjectVersionRef( "org.other", "dep2", "1.0" );
+        final ProjectVersionRef dep3 = new ProjectVersionRef( "org.other", "dep3", "1.0-SNAPSHOT" );
+
+        final File dbDir = folder.newFolder( "db" );
+
+        final FileNeo4JBatchLoader loader = FileNeo4JEGraphDriver.newBatchLoader( dbDir );
+        /* @formatter:off */
+        final int added = loader.addRelationships(
+            new DependencyRelationship( source, project, new ArtifactRef( dep, null, null, false ), null, 0, false ),
+            new DependencyRelationship( source, dep, new ArtifactRef( dep2, null, null, false ), null, 0, false ),
+            new DependencyRelationship( source, dep2, new ArtifactRef( project, null, null, false ), null, 0, false ),
+            new DependencyRelationship( source, dep2, new ArtifactRef( dep3, null, null, false ), null, 1, false ),
+            new DependencyRelationship( source, project, new ArtifactRef( dep, null, null, false ), null, 0, false )
+        );
+        /* @formatter:on */
+        loader.close();
+
+        assertThat( added, equalTo( 4 ) );
+        assertThat( loader.getCycleInjectionCount(), equalTo( 1 ) );
+
+        final FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+        try
+        {
+            assertThat( driver.getAllRelationships()
+                              .size(), equalTo( 4 ) );
+
+            final Set<EProjectCycle> cycles = driver.getCycles();
+            assertThat( cycles.size(), equalTo( 1 ) );
+
+            final EProjectCycle cycle = cycles.iterator()
+                                              .next();
+            assertThat( cycle.getAllParticipatingProjects()
+                             .size(), equalTo( 3 ) );
+
+            final EGraphDriver rooted = driver.newInstanceFrom( null, null, project );
+            assertThat( rooted.getMissingProjects()
+                              .contains( dep3 ), equalTo( true ) );
+            assertThat( rooted.getMissingProjects()
+                              .contains( dep ), equalTo( false ) );
+            assertThat( rooted.getVariableProjects()
+                              .contains( dep3 ), equalTo( true ) );
+        }
+        finally
+        {
+            driver.close();
+        }
+    }
+
+    @Test( expected = GraphDriverException.class )
+    public void refuseToBulkLoadIntoPopulatedDatabase()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final ProjectVersionRef project = new ProjectVersionRef( "org.my", "project", "1.0" );
+        final ProjectVersionRef dep = new ProjectVersionRef( "org.other", "dep", "1.0" );
+
+        final File dbDir = folder.newFolder( "db" );
+
+        final FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+        driver.addRelationships( new DependencyRelationship( source, project, new ArtifactRef( dep, null, null, false ),
+                                                             null, 0, false ) );
+        driver.close();
+
+        FileNeo4JEGraphDriver.newBatchLoader( dbDir );
+    }
+
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Level;
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.effective.rel.ParentRelationship;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JEGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.effective.GraphRelType;
+import org.commonjava.maven.atlas.spi.neo4j.effective.GraphStatistics;
+import org.commonjava.util.logging.Log4jUtil;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileGraphStatisticsTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void logging()
+    {
+        Log4jUtil.configure( Level.DEBUG );
+    }
+
+    @Test
+    public void countsSurviveRestart()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final ProjectVersionRef project = new ProjectVersionRef( "org.my", "project", "1.0" );
+        final ProjectVersionRef parent = new ProjectVersionRef( "org.my", "parent", "1" );
+        final ProjectVersionRef dep = new ProjectVersionRef( "org.other", "dep", "1.0" );
+        final ProjectVersionRef varDep = new ProjectVersionRef( "org.other", "var-dep", "[1.0,2.0)" );
+
+        final File dbDir = folder.newFolder( "db" );
+
+        FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+        driver.addRelationships( new ParentRelationship( source, project, parent ),
+                                 new DependencyRelationship( source, project, new ArtifactRef( dep, null, null, false ),
+                                                             DependencyScope.compile, 0, false ),
+                                 new DependencyRelationship( source, project,
+                                                             new ArtifactRef( varDep, null, null, false ),
+                                                             DependencyScope.test, 1, false ) );
+
+        assertStatistics( driver.getGraphStatistics() );
+        driver.close();
+
+        driver = new FileNeo4JEGraphDriver( dbDir, false );
+        assertStatistics( driver.getGraphStatistics() );
+        assertThat( driver.getAllProjects()
+                          .size(), equalTo( 4 ) );
+        driver.close();
+    }
+
+    @Test
+    public void rolledBackWritesAreNotCounted()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final ProjectVersionRef project = new ProjectVersionRef( "org.my", "project", "1.0" );
+        final ProjectVersionRef parent = new ProjectVersionRef( "org.my", "parent", "1" );
+        final ProjectVersionRef other = new ProjectVersionRef( "org.my", "other", "1.0" );
+
+        final FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( folder.newFolder( "db" ), false );
+        final long version = driver.getGraphVersion();
+        try
+        {
+            // the null relationship fails the write after the first one's project nodes were created.
+            driver.addRelationships( new ParentRelationship( source, project, parent ), null );
+            fail( "Write should have failed" );
+        }
+        catch ( final NullPointerException e )
+        {
+            // expected; the transaction is rolled back.
+        }
+
+        // the version only moves once a write commits.
+        assertThat( driver.getGraphVersion(), equalTo( version ) );
+
+        driver.addRelationships( new ParentRelationship( source, other, parent ) );
+        assertThat( driver.getGraphVersion() > version, equalTo( true ) );
+
+        final GraphStatistics stats = driver.getGraphStatistics();
+        assertThat( stats.getProjectCount(), equalTo( 2L ) );
+        assertThat( stats.getMissingProjectCount(), equalTo( 1L ) );
+        assertThat( stats.getRelationshipCount(), equalTo( 1L ) );
+        final Set<ProjectVersionRef> projects = new HashSet<ProjectVersionRef>( Arrays.asList( other, parent ) );
+        assertThat( driver.getAllProjects(), equalTo( projects ) );
+
+        driver.close();
+    }
+
+    private void assertStatistics( final GraphStatistics stats )
+    {
+        assertThat( stats.getProjectCount(), equalTo( 4L ) );
+        assertThat( stats.getMissingProjectCount(), equalTo( 3L ) );
+        assertThat( stats.getVariableProjectCount(), equalTo( 1L ) );
+        assertThat( stats.getCycleInjectionCount(), equalTo( 0L ) );
+        assertThat( stats.getRelationshipCount(), equalTo( 3L ) );
+        assertThat( stats.getRelationshipCount( GraphRelType.PARENT ), equalTo( 1L ) );
+        assertThat( stats.getRelationshipCount( GraphRelType.C_DEPENDENCY ), equalTo( 2L ) );
+        assertThat( stats.getRelationshipCount( GraphRelType.M_DEPENDENCY ), equalTo( 0L ) );
+    }
+
+}
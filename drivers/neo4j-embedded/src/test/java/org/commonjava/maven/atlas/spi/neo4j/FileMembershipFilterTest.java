@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.net.URI;
+
+import org.apache.log4j.Level;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JBatchLoader;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JEGraphDriver;
+import org.commonjava.util.logging.Log4jUtil;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileMembershipFilterTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void logging()
+    {
+        Log4jUtil.configure( Level.INFO );
+    }
+
+    @Test
+    public void filtersAnswerMissesAndSurviveRestart()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final File dbDir = folder.newFolder( "db" );
+
+        FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+        waitForFilters( driver );
+
+        final DependencyRelationship[] rels = chain( source, 50 );
+        driver.addRelationships( rels );
+
+        assertContents( driver, rels );
+        assertThat( driver.getProjectFilterFalsePositiveRate() < 0.01, equalTo( true ) );
+        assertThat( driver.getRelationshipFilterFalsePositiveRate() < 0.01, equalTo( true ) );
+        driver.close();
+
+        driver = new FileNeo4JEGraphDriver( dbDir, false );
+        assertThat( driver.getRelationshipFilterFalsePositiveRate() < 0.01, equalTo( true ) );
+        assertContents( driver, rels );
+        driver.close();
+    }
+
+    @Test
+    public void filtersRebuiltAfterBulkLoad()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final File dbDir = folder.newFolder( "db" );
+
+        final DependencyRelationship[] rels = chain( source, 20 );
+
+        final FileNeo4JBatchLoader loader = FileNeo4JEGraphDriver.newBatchLoader( dbDir );
+        loader.addRelationships( rels );
+        loader.close();
+
+        final FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+        try
+        {
+            // correct answers while the filters are rebuilt, and after.
+            assertContents( driver, rels );
+            waitForFilters( driver );
+            assertContents( driver, rels );
+        }
+        finally
+        {
+            driver.close();
+        }
+    }
+
+    private DependencyRelationship[] chain( final URI source, final int length )
+    {
+        final DependencyRelationship[] rels = new DependencyRelationship[length];
+        for ( int i = 0; i < length; i++ )
+        {
+            final ProjectVersionRef from = new ProjectVersionRef( "org.test", "p" + i, "1.0" );
+            final ProjectVersionRef to = new ProjectVersionRef( "org.test", "p" + ( i + 1 ), "1.0" );
+            rels[i] = new DependencyRelationship( source, from, new ArtifactRef( to, null, null, false ), null, 0, false );
+        }
+
+        return rels;
+    }
+
+    private void assertContents( final FileNeo4JEGraphDriver driver, final DependencyRelationship[] rels )
+        throws Exception
+    {
+        for ( final DependencyRelationship rel : rels )
+        {
+            assertThat( driver.containsProject( rel.getDeclaring() ), equalTo( true ) );
+            assertThat( driver.containsRelationship( rel ), equalTo( true ) );
+
+            final ProjectVersionRef absent = new ProjectVersionRef( "org.absent", rel.getDeclaring()
+                                                                                      .getArtifactId(), "1.0" );
+            assertThat( driver.containsProject( absent ), equalTo( false ) );
+            assertThat( driver.containsRelationship( new DependencyRelationship(
+                                                                                 rel.getSource(),
+                                                                                 rel.getDeclaring(),
+                                                                                 new ArtifactRef( absent, null, null,
+                                                                                                  false ), null, 0,
+                                                                                 false ) ), equalTo( false ) );
+        }
+    }
+
+    private void waitForFilters( final FileNeo4JEGraphDriver driver )
+        throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while ( driver.getRelationshipFilterFalsePositiveRate() >= 1 && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 20 );
+        }
+
+        assertThat( driver.getRelationshipFilterFalsePositiveRate() < 1, equalTo( true ) );
+    }
+
+}
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j;
+
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.NODE_TYPE;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.SOURCE_URI;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Level;
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JConfig;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JEGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.effective.NodeType;
+import org.commonjava.maven.atlas.spi.neo4j.io.Conversions;
+import org.commonjava.maven.atlas.spi.neo4j.io.GraphPropertyDictionary;
+import org.commonjava.maven.atlas.spi.neo4j.io.PropertyDictionary;
+import org.commonjava.util.logging.Log4jUtil;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+public class FilePropertyDictionaryTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void logging()
+    {
+        Log4jUtil.configure( Level.DEBUG );
+    }
+
+    @Test
+    public void compactPropertiesRoundTripAndMigrateLegacyStore()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final ProjectVersionRef project = new ProjectVersionRef( "org.my", "project", "1.0" );
+        final ProjectVersionRef dep = new ProjectVersionRef( "org.other", "dep", "1.0" );
+
+        final DependencyRelationship rel =
+            new DependencyRelationship( source, project, new ArtifactRef( dep, "zip", "sources", true ),
+                                        DependencyScope.test, 0, false, new ProjectRef( "org.ex", "cluded" ),
+                                        new ProjectRef( "org.ex", "cluded2" ) );
+
+        final File dbDir = folder.newFolder( "db" );
+
+        FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+        driver.addRelationships( rel );
+        assertRelationship( driver.getAllRelationships(), rel );
+        driver.close();
+
+        // rewrite the stored relationship the way drivers did before the property dictionary existed.
+        final GraphDatabaseService graph = new GraphDatabaseFactory().newEmbeddedDatabase( dbDir.getAbsolutePath() );
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            for ( final Relationship r : GlobalGraphOperations.at( graph )
+                                                             .getAllRelationships() )
+            {
+                for ( final Map.Entry<String, Object> entry : Conversions.toRelationshipPropertyMap( rel, null )
+                                                                         .entrySet() )
+                {
+                    r.setProperty( entry.getKey(), entry.getValue() );
+                }
+
+                assertThat( r.getProperty( SOURCE_URI ) instanceof String, equalTo( true ) );
+            }
+
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+        graph.shutdown();
+
+        driver = new FileNeo4JEGraphDriver( dbDir, false );
+        assertRelationship( driver.getAllRelationships(), rel );
+
+        assertThat( driver.compactRelationshipProperties( 1000 ), equalTo( 1 ) );
+        assertThat( driver.compactRelationshipProperties( 1000 ), equalTo( 0 ) );
+        assertRelationship( driver.getAllRelationships(), rel );
+        driver.close();
+    }
+
+    @Test
+    public void repeatedStringsAreStoredOnce()
+        throws Exception
+    {
+        final URI source =
+            new URI( "http://repository.example.com/nexus/content/groups/public-with-a-fairly-long-name/"
+                + getClass().getSimpleName() );
+
+        final int count = 500;
+        final ProjectRelationship<?>[] rels = new ProjectRelationship<?>[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            rels[i] =
+                new DependencyRelationship( source, new ProjectVersionRef( "org.my", "project", "1." + i ),
+                                            new ArtifactRef( new ProjectVersionRef( "org.other", "dep", "1." + i ),
+                                                             null, null, false ), DependencyScope.compile, 0, false );
+        }
+
+        final File dbDir = folder.newFolder( "db" );
+        FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+        driver.addRelationships( rels );
+        driver.close();
+
+        final File strings = new File( dbDir, "neostore.propertystore.db.strings" );
+        final long encoded = strings.length();
+
+        // store the same URI the way drivers did before the property dictionary existed.
+        final GraphDatabaseService graph = new GraphDatabaseFactory().newEmbeddedDatabase( dbDir.getAbsolutePath() );
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            for ( final Relationship r : GlobalGraphOperations.at( graph )
+                                                             .getAllRelationships() )
+            {
+                r.setProperty( SOURCE_URI, source.toString() );
+            }
+
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+        graph.shutdown();
+
+        final long legacy = strings.length();
+
+        // about 300 bytes for the single dictionary entry, against 64KB once every relationship holds the URI itself.
+        assertThat( legacy - encoded >= count * source.toString()
+                                                    .length(), equalTo( true ) );
+        assertThat( encoded * 100 < legacy, equalTo( true ) );
+
+        driver = new FileNeo4JEGraphDriver( dbDir, false );
+        assertThat( driver.getAllRelationships()
+                          .size(), equalTo( count ) );
+        driver.close();
+    }
+
+    @Test
+    public void entriesSpreadOverChunkedDictionaryNodes()
+        throws Exception
+    {
+        final int count = PropertyDictionary.CHUNK_SIZE * 2 + 1;
+        final ProjectRelationship<?>[] rels = new ProjectRelationship<?>[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            rels[i] =
+                new DependencyRelationship( new URI( "test:repo:" + i ), new ProjectVersionRef( "org.my", "project",
+                                                                                                "1." + i ),
+                                            new ArtifactRef( new ProjectVersionRef( "org.other", "dep", "1." + i ),
+                                                             null, null, false ), DependencyScope.compile, 0, false );
+        }
+
+        final File dbDir = folder.newFolder( "db" );
+        FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+
+        // two writes, so the second one adds to a chunk the first one started.
+        final int half = count / 2;
+        final ProjectRelationship<?>[] first = new ProjectRelationship<?>[half];
+        final ProjectRelationship<?>[] second = new ProjectRelationship<?>[count - half];
+        System.arraycopy( rels, 0, first, 0, half );
+        System.arraycopy( rels, half, second, 0, count - half );
+
+        driver.addRelationships( first );
+        driver.addRelationships( second );
+        driver.close();
+
+        final GraphDatabaseService graph = new GraphDatabaseFactory().newEmbeddedDatabase( dbDir.getAbsolutePath() );
+        final IndexHits<Node> hits = graph.index()
+                                          .forNodes( GraphPropertyDictionary.DICTIONARY_IDX )
+                                          .get( NODE_TYPE, NodeType.DICTIONARY.name() );
+        int nodes = 0;
+        for ( final Node node : hits )
+        {
+            int entries = 0;
+            for ( final String key : node.getPropertyKeys() )
+            {
+                if ( key.startsWith( PropertyDictionary.ENTRY_PREFIX ) )
+                {
+                    entries++;
+                }
+            }
+
+            assertThat( entries <= PropertyDictionary.CHUNK_SIZE, equalTo( true ) );
+            nodes++;
+        }
+        hits.close();
+        graph.shutdown();
+
+        // the test URIs, plus the few strings shared by all of them, fill three chunks.
+        assertThat( nodes, equalTo( 3 ) );
+
+        driver = new FileNeo4JEGraphDriver( dbDir, new FileNeo4JConfig().withReadOnly( true ) );
+        final Set<URI> sources = new HashSet<URI>();
+        for ( final ProjectRelationship<?> rel : driver.getAllRelationships() )
+        {
+            sources.add( rel.getSource() );
+        }
+        driver.close();
+
+        assertThat( sources.size(), equalTo( count ) );
+    }
+
+    private void assertRelationship( final Collection<ProjectRelationship<?>> rels, final DependencyRelationship rel )
+    {
+        assertThat( rels.size(), equalTo( 1 ) );
+
+        final DependencyRelationship stored = (DependencyRelationship) rels.iterator()
+                                                                           .next();
+
+        assertThat( stored, equalTo( rel ) );
+        assertThat( stored.getSource(), equalTo( rel.getSource() ) );
+        assertThat( stored.getPomLocation(), equalTo( rel.getPomLocation() ) );
+        assertThat( stored.getScope(), equalTo( DependencyScope.test ) );
+        assertThat( stored.getExcludes(), equalTo( rel.getExcludes() ) );
+        assertThat( stored.getTarget()
+                          .getType(), equalTo( "zip" ) );
+        assertThat( stored.getTarget()
+                          .getClassifier(), equalTo( "sources" ) );
+    }
+
+}
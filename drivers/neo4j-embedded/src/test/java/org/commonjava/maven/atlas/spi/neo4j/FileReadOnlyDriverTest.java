@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.net.URI;
+
+import org.apache.log4j.Level;
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.spi.GraphDriverException;
+import org.apache.maven.graph.spi.effective.EGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JConfig;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JConfig.StoreFile;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JEGraphDriver;
+import org.commonjava.util.logging.Log4jUtil;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileReadOnlyDriverTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void logging()
+    {
+        Log4jUtil.configure( Level.DEBUG );
+    }
+
+    @Test
+    public void readOnlyDriverReadsButRefusesWrites()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final ProjectVersionRef project = new ProjectVersionRef( "org.my", "project", "1.0" );
+        final ProjectVersionRef dep = new ProjectVersionRef( "org.other", "dep", "1.0" );
+        final DependencyRelationship rel =
+            new DependencyRelationship( source, project, new ArtifactRef( dep, null, null, false ),
+                                        DependencyScope.compile, 0, false );
+
+        final File dbDir = folder.newFolder( "db" );
+
+        FileNeo4JEGraphDriver driver =
+            new FileNeo4JEGraphDriver( dbDir, new FileNeo4JConfig().withShutdownHook( false )
+                                                                   .withCacheType( "weak" )
+                                                                   .withMappedMemory( StoreFile.NODES, "10M" )
+                                                                   .withMappedMemory( StoreFile.RELATIONSHIPS, "10M" )
+                                                                   .withIndexSearcherCacheSize( 32 ) );
+        driver.addRelationships( rel );
+        driver.close();
+
+        driver = new FileNeo4JEGraphDriver( dbDir, new FileNeo4JConfig().withReadOnly( true ) );
+        assertThat( driver.isReadOnly(), equalTo( true ) );
+        assertThat( driver.getAllRelationships()
+                          .size(), equalTo( 1 ) );
+        assertThat( driver.getGraphStatistics()
+                          .getProjectCount(), equalTo( 2L ) );
+
+        final EGraphDriver rooted = driver.newInstanceFrom( null, null, project );
+        assertThat( rooted.getAllRelationships()
+                          .size(), equalTo( 1 ) );
+        assertThat( rooted.getMissingProjects()
+                          .size(), equalTo( 1 ) );
+
+        try
+        {
+            driver.addRelationships( new DependencyRelationship( source, dep, new ArtifactRef( project, null, null,
+                                                                                                false ),
+                                                                 DependencyScope.compile, 0, false ) );
+            fail( "Read-only driver should refuse writes." );
+        }
+        catch ( final IllegalStateException e )
+        {
+            // expected
+        }
+
+        try
+        {
+            driver.newInstanceFrom( null, null, new ProjectVersionRef( "org.none", "none", "1" ) );
+            fail( "Read-only driver can't create root nodes." );
+        }
+        catch ( final GraphDriverException e )
+        {
+            // expected
+        }
+
+        driver.close();
+
+        driver = new FileNeo4JEGraphDriver( dbDir, false );
+        assertThat( driver.getAllRelationships()
+                          .size(), equalTo( 1 ) );
+        driver.close();
+    }
+
+}
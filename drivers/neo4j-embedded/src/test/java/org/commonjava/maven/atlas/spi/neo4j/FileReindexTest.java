@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.net.URI;
+
+import org.apache.log4j.Level;
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JEGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.effective.ReindexJob;
+import org.commonjava.util.logging.Log4jUtil;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileReindexTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void logging()
+    {
+        Log4jUtil.configure( Level.DEBUG );
+    }
+
+    @Test
+    public void reindexInChunksAndSwitchGenerations()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final ProjectVersionRef root = new ProjectVersionRef( "org.my", "project", "1.0" );
+
+        final File dbDir = folder.newFolder( "db" );
+        FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            final ProjectVersionRef dep = new ProjectVersionRef( "org.other", "dep" + i, "1.0" );
+            driver.addRelationships( new DependencyRelationship( source, root, new ArtifactRef( dep, null, null,
+                                                                                                 false ),
+                                                                 DependencyScope.compile, i, false ) );
+            if ( i % 2 == 0 )
+            {
+                driver.addProjectMetadata( dep, "even", "true" );
+            }
+        }
+
+        assertThat( driver.getProjectsWithMetadata( "even" )
+                          .size(), equalTo( 0 ) );
+
+        final ReindexJob job = driver.startReindex( 2 );
+        job.await();
+
+        assertThat( job.getError() == null, equalTo( true ) );
+        assertThat( job.getProcessedCount(), equalTo( 6 ) );
+        assertThat( job.getTotalCount(), equalTo( 6 ) );
+        assertThat( driver.isReindexPending(), equalTo( false ) );
+        assertThat( driver.getProjectsWithMetadata( "even" )
+                          .size(), equalTo( 3 ) );
+
+        driver.addProjectMetadata( root, "root", "true" );
+        driver.close();
+
+        driver = new FileNeo4JEGraphDriver( dbDir, false );
+        assertThat( driver.getProjectsWithMetadata( "even" )
+                          .size(), equalTo( 3 ) );
+        assertThat( driver.getProjectsWithMetadata( "root" )
+                          .size(), equalTo( 0 ) );
+
+        driver.reindex();
+
+        assertThat( driver.getProjectsWithMetadata( "even" )
+                          .size(), equalTo( 3 ) );
+        assertThat( driver.getProjectsWithMetadata( "root" )
+                          .size(), equalTo( 1 ) );
+        driver.close();
+    }
+
+}
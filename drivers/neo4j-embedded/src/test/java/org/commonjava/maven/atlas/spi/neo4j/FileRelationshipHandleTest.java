@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Level;
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.RelationshipType;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.effective.rel.ParentRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JEGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.effective.Neo4JEGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.fixture.FileDriverFixture;
+import org.commonjava.maven.atlas.spi.neo4j.io.RelationshipHandle;
+import org.commonjava.util.logging.Log4jUtil;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class FileRelationshipHandleTest
+{
+
+    @Rule
+    public FileDriverFixture fixture = new FileDriverFixture();
+
+    @BeforeClass
+    public static void logging()
+    {
+        Log4jUtil.configure( Level.DEBUG );
+    }
+
+    @Test
+    public void handlesDecodeLazilyAndMatchEagerResults()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final ProjectVersionRef project = new ProjectVersionRef( "org.my", "project", "1.0" );
+        final ProjectVersionRef parent = new ProjectVersionRef( "org.my", "parent", "1" );
+        final ProjectVersionRef dep = new ProjectVersionRef( "org.other", "dep", "1.0" );
+        final ProjectVersionRef dep2 = new ProjectVersionRef( "org.other", "dep2", "1.0" );
+
+        final FileNeo4JEGraphDriver driver = (FileNeo4JEGraphDriver) fixture.newDriverInstance();
+        driver.addRelationships( new ParentRelationship( source, project, parent ),
+                                 new ParentRelationship( source, parent ),
+                                 new DependencyRelationship( source, project, new ArtifactRef( dep, "jar", "tests",
+                                                                                               false ),
+                                                             DependencyScope.test, 0, false ),
+                                 new DependencyRelationship( source, dep, new ArtifactRef( dep2, null, null, false ),
+                                                             DependencyScope.compile, 0, false ) );
+
+        int count = 0;
+        for ( final RelationshipHandle handle : driver.getRelationshipHandlesDeclaredBy( project ) )
+        {
+            count++;
+            assertThat( handle.getDeclaring(), equalTo( project ) );
+            assertThat( handle.isMaterialized(), equalTo( false ) );
+
+            // the target is decoded from the end node, without materializing the whole relationship.
+            final ProjectVersionRef target = handle.getTarget();
+            final ArtifactRef targetArtifact = handle.getTargetArtifact();
+            assertThat( handle.isMaterialized(), equalTo( false ) );
+            assertThat( target, equalTo( handle.materialize()
+                                               .getTarget() ) );
+            assertThat( targetArtifact, equalTo( handle.materialize()
+                                                       .getTargetArtifact() ) );
+
+            if ( handle.getType() == RelationshipType.DEPENDENCY )
+            {
+                final DependencyRelationship rel = (DependencyRelationship) handle.materialize();
+                assertThat( rel.getScope(), equalTo( DependencyScope.test ) );
+                assertThat( handle.getTargetArtifact()
+                                  .getClassifier(), equalTo( "tests" ) );
+            }
+        }
+        assertThat( count, equalTo( 2 ) );
+
+        assertThat( materialize( driver.getRelationshipHandlesTargeting( dep ) ),
+                    equalTo( new HashSet<ProjectRelationship<?>>( driver.getRelationshipsTargeting( dep ) ) ) );
+
+        assertThat( materialize( driver.getAllRelationshipHandles() ),
+                    equalTo( new HashSet<ProjectRelationship<?>>( driver.getAllRelationships() ) ) );
+
+        final Neo4JEGraphDriver rooted = (Neo4JEGraphDriver) driver.newInstanceFrom( null, null, project );
+        assertThat( materialize( rooted.getAllRelationshipHandles() ),
+                    equalTo( new HashSet<ProjectRelationship<?>>( rooted.getAllRelationships() ) ) );
+
+        assertThat( driver.getRelationshipHandlesDeclaredBy( new ProjectVersionRef( "org.none", "none", "1" ) )
+                          .iterator()
+                          .hasNext(), equalTo( false ) );
+    }
+
+    @Test
+    public void handlesStandInForSelectedVersions()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final ProjectVersionRef project = new ProjectVersionRef( "org.my", "project", "1.0" );
+        final ProjectVersionRef variable = new ProjectVersionRef( "org.other", "dep", "[1.0-SNAPSHOT,2.0)" );
+        final ProjectVersionRef selected = new ProjectVersionRef( "org.other", "dep", "1.1" );
+
+        final FileNeo4JEGraphDriver driver = (FileNeo4JEGraphDriver) fixture.newDriverInstance();
+        driver.addRelationships( new DependencyRelationship( source, project, new ArtifactRef( variable, "jar", null,
+                                                                                               false ),
+                                                             DependencyScope.compile, 0, false ) );
+
+        final Neo4JEGraphDriver rooted = (Neo4JEGraphDriver) driver.newInstanceFrom( null, null, project );
+        rooted.selectVersionFor( variable, selected );
+
+        int count = 0;
+        for ( final RelationshipHandle handle : rooted.getAllRelationshipHandles() )
+        {
+            count++;
+            assertThat( handle.isSelected(), equalTo( true ) );
+            assertThat( handle.getTarget()
+                              .asProjectVersionRef(), equalTo( selected ) );
+            assertThat( handle.getTargetArtifact()
+                              .getType(), equalTo( "jar" ) );
+            assertThat( handle.isMaterialized(), equalTo( false ) );
+            assertThat( handle.materialize()
+                              .getTarget()
+                              .asProjectVersionRef(), equalTo( selected ) );
+        }
+        assertThat( count, equalTo( 1 ) );
+    }
+
+    private Set<ProjectRelationship<?>> materialize( final Iterable<RelationshipHandle> handles )
+    {
+        final Set<ProjectRelationship<?>> result = new HashSet<ProjectRelationship<?>>();
+        for ( final RelationshipHandle handle : handles )
+        {
+            result.add( handle.materialize() );
+        }
+
+        return result;
+    }
+
+}
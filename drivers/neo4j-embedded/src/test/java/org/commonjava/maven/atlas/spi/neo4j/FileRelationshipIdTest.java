@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j;
+
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.ID_CHECK;
+import static org.commonjava.maven.atlas.spi.neo4j.io.Conversions.RELATIONSHIP_ID;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.net.URI;
+
+import org.apache.log4j.Level;
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JEGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.io.Conversions;
+import org.commonjava.util.logging.Log4jUtil;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.RelationshipIndex;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+public class FileRelationshipIdTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void logging()
+    {
+        Log4jUtil.configure( Level.INFO );
+    }
+
+    @Test
+    public void findAndMigrateLegacyRelationshipIds()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final ProjectVersionRef project = new ProjectVersionRef( "org.my", "project", "1.0" );
+        final ArtifactRef dep = new ArtifactRef( new ProjectVersionRef( "org.other", "dep", "1.0" ), null, null, false );
+
+        final DependencyRelationship rel =
+            new DependencyRelationship( source, project, dep, DependencyScope.test, 0, false );
+
+        final File dbDir = folder.newFolder( "db" );
+
+        FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+        assertThat( driver.isLegacyRelationshipIds(), equalTo( false ) );
+        driver.addRelationships( rel );
+        driver.close();
+
+        // rewrite the store the way drivers did before relationship identities existed.
+        final GraphDatabaseService graph = new GraphDatabaseFactory().newEmbeddedDatabase( dbDir.getAbsolutePath() );
+        final Transaction tx = graph.beginTx();
+        try
+        {
+            final RelationshipIndex idx = graph.index()
+                                               .forRelationships( "all_relationships" );
+            for ( final Relationship r : GlobalGraphOperations.at( graph )
+                                                             .getAllRelationships() )
+            {
+                idx.remove( r, RELATIONSHIP_ID );
+                idx.add( r, RELATIONSHIP_ID, Conversions.legacyId( rel ) );
+                r.removeProperty( ID_CHECK );
+            }
+
+            final Index<Node> ids = graph.index()
+                                         .forNodes( "relationship_ids" );
+            for ( final Node node : ids.query( Conversions.NODE_TYPE, "*" ) )
+            {
+                ids.remove( node );
+                node.delete();
+            }
+
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+        graph.shutdown();
+
+        driver = new FileNeo4JEGraphDriver( dbDir, false );
+        assertThat( driver.isLegacyRelationshipIds(), equalTo( true ) );
+        assertThat( driver.getRelationship( rel ), notNullValue() );
+
+        driver.addRelationships( rel );
+        assertThat( driver.getAllRelationships()
+                          .size(), equalTo( 1 ) );
+
+        assertThat( driver.migrateRelationshipIds( 1000 ), equalTo( 1 ) );
+        assertThat( driver.migrateRelationshipIds( 1000 ), equalTo( 0 ) );
+        assertThat( driver.isLegacyRelationshipIds(), equalTo( false ) );
+        assertThat( driver.getRelationship( rel ), notNullValue() );
+        driver.close();
+
+        driver = new FileNeo4JEGraphDriver( dbDir, false );
+        assertThat( driver.isLegacyRelationshipIds(), equalTo( false ) );
+        assertThat( driver.getRelationship( rel ), notNullValue() );
+        driver.close();
+    }
+
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JEGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.fixture.FileDriverFixture;
+import org.commonjava.util.logging.Log4jUtil;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileWriteBehindTest
+{
+
+    @Rule
+    public FileDriverFixture fixture = new FileDriverFixture();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void logging()
+    {
+        Log4jUtil.configure( Level.INFO );
+    }
+
+    @Test
+    public void coalesceWritesFromManyThreads()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final FileNeo4JEGraphDriver driver = (FileNeo4JEGraphDriver) fixture.newDriverInstance();
+        driver.enableWriteBehind( 50, 200, 20 );
+
+        final int threadCount = 8;
+        final int perThread = 10;
+        final List<Future<Set<ProjectRelationship<?>>>> futures =
+            new ArrayList<Future<Set<ProjectRelationship<?>>>>();
+
+        final List<Thread> threads = new ArrayList<Thread>();
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            final int thread = t;
+            threads.add( new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int i = 0; i < perThread; i++ )
+                    {
+                        final ProjectVersionRef from = new ProjectVersionRef( "org.test", "p" + thread, "1." + i );
+                        final ProjectVersionRef to = new ProjectVersionRef( "org.test", "p" + thread, "1." + ( i + 1 ) );
+
+                        try
+                        {
+                            final Future<Set<ProjectRelationship<?>>> future =
+                                driver.addRelationshipsAsync( new DependencyRelationship(
+                                                                                          source,
+                                                                                          from,
+                                                                                          new ArtifactRef( to, null,
+                                                                                                           null, false ),
+                                                                                          null, 0, false ) );
+                            synchronized ( futures )
+                            {
+                                futures.add( future );
+                            }
+                        }
+                        catch ( final Exception e )
+                        {
+                            throw new IllegalStateException( e );
+                        }
+                    }
+                }
+            } );
+        }
+
+        for ( final Thread thread : threads )
+        {
+            thread.start();
+        }
+
+        for ( final Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        // closes the cycle p0:1.0 -> ... -> p0:1.10 -> p0:1.0
+        final ProjectVersionRef last = new ProjectVersionRef( "org.test", "p0", "1." + perThread );
+        final ProjectVersionRef first = new ProjectVersionRef( "org.test", "p0", "1.0" );
+        final DependencyRelationship cyclic =
+            new DependencyRelationship( source, last, new ArtifactRef( first, null, null, false ), null, 0, false );
+
+        final Set<ProjectRelationship<?>> skipped = driver.addRelationshipsAsync( cyclic )
+                                                          .get();
+
+        for ( final Future<Set<ProjectRelationship<?>>> future : futures )
+        {
+            assertThat( future.get()
+                              .isEmpty(), equalTo( true ) );
+        }
+
+        assertThat( skipped.contains( cyclic ), equalTo( true ) );
+        assertThat( driver.getAllRelationships()
+                          .size(), equalTo( threadCount * perThread + 1 ) );
+    }
+
+    @Test
+    public void shutdownFailsOrCompletesEveryRacingSubmit()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final FileNeo4JEGraphDriver driver = (FileNeo4JEGraphDriver) fixture.newDriverInstance();
+
+        // a tiny queue, so most submitters are blocked waiting for room when it's shut down.
+        driver.enableWriteBehind( 5, 50, 2 );
+
+        final int threadCount = 8;
+        final int perThread = 20;
+        final List<Future<Set<ProjectRelationship<?>>>> futures =
+            new ArrayList<Future<Set<ProjectRelationship<?>>>>();
+        final AtomicInteger rejected = new AtomicInteger();
+
+        final List<Thread> threads = new ArrayList<Thread>();
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            final int thread = t;
+            threads.add( new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int i = 0; i < perThread; i++ )
+                    {
+                        final ProjectVersionRef from = new ProjectVersionRef( "org.test", "q" + thread, "1." + i );
+                        final ProjectVersionRef to = new ProjectVersionRef( "org.test", "q" + thread, "1." + ( i + 1 ) );
+
+                        try
+                        {
+                            final Future<Set<ProjectRelationship<?>>> future =
+                                driver.addRelationshipsAsync( new DependencyRelationship(
+                                                                                          source,
+                                                                                          from,
+                                                                                          new ArtifactRef( to, null,
+                                                                                                           null, false ),
+                                                                                          null, 0, false ) );
+                            synchronized ( futures )
+                            {
+                                futures.add( future );
+                            }
+                        }
+                        catch ( final IllegalStateException e )
+                        {
+                            rejected.incrementAndGet();
+                        }
+                        catch ( final Exception e )
+                        {
+                            throw new IllegalStateException( e );
+                        }
+                    }
+                }
+            } );
+        }
+
+        for ( final Thread thread : threads )
+        {
+            thread.start();
+        }
+
+        Thread.sleep( 20 );
+
+        // shuts the first queue down while the submitters are still running; later submits go to the new one.
+        driver.enableWriteBehind( 5, 50, 2 );
+
+        for ( final Thread thread : threads )
+        {
+            thread.join( 30000 );
+            assertThat( thread.isAlive(), equalTo( false ) );
+        }
+
+        for ( final Future<Set<ProjectRelationship<?>>> future : futures )
+        {
+            assertThat( future.get( 30, TimeUnit.SECONDS )
+                              .isEmpty(), equalTo( true ) );
+        }
+
+        assertThat( futures.size() + rejected.get(), equalTo( threadCount * perThread ) );
+        assertThat( driver.getAllRelationships()
+                          .size(), equalTo( futures.size() ) );
+    }
+
+    @Test
+    public void writerSurvivesErrorsFromTheDriver()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo:" + getClass().getSimpleName() );
+        final AtomicBoolean failNext = new AtomicBoolean( true );
+        final FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( folder.newFolder( "db" ), false )
+        {
+            @Override
+            public Set<ProjectRelationship<?>> addRelationships( final ProjectRelationship<?>... rels )
+            {
+                if ( failNext.getAndSet( false ) )
+                {
+                    throw new StackOverflowError( "simulated" );
+                }
+
+                return super.addRelationships( rels );
+            }
+        };
+
+        driver.enableWriteBehind( 10, 10, 100 );
+
+        final ProjectVersionRef from = new ProjectVersionRef( "org.test", "from", "1.0" );
+        final ArtifactRef a = new ArtifactRef( new ProjectVersionRef( "org.test", "a", "1.0" ), null, null, false );
+        final ArtifactRef b = new ArtifactRef( new ProjectVersionRef( "org.test", "b", "1.0" ), null, null, false );
+
+        final Future<Set<ProjectRelationship<?>>> failed =
+            driver.addRelationshipsAsync( new DependencyRelationship( source, from, a, null, 0, false ) );
+        try
+        {
+            failed.get( 10, TimeUnit.SECONDS );
+            fail( "Write should have failed" );
+        }
+        catch ( final ExecutionException e )
+        {
+            assertThat( e.getCause() instanceof StackOverflowError, equalTo( true ) );
+        }
+
+        // the writer is still running.
+        driver.addRelationshipsAsync( new DependencyRelationship( source, from, b, null, 0, false ) )
+              .get( 10, TimeUnit.SECONDS );
+
+        assertThat( driver.containsProject( b.asProjectVersionRef() ), equalTo( true ) );
+        driver.close();
+    }
+
+}
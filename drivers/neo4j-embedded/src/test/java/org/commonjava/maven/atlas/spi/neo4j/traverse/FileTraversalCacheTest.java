@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.spi.neo4j.traverse;
+
+import static org.apache.maven.graph.effective.util.RelationshipUtils.dependency;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.net.URI;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectGraph;
+import org.apache.maven.graph.effective.traverse.TraversalCache;
+import org.apache.maven.graph.spi.effective.EGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.effective.FileNeo4JEGraphDriver;
+import org.commonjava.maven.atlas.spi.neo4j.fixture.FileDriverFixture;
+import org.commonjava.maven.atlas.tck.effective.traverse.TraversalCacheTCK;
+import org.commonjava.util.logging.Log4jUtil;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class FileTraversalCacheTest
+    extends TraversalCacheTCK
+{
+    @Rule
+    public FileDriverFixture fixture = new FileDriverFixture();
+
+    @BeforeClass
+    public static void logging()
+    {
+        Log4jUtil.configure( Level.INFO );
+    }
+
+    @Override
+    protected EGraphDriver newDriverInstance()
+        throws Exception
+    {
+        return fixture.newDriverInstance();
+    }
+
+    @Test
+    public void storedResultsAreHitAfterRestart()
+        throws Exception
+    {
+        final URI source = sourceURI();
+
+        final ProjectVersionRef root = new ProjectVersionRef( "org.my", "app", "1.0" );
+        final ProjectVersionRef lib = new ProjectVersionRef( "org.my", "lib", "1.0" );
+
+        final File dbDir = folder.newFolder( "db" );
+        final File file = new File( folder.newFolder( "cache" ), "traversals.bin" );
+
+        FileNeo4JEGraphDriver driver = new FileNeo4JEGraphDriver( dbDir, false );
+        /* @formatter:off */
+        EProjectGraph graph = new EProjectGraph.Builder( source, root, driver )
+            .withDependencies( dependency( source, root, lib, DependencyScope.compile, 0, false ) )
+            .build();
+        /* @formatter:on */
+
+        final long version = driver.getGraphVersion();
+
+        final TraversalCache cache = new TraversalCache( 16, file );
+        final List<ArtifactRef> artifacts = cache.getArtifacts( graph, root, DependencyScope.runtime );
+        cache.flush();
+        driver.close();
+
+        // a clean restart picks up at the same version of the same graph, so the stored result is still good.
+        driver = new FileNeo4JEGraphDriver( dbDir, false );
+        assertThat( driver.getGraphVersion(), equalTo( version ) );
+
+        graph = new EProjectGraph.Builder( source, root, driver ).build();
+
+        final TraversalCache reloaded = new TraversalCache( 16, file );
+        assertThat( reloaded.getArtifacts( graph, root, DependencyScope.runtime ), equalTo( artifacts ) );
+        assertThat( reloaded.getHitCount(), equalTo( 1L ) );
+
+        driver.close();
+    }
+}
@@ -22,6 +22,7 @@ import static org.apache.maven.graph.effective.util.RelationshipUtils.filterTerm
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -38,6 +39,11 @@ public class EProjectCycle
 
     private List<ProjectRelationship<?>> participants = new ArrayList<ProjectRelationship<?>>();
 
+    // hash sets of the participants and their declaring projects, built on first use so membership checks are O(1).
+    private transient Set<ProjectRelationship<?>> relationshipSet;
+
+    private transient Set<ProjectVersionRef> declaringSet;
+
     public static final class Builder
     {
         private final List<ProjectRelationship<?>> participants;
@@ -111,21 +117,41 @@ public class EProjectCycle
 
     public boolean contains( final ProjectRelationship<?> rel )
     {
-        return participants.contains( rel );
+        return relationshipSet().contains( rel );
     }
 
     public boolean contains( final ProjectVersionRef ref )
     {
-        for ( final ProjectRelationship<?> rel : participants )
+        return declaringSet().contains( ref );
+    }
+
+    private Set<ProjectRelationship<?>> relationshipSet()
+    {
+        Set<ProjectRelationship<?>> set = relationshipSet;
+        if ( set == null )
         {
-            if ( rel.getDeclaring()
-                    .equals( ref ) )
+            set = new HashSet<ProjectRelationship<?>>( participants );
+            relationshipSet = set;
+        }
+
+        return set;
+    }
+
+    private Set<ProjectVersionRef> declaringSet()
+    {
+        Set<ProjectVersionRef> set = declaringSet;
+        if ( set == null )
+        {
+            set = new HashSet<ProjectVersionRef>();
+            for ( final ProjectRelationship<?> rel : participants )
             {
-                return true;
+                set.add( rel.getDeclaring() );
             }
+
+            declaringSet = set;
         }
 
-        return false;
+        return set;
     }
 
     public int indexOf( final ProjectRelationship<?> rel )
@@ -161,7 +187,8 @@ public class EProjectCycle
 
     public Iterator<ProjectRelationship<?>> iterator()
     {
-        return participants.iterator();
+        return Collections.unmodifiableList( participants )
+                          .iterator();
     }
 
     public Collection<ProjectRelationship<?>> getAllRelationships()
@@ -199,7 +226,7 @@ public class EProjectCycle
     @Override
     public int hashCode()
     {
-        final Set<ProjectRelationship<?>> cycle = new HashSet<ProjectRelationship<?>>( this.participants );
+        final Set<ProjectRelationship<?>> cycle = relationshipSet();
         final int prime = 31;
         int result = 1;
         result = prime * result + ( ( cycle == null ) ? 0 : cycle.hashCode() );
@@ -232,8 +259,8 @@ public class EProjectCycle
         else
         {
 
-            final Set<ProjectRelationship<?>> cycle = new HashSet<ProjectRelationship<?>>( this.participants );
-            final Set<ProjectRelationship<?>> otherCycle = new HashSet<ProjectRelationship<?>>( other.participants );
+            final Set<ProjectRelationship<?>> cycle = relationshipSet();
+            final Set<ProjectRelationship<?>> otherCycle = other.relationshipSet();
 
             for ( final ProjectRelationship<?> rel : cycle )
             {
@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.maven.graph.common.RelationshipType;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.common.version.SingleVersion;
 import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
@@ -40,6 +41,10 @@ import org.apache.maven.graph.effective.rel.PluginDependencyRelationship;
 import org.apache.maven.graph.effective.rel.PluginRelationship;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
 import org.apache.maven.graph.effective.traverse.ProjectNetTraversal;
+import org.apache.maven.graph.effective.traverse.TransitiveDependencyViews;
+import org.apache.maven.graph.effective.traverse.model.PathGraph;
+import org.apache.maven.graph.effective.util.CloseableIterator;
+import org.apache.maven.graph.effective.util.CloseableIterators;
 import org.apache.maven.graph.spi.GraphDriverException;
 import org.apache.maven.graph.spi.effective.EGraphDriver;
 import org.apache.maven.graph.spi.effective.GloballyBackedGraphDriver;
@@ -59,6 +64,8 @@ public class EProjectGraph
 
     private final List<EProjectNet> superNets = new ArrayList<EProjectNet>();
 
+    private transient TransitiveDependencyViews dependencyViews;
+
     public EProjectGraph( final EProjectNet parent, final EProjectKey key )
         throws GraphDriverException
     {
@@ -151,22 +158,21 @@ public class EProjectGraph
 
     public Set<ProjectRelationship<?>> getExactAllRelationships()
     {
-        final Collection<ProjectRelationship<?>> rels = driver.getAllRelationships();
-        if ( rels == null )
-        {
-            return null;
-        }
-
-        return new HashSet<ProjectRelationship<?>>( rels );
+        return CloseableIterators.toSet( driver.iterateAllRelationships() );
     }
 
     public Set<ProjectRelationship<?>> getAllRelationships()
     {
         logger.info( "Retrieving all relationships in graph: %s", key.getProject() );
-        final Set<ProjectRelationship<?>> rels = getExactAllRelationships();
-        filterTerminalParents( rels );
+        return CloseableIterators.toSet( iterateAllRelationships() );
+    }
 
-        return rels;
+    /**
+     * Streaming form of {@link #getAllRelationships()}; terminal parent relationships are skipped as they're read.
+     */
+    public CloseableIterator<ProjectRelationship<?>> iterateAllRelationships( final RelationshipType... types )
+    {
+        return CloseableIterators.withoutTerminalParents( driver.iterateAllRelationships( types ) );
     }
 
     public boolean isComplete()
@@ -468,6 +474,7 @@ public class EProjectGraph
         if ( !result.isEmpty() )
         {
             driver.recomputeIncompleteSubgraphs();
+            getDependencyViews().relationshipsAdded( result );
         }
 
         return result;
@@ -635,6 +642,11 @@ public class EProjectGraph
         return driver.getAllProjects();
     }
 
+    public CloseableIterator<ProjectVersionRef> iterateAllProjects()
+    {
+        return driver.iterateAllProjects();
+    }
+
     public Map<String, String> getMetadata( final EProjectKey key )
     {
         return driver.getProjectMetadata( key.getProject() );
@@ -666,6 +678,7 @@ public class EProjectGraph
     {
         final ProjectVersionRef ref = variable.selectVersion( version );
         driver.selectVersionFor( variable, ref );
+        getDependencyViews().versionSelected( variable, ref );
 
         return ref;
     }
@@ -673,7 +686,25 @@ public class EProjectGraph
     public Map<ProjectVersionRef, ProjectVersionRef> clearSelectedVersions()
         throws GraphDriverException
     {
-        return driver.clearSelectedVersions();
+        // not every driver reports what it cleared, so go by what was selected beforehand as well.
+        final Map<ProjectVersionRef, ProjectVersionRef> selected = driver.getSelectedVersions();
+        final Map<ProjectVersionRef, ProjectVersionRef> cleared = driver.clearSelectedVersions();
+
+        final TransitiveDependencyViews views = getDependencyViews();
+        views.selectionsCleared( selected );
+        views.selectionsCleared( cleared );
+
+        return cleared;
+    }
+
+    public synchronized TransitiveDependencyViews getDependencyViews()
+    {
+        if ( dependencyViews == null )
+        {
+            dependencyViews = new TransitiveDependencyViews( this );
+        }
+
+        return dependencyViews;
     }
 
     public Set<List<ProjectRelationship<?>>> getPathsTo( final ProjectVersionRef... refs )
@@ -681,6 +712,17 @@ public class EProjectGraph
         return driver.getAllPathsTo( refs );
     }
 
+    public PathGraph getPathGraph( final ProjectVersionRef... refs )
+    {
+        return driver.getPathGraph( refs );
+    }
+
+    public List<ProjectRelationship<?>> getShortestPath( final ProjectVersionRef root, final ProjectVersionRef target,
+                                                         final ProjectRelationshipFilter filter )
+    {
+        return driver.getShortestPath( root, target, filter );
+    }
+
     public boolean introducesCycle( final ProjectRelationship<?> rel )
     {
         return driver.introducesCycle( rel );
@@ -21,11 +21,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.maven.graph.common.RelationshipType;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.common.version.SingleVersion;
 import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
 import org.apache.maven.graph.effective.ref.EProjectKey;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.traverse.TransitiveDependencyViews;
+import org.apache.maven.graph.effective.traverse.model.PathGraph;
+import org.apache.maven.graph.effective.util.CloseableIterator;
 import org.apache.maven.graph.spi.GraphDriverException;
 import org.apache.maven.graph.spi.effective.EGraphDriver;
 
@@ -65,8 +69,25 @@ public interface EProjectNet
 
     Set<List<ProjectRelationship<?>>> getPathsTo( final ProjectVersionRef... refs );
 
+    /**
+     * Compact form of {@link #getPathsTo(ProjectVersionRef...)}; see {@link PathGraph}.
+     */
+    PathGraph getPathGraph( final ProjectVersionRef... refs );
+
+    /**
+     * See {@link EGraphDriver#getShortestPath(ProjectVersionRef, ProjectVersionRef, ProjectRelationshipFilter)}.
+     */
+    List<ProjectRelationship<?>> getShortestPath( ProjectVersionRef root, ProjectVersionRef target,
+                                                  ProjectRelationshipFilter filter );
+
     boolean isDerivedFrom( EProjectNet net );
 
+    /**
+     * Transitive-dependency views registered on this net, kept current as relationships are added and versions
+     * selected or cleared through it. NEVER null.
+     */
+    TransitiveDependencyViews getDependencyViews();
+
     EProjectGraph getGraph( ProjectRelationshipFilter filter, EProjectKey key )
         throws GraphDriverException;
 
@@ -83,6 +104,17 @@ public interface EProjectNet
 
     Set<ProjectVersionRef> getAllProjects();
 
+    /**
+     * Streaming form of {@link #getAllProjects()}. Close the cursor when done.
+     */
+    CloseableIterator<ProjectVersionRef> iterateAllProjects();
+
+    /**
+     * Streaming form of {@link #getAllRelationships()}, limited to relationships of the given types (or all of them, if
+     * none are given). Close the cursor when done.
+     */
+    CloseableIterator<ProjectRelationship<?>> iterateAllRelationships( RelationshipType... types );
+
     //    Set<ProjectRelationship<?>> getAllRelationships();
 
     Map<String, String> getMetadata( EProjectKey key );
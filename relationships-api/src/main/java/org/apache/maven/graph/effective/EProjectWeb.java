@@ -27,12 +27,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.maven.graph.common.RelationshipType;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.common.version.SingleVersion;
 import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
 import org.apache.maven.graph.effective.ref.EProjectKey;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
 import org.apache.maven.graph.effective.traverse.ProjectNetTraversal;
+import org.apache.maven.graph.effective.traverse.TransitiveDependencyViews;
+import org.apache.maven.graph.effective.traverse.model.PathGraph;
+import org.apache.maven.graph.effective.util.CloseableIterator;
+import org.apache.maven.graph.effective.util.CloseableIterators;
 import org.apache.maven.graph.spi.GraphDriverException;
 import org.apache.maven.graph.spi.effective.EGraphDriver;
 import org.apache.maven.graph.spi.effective.GloballyBackedGraphDriver;
@@ -47,6 +52,8 @@ public class EProjectWeb
 
     private final List<EProjectNet> superNets = new ArrayList<EProjectNet>();
 
+    private transient TransitiveDependencyViews dependencyViews;
+
     EProjectWeb( final EProjectNet parent, final ProjectRelationshipFilter filter, final EProjectKey... roots )
         throws GraphDriverException
     {
@@ -126,7 +133,15 @@ public class EProjectWeb
      */
     public Set<ProjectRelationship<?>> getAllRelationships()
     {
-        return new HashSet<ProjectRelationship<?>>( driver.getAllRelationships() );
+        return CloseableIterators.toSet( iterateAllRelationships() );
+    }
+
+    /**
+     * Streaming form of {@link #getAllRelationships()}; terminal parent relationships are skipped as they're read.
+     */
+    public CloseableIterator<ProjectRelationship<?>> iterateAllRelationships( final RelationshipType... types )
+    {
+        return CloseableIterators.withoutTerminalParents( driver.iterateAllRelationships( types ) );
     }
 
     /* (non-Javadoc)
@@ -176,8 +191,14 @@ public class EProjectWeb
             return false;
         }
 
-        return driver.addRelationships( rel )
-                     .isEmpty();
+        if ( !driver.addRelationships( rel )
+                    .isEmpty() )
+        {
+            return false;
+        }
+
+        getDependencyViews().relationshipsAdded( Collections.singleton( rel ) );
+        return true;
     }
 
     public <T extends ProjectRelationship<?>> Set<T> addAll( final Collection<T> rels )
@@ -196,6 +217,7 @@ public class EProjectWeb
         if ( !result.isEmpty() )
         {
             driver.recomputeIncompleteSubgraphs();
+            getDependencyViews().relationshipsAdded( result );
         }
 
         return result;
@@ -270,7 +292,7 @@ public class EProjectWeb
 
     public Set<ProjectRelationship<?>> getExactAllRelationships()
     {
-        return getAllRelationships();
+        return CloseableIterators.toSet( driver.iterateAllRelationships() );
     }
 
     public boolean isCycleParticipant( final ProjectVersionRef ref )
@@ -362,6 +384,11 @@ public class EProjectWeb
         return driver.getAllProjects();
     }
 
+    public CloseableIterator<ProjectVersionRef> iterateAllProjects()
+    {
+        return driver.iterateAllProjects();
+    }
+
     public Map<String, String> getMetadata( final EProjectKey key )
     {
         return driver.getProjectMetadata( key.getProject() );
@@ -434,6 +461,7 @@ public class EProjectWeb
     {
         final ProjectVersionRef ref = variable.selectVersion( version );
         driver.selectVersionFor( variable, ref );
+        getDependencyViews().versionSelected( variable, ref );
 
         return ref;
     }
@@ -441,7 +469,25 @@ public class EProjectWeb
     public Map<ProjectVersionRef, ProjectVersionRef> clearSelectedVersions()
         throws GraphDriverException
     {
-        return driver.clearSelectedVersions();
+        // not every driver reports what it cleared, so go by what was selected beforehand as well.
+        final Map<ProjectVersionRef, ProjectVersionRef> selected = driver.getSelectedVersions();
+        final Map<ProjectVersionRef, ProjectVersionRef> cleared = driver.clearSelectedVersions();
+
+        final TransitiveDependencyViews views = getDependencyViews();
+        views.selectionsCleared( selected );
+        views.selectionsCleared( cleared );
+
+        return cleared;
+    }
+
+    public synchronized TransitiveDependencyViews getDependencyViews()
+    {
+        if ( dependencyViews == null )
+        {
+            dependencyViews = new TransitiveDependencyViews( this );
+        }
+
+        return dependencyViews;
     }
 
     public Set<List<ProjectRelationship<?>>> getPathsTo( final ProjectVersionRef... projectVersionRefs )
@@ -449,6 +495,17 @@ public class EProjectWeb
         return driver.getAllPathsTo( projectVersionRefs );
     }
 
+    public PathGraph getPathGraph( final ProjectVersionRef... projectVersionRefs )
+    {
+        return driver.getPathGraph( projectVersionRefs );
+    }
+
+    public List<ProjectRelationship<?>> getShortestPath( final ProjectVersionRef root, final ProjectVersionRef target,
+                                                         final ProjectRelationshipFilter filter )
+    {
+        return driver.getShortestPath( root, target, filter );
+    }
+
     public boolean introducesCycle( final ProjectRelationship<?> rel )
     {
         return driver.introducesCycle( rel );
@@ -26,6 +26,7 @@ import java.net.URI;
 import org.apache.maven.graph.common.RelationshipType;
 import org.apache.maven.graph.common.ref.ArtifactRef;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.util.IdentityHasher;
 
 public abstract class AbstractProjectRelationship<T extends ProjectVersionRef>
     implements ProjectRelationship<T>, Serializable
@@ -52,6 +53,10 @@ public abstract class AbstractProjectRelationship<T extends ProjectVersionRef>
 
     private boolean cloneUsesLocation = true;
 
+    private transient volatile String identity;
+
+    private transient long identityCheck;
+
     protected AbstractProjectRelationship( final URI source, final RelationshipType type,
                                            final ProjectVersionRef declaring, final T target, final int index )
     {
@@ -117,6 +122,48 @@ public abstract class AbstractProjectRelationship<T extends ProjectVersionRef>
 
     public abstract ArtifactRef getTargetArtifact();
 
+    /**
+     * Compact, stable identity for this relationship: a 128-bit hash (22 url-safe chars) of the fields that distinguish
+     * it from other relationships between the same projects (type, declaring and target refs, managed flag, index,
+     * plus whatever the subclass adds in {@link #addIdentityFields(IdentityHasher)}). Computed once, then cached.
+     */
+    public final String getIdentity()
+    {
+        String id = identity;
+        if ( id == null )
+        {
+            final IdentityHasher hasher = new IdentityHasher().add( type.name() )
+                                                              .add( declaring )
+                                                              .add( target )
+                                                              .add( managed )
+                                                              .add( index );
+            addIdentityFields( hasher );
+
+            final long[] hash = hasher.finish();
+            identityCheck = hash[2];
+            identity = id = IdentityHasher.encode( hash[0], hash[1] );
+        }
+
+        return id;
+    }
+
+    /**
+     * Independent 64-bit hash of the same fields as {@link #getIdentity()}, for telling apart two relationships whose
+     * identities collide.
+     */
+    public final long getIdentityCheck()
+    {
+        getIdentity();
+        return identityCheck;
+    }
+
+    /**
+     * Add any subclass fields that distinguish relationships (beyond those of this class) to the identity hash.
+     */
+    protected void addIdentityFields( final IdentityHasher hasher )
+    {
+    }
+
     @SuppressWarnings( "unchecked" )
     public synchronized ProjectRelationship<T> cloneFor( final ProjectVersionRef projectRef )
     {
@@ -28,6 +28,7 @@ import org.apache.maven.graph.common.ref.ArtifactRef;
 import org.apache.maven.graph.common.ref.ProjectRef;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.common.version.SingleVersion;
+import org.apache.maven.graph.effective.util.IdentityHasher;
 
 public final class DependencyRelationship
     extends AbstractProjectRelationship<ArtifactRef>
@@ -109,6 +110,12 @@ public final class DependencyRelationship
                               getTarget(), isManaged(), scope, getIndex() );
     }
 
+    @Override
+    protected void addIdentityFields( final IdentityHasher hasher )
+    {
+        hasher.add( scope.name() );
+    }
+
     @Override
     public ArtifactRef getTargetArtifact()
     {
@@ -24,6 +24,7 @@ import org.apache.maven.graph.common.ref.ArtifactRef;
 import org.apache.maven.graph.common.ref.ProjectRef;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.common.version.SingleVersion;
+import org.apache.maven.graph.effective.util.IdentityHasher;
 
 public final class PluginDependencyRelationship
     extends AbstractProjectRelationship<ArtifactRef>
@@ -112,6 +113,12 @@ public final class PluginDependencyRelationship
                               plugin, getTarget(), isManaged(), getIndex() );
     }
 
+    @Override
+    protected void addIdentityFields( final IdentityHasher hasher )
+    {
+        hasher.add( plugin );
+    }
+
     @Override
     public ArtifactRef getTargetArtifact()
     {
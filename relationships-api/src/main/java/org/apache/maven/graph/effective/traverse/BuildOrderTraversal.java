@@ -19,7 +19,10 @@ package org.apache.maven.graph.effective.traverse;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.maven.graph.common.ref.ArtifactRef;
@@ -32,16 +35,30 @@ import org.apache.maven.graph.effective.filter.ParentFilter;
 import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
 import org.apache.maven.graph.effective.traverse.model.BuildOrder;
+import org.apache.maven.graph.effective.util.ComponentGraph;
 import org.apache.maven.graph.spi.GraphDriverException;
 
+/**
+ * Collects the project-to-project edges it traverses, then sorts them topologically once traversal ends: projects
+ * caught in a cycle are condensed into one group (see {@link ComponentGraph}), and each project (or group) lands in the
+ * earliest build wave after everything it needs, so projects within a wave can be built in parallel.
+ */
 public class BuildOrderTraversal
     extends AbstractFilteringTraversal
 {
 
-    private final List<ProjectRef> order = new ArrayList<ProjectRef>();
+    private final Map<ProjectRef, Set<ProjectRef>> dependencies = new LinkedHashMap<ProjectRef, Set<ProjectRef>>();
+
+    private List<ProjectRef> order = new ArrayList<ProjectRef>();
+
+    private List<Set<ProjectRef>> waves = new ArrayList<Set<ProjectRef>>();
+
+    private List<Set<ProjectRef>> cycleGroups = new ArrayList<Set<ProjectRef>>();
 
     private Set<EProjectCycle> cycles;
 
+    private ComponentGraph<ProjectRef> componentGraph;
+
     public BuildOrderTraversal()
     {
     }
@@ -53,7 +70,7 @@ public class BuildOrderTraversal
 
     public BuildOrder getBuildOrder()
     {
-        return new BuildOrder( order, cycles );
+        return new BuildOrder( order, waves, cycleGroups, cycles );
     }
 
     @Override
@@ -71,17 +88,16 @@ public class BuildOrderTraversal
         final ProjectRef baseDecl = new ProjectRef( decl.getGroupId(), decl.getArtifactId() );
         final ProjectRef baseTgt = new ProjectRef( target.getGroupId(), target.getArtifactId() );
 
-        int declIdx = order.indexOf( baseDecl );
-        final int tgtIdx = order.indexOf( baseTgt );
-        if ( declIdx < 0 )
+        Set<ProjectRef> deps = dependencies.get( baseDecl );
+        if ( deps == null )
         {
-            declIdx = order.size();
-            order.add( baseDecl );
+            deps = new LinkedHashSet<ProjectRef>();
+            dependencies.put( baseDecl, deps );
         }
 
-        if ( tgtIdx < 0 )
+        if ( !baseDecl.equals( baseTgt ) )
         {
-            order.add( declIdx, baseTgt );
+            deps.add( baseTgt );
         }
 
         return true;
@@ -93,6 +109,8 @@ public class BuildOrderTraversal
     {
         super.endTraverse( pass, network );
 
+        sort();
+
         Set<EProjectCycle> cycles = network.getCycles();
         if ( cycles != null )
         {
@@ -125,4 +143,58 @@ public class BuildOrderTraversal
         this.cycles = cycles;
     }
 
+    /**
+     * @return Traversed projects condensed into cycle groups, with edges pointing at what each group needs; null until
+     * traversal ends.
+     */
+    protected final ComponentGraph<ProjectRef> getComponentGraph()
+    {
+        return componentGraph;
+    }
+
+    private void sort()
+    {
+        final ComponentGraph<ProjectRef> graph = new ComponentGraph<ProjectRef>( dependencies );
+        this.componentGraph = graph;
+
+        final List<Set<ProjectRef>> waves = new ArrayList<Set<ProjectRef>>();
+        final List<Set<ProjectRef>> cycleGroups = new ArrayList<Set<ProjectRef>>();
+        final int[] waveOf = new int[graph.getComponentCount()];
+
+        // components come after everything they depend on, so each one's wave is settled before it's needed.
+        for ( int c = 0; c < waveOf.length; c++ )
+        {
+            int wave = 0;
+            for ( final int dep : graph.getSuccessors( c ) )
+            {
+                wave = Math.max( wave, waveOf[dep] + 1 );
+            }
+
+            waveOf[c] = wave;
+            if ( wave == waves.size() )
+            {
+                waves.add( new LinkedHashSet<ProjectRef>() );
+            }
+
+            final Set<ProjectRef> members = graph.getComponent( c );
+            waves.get( wave )
+                 .addAll( members );
+
+            if ( members.size() > 1 )
+            {
+                cycleGroups.add( members );
+            }
+        }
+
+        final List<ProjectRef> order = new ArrayList<ProjectRef>();
+        for ( final Set<ProjectRef> wave : waves )
+        {
+            order.addAll( wave );
+        }
+
+        this.order = order;
+        this.waves = waves;
+        this.cycleGroups = cycleGroups;
+    }
+
 }
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.traverse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectNet;
+import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.traverse.model.BuildSchedule;
+import org.apache.maven.graph.effective.util.ComponentGraph;
+import org.apache.maven.graph.spi.GraphDriverException;
+import org.commonjava.util.logging.Logger;
+
+/**
+ * {@link BuildOrderTraversal} that also schedules the build, reading each project's build time from a project metadata
+ * key (see {@link org.apache.maven.graph.spi.effective.EGraphDriver#addProjectMetadata(ProjectVersionRef, String, String)}).
+ * Earliest and latest start times, slack and the critical path are computed over the condensed dependency DAG, in one
+ * forward and one backward pass. A cycle group's weight is the sum of its members' weights.
+ * <p/>
+ * Where more than one version of a project is traversed, the weight is read from the first version seen.
+ */
+public class CriticalPathTraversal
+    extends BuildOrderTraversal
+{
+
+    private final Logger logger = new Logger( getClass() );
+
+    private final String weightKey;
+
+    private final double defaultWeight;
+
+    private final Map<ProjectRef, ProjectVersionRef> versions = new LinkedHashMap<ProjectRef, ProjectVersionRef>();
+
+    private BuildSchedule schedule;
+
+    /**
+     * @param weightKey Project metadata key holding each project's build time.
+     * @param defaultWeight Build time for projects without a (numeric) value for the key.
+     */
+    public CriticalPathTraversal( final String weightKey, final double defaultWeight )
+    {
+        this.weightKey = weightKey;
+        this.defaultWeight = defaultWeight;
+    }
+
+    public CriticalPathTraversal( final String weightKey, final double defaultWeight,
+                                  final ProjectRelationshipFilter filter )
+    {
+        super( filter );
+        this.weightKey = weightKey;
+        this.defaultWeight = defaultWeight;
+    }
+
+    public BuildSchedule getBuildSchedule()
+    {
+        return schedule;
+    }
+
+    @Override
+    protected boolean shouldTraverseEdge( final ProjectRelationship<?> relationship,
+                                          final List<ProjectRelationship<?>> path, final int pass )
+    {
+        addVersion( relationship.getDeclaring() );
+
+        ProjectVersionRef target = relationship.getTarget();
+        if ( target instanceof ArtifactRef )
+        {
+            target = ( (ArtifactRef) target ).asProjectVersionRef();
+        }
+
+        addVersion( target );
+
+        return super.shouldTraverseEdge( relationship, path, pass );
+    }
+
+    private void addVersion( final ProjectVersionRef ref )
+    {
+        final ProjectRef base = new ProjectRef( ref.getGroupId(), ref.getArtifactId() );
+        if ( !versions.containsKey( base ) )
+        {
+            versions.put( base, ref );
+        }
+    }
+
+    @Override
+    public void endTraverse( final int pass, final EProjectNet network )
+        throws GraphDriverException
+    {
+        super.endTraverse( pass, network );
+
+        final ComponentGraph<ProjectRef> graph = getComponentGraph();
+        final Map<ProjectRef, Double> weights = readWeights( network );
+
+        final int count = graph.getComponentCount();
+        final double[] weight = new double[count];
+        final double[] earliest = new double[count];
+        final double[] latestFinish = new double[count];
+
+        double duration = 0;
+
+        // components come after everything they need, so walking up the numbering is a forward pass...
+        for ( int c = 0; c < count; c++ )
+        {
+            for ( final ProjectRef ref : graph.getComponent( c ) )
+            {
+                weight[c] += weights.get( ref );
+            }
+
+            for ( final int dep : graph.getSuccessors( c ) )
+            {
+                earliest[c] = Math.max( earliest[c], earliest[dep] + weight[dep] );
+            }
+
+            duration = Math.max( duration, earliest[c] + weight[c] );
+        }
+
+        // ...and walking back down is a backward pass.
+        for ( int c = 0; c < count; c++ )
+        {
+            latestFinish[c] = duration;
+        }
+
+        for ( int c = count - 1; c > -1; c-- )
+        {
+            final double latestStart = latestFinish[c] - weight[c];
+            for ( final int dep : graph.getSuccessors( c ) )
+            {
+                latestFinish[dep] = Math.min( latestFinish[dep], latestStart );
+            }
+        }
+
+        final Map<ProjectRef, Double> earliestStarts = new HashMap<ProjectRef, Double>();
+        final Map<ProjectRef, Double> latestStarts = new HashMap<ProjectRef, Double>();
+        for ( int c = 0; c < count; c++ )
+        {
+            for ( final ProjectRef ref : graph.getComponent( c ) )
+            {
+                earliestStarts.put( ref, earliest[c] );
+                latestStarts.put( ref, latestFinish[c] - weight[c] );
+            }
+        }
+
+        schedule =
+            new BuildSchedule( duration, criticalPath( graph, weight, earliest, duration ), weights, earliestStarts,
+                               latestStarts );
+    }
+
+    private List<ProjectRef> criticalPath( final ComponentGraph<ProjectRef> graph, final double[] weight,
+                                           final double[] earliest, final double duration )
+    {
+        final List<ProjectRef> path = new ArrayList<ProjectRef>();
+
+        // start from the last component to finish, then keep following whichever dependency finished just in time.
+        int current = -1;
+        for ( int c = graph.getComponentCount() - 1; c > -1; c-- )
+        {
+            if ( earliest[c] + weight[c] == duration )
+            {
+                current = c;
+                break;
+            }
+        }
+
+        while ( current > -1 )
+        {
+            final List<ProjectRef> members = new ArrayList<ProjectRef>( graph.getComponent( current ) );
+            Collections.reverse( members );
+            path.addAll( members );
+
+            int next = -1;
+            for ( final int dep : graph.getSuccessors( current ) )
+            {
+                if ( earliest[dep] + weight[dep] == earliest[current] )
+                {
+                    next = dep;
+                    break;
+                }
+            }
+
+            current = next;
+        }
+
+        Collections.reverse( path );
+        return path;
+    }
+
+    private Map<ProjectRef, Double> readWeights( final EProjectNet network )
+    {
+        final Map<ProjectVersionRef, Map<String, String>> metadata = network.getDriver()
+                                                                            .getProjectMetadata( versions.values() );
+
+        final Map<ProjectRef, Double> weights = new HashMap<ProjectRef, Double>();
+        for ( final ProjectRef ref : versions.keySet() )
+        {
+            double weight = defaultWeight;
+
+            final Map<String, String> md = metadata.get( versions.get( ref ) );
+            final String value = md == null ? null : md.get( weightKey );
+            if ( value != null )
+            {
+                try
+                {
+                    weight = Double.parseDouble( value.trim() );
+                }
+                catch ( final NumberFormatException e )
+                {
+                    logger.warn( "Invalid build weight for: %s (%s=%s). Using default: %s", ref, weightKey, value,
+                                 defaultWeight );
+                }
+            }
+
+            weights.put( ref, weight );
+        }
+
+        return weights;
+    }
+
+}
@@ -16,18 +16,33 @@
  ******************************************************************************/
 package org.apache.maven.graph.effective.traverse;
 
+import static org.apache.maven.graph.effective.traverse.model.ImpactSummary.addPaths;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectNet;
 import org.apache.maven.graph.effective.rel.DependencyRelationship;
 import org.apache.maven.graph.effective.rel.PluginRelationship;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.traverse.model.ImpactSummary;
+import org.apache.maven.graph.effective.util.ComponentGraph;
 
+/**
+ * Finds how the given impact targets are reached. Run as a traversal, it walks forward from the graph's roots and
+ * records every path ending at a target (see {@link #getImpactedPaths()}). For large graphs,
+ * {@link #analyzeImpact(EProjectNet, ProjectVersionRef...)} walks backwards from the targets instead, touching only
+ * their ancestors, and counts paths rather than listing them.
+ */
 public class ImpactTraversal
     extends AbstractTraversal
 {
@@ -70,6 +85,152 @@ public class ImpactTraversal
         return impactedPaths;
     }
 
+    /**
+     * Walk relationships backwards (using {@link EProjectNet#getRelationshipsTargeting(ProjectVersionRef)}) from each
+     * impact target to the projects that reach it, and count the paths from each root to each target along the way.
+     * Managed relationships are skipped unless this traversal includes managed info. Relationship filters aren't
+     * applied, since their state depends on the path from a root.
+     * 
+     * @param roots Roots to report on. If none are given, every impacted project that nothing else depends on is
+     * reported as a root.
+     */
+    public ImpactSummary analyzeImpact( final EProjectNet net, final ProjectVersionRef... roots )
+    {
+        final Set<ProjectVersionRef> rootSet =
+            roots.length > 0 ? new HashSet<ProjectVersionRef>( Arrays.asList( roots ) ) : null;
+
+        final Set<ProjectVersionRef> impacted = new LinkedHashSet<ProjectVersionRef>();
+        final Map<ProjectVersionRef, Map<ProjectVersionRef, Long>> pathCounts =
+            new LinkedHashMap<ProjectVersionRef, Map<ProjectVersionRef, Long>>();
+
+        for ( final ProjectVersionRef target : impactedPaths.keySet() )
+        {
+            // edges of the target's ancestor cone: each project, mapped to the declaring end of every relationship
+            // targeting it (once per relationship, so parallel relationships count as separate paths).
+            final Map<ProjectVersionRef, List<ProjectVersionRef>> dependents =
+                new LinkedHashMap<ProjectVersionRef, List<ProjectVersionRef>>();
+
+            final LinkedList<ProjectVersionRef> queue = new LinkedList<ProjectVersionRef>();
+            dependents.put( target, new ArrayList<ProjectVersionRef>() );
+            queue.add( target );
+
+            while ( !queue.isEmpty() )
+            {
+                final ProjectVersionRef ref = queue.removeFirst();
+                final Set<ProjectRelationship<?>> rels = net.getRelationshipsTargeting( ref );
+                if ( rels == null )
+                {
+                    continue;
+                }
+
+                final List<ProjectVersionRef> declaring = dependents.get( ref );
+                for ( final ProjectRelationship<?> rel : rels )
+                {
+                    // terminal parents point at the project itself.
+                    final ProjectVersionRef dependent = rel.getDeclaring();
+                    if ( dependent.equals( ref ) || isSkippedManaged( rel ) )
+                    {
+                        continue;
+                    }
+
+                    declaring.add( dependent );
+
+                    if ( !dependents.containsKey( dependent ) )
+                    {
+                        dependents.put( dependent, new ArrayList<ProjectVersionRef>() );
+                        queue.add( dependent );
+                    }
+                }
+            }
+
+            impacted.addAll( dependents.keySet() );
+
+            final Map<ProjectVersionRef, Long> counts = countPaths( target, dependents );
+            for ( final Map.Entry<ProjectVersionRef, Long> entry : counts.entrySet() )
+            {
+                final ProjectVersionRef ref = entry.getKey();
+                final List<ProjectVersionRef> declaring = dependents.get( ref );
+                if ( rootSet == null ? declaring.isEmpty() : rootSet.contains( ref ) )
+                {
+                    Map<ProjectVersionRef, Long> rootCounts = pathCounts.get( ref );
+                    if ( rootCounts == null )
+                    {
+                        rootCounts = new LinkedHashMap<ProjectVersionRef, Long>();
+                        pathCounts.put( ref, rootCounts );
+                    }
+
+                    rootCounts.put( target, entry.getValue() );
+                }
+            }
+        }
+
+        return new ImpactSummary( new LinkedHashSet<ProjectVersionRef>( impactedPaths.keySet() ), impacted,
+                                  pathCounts );
+    }
+
+    /**
+     * Count the paths from every project in the cone to the target, in one pass over the cone's cycle-collapsed
+     * components: each component gets the sum of the counts behind every relationship leaving it, and the target's own
+     * component starts at one.
+     */
+    private Map<ProjectVersionRef, Long> countPaths( final ProjectVersionRef target,
+                                                     final Map<ProjectVersionRef, List<ProjectVersionRef>> dependents )
+    {
+        // components come after the ones they point to; pointing at dependents, that puts the target's last.
+        final ComponentGraph<ProjectVersionRef> components = new ComponentGraph<ProjectVersionRef>( dependents );
+
+        final Map<ProjectVersionRef, List<ProjectVersionRef>> dependencies =
+            new HashMap<ProjectVersionRef, List<ProjectVersionRef>>();
+        for ( final Map.Entry<ProjectVersionRef, List<ProjectVersionRef>> entry : dependents.entrySet() )
+        {
+            for ( final ProjectVersionRef dependent : entry.getValue() )
+            {
+                List<ProjectVersionRef> deps = dependencies.get( dependent );
+                if ( deps == null )
+                {
+                    deps = new ArrayList<ProjectVersionRef>();
+                    dependencies.put( dependent, deps );
+                }
+
+                deps.add( entry.getKey() );
+            }
+        }
+
+        final long[] componentCounts = new long[components.getComponentCount()];
+        final Map<ProjectVersionRef, Long> counts = new LinkedHashMap<ProjectVersionRef, Long>();
+        for ( int c = componentCounts.length - 1; c > -1; c-- )
+        {
+            final Set<ProjectVersionRef> members = components.getComponent( c );
+
+            long count = members.contains( target ) ? 1 : 0;
+            for ( final ProjectVersionRef member : members )
+            {
+                final List<ProjectVersionRef> deps = dependencies.get( member );
+                if ( deps == null )
+                {
+                    continue;
+                }
+
+                for ( final ProjectVersionRef dep : deps )
+                {
+                    final int depComponent = components.getComponentOf( dep );
+                    if ( depComponent != c )
+                    {
+                        count = addPaths( count, componentCounts[depComponent] );
+                    }
+                }
+            }
+
+            componentCounts[c] = count;
+            for ( final ProjectVersionRef member : members )
+            {
+                counts.put( member, count );
+            }
+        }
+
+        return counts;
+    }
+
     @Override
     public boolean traverseEdge( final ProjectRelationship<?> relationship, final List<ProjectRelationship<?>> path,
                                  final int pass )
@@ -94,18 +255,9 @@ public class ImpactTraversal
     public boolean preCheck( final ProjectRelationship<?> relationship, final List<ProjectRelationship<?>> path,
                              final int pass )
     {
-        if ( !includeManagedInfo )
+        if ( isSkippedManaged( relationship ) )
         {
-            if ( relationship instanceof DependencyRelationship
-                && ( (DependencyRelationship) relationship ).isManaged() )
-            {
-                return false;
-            }
-
-            if ( relationship instanceof PluginRelationship && ( (PluginRelationship) relationship ).isManaged() )
-            {
-                return false;
-            }
+            return false;
         }
 
         final Set<List<ProjectRelationship<?>>> paths = impactedPaths.get( relationship.getTarget()
@@ -121,4 +273,19 @@ public class ImpactTraversal
         return true;
     }
 
+    private boolean isSkippedManaged( final ProjectRelationship<?> relationship )
+    {
+        if ( includeManagedInfo )
+        {
+            return false;
+        }
+
+        if ( relationship instanceof DependencyRelationship && ( (DependencyRelationship) relationship ).isManaged() )
+        {
+            return true;
+        }
+
+        return relationship instanceof PluginRelationship && ( (PluginRelationship) relationship ).isManaged();
+    }
+
 }
@@ -17,14 +17,23 @@
 package org.apache.maven.graph.effective.traverse;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.maven.graph.common.DependencyScope;
 import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.common.ref.VersionlessArtifactRef;
+import org.apache.maven.graph.effective.EProjectNet;
 import org.apache.maven.graph.effective.filter.DependencyFilter;
 import org.apache.maven.graph.effective.filter.OrFilter;
 import org.apache.maven.graph.effective.filter.ParentFilter;
@@ -32,6 +41,11 @@ import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
 import org.apache.maven.graph.effective.rel.DependencyRelationship;
 import org.apache.maven.graph.effective.rel.ParentRelationship;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.rel.RelationshipComparator;
+import org.apache.maven.graph.effective.rel.RelationshipPathComparator;
+import org.apache.maven.graph.effective.util.RelationshipUtils;
+import org.apache.maven.graph.spi.GraphDriverException;
+import org.apache.maven.graph.spi.effective.EGraphDriver;
 
 public class TransitiveDependencyTraversal
     extends AbstractFilteringTraversal
@@ -67,6 +81,138 @@ public class TransitiveDependencyTraversal
         return Collections.unmodifiableList( artifacts );
     }
 
+    public Map<ProjectVersionRef, List<ArtifactRef>> getArtifacts( final EProjectNet net,
+                                                                  final ProjectVersionRef... roots )
+        throws GraphDriverException
+    {
+        return getArtifacts( net, Arrays.asList( roots ) );
+    }
+
+    /**
+     * Batch form of traversing from each of the given roots and reading {@link #getArtifacts()}: each root gets the
+     * same artifacts, in the same order, as its own breadth-first traversal with this traversal's filter would give.
+     * Roots that share subgraphs share the work. Relationships are fetched for the whole batch a level at a time (see
+     * {@link EGraphDriver#getRelationshipsDeclaredBy(Collection)}), and the sorted, filtered expansion of a project
+     * under a given filter state (told apart by {@link ProjectRelationshipFilter#render(StringBuilder)}) is worked out
+     * once, then reused by every root and path that reaches it.
+     * <p/>
+     * Which artifact wins and which relationships have been seen still depend on everything walked from a root before,
+     * so those are tracked per root. This traversal's own results aren't touched.
+     * 
+     * @return Artifacts for each root, in root order.
+     */
+    public Map<ProjectVersionRef, List<ArtifactRef>> getArtifacts( final EProjectNet net,
+                                                                  final Collection<ProjectVersionRef> roots )
+        throws GraphDriverException
+    {
+        final Map<ProjectVersionRef, List<ArtifactRef>> result =
+            new LinkedHashMap<ProjectVersionRef, List<ArtifactRef>>();
+        for ( final Map.Entry<ProjectVersionRef, Walk> entry : walk( net, roots, false ).entrySet() )
+        {
+            result.put( entry.getKey(), Collections.unmodifiableList( entry.getValue().artifacts ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * @param track Whether to record the projects each walk expanded and the targets it came across, so
+     * {@link TransitiveDependencyViews} can tell which changes reach it.
+     */
+    Map<ProjectVersionRef, Walk> walk( final EProjectNet net, final Collection<ProjectVersionRef> roots,
+                                       final boolean track )
+        throws GraphDriverException
+    {
+        final ExpansionCache cache = new ExpansionCache( net );
+        final FilterState rootState = new FilterState( getRootFilter() );
+        final RelationshipPathComparator pathComparator = new RelationshipPathComparator();
+
+        final Map<ProjectVersionRef, Walk> result = new LinkedHashMap<ProjectVersionRef, Walk>();
+        for ( final ProjectVersionRef root : new LinkedHashSet<ProjectVersionRef>( roots ) )
+        {
+            final Walk walk = new Walk( track );
+            final Set<VersionlessArtifactRef> rootSeen = new HashSet<VersionlessArtifactRef>();
+            final Set<ProjectRelationship<?>> seenRels = new HashSet<ProjectRelationship<?>>();
+
+            List<Branch> layer =
+                Collections.singletonList( new Branch( root, Collections.<ProjectRelationship<?>> emptyList(),
+                                                       rootState ) );
+            while ( !layer.isEmpty() )
+            {
+                cache.fetch( layer );
+
+                final List<Branch> nextLayer = new ArrayList<Branch>();
+                for ( final Branch branch : layer )
+                {
+                    final List<Step> steps = cache.getExpansion( branch.node, branch.state );
+                    if ( track )
+                    {
+                        walk.expanded.add( branch.node );
+                    }
+
+                    for ( final Step step : steps )
+                    {
+                        // same order of checks as preCheck(..): seen first, then rejected by the filter, which still
+                        // marks it seen.
+                        if ( !seenRels.add( step.relationship ) )
+                        {
+                            continue;
+                        }
+
+                        if ( track )
+                        {
+                            walk.targets.add( step.target );
+                        }
+
+                        if ( !step.accepted )
+                        {
+                            continue;
+                        }
+
+                        boolean extend = false;
+                        if ( step.artifact != null )
+                        {
+                            if ( rootSeen.add( step.versionlessArtifact ) )
+                            {
+                                walk.artifacts.add( step.artifact );
+                                extend = true;
+                            }
+                        }
+                        else
+                        {
+                            extend = step.relationship instanceof ParentRelationship;
+                        }
+
+                        if ( extend )
+                        {
+                            final List<ProjectRelationship<?>> path =
+                                new ArrayList<ProjectRelationship<?>>( branch.path.size() + 1 );
+                            path.addAll( branch.path );
+                            path.add( step.relationship );
+
+                            nextLayer.add( new Branch( step.target, path, step.childState ) );
+                        }
+                    }
+                }
+
+                // drivers order each breadth-first level by path before walking it.
+                Collections.sort( nextLayer, new Comparator<Branch>()
+                {
+                    public int compare( final Branch first, final Branch second )
+                    {
+                        return pathComparator.compare( first.path, second.path );
+                    }
+                } );
+
+                layer = nextLayer;
+            }
+
+            result.put( root, walk );
+        }
+
+        return result;
+    }
+
     @Override
     public boolean shouldTraverseEdge( final ProjectRelationship<?> relationship,
                                        final List<ProjectRelationship<?>> path, final int pass )
@@ -91,4 +237,193 @@ public class TransitiveDependencyTraversal
 
         return result;
     }
+
+    /**
+     * One root's artifacts, plus (when tracked) the projects whose relationships it expanded and the targets of the
+     * relationships it looked at.
+     */
+    static final class Walk
+    {
+        final List<ArtifactRef> artifacts = new ArrayList<ArtifactRef>();
+
+        final Set<ProjectVersionRef> expanded;
+
+        final Set<ProjectVersionRef> targets;
+
+        private Walk( final boolean track )
+        {
+            expanded = track ? new HashSet<ProjectVersionRef>() : null;
+            targets = track ? new HashSet<ProjectVersionRef>() : null;
+        }
+    }
+
+    private static final class FilterState
+    {
+        private final ProjectRelationshipFilter filter;
+
+        private final String key;
+
+        FilterState( final ProjectRelationshipFilter filter )
+        {
+            this.filter = filter;
+            if ( filter == null )
+            {
+                key = "";
+            }
+            else
+            {
+                final StringBuilder sb = new StringBuilder();
+                filter.render( sb );
+                key = sb.toString();
+            }
+        }
+    }
+
+    private static final class Branch
+    {
+        private final ProjectVersionRef node;
+
+        private final List<ProjectRelationship<?>> path;
+
+        private final FilterState state;
+
+        Branch( final ProjectVersionRef node, final List<ProjectRelationship<?>> path, final FilterState state )
+        {
+            this.node = node;
+            this.path = path;
+            this.state = state;
+        }
+    }
+
+    private static final class Step
+    {
+        private final ProjectRelationship<?> relationship;
+
+        private final boolean accepted;
+
+        private final ProjectVersionRef target;
+
+        private final ArtifactRef artifact;
+
+        private final VersionlessArtifactRef versionlessArtifact;
+
+        private final FilterState childState;
+
+        Step( final ProjectRelationship<?> relationship, final FilterState state )
+        {
+            this.relationship = relationship;
+            this.target = relationship.getTarget()
+                                      .asProjectVersionRef();
+
+            final ProjectRelationshipFilter filter = state.filter;
+            accepted = filter == null || filter.accept( relationship );
+            childState = accepted && filter != null ? new FilterState( filter.getChildFilter( relationship ) ) : state;
+
+            if ( relationship instanceof DependencyRelationship )
+            {
+                artifact = (ArtifactRef) relationship.getTarget();
+                versionlessArtifact = new VersionlessArtifactRef( artifact );
+            }
+            else
+            {
+                artifact = null;
+                versionlessArtifact = null;
+            }
+        }
+    }
+
+    /**
+     * Relationships declared by each project, sorted the way drivers walk them, and the expansion of each project under
+     * each filter state. Shared by every root in a batch.
+     */
+    private static final class ExpansionCache
+    {
+        private final EProjectNet net;
+
+        private final Map<ProjectVersionRef, ProjectVersionRef> selected;
+
+        private final Map<ProjectVersionRef, List<ProjectRelationship<?>>> declared =
+            new HashMap<ProjectVersionRef, List<ProjectRelationship<?>>>();
+
+        private final Map<String, Map<ProjectVersionRef, List<Step>>> expansions =
+            new HashMap<String, Map<ProjectVersionRef, List<Step>>>();
+
+        ExpansionCache( final EProjectNet net )
+            throws GraphDriverException
+        {
+            this.net = net;
+
+            final Map<ProjectVersionRef, ProjectVersionRef> selected = net.getDriver()
+                                                                          .getSelectedVersions();
+            this.selected =
+                selected == null ? Collections.<ProjectVersionRef, ProjectVersionRef> emptyMap() : selected;
+        }
+
+        void fetch( final List<Branch> layer )
+        {
+            final Set<ProjectVersionRef> missing = new LinkedHashSet<ProjectVersionRef>();
+            for ( final Branch branch : layer )
+            {
+                if ( !declared.containsKey( branch.node ) )
+                {
+                    missing.add( branch.node );
+                }
+            }
+
+            if ( missing.isEmpty() )
+            {
+                return;
+            }
+
+            final Map<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>> fetched =
+                net.getDriver()
+                   .getRelationshipsDeclaredBy( missing );
+
+            for ( final ProjectVersionRef ref : missing )
+            {
+                final Collection<? extends ProjectRelationship<?>> rels = fetched == null ? null : fetched.get( ref );
+                if ( rels == null || rels.isEmpty() )
+                {
+                    declared.put( ref, Collections.<ProjectRelationship<?>> emptyList() );
+                    continue;
+                }
+
+                final List<ProjectRelationship<?>> sorted = new ArrayList<ProjectRelationship<?>>( rels.size() );
+                for ( final ProjectRelationship<?> rel : rels )
+                {
+                    sorted.add( RelationshipUtils.selectTarget( rel, selected ) );
+                }
+
+                RelationshipUtils.filterTerminalParents( sorted );
+                Collections.sort( sorted, new RelationshipComparator() );
+
+                declared.put( ref, sorted );
+            }
+        }
+
+        List<Step> getExpansion( final ProjectVersionRef node, final FilterState state )
+        {
+            Map<ProjectVersionRef, List<Step>> byNode = expansions.get( state.key );
+            if ( byNode == null )
+            {
+                byNode = new HashMap<ProjectVersionRef, List<Step>>();
+                expansions.put( state.key, byNode );
+            }
+
+            List<Step> steps = byNode.get( node );
+            if ( steps == null )
+            {
+                final List<ProjectRelationship<?>> rels = declared.get( node );
+                steps = new ArrayList<Step>( rels.size() );
+                for ( final ProjectRelationship<?> rel : rels )
+                {
+                    steps.add( new Step( rel, state ) );
+                }
+
+                byNode.put( node, steps );
+            }
+
+            return steps;
+        }
+    }
 }
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.traverse;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectNet;
+import org.apache.maven.graph.spi.GraphDriverException;
+
+/**
+ * Materialized transitive dependencies of one root in one scope: what a {@link TransitiveDependencyTraversal} for
+ * that scope would collect. Registered through {@link EProjectNet#getDependencyViews()}, and kept current as
+ * relationships are added and versions selected or cleared through that net.
+ */
+public final class TransitiveDependencyView
+{
+
+    private final TransitiveDependencyViews views;
+
+    private final ProjectVersionRef root;
+
+    private final DependencyScope scope;
+
+    // null while stale; guarded by views.
+    List<ArtifactRef> artifacts;
+
+    Set<ProjectVersionRef> expanded;
+
+    Set<ProjectVersionRef> targets;
+
+    TransitiveDependencyView( final TransitiveDependencyViews views, final ProjectVersionRef root,
+                              final DependencyScope scope )
+    {
+        this.views = views;
+        this.root = root;
+        this.scope = scope;
+    }
+
+    public ProjectVersionRef getRoot()
+    {
+        return root;
+    }
+
+    public DependencyScope getScope()
+    {
+        return scope;
+    }
+
+    /**
+     * @return Whether a change to the net has reached this view since it was last computed. Stale views are recomputed
+     *         the next time any of them is read.
+     */
+    public boolean isStale()
+    {
+        synchronized ( views )
+        {
+            return artifacts == null;
+        }
+    }
+
+    /**
+     * @return Same artifacts, in the same order, as a {@link TransitiveDependencyTraversal} for this scope run from
+     *         the root.
+     */
+    public List<ArtifactRef> getArtifacts()
+        throws GraphDriverException
+    {
+        return views.getArtifacts( this );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "TransitiveDependencyView [root=%s, scope=%s]", root, scope );
+    }
+
+}
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.traverse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectNet;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.traverse.TransitiveDependencyTraversal.Walk;
+import org.apache.maven.graph.spi.GraphDriverException;
+
+/**
+ * {@link TransitiveDependencyView}s registered on one {@link EProjectNet}, kept current as the net changes.
+ * <p/>
+ * A view's walk only changes if a change reaches it: a relationship added to a project it expanded, or a version
+ * selected (or cleared) for a project it came across. Only views reached that way are marked stale; the rest are
+ * left alone. The next time any stale view is read, all stale views of the same scope are recomputed in one batch
+ * (see {@link TransitiveDependencyTraversal#getArtifacts(EProjectNet, Collection)}), so the roots share their common
+ * subgraphs.
+ * <p/>
+ * Changes made through the net's driver directly, or through another net sharing it, aren't seen here.
+ */
+public final class TransitiveDependencyViews
+{
+
+    private final EProjectNet net;
+
+    private final Map<DependencyScope, Map<ProjectVersionRef, TransitiveDependencyView>> views =
+        new LinkedHashMap<DependencyScope, Map<ProjectVersionRef, TransitiveDependencyView>>();
+
+    public TransitiveDependencyViews( final EProjectNet net )
+    {
+        this.net = net;
+    }
+
+    /**
+     * @return The view for the given root and scope, registering it if it isn't already. New views start out stale.
+     */
+    public synchronized TransitiveDependencyView register( final ProjectVersionRef root, final DependencyScope scope )
+    {
+        Map<ProjectVersionRef, TransitiveDependencyView> byRoot = views.get( scope );
+        if ( byRoot == null )
+        {
+            byRoot = new LinkedHashMap<ProjectVersionRef, TransitiveDependencyView>();
+            views.put( scope, byRoot );
+        }
+
+        TransitiveDependencyView view = byRoot.get( root );
+        if ( view == null )
+        {
+            view = new TransitiveDependencyView( this, root, scope );
+            byRoot.put( root, view );
+        }
+
+        return view;
+    }
+
+    public synchronized boolean unregister( final ProjectVersionRef root, final DependencyScope scope )
+    {
+        final Map<ProjectVersionRef, TransitiveDependencyView> byRoot = views.get( scope );
+        return byRoot != null && byRoot.remove( root ) != null;
+    }
+
+    /**
+     * @return The registered view for the given root and scope, or null.
+     */
+    public synchronized TransitiveDependencyView getView( final ProjectVersionRef root, final DependencyScope scope )
+    {
+        final Map<ProjectVersionRef, TransitiveDependencyView> byRoot = views.get( scope );
+        return byRoot == null ? null : byRoot.get( root );
+    }
+
+    public synchronized List<TransitiveDependencyView> getViews()
+    {
+        final List<TransitiveDependencyView> result = new ArrayList<TransitiveDependencyView>();
+        for ( final Map<ProjectVersionRef, TransitiveDependencyView> byRoot : views.values() )
+        {
+            result.addAll( byRoot.values() );
+        }
+
+        return result;
+    }
+
+    /**
+     * Mark stale the views that expanded the declaring project of any of the given (newly added) relationships.
+     */
+    public synchronized void relationshipsAdded( final Collection<? extends ProjectRelationship<?>> rels )
+    {
+        if ( rels == null || rels.isEmpty() )
+        {
+            return;
+        }
+
+        final Set<ProjectVersionRef> declaring = new HashSet<ProjectVersionRef>();
+        for ( final ProjectRelationship<?> rel : rels )
+        {
+            declaring.add( rel.getDeclaring() );
+        }
+
+        for ( final Map<ProjectVersionRef, TransitiveDependencyView> byRoot : views.values() )
+        {
+            for ( final TransitiveDependencyView view : byRoot.values() )
+            {
+                if ( view.artifacts != null && !Collections.disjoint( view.expanded, declaring ) )
+                {
+                    invalidate( view );
+                }
+            }
+        }
+    }
+
+    public synchronized void versionSelected( final ProjectVersionRef variable, final ProjectVersionRef selected )
+    {
+        final Set<ProjectVersionRef> refs = new HashSet<ProjectVersionRef>();
+        refs.add( variable );
+        refs.add( selected );
+
+        projectsChanged( refs );
+    }
+
+    /**
+     * @param cleared Variable projects mapped to the versions that had been selected for them.
+     */
+    public synchronized void selectionsCleared( final Map<ProjectVersionRef, ProjectVersionRef> cleared )
+    {
+        if ( cleared == null || cleared.isEmpty() )
+        {
+            return;
+        }
+
+        final Set<ProjectVersionRef> refs = new HashSet<ProjectVersionRef>( cleared.keySet() );
+        refs.addAll( cleared.values() );
+
+        projectsChanged( refs );
+    }
+
+    // a view is reached if it came across any of the projects, whether it expanded them or not.
+    private void projectsChanged( final Set<ProjectVersionRef> refs )
+    {
+        for ( final Map<ProjectVersionRef, TransitiveDependencyView> byRoot : views.values() )
+        {
+            for ( final TransitiveDependencyView view : byRoot.values() )
+            {
+                if ( view.artifacts != null
+                    && ( !Collections.disjoint( view.expanded, refs ) || !Collections.disjoint( view.targets, refs ) ) )
+                {
+                    invalidate( view );
+                }
+            }
+        }
+    }
+
+    private void invalidate( final TransitiveDependencyView view )
+    {
+        view.artifacts = null;
+        view.expanded = null;
+        view.targets = null;
+    }
+
+    synchronized List<ArtifactRef> getArtifacts( final TransitiveDependencyView view )
+        throws GraphDriverException
+    {
+        if ( view.artifacts == null )
+        {
+            refresh( view );
+        }
+
+        return view.artifacts;
+    }
+
+    // recompute the given view along with every other stale one of its scope; the view may have been unregistered.
+    private void refresh( final TransitiveDependencyView view )
+        throws GraphDriverException
+    {
+        final List<TransitiveDependencyView> stale = new ArrayList<TransitiveDependencyView>();
+        stale.add( view );
+
+        final Map<ProjectVersionRef, TransitiveDependencyView> byRoot = views.get( view.getScope() );
+        if ( byRoot != null )
+        {
+            for ( final TransitiveDependencyView other : byRoot.values() )
+            {
+                if ( other != view && other.artifacts == null )
+                {
+                    stale.add( other );
+                }
+            }
+        }
+
+        final List<ProjectVersionRef> roots = new ArrayList<ProjectVersionRef>( stale.size() );
+        for ( final TransitiveDependencyView v : stale )
+        {
+            roots.add( v.getRoot() );
+        }
+
+        final Map<ProjectVersionRef, Walk> walks =
+            new TransitiveDependencyTraversal( view.getScope() ).walk( net, roots, true );
+        for ( final TransitiveDependencyView v : stale )
+        {
+            final Walk walk = walks.get( v.getRoot() );
+
+            v.artifacts = Collections.unmodifiableList( walk.artifacts );
+            v.expanded = walk.expanded;
+            v.targets = walk.targets;
+        }
+    }
+
+}
@@ -0,0 +1,444 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.traverse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectNet;
+import org.apache.maven.graph.effective.filter.DependencyFilter;
+import org.apache.maven.graph.effective.filter.OrFilter;
+import org.apache.maven.graph.effective.filter.ParentFilter;
+import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
+import org.apache.maven.graph.effective.traverse.model.BuildOrder;
+import org.apache.maven.graph.spi.GraphDriverException;
+import org.apache.maven.graph.spi.effective.EGraphDriver;
+import org.commonjava.util.logging.Logger;
+
+/**
+ * Memoizes the results of the standard traversals ({@link TransitiveDependencyTraversal},
+ * {@link AncestryTraversal}, {@link BuildOrderTraversal}), keyed by root, filter (as
+ * {@link ProjectRelationshipFilter#render(StringBuilder)} renders it), {@link EGraphDriver#getGraphId()} and
+ * {@link EGraphDriver#getGraphVersion()}, so asking again for an unchanged graph skips the walk. Results for older
+ * versions of a graph can't be asked for again, so they're dropped as soon as a newer version turns up; beyond that,
+ * the least recently used results are evicted once the cache is full.
+ * <p/>
+ * Given a file, the cache loads what it holds on construction and stores its contents there on {@link #flush()}.
+ */
+public final class TraversalCache
+{
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final Logger logger = new Logger( getClass() );
+
+    private final int maxEntries;
+
+    private final File file;
+
+    private final Map<Key, Serializable> entries;
+
+    private final Map<String, Long> latestVersions = new HashMap<String, Long>();
+
+    private long hits;
+
+    private long misses;
+
+    public TraversalCache()
+    {
+        this( DEFAULT_MAX_ENTRIES );
+    }
+
+    public TraversalCache( final int maxEntries )
+    {
+        this.maxEntries = maxEntries;
+        this.file = null;
+        this.entries = newEntryMap();
+    }
+
+    /**
+     * @param file Where the cache is stored. Loaded now if it exists; if it can't be read, the cache starts out empty.
+     */
+    public TraversalCache( final int maxEntries, final File file )
+    {
+        this.maxEntries = maxEntries;
+        this.file = file;
+        this.entries = newEntryMap();
+
+        if ( file != null && file.isFile() )
+        {
+            load();
+        }
+    }
+
+    /**
+     * Same as {@link TransitiveDependencyTraversal#TransitiveDependencyTraversal(DependencyScope)} run from root.
+     */
+    public List<ArtifactRef> getArtifacts( final EProjectNet net, final ProjectVersionRef root,
+                                           final DependencyScope scope )
+        throws GraphDriverException
+    {
+        return getArtifacts( net, root, new OrFilter( new DependencyFilter( scope ), new ParentFilter( false ) ) );
+    }
+
+    /**
+     * Same as {@link TransitiveDependencyTraversal#TransitiveDependencyTraversal(ProjectRelationshipFilter)} run from
+     * root.
+     */
+    @SuppressWarnings( "unchecked" )
+    public List<ArtifactRef> getArtifacts( final EProjectNet net, final ProjectVersionRef root,
+                                           final ProjectRelationshipFilter filter )
+        throws GraphDriverException
+    {
+        return Collections.unmodifiableList( (List<ArtifactRef>) get( Kind.ARTIFACTS, net, root, filter ) );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public List<ProjectVersionRef> getAncestry( final EProjectNet net, final ProjectVersionRef root )
+        throws GraphDriverException
+    {
+        return Collections.unmodifiableList( (List<ProjectVersionRef>) get( Kind.ANCESTRY, net, root, null ) );
+    }
+
+    /**
+     * Same as {@link BuildOrderTraversal#BuildOrderTraversal(ProjectRelationshipFilter)} run from root, or the
+     * unfiltered traversal if filter is null.
+     */
+    public BuildOrder getBuildOrder( final EProjectNet net, final ProjectVersionRef root,
+                                     final ProjectRelationshipFilter filter )
+        throws GraphDriverException
+    {
+        return (BuildOrder) get( Kind.BUILD_ORDER, net, root, filter );
+    }
+
+    private Serializable get( final Kind kind, final EProjectNet net, final ProjectVersionRef root,
+                              final ProjectRelationshipFilter filter )
+        throws GraphDriverException
+    {
+        final EGraphDriver driver = net.getDriver();
+        final long version = driver.getGraphVersion();
+        final Key key = new Key( kind, root, render( filter ), driver.getGraphId(), version );
+
+        synchronized ( this )
+        {
+            final Serializable cached = entries.get( key );
+            if ( cached != null )
+            {
+                hits++;
+                return cached;
+            }
+
+            misses++;
+        }
+
+        final Serializable result = traverse( kind, net, root, filter );
+
+        synchronized ( this )
+        {
+            // if the graph changed during the walk, the result may mix versions; don't keep it.
+            if ( driver.getGraphVersion() == version )
+            {
+                final Long latest = latestVersions.get( key.graph );
+                if ( latest == null || version > latest )
+                {
+                    dropBefore( key.graph, version );
+                }
+
+                entries.put( key, result );
+            }
+        }
+
+        return result;
+    }
+
+    private Serializable traverse( final Kind kind, final EProjectNet net, final ProjectVersionRef root,
+                                   final ProjectRelationshipFilter filter )
+        throws GraphDriverException
+    {
+        switch ( kind )
+        {
+            case ARTIFACTS:
+            {
+                final TransitiveDependencyTraversal traversal = new TransitiveDependencyTraversal( filter );
+                net.getDriver()
+                   .traverse( traversal, net, root );
+
+                return new ArrayList<ArtifactRef>( traversal.getArtifacts() );
+            }
+            case ANCESTRY:
+            {
+                final AncestryTraversal traversal = new AncestryTraversal();
+                net.getDriver()
+                   .traverse( traversal, net, root );
+
+                return new ArrayList<ProjectVersionRef>( traversal.getAncestry() );
+            }
+            default:
+            {
+                final BuildOrderTraversal traversal =
+                    filter == null ? new BuildOrderTraversal() : new BuildOrderTraversal( filter );
+                net.getDriver()
+                   .traverse( traversal, net, root );
+
+                return traversal.getBuildOrder();
+            }
+        }
+    }
+
+    private static String render( final ProjectRelationshipFilter filter )
+    {
+        if ( filter == null )
+        {
+            return "";
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        filter.render( sb );
+
+        return sb.toString();
+    }
+
+    // a graph's versions only go up, so entries for older ones can't be hit again.
+    private void dropBefore( final String graph, final long version )
+    {
+        for ( final Iterator<Key> it = entries.keySet()
+                                              .iterator(); it.hasNext(); )
+        {
+            final Key key = it.next();
+            if ( key.version < version && key.graph.equals( graph ) )
+            {
+                it.remove();
+            }
+        }
+
+        latestVersions.put( graph, version );
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        latestVersions.clear();
+    }
+
+    /**
+     * Store the cache in its file, if it has one. Written to a temporary file first, so a failed write leaves the
+     * previous contents in place.
+     */
+    public synchronized void flush()
+        throws IOException
+    {
+        if ( file == null )
+        {
+            return;
+        }
+
+        final File dir = file.getAbsoluteFile()
+                             .getParentFile();
+        if ( dir != null && !dir.isDirectory() && !dir.mkdirs() )
+        {
+            throw new IOException( "Cannot create directory for traversal cache: " + dir );
+        }
+
+        final File tmp = new File( dir, file.getName() + ".tmp" );
+
+        ObjectOutputStream out = null;
+        try
+        {
+            out = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+            out.writeObject( new LinkedHashMap<Key, Serializable>( entries ) );
+        }
+        finally
+        {
+            if ( out != null )
+            {
+                out.close();
+            }
+        }
+
+        if ( !tmp.renameTo( file ) && ( !file.delete() || !tmp.renameTo( file ) ) )
+        {
+            throw new IOException( "Cannot replace traversal cache: " + file );
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private void load()
+    {
+        ObjectInputStream in = null;
+        try
+        {
+            in = new ObjectInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+
+            final Map<Key, Serializable> stored = (Map<Key, Serializable>) in.readObject();
+            for ( final Map.Entry<Key, Serializable> entry : stored.entrySet() )
+            {
+                final Key key = entry.getKey();
+                entries.put( key, entry.getValue() );
+
+                final Long latest = latestVersions.get( key.graph );
+                if ( latest == null || key.version > latest )
+                {
+                    latestVersions.put( key.graph, key.version );
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            logger.error( "Failed to load traversal cache from: %s. Starting empty. Error: %s", e, file,
+                          e.getMessage() );
+            entries.clear();
+            latestVersions.clear();
+        }
+        catch ( final ClassNotFoundException e )
+        {
+            logger.error( "Failed to load traversal cache from: %s. Starting empty. Error: %s", e, file,
+                          e.getMessage() );
+            entries.clear();
+            latestVersions.clear();
+        }
+        catch ( final ClassCastException e )
+        {
+            logger.error( "Failed to load traversal cache from: %s. Starting empty. Error: %s", e, file,
+                          e.getMessage() );
+            entries.clear();
+            latestVersions.clear();
+        }
+        finally
+        {
+            if ( in != null )
+            {
+                try
+                {
+                    in.close();
+                }
+                catch ( final IOException e )
+                {
+                    // nothing more to do.
+                }
+            }
+        }
+    }
+
+    private Map<Key, Serializable> newEntryMap()
+    {
+        return new LinkedHashMap<Key, Serializable>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<Key, Serializable> eldest )
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static enum Kind
+    {
+        ARTIFACTS, ANCESTRY, BUILD_ORDER;
+    }
+
+    private static final class Key
+        implements Serializable
+    {
+
+        private static final long serialVersionUID = 2L;
+
+        private final Kind kind;
+
+        private final ProjectVersionRef root;
+
+        private final String filter;
+
+        private final String graph;
+
+        private final long version;
+
+        Key( final Kind kind, final ProjectVersionRef root, final String filter, final String graph,
+             final long version )
+        {
+            this.kind = kind;
+            this.root = root;
+            this.filter = filter;
+            this.graph = graph;
+            this.version = version;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            final int prime = 31;
+            int result = kind.hashCode();
+            result = prime * result + root.hashCode();
+            result = prime * result + filter.hashCode();
+            result = prime * result + graph.hashCode();
+            result = prime * result + (int) ( version ^ ( version >>> 32 ) );
+            return result;
+        }
+
+        @Override
+        public boolean equals( final Object obj )
+        {
+            if ( this == obj )
+            {
+                return true;
+            }
+            if ( !( obj instanceof Key ) )
+            {
+                return false;
+            }
+
+            final Key other = (Key) obj;
+            return version == other.version && kind == other.kind && root.equals( other.root )
+                && filter.equals( other.filter ) && graph.equals( other.graph );
+        }
+
+    }
+
+}
@@ -16,6 +16,7 @@
  ******************************************************************************/
 package org.apache.maven.graph.effective.traverse.model;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -24,15 +25,30 @@ import org.apache.maven.graph.common.ref.ProjectRef;
 import org.apache.maven.graph.effective.EProjectCycle;
 
 public final class BuildOrder
+    implements Serializable
 {
 
+    private static final long serialVersionUID = 1L;
+
     private final List<ProjectRef> order;
 
+    private final List<Set<ProjectRef>> waves;
+
+    private final List<Set<ProjectRef>> cycleGroups;
+
     private final Set<EProjectCycle> cycles;
 
     public BuildOrder( final List<ProjectRef> order, final Set<EProjectCycle> cycles )
+    {
+        this( order, Collections.<Set<ProjectRef>> emptyList(), Collections.<Set<ProjectRef>> emptyList(), cycles );
+    }
+
+    public BuildOrder( final List<ProjectRef> order, final List<Set<ProjectRef>> waves,
+                       final List<Set<ProjectRef>> cycleGroups, final Set<EProjectCycle> cycles )
     {
         this.order = Collections.unmodifiableList( order );
+        this.waves = Collections.unmodifiableList( waves );
+        this.cycleGroups = Collections.unmodifiableList( cycleGroups );
         this.cycles = cycles == null ? null : Collections.unmodifiableSet( cycles );
     }
 
@@ -41,6 +57,23 @@ public final class BuildOrder
         return order;
     }
 
+    /**
+     * @return Projects grouped into waves: every project in a wave only needs projects from earlier waves (or from its
+     * own cycle group), so each wave can be built in parallel once the ones before it are done.
+     */
+    public List<Set<ProjectRef>> getWaves()
+    {
+        return waves;
+    }
+
+    /**
+     * @return Sets of projects that depend on each other in a cycle, and so have to be built together.
+     */
+    public List<Set<ProjectRef>> getCycleGroups()
+    {
+        return cycleGroups;
+    }
+
     public Set<EProjectCycle> getCycles()
     {
         return cycles;
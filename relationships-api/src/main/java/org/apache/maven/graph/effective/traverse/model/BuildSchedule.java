@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.traverse.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.graph.common.ref.ProjectRef;
+
+/**
+ * Timing of a build where every project starts as soon as everything it needs is built, given each project's build
+ * time. Projects in a cycle group share the group's timing, since they are built together.
+ */
+public final class BuildSchedule
+{
+
+    private final double duration;
+
+    private final List<ProjectRef> criticalPath;
+
+    private final Map<ProjectRef, Double> weights;
+
+    private final Map<ProjectRef, Double> earliestStarts;
+
+    private final Map<ProjectRef, Double> latestStarts;
+
+    public BuildSchedule( final double duration, final List<ProjectRef> criticalPath,
+                          final Map<ProjectRef, Double> weights, final Map<ProjectRef, Double> earliestStarts,
+                          final Map<ProjectRef, Double> latestStarts )
+    {
+        this.duration = duration;
+        this.criticalPath = Collections.unmodifiableList( criticalPath );
+        this.weights = Collections.unmodifiableMap( weights );
+        this.earliestStarts = Collections.unmodifiableMap( earliestStarts );
+        this.latestStarts = Collections.unmodifiableMap( latestStarts );
+    }
+
+    /**
+     * @return Length of the whole build with unlimited parallelism: the weight of the critical path.
+     */
+    public double getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * @return The longest weighted chain of projects, in build order. None of them can start late without delaying the
+     * whole build.
+     */
+    public List<ProjectRef> getCriticalPath()
+    {
+        return criticalPath;
+    }
+
+    public Map<ProjectRef, Double> getWeights()
+    {
+        return weights;
+    }
+
+    /**
+     * @return Earliest start time of the project, or null if it wasn't scheduled.
+     */
+    public Double getEarliestStart( final ProjectRef ref )
+    {
+        return earliestStarts.get( ref );
+    }
+
+    /**
+     * @return Latest start time of the project that doesn't delay the whole build, or null if it wasn't scheduled.
+     */
+    public Double getLatestStart( final ProjectRef ref )
+    {
+        return latestStarts.get( ref );
+    }
+
+    /**
+     * @return How long the project's start can slip without delaying the whole build (zero on the critical path), or
+     * null if it wasn't scheduled.
+     */
+    public Double getSlack( final ProjectRef ref )
+    {
+        final Double earliest = earliestStarts.get( ref );
+        return earliest == null ? null : latestStarts.get( ref ) - earliest;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.traverse.model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+
+/**
+ * Result of walking backwards from a set of impact targets: every project that can reach one of them (their ancestor
+ * cone), and for each impacted root the number of relationship paths leading from it to each target.
+ * <p/>
+ * Path counts treat each cycle as a single project, so they stay finite; they saturate at {@link Long#MAX_VALUE}.
+ */
+public final class ImpactSummary
+{
+
+    private final Set<ProjectVersionRef> targets;
+
+    private final Set<ProjectVersionRef> impactedProjects;
+
+    private final Map<ProjectVersionRef, Map<ProjectVersionRef, Long>> pathCounts;
+
+    public ImpactSummary( final Set<ProjectVersionRef> targets, final Set<ProjectVersionRef> impactedProjects,
+                          final Map<ProjectVersionRef, Map<ProjectVersionRef, Long>> pathCounts )
+    {
+        this.targets = Collections.unmodifiableSet( targets );
+        this.impactedProjects = Collections.unmodifiableSet( impactedProjects );
+        this.pathCounts = Collections.unmodifiableMap( pathCounts );
+    }
+
+    public Set<ProjectVersionRef> getTargets()
+    {
+        return targets;
+    }
+
+    /**
+     * @return Every project with a path to at least one target, including the targets themselves.
+     */
+    public Set<ProjectVersionRef> getImpactedProjects()
+    {
+        return impactedProjects;
+    }
+
+    public boolean isImpacted( final ProjectVersionRef ref )
+    {
+        return impactedProjects.contains( ref );
+    }
+
+    /**
+     * @return The roots with a path to at least one target.
+     */
+    public Set<ProjectVersionRef> getImpactedRoots()
+    {
+        return pathCounts.keySet();
+    }
+
+    /**
+     * @return Number of paths from the root to each target it reaches, or an empty map if it isn't impacted.
+     */
+    public Map<ProjectVersionRef, Long> getPathCounts( final ProjectVersionRef root )
+    {
+        final Map<ProjectVersionRef, Long> counts = pathCounts.get( root );
+        if ( counts == null )
+        {
+            return Collections.emptyMap();
+        }
+
+        return Collections.unmodifiableMap( counts );
+    }
+
+    public long getPathCount( final ProjectVersionRef root, final ProjectVersionRef target )
+    {
+        final Long count = getPathCounts( root ).get( target );
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return Number of paths from the root to any of the targets.
+     */
+    public long getPathCount( final ProjectVersionRef root )
+    {
+        long total = 0;
+        for ( final Long count : getPathCounts( root ).values() )
+        {
+            total = addPaths( total, count );
+        }
+
+        return total;
+    }
+
+    /**
+     * Add two path counts, saturating at {@link Long#MAX_VALUE} instead of overflowing.
+     */
+    public static long addPaths( final long a, final long b )
+    {
+        final long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+}
@@ -0,0 +1,597 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.traverse.model;
+
+import static org.apache.maven.graph.effective.traverse.model.ImpactSummary.addPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.rel.RelationshipComparator;
+import org.apache.maven.graph.effective.util.ComponentGraph;
+
+/**
+ * All paths from a set of roots to a set of targets, held as the sub-graph of relationships that lie on at least one
+ * of them instead of as a list per path. The number of paths can grow exponentially with the size of the graph; this
+ * stays linear, and still supports counting paths, finding the shortest one, and iterating (some of) them lazily.
+ * <p/>
+ * Paths are simple: none visits a project twice. Cycles are condensed into components (see {@link ComponentGraph}),
+ * paths between components are counted once per project, and only the simple paths inside a component are walked.
+ * Paths have at least one relationship; a root that is also a target doesn't count as a path to itself.
+ */
+public final class PathGraph
+    implements Iterable<List<ProjectRelationship<?>>>
+{
+
+    public static final class Builder
+    {
+        private final Set<ProjectVersionRef> roots;
+
+        private final Set<ProjectVersionRef> targets;
+
+        private final Map<ProjectVersionRef, List<ProjectRelationship<?>>> edges =
+            new LinkedHashMap<ProjectVersionRef, List<ProjectRelationship<?>>>();
+
+        private final Set<ProjectRelationship<?>> seen = new HashSet<ProjectRelationship<?>>();
+
+        public Builder( final Collection<ProjectVersionRef> roots, final ProjectVersionRef... targets )
+        {
+            this.roots = new LinkedHashSet<ProjectVersionRef>( roots );
+            this.targets = new LinkedHashSet<ProjectVersionRef>( Arrays.asList( targets ) );
+        }
+
+        /**
+         * Add a relationship that may lie on a path. It doesn't matter whether it does; relationships that can't be
+         * reached from a root, or can't reach a target, are pruned when the graph is built.
+         */
+        public Builder withRelationship( final ProjectRelationship<?> rel )
+        {
+            final ProjectVersionRef declaring = rel.getDeclaring();
+            if ( declaring.equals( targetOf( rel ) ) || !seen.add( rel ) )
+            {
+                // terminal parents point at the project itself.
+                return this;
+            }
+
+            List<ProjectRelationship<?>> out = edges.get( declaring );
+            if ( out == null )
+            {
+                out = new ArrayList<ProjectRelationship<?>>();
+                edges.put( declaring, out );
+            }
+
+            out.add( rel );
+            return this;
+        }
+
+        public Builder withRelationships( final Collection<? extends ProjectRelationship<?>> rels )
+        {
+            for ( final ProjectRelationship<?> rel : rels )
+            {
+                withRelationship( rel );
+            }
+
+            return this;
+        }
+
+        public PathGraph build()
+        {
+            // drivers find relationships in no particular order; sort them the way traversals see them.
+            final RelationshipComparator comparator = new RelationshipComparator();
+            for ( final List<ProjectRelationship<?>> out : edges.values() )
+            {
+                Collections.sort( out, comparator );
+            }
+
+            return new PathGraph( roots, targets, edges );
+        }
+    }
+
+    private final Set<ProjectVersionRef> roots;
+
+    private final Set<ProjectVersionRef> targets;
+
+    private final Map<ProjectVersionRef, List<ProjectRelationship<?>>> edges =
+        new LinkedHashMap<ProjectVersionRef, List<ProjectRelationship<?>>>();
+
+    private final Map<ProjectVersionRef, Long> pathCounts = new HashMap<ProjectVersionRef, Long>();
+
+    private final Set<ProjectVersionRef> projects = new LinkedHashSet<ProjectVersionRef>();
+
+    private int relationshipCount;
+
+    private PathGraph( final Set<ProjectVersionRef> roots, final Set<ProjectVersionRef> targets,
+                       final Map<ProjectVersionRef, List<ProjectRelationship<?>>> candidates )
+    {
+        this.roots = Collections.unmodifiableSet( roots );
+        this.targets = Collections.unmodifiableSet( targets );
+
+        // everything reachable from the roots, condensed so each cycle sits inside one component.
+        final Map<ProjectVersionRef, List<ProjectVersionRef>> reachable =
+            new LinkedHashMap<ProjectVersionRef, List<ProjectVersionRef>>();
+
+        final LinkedList<ProjectVersionRef> queue = new LinkedList<ProjectVersionRef>( roots );
+        while ( !queue.isEmpty() )
+        {
+            final ProjectVersionRef node = queue.removeFirst();
+            if ( reachable.containsKey( node ) )
+            {
+                continue;
+            }
+
+            final List<ProjectVersionRef> next = new ArrayList<ProjectVersionRef>();
+            for ( final ProjectRelationship<?> rel : outOf( candidates, node ) )
+            {
+                next.add( targetOf( rel ) );
+            }
+
+            reachable.put( node, next );
+            queue.addAll( next );
+        }
+
+        final ComponentGraph<ProjectVersionRef> components = new ComponentGraph<ProjectVersionRef>( reachable );
+
+        // count the paths from each project, components after all the ones they lead to. A simple path leaves a
+        // component at most once, so it's a simple path inside the component followed by one out of it (or none,
+        // if it ends at a target inside).
+        final Map<ProjectVersionRef, Long> exits = new HashMap<ProjectVersionRef, Long>();
+        for ( int c = 0; c < components.getComponentCount(); c++ )
+        {
+            final Set<ProjectVersionRef> component = components.getComponent( c );
+            for ( final ProjectVersionRef node : component )
+            {
+                long exit = targets.contains( node ) ? 1 : 0;
+                for ( final ProjectRelationship<?> rel : outOf( candidates, node ) )
+                {
+                    final ProjectVersionRef target = targetOf( rel );
+                    if ( !component.contains( target ) )
+                    {
+                        exit = addPaths( exit, countOf( pathCounts, target ) );
+                    }
+                }
+
+                exits.put( node, exit );
+            }
+
+            for ( final ProjectVersionRef node : component )
+            {
+                final long count = walkComponent( node, component, candidates, exits, null, null );
+                if ( count > 0 )
+                {
+                    pathCounts.put( node, count );
+                }
+            }
+        }
+
+        // keep relationships on a path, walking components down from the roots: each is entered at roots and at
+        // projects kept relationships lead to, and simple paths from there are already simple paths from a root.
+        final Set<ProjectRelationship<?>> keep = new HashSet<ProjectRelationship<?>>();
+        final Set<ProjectVersionRef> entered = new HashSet<ProjectVersionRef>( roots );
+        for ( int c = components.getComponentCount() - 1; c > -1; c-- )
+        {
+            final Set<ProjectVersionRef> component = components.getComponent( c );
+            final Set<ProjectVersionRef> reached = new HashSet<ProjectVersionRef>();
+            for ( final ProjectVersionRef node : component )
+            {
+                if ( entered.contains( node ) && countOf( pathCounts, node ) > 0 )
+                {
+                    walkComponent( node, component, candidates, exits, keep, reached );
+                }
+            }
+
+            for ( final ProjectVersionRef node : reached )
+            {
+                for ( final ProjectRelationship<?> rel : outOf( candidates, node ) )
+                {
+                    final ProjectVersionRef target = targetOf( rel );
+                    if ( !component.contains( target ) && countOf( pathCounts, target ) > 0 )
+                    {
+                        keep.add( rel );
+                        entered.add( target );
+                    }
+                }
+            }
+        }
+
+        for ( final ProjectVersionRef root : roots )
+        {
+            if ( pathCounts.containsKey( root ) )
+            {
+                projects.add( root );
+            }
+        }
+
+        for ( final Map.Entry<ProjectVersionRef, List<ProjectRelationship<?>>> entry : candidates.entrySet() )
+        {
+            final List<ProjectRelationship<?>> kept = new ArrayList<ProjectRelationship<?>>();
+            for ( final ProjectRelationship<?> rel : entry.getValue() )
+            {
+                if ( keep.contains( rel ) )
+                {
+                    kept.add( rel );
+                    projects.add( targetOf( rel ) );
+                }
+            }
+
+            if ( !kept.isEmpty() )
+            {
+                projects.add( entry.getKey() );
+                edges.put( entry.getKey(), Collections.unmodifiableList( kept ) );
+                relationshipCount += kept.size();
+            }
+        }
+    }
+
+    public Set<ProjectVersionRef> getRoots()
+    {
+        return roots;
+    }
+
+    public Set<ProjectVersionRef> getTargets()
+    {
+        return targets;
+    }
+
+    /**
+     * @return Every project on a path, including the roots and targets.
+     */
+    public Set<ProjectVersionRef> getProjects()
+    {
+        return Collections.unmodifiableSet( projects );
+    }
+
+    /**
+     * @return Relationships from the project that lie on a path, or an empty list.
+     */
+    public List<ProjectRelationship<?>> getRelationshipsDeclaredBy( final ProjectVersionRef ref )
+    {
+        return outOf( edges, ref );
+    }
+
+    public Set<ProjectRelationship<?>> getAllRelationships()
+    {
+        final Set<ProjectRelationship<?>> rels = new LinkedHashSet<ProjectRelationship<?>>( relationshipCount );
+        for ( final List<ProjectRelationship<?>> out : edges.values() )
+        {
+            rels.addAll( out );
+        }
+
+        return rels;
+    }
+
+    public boolean isEmpty()
+    {
+        return getPathCount() < 1;
+    }
+
+    /**
+     * @return Number of paths from all roots to all targets, saturating at {@link Long#MAX_VALUE}.
+     */
+    public long getPathCount()
+    {
+        long count = 0;
+        for ( final ProjectVersionRef root : roots )
+        {
+            count = addPaths( count, getPathCount( root ) );
+        }
+
+        return count;
+    }
+
+    /**
+     * @return Number of paths from the given project to any target, saturating at {@link Long#MAX_VALUE}.
+     */
+    public long getPathCount( final ProjectVersionRef ref )
+    {
+        final Long count = pathCounts.get( ref );
+        if ( count == null )
+        {
+            return 0;
+        }
+
+        return targets.contains( ref ) ? count - 1 : count;
+    }
+
+    /**
+     * @return One of the paths with the fewest relationships (preferring earlier roots, then relationships in
+     * {@link RelationshipComparator} order, on ties), or null if there are no paths.
+     */
+    public List<ProjectRelationship<?>> getShortestPath()
+    {
+        final Map<ProjectVersionRef, ProjectRelationship<?>> reachedBy =
+            new HashMap<ProjectVersionRef, ProjectRelationship<?>>();
+
+        final LinkedList<ProjectVersionRef> queue = new LinkedList<ProjectVersionRef>();
+        final Set<ProjectVersionRef> seen = new HashSet<ProjectVersionRef>();
+        for ( final ProjectVersionRef root : roots )
+        {
+            if ( seen.add( root ) )
+            {
+                queue.add( root );
+            }
+        }
+
+        while ( !queue.isEmpty() )
+        {
+            final ProjectVersionRef node = queue.removeFirst();
+            for ( final ProjectRelationship<?> rel : outOf( edges, node ) )
+            {
+                final ProjectVersionRef target = targetOf( rel );
+                if ( targets.contains( target ) )
+                {
+                    // checked ahead of 'seen', since a target may also be a root.
+                    final LinkedList<ProjectRelationship<?>> path = new LinkedList<ProjectRelationship<?>>();
+                    path.addFirst( rel );
+
+                    ProjectRelationship<?> prev = reachedBy.get( node );
+                    while ( prev != null )
+                    {
+                        path.addFirst( prev );
+                        prev = reachedBy.get( prev.getDeclaring() );
+                    }
+
+                    return new ArrayList<ProjectRelationship<?>>( path );
+                }
+
+                if ( seen.add( target ) )
+                {
+                    reachedBy.put( target, rel );
+                    queue.add( target );
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Iterate all paths, depth-first. Each path is built as it's reached, so callers can stop at any point without
+     * paying for the rest.
+     */
+    public Iterator<List<ProjectRelationship<?>>> iterator()
+    {
+        return iterator( -1 );
+    }
+
+    /**
+     * @param limit Maximum number of paths to return, or -1 for all of them.
+     */
+    public Iterator<List<ProjectRelationship<?>>> iterator( final int limit )
+    {
+        return new PathIterator( limit );
+    }
+
+    private static ProjectVersionRef targetOf( final ProjectRelationship<?> rel )
+    {
+        return rel.getTarget()
+                  .asProjectVersionRef();
+    }
+
+    private static List<ProjectRelationship<?>> outOf( final Map<ProjectVersionRef, List<ProjectRelationship<?>>> edges,
+                                                       final ProjectVersionRef ref )
+    {
+        final List<ProjectRelationship<?>> out = edges.get( ref );
+        if ( out == null )
+        {
+            return Collections.emptyList();
+        }
+
+        return out;
+    }
+
+    private static long countOf( final Map<ProjectVersionRef, Long> counts, final ProjectVersionRef ref )
+    {
+        final Long count = counts.get( ref );
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Walk every simple path that starts at the given project and stays inside its component, adding up the exits
+     * (paths to a target that leave from, or end at, a project) of the projects the walks reach. This takes time in
+     * proportion to the number of such paths, which is one per relationship outside a cycle, and small for the
+     * cycles real builds have.
+     * 
+     * @param keep If not null, collects the relationships of every walk that reaches a project with an exit.
+     * @param reached If not null, collects the projects the walks reach.
+     */
+    private static long walkComponent( final ProjectVersionRef start, final Set<ProjectVersionRef> component,
+                                       final Map<ProjectVersionRef, List<ProjectRelationship<?>>> candidates,
+                                       final Map<ProjectVersionRef, Long> exits,
+                                       final Set<ProjectRelationship<?>> keep, final Set<ProjectVersionRef> reached )
+    {
+        long count = countOf( exits, start );
+        if ( reached != null )
+        {
+            reached.add( start );
+        }
+
+        final Set<ProjectVersionRef> onPath = new HashSet<ProjectVersionRef>();
+        final LinkedList<ProjectVersionRef> nodeStack = new LinkedList<ProjectVersionRef>();
+        final LinkedList<Iterator<ProjectRelationship<?>>> edgeStack =
+            new LinkedList<Iterator<ProjectRelationship<?>>>();
+        final LinkedList<ProjectRelationship<?>> path = new LinkedList<ProjectRelationship<?>>();
+
+        onPath.add( start );
+        nodeStack.addLast( start );
+        edgeStack.addLast( outOf( candidates, start ).iterator() );
+
+        while ( !nodeStack.isEmpty() )
+        {
+            final Iterator<ProjectRelationship<?>> it = edgeStack.getLast();
+            if ( !it.hasNext() )
+            {
+                onPath.remove( nodeStack.removeLast() );
+                edgeStack.removeLast();
+                if ( !path.isEmpty() )
+                {
+                    path.removeLast();
+                }
+
+                continue;
+            }
+
+            final ProjectRelationship<?> rel = it.next();
+            final ProjectVersionRef target = targetOf( rel );
+            if ( !component.contains( target ) || !onPath.add( target ) )
+            {
+                continue;
+            }
+
+            path.addLast( rel );
+            nodeStack.addLast( target );
+            edgeStack.addLast( outOf( candidates, target ).iterator() );
+
+            final long exit = countOf( exits, target );
+            count = addPaths( count, exit );
+
+            if ( reached != null )
+            {
+                reached.add( target );
+            }
+
+            if ( keep != null && exit > 0 )
+            {
+                keep.addAll( path );
+            }
+        }
+
+        return count;
+    }
+
+    private final class PathIterator
+        implements Iterator<List<ProjectRelationship<?>>>
+    {
+        private final int limit;
+
+        private int returned;
+
+        private final Iterator<ProjectVersionRef> rootIterator = roots.iterator();
+
+        private final LinkedList<Iterator<ProjectRelationship<?>>> stack =
+            new LinkedList<Iterator<ProjectRelationship<?>>>();
+
+        private final LinkedList<ProjectVersionRef> nodes = new LinkedList<ProjectVersionRef>();
+
+        private final Set<ProjectVersionRef> onPath = new HashSet<ProjectVersionRef>();
+
+        private final LinkedList<ProjectRelationship<?>> path = new LinkedList<ProjectRelationship<?>>();
+
+        private List<ProjectRelationship<?>> next;
+
+        PathIterator( final int limit )
+        {
+            this.limit = limit;
+        }
+
+        public boolean hasNext()
+        {
+            if ( next == null && ( limit < 0 || returned < limit ) )
+            {
+                next = advance();
+            }
+
+            return next != null;
+        }
+
+        public List<ProjectRelationship<?>> next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+
+            final List<ProjectRelationship<?>> result = next;
+            next = null;
+            returned++;
+
+            return result;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException( "Paths are read-only." );
+        }
+
+        // every relationship left in the graph lies on some path, but inside a cycle not necessarily on this one, so
+        // the walk can still reach a few dead ends there.
+        private List<ProjectRelationship<?>> advance()
+        {
+            while ( true )
+            {
+                if ( stack.isEmpty() )
+                {
+                    if ( !rootIterator.hasNext() )
+                    {
+                        return null;
+                    }
+
+                    push( rootIterator.next() );
+                }
+
+                final Iterator<ProjectRelationship<?>> it = stack.getLast();
+                if ( !it.hasNext() )
+                {
+                    stack.removeLast();
+                    onPath.remove( nodes.removeLast() );
+                    if ( !path.isEmpty() )
+                    {
+                        path.removeLast();
+                    }
+
+                    continue;
+                }
+
+                final ProjectRelationship<?> rel = it.next();
+                final ProjectVersionRef target = targetOf( rel );
+                if ( onPath.contains( target ) )
+                {
+                    continue;
+                }
+
+                path.addLast( rel );
+                push( target );
+
+                if ( targets.contains( target ) )
+                {
+                    return new ArrayList<ProjectRelationship<?>>( path );
+                }
+            }
+        }
+
+        private void push( final ProjectVersionRef ref )
+        {
+            nodes.addLast( ref );
+            onPath.add( ref );
+            stack.addLast( outOf( edges, ref ).iterator() );
+        }
+    }
+
+}
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.traverse.print;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectGraph;
+import org.apache.maven.graph.effective.EProjectNet;
+import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
+import org.apache.maven.graph.effective.rel.ParentRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.rel.RelationshipComparator;
+import org.apache.maven.graph.effective.util.RelationshipUtils;
+import org.apache.maven.graph.spi.GraphDriverException;
+import org.apache.maven.graph.spi.effective.EGraphDriver;
+
+/**
+ * Prints the same indented structure as {@link StructurePrintingTraversal}, but writes each line to an
+ * {@link Appendable} (a {@link java.io.Writer}, for instance) as soon as its relationship is reached, instead of
+ * accumulating the whole graph first. The printer walks the graph itself, depth-first and without recursion, reading
+ * each project's relationships from the {@link EGraphDriver} in {@link RelationshipComparator} order. That keeps the
+ * output in tree order whatever order a driver's own traversal visits paths in. Version selections are applied to the
+ * relationships read (see {@link RelationshipUtils#selectTarget(ProjectRelationship, Map)}), so the selected version
+ * and its subtree are printed, as a traversal would reach them.
+ * <p/>
+ * Each project's relationships are printed once; later references to it are marked with {@link #DUPLICATE_MARKER}
+ * and not expanded again (which also stops cycles). Relationships deeper than {@link #withMaxDepth(int)} aren't
+ * printed, and once {@link #withMaxLines(int)} lines are written the output ends with {@link #TRUNCATED_MARKER}.
+ */
+public class StreamingStructurePrinter
+{
+
+    public static final String DUPLICATE_MARKER = " (omitted for duplicate)";
+
+    public static final String TRUNCATED_MARKER = "... (truncated)";
+
+    private final Appendable out;
+
+    private final StructureRelationshipPrinter relationshipPrinter;
+
+    private ProjectRelationshipFilter filter;
+
+    private String indent = "  ";
+
+    private String header;
+
+    private String footer;
+
+    private int maxDepth = -1;
+
+    private int maxLines = -1;
+
+    private int lines;
+
+    private boolean truncated;
+
+    public StreamingStructurePrinter( final Appendable out )
+    {
+        this( out, new TargetRefPrinter() );
+    }
+
+    public StreamingStructurePrinter( final Appendable out, final StructureRelationshipPrinter relationshipPrinter )
+    {
+        this.out = out;
+        this.relationshipPrinter = relationshipPrinter;
+    }
+
+    /**
+     * Only print relationships the filter accepts, using {@link ProjectRelationshipFilter#getChildFilter(ProjectRelationship)}
+     * further down, the same way filtering traversals do.
+     */
+    public StreamingStructurePrinter withFilter( final ProjectRelationshipFilter filter )
+    {
+        this.filter = filter;
+        return this;
+    }
+
+    public StreamingStructurePrinter withIndent( final String indent )
+    {
+        this.indent = indent;
+        return this;
+    }
+
+    public StreamingStructurePrinter withHeader( final String header )
+    {
+        this.header = header;
+        return this;
+    }
+
+    public StreamingStructurePrinter withFooter( final String footer )
+    {
+        this.footer = footer;
+        return this;
+    }
+
+    /**
+     * @param maxDepth Deepest level printed (the root's own relationships are at depth 1), or -1 for no limit.
+     */
+    public StreamingStructurePrinter withMaxDepth( final int maxDepth )
+    {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * @param maxLines Most relationship lines printed before the output is truncated, or -1 for no limit.
+     */
+    public StreamingStructurePrinter withMaxLines( final int maxLines )
+    {
+        this.maxLines = maxLines;
+        return this;
+    }
+
+    /**
+     * @return The number of relationship lines written by the last call to print.
+     */
+    public int getPrintedLines()
+    {
+        return lines;
+    }
+
+    /**
+     * @return Whether the last call to print stopped at the line limit.
+     */
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
+
+    public void print( final EProjectGraph graph )
+        throws IOException, GraphDriverException
+    {
+        print( graph, graph.getRoot() );
+    }
+
+    public void print( final EProjectNet net, final ProjectVersionRef root )
+        throws IOException, GraphDriverException
+    {
+        lines = 0;
+        truncated = false;
+
+        final EGraphDriver driver = net.getDriver();
+
+        // selections are made for a graph's roots; without any, there are none.
+        final Set<ProjectVersionRef> roots = driver.getRoots();
+        final Map<ProjectVersionRef, ProjectVersionRef> found =
+            roots == null || roots.isEmpty() ? null : driver.getSelectedVersions();
+        final Map<ProjectVersionRef, ProjectVersionRef> selected =
+            found == null ? Collections.<ProjectVersionRef, ProjectVersionRef> emptyMap() : found;
+
+        final Set<ProjectVersionRef> expanded = new HashSet<ProjectVersionRef>();
+        final StringBuilder line = new StringBuilder();
+
+        final List<Iterator<ProjectRelationship<?>>> stack = new ArrayList<Iterator<ProjectRelationship<?>>>();
+        final List<ProjectRelationshipFilter> filters = new ArrayList<ProjectRelationshipFilter>();
+
+        if ( header != null )
+        {
+            out.append( header );
+        }
+
+        out.append( "\n" )
+           .append( root.toString() );
+
+        expanded.add( root );
+        stack.add( outbound( driver, root, selected ) );
+        filters.add( filter );
+
+        while ( !stack.isEmpty() )
+        {
+            final int depth = stack.size();
+            final Iterator<ProjectRelationship<?>> outbound = stack.get( depth - 1 );
+            if ( !outbound.hasNext() )
+            {
+                stack.remove( depth - 1 );
+                filters.remove( depth - 1 );
+                continue;
+            }
+
+            final ProjectRelationship<?> rel = outbound.next();
+            final ProjectRelationshipFilter relFilter = filters.get( depth - 1 );
+            if ( relFilter != null && !relFilter.accept( rel ) )
+            {
+                continue;
+            }
+
+            if ( maxLines > -1 && lines >= maxLines )
+            {
+                truncated = true;
+                out.append( "\n" );
+                appendIndent( depth );
+                out.append( TRUNCATED_MARKER );
+                break;
+            }
+
+            line.setLength( 0 );
+            relationshipPrinter.print( rel, line );
+
+            final ProjectVersionRef target = rel.getTarget()
+                                                .asProjectVersionRef();
+
+            final boolean expand = expanded.add( target );
+            if ( !expand )
+            {
+                line.append( DUPLICATE_MARKER );
+            }
+
+            out.append( "\n" );
+            appendIndent( depth );
+            out.append( line );
+            lines++;
+
+            if ( expand && ( maxDepth < 0 || depth < maxDepth ) )
+            {
+                final ProjectRelationshipFilter childFilter = relFilter == null ? null : relFilter.getChildFilter( rel );
+                stack.add( outbound( driver, target, selected ) );
+                filters.add( childFilter );
+            }
+        }
+
+        out.append( "\n" );
+        if ( footer != null )
+        {
+            out.append( footer );
+        }
+    }
+
+    private void appendIndent( final int depth )
+        throws IOException
+    {
+        for ( int i = 0; i < depth; i++ )
+        {
+            out.append( indent );
+        }
+    }
+
+    private Iterator<ProjectRelationship<?>> outbound( final EGraphDriver driver, final ProjectVersionRef ref,
+                                                      final Map<ProjectVersionRef, ProjectVersionRef> selected )
+    {
+        final Collection<? extends ProjectRelationship<?>> declared = driver.getRelationshipsDeclaredBy( ref );
+        if ( declared == null || declared.isEmpty() )
+        {
+            return Collections.<ProjectRelationship<?>> emptyList()
+                              .iterator();
+        }
+
+        final List<ProjectRelationship<?>> sorted = new ArrayList<ProjectRelationship<?>>( declared.size() );
+        for ( final ProjectRelationship<?> rel : declared )
+        {
+            // terminal parents point back at their own declaring project.
+            if ( !( rel instanceof ParentRelationship ) || !( (ParentRelationship) rel ).isTerminus() )
+            {
+                sorted.add( RelationshipUtils.selectTarget( rel, selected ) );
+            }
+        }
+
+        Collections.sort( sorted, new RelationshipComparator() );
+
+        return sorted.iterator();
+    }
+
+}
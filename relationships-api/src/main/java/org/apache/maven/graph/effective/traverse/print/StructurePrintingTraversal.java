@@ -16,16 +16,22 @@
  ******************************************************************************/
 package org.apache.maven.graph.effective.traverse.print;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.effective.EProjectNet;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
 import org.apache.maven.graph.effective.traverse.ProjectNetTraversal;
 import org.apache.maven.graph.effective.traverse.TraversalType;
+import org.apache.maven.graph.effective.util.CloseableIterator;
 import org.apache.maven.graph.spi.GraphDriverException;
 
 public class StructurePrintingTraversal
@@ -38,8 +44,8 @@ public class StructurePrintingTraversal
 
     private final StructureRelationshipPrinter relationshipPrinter;
 
-    private final Map<ProjectVersionRef, List<ProjectRelationship<?>>> outboundLinks =
-        new HashMap<ProjectVersionRef, List<ProjectRelationship<?>>>();
+    private final Map<ProjectVersionRef, Set<ProjectRelationship<?>>> outboundLinks =
+        new HashMap<ProjectVersionRef, Set<ProjectRelationship<?>>>();
 
     public StructurePrintingTraversal()
     {
@@ -71,22 +77,43 @@ public class StructurePrintingTraversal
     {
         if ( traversal == null || traversal.traverseEdge( relationship, path, pass ) )
         {
-            List<ProjectRelationship<?>> outbound = outboundLinks.get( relationship.getDeclaring() );
-            if ( outbound == null )
-            {
-                outbound = new ArrayList<ProjectRelationship<?>>();
-                outboundLinks.put( relationship.getDeclaring(), outbound );
-            }
+            addLink( relationship );
+            return true;
+        }
+
+        return false;
+    }
 
-            if ( !outbound.contains( relationship ) )
+    /**
+     * Accumulate links straight from a relationship cursor (see
+     * {@link EProjectNet#iterateAllRelationships(org.apache.maven.graph.common.RelationshipType...)}), rather than by
+     * traversing the graph. Any wrapped traversal isn't consulted. The cursor is closed once consumed.
+     */
+    public void addAll( final CloseableIterator<ProjectRelationship<?>> relationships )
+    {
+        try
+        {
+            while ( relationships.hasNext() )
             {
-                outbound.add( relationship );
+                addLink( relationships.next() );
             }
+        }
+        finally
+        {
+            relationships.close();
+        }
+    }
 
-            return true;
+    private void addLink( final ProjectRelationship<?> relationship )
+    {
+        Set<ProjectRelationship<?>> outbound = outboundLinks.get( relationship.getDeclaring() );
+        if ( outbound == null )
+        {
+            outbound = new LinkedHashSet<ProjectRelationship<?>>();
+            outboundLinks.put( relationship.getDeclaring(), outbound );
         }
 
-        return false;
+        outbound.add( relationship );
     }
 
     public String printStructure( final ProjectVersionRef from )
@@ -102,62 +129,99 @@ public class StructurePrintingTraversal
     public String printStructure( final ProjectVersionRef from, final String header, final String footer,
                                   final String indent )
     {
-        //        final Set<ProjectRelationship<?>> refs = new HashSet<ProjectRelationship<?>>();
-        //        for ( final Map.Entry<ProjectVersionRef, List<ProjectRelationship<?>>> entry : outboundLinks.entrySet() )
-        //        {
-        //            refs.add( entry.getKey() );
-        //            final List<ProjectRelationship<?>> list = entry.getValue();
-        //            if ( list != null )
-        //            {
-        //                refs.addAll( list );
-        //            }
-        //        }
+        final StringBuilder builder = new StringBuilder();
+        try
+        {
+            printStructure( from, header, footer, indent, builder );
+        }
+        catch ( final IOException e )
+        {
+            throw new IllegalStateException( "StringBuilder threw IOException: " + e.getMessage(), e );
+        }
 
-        //        logger.info( "Printing structure for: %s using %d accumulated project references.", from, refs.size() );
+        return builder.toString();
+    }
 
-        final StringBuilder builder = new StringBuilder();
+    /**
+     * Write the accumulated structure to the given {@link Appendable} (a {@link java.io.Writer}, for instance) line by
+     * line. A relationship leading back to a project already being printed further up the tree is printed, but not
+     * expanded again. To print without accumulating links first, see {@link StreamingStructurePrinter}.
+     */
+    public void printStructure( final ProjectVersionRef from, final String header, final String footer,
+                                final String indent, final Appendable out )
+        throws IOException
+    {
         if ( header != null )
         {
-            builder.append( header );
+            out.append( header );
         }
 
-        builder.append( "\n" );
-        builder.append( from );
+        out.append( "\n" );
+        out.append( from.toString() );
 
-        printLinks( from, builder, indent, 1 );
-        builder.append( "\n" );
+        printLinks( from, out, indent );
+        out.append( "\n" );
 
         if ( footer != null )
         {
-            builder.append( footer );
+            out.append( footer );
         }
-
-        return builder.toString();
     }
 
-    private void printLinks( final ProjectVersionRef from, final StringBuilder builder, final String indent,
-                             final int depth )
+    private void printLinks( final ProjectVersionRef from, final Appendable out, final String indent )
+        throws IOException
     {
-        final List<ProjectRelationship<?>> outbound = outboundLinks.get( from );
-        if ( outbound != null )
+        final StringBuilder line = new StringBuilder();
+
+        final List<Iterator<ProjectRelationship<?>>> stack = new ArrayList<Iterator<ProjectRelationship<?>>>();
+        final List<ProjectVersionRef> stackRefs = new ArrayList<ProjectVersionRef>();
+        final Set<ProjectVersionRef> onStack = new HashSet<ProjectVersionRef>();
+
+        push( from, stack, stackRefs, onStack );
+        while ( !stack.isEmpty() )
         {
-            for ( final ProjectRelationship<?> out : outbound )
+            final int depth = stack.size();
+            final Iterator<ProjectRelationship<?>> outbound = stack.get( depth - 1 );
+            if ( !outbound.hasNext() )
             {
-                builder.append( "\n" );
+                stack.remove( depth - 1 );
+                onStack.remove( stackRefs.remove( depth - 1 ) );
+                continue;
+            }
 
-                for ( int i = 0; i < depth; i++ )
-                {
-                    builder.append( indent );
-                }
+            final ProjectRelationship<?> rel = outbound.next();
 
-                relationshipPrinter.print( out, builder );
+            out.append( "\n" );
+            for ( int i = 0; i < depth; i++ )
+            {
+                out.append( indent );
+            }
 
-                printLinks( out.getTarget()
-                               .asProjectVersionRef(), builder, indent, depth + 1 );
+            line.setLength( 0 );
+            relationshipPrinter.print( rel, line );
+            out.append( line );
+
+            final ProjectVersionRef target = rel.getTarget()
+                                                .asProjectVersionRef();
+            if ( !onStack.contains( target ) )
+            {
+                push( target, stack, stackRefs, onStack );
             }
         }
     }
 
+    private void push( final ProjectVersionRef ref, final List<Iterator<ProjectRelationship<?>>> stack,
+                       final List<ProjectVersionRef> stackRefs, final Set<ProjectVersionRef> onStack )
+    {
+        final Set<ProjectRelationship<?>> outbound = outboundLinks.get( ref );
+        if ( outbound != null && !outbound.isEmpty() )
+        {
+            stack.add( outbound.iterator() );
+            stackRefs.add( ref );
+            onStack.add( ref );
+        }
+    }
+
     public boolean preCheck( final ProjectRelationship<?> relationship, final List<ProjectRelationship<?>> path,
                              final int pass )
     {
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.util;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Cursor over results that may be backed by an open store (a graph database traversal, for instance) rather than
+ * materialized up front. Callers should {@link #close()} it when done, whether or not it was consumed to the end.
+ */
+public interface CloseableIterator<T>
+    extends Iterator<T>, Closeable
+{
+
+    void close();
+
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.maven.graph.common.RelationshipType;
+import org.apache.maven.graph.effective.rel.ParentRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+
+public final class CloseableIterators
+{
+
+    private CloseableIterators()
+    {
+    }
+
+    /**
+     * @return A cursor over the given (already materialized) iterator; closing it is a no-op.
+     */
+    public static <T> CloseableIterator<T> wrap( final Iterator<T> iterator )
+    {
+        return new FilteringIterator<T>( iterator )
+        {
+            @Override
+            protected boolean accept( final T value )
+            {
+                return true;
+            }
+        };
+    }
+
+    public static <T> CloseableIterator<T> empty()
+    {
+        return wrap( Collections.<T> emptyList()
+                                .iterator() );
+    }
+
+    /**
+     * @return Relationships from the given cursor with one of the given types, or all of them if no types are given.
+     */
+    public static CloseableIterator<ProjectRelationship<?>> ofTypes( final Iterator<ProjectRelationship<?>> iterator,
+                                                                     final RelationshipType... types )
+    {
+        final Set<RelationshipType> typeSet = toTypeSet( types );
+        if ( typeSet == null )
+        {
+            return iterator instanceof CloseableIterator ? (CloseableIterator<ProjectRelationship<?>>) iterator
+                            : wrap( iterator );
+        }
+
+        return new FilteringIterator<ProjectRelationship<?>>( iterator )
+        {
+            @Override
+            protected boolean accept( final ProjectRelationship<?> rel )
+            {
+                return typeSet.contains( rel.getType() );
+            }
+        };
+    }
+
+    /**
+     * Streaming counterpart of {@link RelationshipUtils#filterTerminalParents(java.util.Collection)}.
+     */
+    public static CloseableIterator<ProjectRelationship<?>> withoutTerminalParents( final Iterator<ProjectRelationship<?>> iterator )
+    {
+        return new FilteringIterator<ProjectRelationship<?>>( iterator )
+        {
+            @Override
+            protected boolean accept( final ProjectRelationship<?> rel )
+            {
+                return !( ( rel instanceof ParentRelationship ) && ( (ParentRelationship) rel ).isTerminus() );
+            }
+        };
+    }
+
+    /**
+     * Drain the cursor into a new set, then close it.
+     */
+    public static <T> Set<T> toSet( final CloseableIterator<T> iterator )
+    {
+        final Set<T> result = new HashSet<T>();
+        try
+        {
+            while ( iterator.hasNext() )
+            {
+                result.add( iterator.next() );
+            }
+        }
+        finally
+        {
+            iterator.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The given types as a set, or null if there are none (meaning: all types).
+     */
+    public static Set<RelationshipType> toTypeSet( final RelationshipType... types )
+    {
+        if ( types == null || types.length < 1 )
+        {
+            return null;
+        }
+
+        return EnumSet.copyOf( Arrays.asList( types ) );
+    }
+
+    /**
+     * Skips values not accepted by {@link #accept(Object)}, and closes the underlying iterator (if it's closeable) when
+     * closed.
+     */
+    public static abstract class FilteringIterator<T>
+        implements CloseableIterator<T>
+    {
+        private Iterator<T> src;
+
+        private T next;
+
+        protected FilteringIterator( final Iterator<T> src )
+        {
+            this.src = src;
+        }
+
+        protected abstract boolean accept( T value );
+
+        public final boolean hasNext()
+        {
+            while ( next == null && src != null && src.hasNext() )
+            {
+                final T value = src.next();
+                if ( value != null && accept( value ) )
+                {
+                    next = value;
+                }
+            }
+
+            return next != null;
+        }
+
+        public final T next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+
+            final T value = next;
+            next = null;
+
+            return value;
+        }
+
+        public final void remove()
+        {
+            throw new UnsupportedOperationException( "Read-only iterator." );
+        }
+
+        public final void close()
+        {
+            if ( src instanceof CloseableIterator )
+            {
+                ( (CloseableIterator<?>) src ).close();
+            }
+
+            src = null;
+            next = null;
+        }
+    }
+
+}
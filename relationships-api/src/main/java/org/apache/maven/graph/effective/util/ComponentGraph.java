@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Condensation of a directed graph into its strongly connected components, computed once (iteratively, so deep graphs
+ * can't overflow the stack) in O(V+E). Every cycle in the graph lies inside a single component, so the components
+ * themselves form a DAG.
+ * <p/>
+ * Components are numbered in reverse topological order: a component always comes after every component it has edges
+ * to. With edges pointing from a project to what it needs, that is build order.
+ */
+public final class ComponentGraph<T>
+{
+
+    private final List<T> nodes = new ArrayList<T>();
+
+    private final Map<T, Integer> nodeIndexes = new HashMap<T, Integer>();
+
+    private final List<Set<T>> components = new ArrayList<Set<T>>();
+
+    private final List<Set<Integer>> successors = new ArrayList<Set<Integer>>();
+
+    private final List<Boolean> cyclic = new ArrayList<Boolean>();
+
+    private int[] componentOf;
+
+    /**
+     * @param edges Successors of each node. Nodes that only appear as successors are included too. Iteration order of
+     * the map and its values decides the order of otherwise unordered components and their members.
+     */
+    public ComponentGraph( final Map<T, ? extends Collection<T>> edges )
+    {
+        for ( final Map.Entry<T, ? extends Collection<T>> entry : edges.entrySet() )
+        {
+            indexOf( entry.getKey() );
+            if ( entry.getValue() != null )
+            {
+                for ( final T target : entry.getValue() )
+                {
+                    indexOf( target );
+                }
+            }
+        }
+
+        final int[][] adjacency = new int[nodes.size()][];
+        for ( int i = 0; i < adjacency.length; i++ )
+        {
+            final Collection<T> targets = edges.get( nodes.get( i ) );
+            adjacency[i] = new int[targets == null ? 0 : targets.size()];
+
+            if ( targets != null )
+            {
+                int j = 0;
+                for ( final T target : targets )
+                {
+                    adjacency[i][j++] = nodeIndexes.get( target );
+                }
+            }
+        }
+
+        condense( adjacency );
+    }
+
+    private int indexOf( final T node )
+    {
+        Integer idx = nodeIndexes.get( node );
+        if ( idx == null )
+        {
+            idx = nodes.size();
+            nodes.add( node );
+            nodeIndexes.put( node, idx );
+        }
+
+        return idx;
+    }
+
+    // Tarjan's algorithm, with an explicit call stack.
+    private void condense( final int[][] adjacency )
+    {
+        final int size = adjacency.length;
+        final int[] index = new int[size];
+        final int[] low = new int[size];
+        final boolean[] onStack = new boolean[size];
+        final int[] stack = new int[size];
+        final int[] callNodes = new int[size];
+        final int[] callPositions = new int[size];
+
+        componentOf = new int[size];
+
+        for ( int i = 0; i < size; i++ )
+        {
+            index[i] = -1;
+        }
+
+        int counter = 0;
+        int stackSize = 0;
+
+        for ( int start = 0; start < size; start++ )
+        {
+            if ( index[start] > -1 )
+            {
+                continue;
+            }
+
+            int depth = 0;
+            callNodes[0] = start;
+            callPositions[0] = 0;
+            index[start] = low[start] = counter++;
+            stack[stackSize++] = start;
+            onStack[start] = true;
+
+            while ( depth > -1 )
+            {
+                final int v = callNodes[depth];
+                if ( callPositions[depth] < adjacency[v].length )
+                {
+                    final int w = adjacency[v][callPositions[depth]++];
+                    if ( index[w] < 0 )
+                    {
+                        index[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+
+                        depth++;
+                        callNodes[depth] = w;
+                        callPositions[depth] = 0;
+                    }
+                    else if ( onStack[w] && index[w] < low[v] )
+                    {
+                        low[v] = index[w];
+                    }
+
+                    continue;
+                }
+
+                depth--;
+                if ( low[v] == index[v] )
+                {
+                    final int component = components.size();
+                    final List<Integer> members = new ArrayList<Integer>();
+
+                    int w;
+                    do
+                    {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        componentOf[w] = component;
+                        members.add( w );
+                    }
+                    while ( w != v );
+
+                    // members come off the stack in reverse discovery order.
+                    Collections.sort( members );
+
+                    final Set<T> memberNodes = new LinkedHashSet<T>();
+                    for ( final Integer member : members )
+                    {
+                        memberNodes.add( nodes.get( member ) );
+                    }
+
+                    components.add( Collections.unmodifiableSet( memberNodes ) );
+                    successors.add( new LinkedHashSet<Integer>() );
+                    cyclic.add( members.size() > 1 );
+                }
+
+                if ( depth > -1 && low[v] < low[callNodes[depth]] )
+                {
+                    low[callNodes[depth]] = low[v];
+                }
+            }
+        }
+
+        for ( int v = 0; v < size; v++ )
+        {
+            final int from = componentOf[v];
+            for ( final int w : adjacency[v] )
+            {
+                final int to = componentOf[w];
+                if ( from != to )
+                {
+                    successors.get( from )
+                              .add( to );
+                }
+                else if ( v == w )
+                {
+                    cyclic.set( from, true );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Components, each after all the components it has edges to.
+     */
+    public List<Set<T>> getComponents()
+    {
+        return Collections.unmodifiableList( components );
+    }
+
+    public int getComponentCount()
+    {
+        return components.size();
+    }
+
+    public Set<T> getComponent( final int component )
+    {
+        return components.get( component );
+    }
+
+    /**
+     * @return The component containing the node, or -1 if it isn't in the graph.
+     */
+    public int getComponentOf( final T node )
+    {
+        final Integer idx = nodeIndexes.get( node );
+        return idx == null ? -1 : componentOf[idx];
+    }
+
+    /**
+     * @return Components the given one has edges to, all of which have lower numbers.
+     */
+    public Set<Integer> getSuccessors( final int component )
+    {
+        return Collections.unmodifiableSet( successors.get( component ) );
+    }
+
+    /**
+     * @return Whether the component holds a cycle: more than one member, or a member with an edge to itself.
+     */
+    public boolean isCyclic( final int component )
+    {
+        return cyclic.get( component );
+    }
+
+}
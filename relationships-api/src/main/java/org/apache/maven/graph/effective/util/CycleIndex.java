@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectCycle;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+
+/**
+ * Immutable snapshot of the cycles in a graph, with every participating relationship and declaring project hashed, so
+ * drivers can answer cycle-membership questions in O(1) instead of scanning each cycle. The snapshot is tagged with
+ * the graph version it was computed for; drivers compare that against their current version and recompute the index
+ * when the graph has changed.
+ */
+public final class CycleIndex
+{
+
+    private final long version;
+
+    private final Set<EProjectCycle> cycles;
+
+    private final Set<ProjectRelationship<?>> relationships = new HashSet<ProjectRelationship<?>>();
+
+    private final Set<ProjectVersionRef> projects = new HashSet<ProjectVersionRef>();
+
+    public CycleIndex( final Collection<EProjectCycle> cycles, final long version )
+    {
+        this.version = version;
+        this.cycles = Collections.unmodifiableSet( new HashSet<EProjectCycle>( cycles ) );
+
+        for ( final EProjectCycle cycle : this.cycles )
+        {
+            for ( final ProjectRelationship<?> rel : cycle )
+            {
+                relationships.add( rel );
+                projects.add( rel.getDeclaring() );
+            }
+        }
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public Set<EProjectCycle> getCycles()
+    {
+        return cycles;
+    }
+
+    public boolean containsRelationship( final ProjectRelationship<?> rel )
+    {
+        return relationships.contains( rel );
+    }
+
+    /**
+     * @return true if the project declares one of the relationships in a cycle (same as
+     * {@link EProjectCycle#contains(ProjectVersionRef)}).
+     */
+    public boolean containsProject( final ProjectVersionRef ref )
+    {
+        return projects.contains( ref );
+    }
+
+    public boolean isEmpty()
+    {
+        return cycles.isEmpty();
+    }
+
+}
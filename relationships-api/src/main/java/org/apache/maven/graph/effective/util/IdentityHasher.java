@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.util;
+
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+
+/**
+ * Streaming, non-cryptographic hash over the structured fields of a relationship, producing a 128-bit identity (in the
+ * style of MurmurHash3 x64-128) plus an independent 64-bit check value in the same pass. Strings are fed char by char,
+ * length-prefixed so adjacent fields can't run together; nothing is concatenated or encoded first.
+ */
+public final class IdentityHasher
+{
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final long C3 = 0x9e3779b97f4a7c15L;
+
+    private static final long C4 = 0xbf58476d1ce4e5b9L;
+
+    private static final char[] BASE64 =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private long h1;
+
+    private long h2;
+
+    private long h3 = C3;
+
+    private long length;
+
+    private long word;
+
+    private int wordChars;
+
+    public IdentityHasher add( final String value )
+    {
+        if ( value == null )
+        {
+            return add( -1 );
+        }
+
+        add( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            word = ( word << 16 ) | value.charAt( i );
+            if ( ++wordChars == 4 )
+            {
+                flush();
+            }
+        }
+
+        if ( wordChars > 0 )
+        {
+            flush();
+        }
+
+        return this;
+    }
+
+    public IdentityHasher add( final long value )
+    {
+        mix( value );
+        return this;
+    }
+
+    public IdentityHasher add( final boolean value )
+    {
+        mix( value ? 1 : 0 );
+        return this;
+    }
+
+    public IdentityHasher add( final ProjectRef ref )
+    {
+        add( ref.getGroupId() );
+        add( ref.getArtifactId() );
+        if ( ref instanceof ProjectVersionRef )
+        {
+            add( ( (ProjectVersionRef) ref ).getVersionString() );
+        }
+
+        if ( ref instanceof ArtifactRef )
+        {
+            final ArtifactRef artifact = (ArtifactRef) ref;
+            add( artifact.getType() );
+            add( artifact.getClassifier() );
+        }
+
+        return this;
+    }
+
+    private void flush()
+    {
+        mix( word );
+        word = 0;
+        wordChars = 0;
+    }
+
+    private void mix( final long value )
+    {
+        length++;
+
+        long k1 = value * C1;
+        k1 = Long.rotateLeft( k1, 31 );
+        k1 *= C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft( h1, 27 ) + h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        long k2 = value * C2;
+        k2 = Long.rotateLeft( k2, 33 );
+        k2 *= C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft( h2, 31 ) + h1;
+        h2 = h2 * 5 + 0x38495ab5;
+
+        h3 ^= value * C3;
+        h3 = Long.rotateLeft( h3, 29 ) * C4;
+    }
+
+    /**
+     * @return The 128-bit identity as two longs, plus the 64-bit check value.
+     */
+    public long[] finish()
+    {
+        long a = h1 ^ length;
+        long b = h2 ^ length;
+        a += b;
+        b += a;
+        a = fmix( a );
+        b = fmix( b );
+        a += b;
+        b += a;
+
+        return new long[] { a, b, fmix( h3 ^ length ) };
+    }
+
+    /**
+     * @return The 128 bits as 22 url-safe base64 chars.
+     */
+    public static String encode( final long a, final long b )
+    {
+        final char[] chars = new char[22];
+        for ( int i = 0; i < 10; i++ )
+        {
+            chars[i] = BASE64[(int) ( ( a >>> ( 58 - 6 * i ) ) & 0x3f )];
+        }
+
+        // 4 bits left from a, 2 from b.
+        chars[10] = BASE64[(int) ( ( ( a & 0xf ) << 2 ) | ( b >>> 62 ) )];
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            chars[11 + i] = BASE64[(int) ( ( b >>> ( 56 - 6 * i ) ) & 0x3f )];
+        }
+
+        chars[21] = BASE64[(int) ( ( b & 0x3 ) << 4 )];
+
+        return new String( chars );
+    }
+
+    private static long fmix( long k )
+    {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+}
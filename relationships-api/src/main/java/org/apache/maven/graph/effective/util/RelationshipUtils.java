@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.maven.graph.common.DependencyScope;
@@ -32,6 +33,7 @@ import org.apache.maven.graph.common.RelationshipType;
 import org.apache.maven.graph.common.ref.ProjectRef;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.common.version.InvalidVersionSpecificationException;
+import org.apache.maven.graph.common.version.SingleVersion;
 import org.apache.maven.graph.effective.filter.AnyFilter;
 import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
 import org.apache.maven.graph.effective.rel.DependencyRelationship;
@@ -40,6 +42,7 @@ import org.apache.maven.graph.effective.rel.ParentRelationship;
 import org.apache.maven.graph.effective.rel.PluginDependencyRelationship;
 import org.apache.maven.graph.effective.rel.PluginRelationship;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.spi.effective.EGraphDriver;
 
 public final class RelationshipUtils
 {
@@ -97,6 +100,22 @@ public final class RelationshipUtils
         }
     }
 
+    /**
+     * Drivers that apply version selections during their own traversals still return the stored relationships from
+     * lookups, so code walking a graph through those lookups applies the selections itself.
+     * 
+     * @param selected Variable to selected versions, as {@link EGraphDriver#getSelectedVersions()} reports them.
+     * @return The relationship, retargeted to the selected version if its target has one.
+     */
+    public static ProjectRelationship<?> selectTarget( final ProjectRelationship<?> rel,
+                                                      final Map<ProjectVersionRef, ProjectVersionRef> selected )
+    {
+        final ProjectVersionRef select = selected.get( rel.getTarget()
+                                                          .asProjectVersionRef() );
+
+        return select == null ? rel : rel.selectTarget( (SingleVersion) select.getVersionSpec() );
+    }
+
     public static void filter( final Set<ProjectRelationship<?>> rels, final RelationshipType... types )
     {
         if ( rels == null || rels.isEmpty() )
@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.spi.effective;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.graph.common.RelationshipType;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.rel.RelationshipComparator;
+import org.apache.maven.graph.effective.util.CloseableIterator;
+import org.apache.maven.graph.effective.util.CloseableIterators;
+
+/**
+ * Base class for {@link EGraphDriver} implementations, answering the batch lookups by calling the corresponding
+ * single-project methods in a loop, and the streaming lookups by iterating the materialized collections. Drivers that
+ * can do better (one index pass, one membership traversal, a cursor over the store) override them.
+ * <p/>
+ * {@link #getShortestPath(ProjectVersionRef, ProjectVersionRef, ProjectRelationshipFilter)} is built on the
+ * single-project relationship lookups, so every driver gets it. Drivers that apply version selections while
+ * traversing, rather than storing them, override {@link #getPathRelationshipsDeclaredBy(ProjectVersionRef)} so it
+ * sees the same graph their traversals do.
+ */
+public abstract class AbstractEGraphDriver
+    implements EGraphDriver
+{
+
+    public CloseableIterator<ProjectRelationship<?>> iterateAllRelationships( final RelationshipType... types )
+    {
+        final Collection<ProjectRelationship<?>> rels = getAllRelationships();
+        if ( rels == null )
+        {
+            return CloseableIterators.empty();
+        }
+
+        return CloseableIterators.ofTypes( rels.iterator(), types );
+    }
+
+    public CloseableIterator<ProjectVersionRef> iterateAllProjects()
+    {
+        final Set<ProjectVersionRef> projects = getAllProjects();
+        if ( projects == null )
+        {
+            return CloseableIterators.empty();
+        }
+
+        return CloseableIterators.wrap( projects.iterator() );
+    }
+
+    public Set<ProjectVersionRef> containsProjects( final Collection<ProjectVersionRef> refs )
+    {
+        final Set<ProjectVersionRef> result = new HashSet<ProjectVersionRef>();
+        for ( final ProjectVersionRef ref : refs )
+        {
+            if ( containsProject( ref ) )
+            {
+                result.add( ref );
+            }
+        }
+
+        return result;
+    }
+
+    public Set<ProjectVersionRef> getMissingProjects( final Collection<ProjectVersionRef> refs )
+    {
+        final Set<ProjectVersionRef> result = new HashSet<ProjectVersionRef>();
+        for ( final ProjectVersionRef ref : refs )
+        {
+            if ( isMissing( ref ) )
+            {
+                result.add( ref );
+            }
+        }
+
+        return result;
+    }
+
+    public Map<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>> getRelationshipsDeclaredBy( final Collection<ProjectVersionRef> refs )
+    {
+        final Map<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>> result =
+            new HashMap<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>>();
+
+        for ( final ProjectVersionRef ref : refs )
+        {
+            final Collection<? extends ProjectRelationship<?>> rels = getRelationshipsDeclaredBy( ref );
+            if ( rels != null )
+            {
+                result.put( ref, rels );
+            }
+        }
+
+        return result;
+    }
+
+    public Map<ProjectVersionRef, Map<String, String>> getProjectMetadata( final Collection<ProjectVersionRef> refs )
+    {
+        final Map<ProjectVersionRef, Map<String, String>> result = new HashMap<ProjectVersionRef, Map<String, String>>();
+        for ( final ProjectVersionRef ref : refs )
+        {
+            final Map<String, String> metadata = getProjectMetadata( ref );
+            if ( metadata != null )
+            {
+                result.put( ref, metadata );
+            }
+        }
+
+        return result;
+    }
+
+    public List<ProjectRelationship<?>> getShortestPath( final ProjectVersionRef root, final ProjectVersionRef target,
+                                                         final ProjectRelationshipFilter filter )
+    {
+        if ( root.equals( target ) )
+        {
+            return Collections.emptyList();
+        }
+
+        // forward from the root, level by level, visiting children in declaration order and each project only at its
+        // nearest (then first) occurrence, with the filter state it has there: Maven's nearest-wins.
+        final RelationshipComparator comparator = new RelationshipComparator();
+        final Map<ProjectVersionRef, ProjectRelationship<?>> reachedBy =
+            new HashMap<ProjectVersionRef, ProjectRelationship<?>>();
+        final Map<ProjectVersionRef, ProjectRelationshipFilter> filters =
+            new HashMap<ProjectVersionRef, ProjectRelationshipFilter>();
+
+        final Set<ProjectVersionRef> seen = new HashSet<ProjectVersionRef>();
+        List<ProjectVersionRef> forward = new ArrayList<ProjectVersionRef>();
+        seen.add( root );
+        forward.add( root );
+        filters.put( root, filter );
+
+        // backward from the target, unfiltered (filter state depends on the path from the root), whenever its frontier
+        // is the smaller one. Once it runs out, it holds every project that can reach the target at all, and the
+        // forward search can skip the rest; until then, it costs no more than the forward search itself.
+        final Set<ProjectVersionRef> ancestors = new HashSet<ProjectVersionRef>();
+        List<ProjectVersionRef> backward = new ArrayList<ProjectVersionRef>();
+        ancestors.add( target );
+        backward.add( target );
+
+        while ( !forward.isEmpty() )
+        {
+            if ( !backward.isEmpty() && backward.size() <= forward.size() )
+            {
+                backward = expandBackward( backward, ancestors );
+                if ( backward.isEmpty() && !ancestors.contains( root ) )
+                {
+                    return null;
+                }
+
+                continue;
+            }
+
+            final boolean prune = backward.isEmpty();
+            final List<ProjectVersionRef> nextLevel = new ArrayList<ProjectVersionRef>();
+            for ( final ProjectVersionRef node : forward )
+            {
+                final ProjectRelationshipFilter f = filters.remove( node );
+
+                final Collection<? extends ProjectRelationship<?>> declared = getPathRelationshipsDeclaredBy( node );
+                if ( declared == null )
+                {
+                    continue;
+                }
+
+                final List<ProjectRelationship<?>> rels = new ArrayList<ProjectRelationship<?>>( declared );
+                Collections.sort( rels, comparator );
+
+                for ( final ProjectRelationship<?> rel : rels )
+                {
+                    final ProjectVersionRef next = rel.getTarget()
+                                                      .asProjectVersionRef();
+
+                    if ( ( prune && !ancestors.contains( next ) ) || seen.contains( next )
+                        || ( f != null && !f.accept( rel ) ) )
+                    {
+                        continue;
+                    }
+
+                    seen.add( next );
+                    reachedBy.put( next, rel );
+
+                    if ( next.equals( target ) )
+                    {
+                        final LinkedList<ProjectRelationship<?>> path = new LinkedList<ProjectRelationship<?>>();
+                        for ( ProjectRelationship<?> r = rel; r != null; r = reachedBy.get( r.getDeclaring() ) )
+                        {
+                            path.addFirst( r );
+                        }
+
+                        return new ArrayList<ProjectRelationship<?>>( path );
+                    }
+
+                    nextLevel.add( next );
+                    filters.put( next, f == null ? null : f.getChildFilter( rel ) );
+                }
+            }
+
+            forward = nextLevel;
+        }
+
+        return null;
+    }
+
+    /**
+     * The relationships {@link #getShortestPath(ProjectVersionRef, ProjectVersionRef, ProjectRelationshipFilter)}
+     * follows out of a project. These must end where {@link #getRelationshipsTargeting(ProjectVersionRef)}, which the
+     * backward search uses, says they do.
+     * 
+     * @return {@link #getRelationshipsDeclaredBy(ProjectVersionRef)}, unless overridden.
+     */
+    protected Collection<? extends ProjectRelationship<?>> getPathRelationshipsDeclaredBy( final ProjectVersionRef ref )
+    {
+        return getRelationshipsDeclaredBy( ref );
+    }
+
+    private List<ProjectVersionRef> expandBackward( final List<ProjectVersionRef> level,
+                                                    final Set<ProjectVersionRef> ancestors )
+    {
+        final List<ProjectVersionRef> nextLevel = new ArrayList<ProjectVersionRef>();
+        for ( final ProjectVersionRef node : level )
+        {
+            final Collection<? extends ProjectRelationship<?>> rels = getRelationshipsTargeting( node );
+            if ( rels == null )
+            {
+                continue;
+            }
+
+            for ( final ProjectRelationship<?> rel : rels )
+            {
+                if ( ancestors.add( rel.getDeclaring() ) )
+                {
+                    nextLevel.add( rel.getDeclaring() );
+                }
+            }
+        }
+
+        return nextLevel;
+    }
+
+}
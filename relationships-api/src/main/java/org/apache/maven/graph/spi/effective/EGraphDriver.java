@@ -22,12 +22,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.maven.graph.common.RelationshipType;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.effective.EProjectCycle;
 import org.apache.maven.graph.effective.EProjectNet;
 import org.apache.maven.graph.effective.filter.ProjectRelationshipFilter;
 import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.rel.RelationshipComparator;
 import org.apache.maven.graph.effective.traverse.ProjectNetTraversal;
+import org.apache.maven.graph.effective.traverse.model.PathGraph;
+import org.apache.maven.graph.effective.util.CloseableIterator;
 import org.apache.maven.graph.spi.GraphDriverException;
 
 public interface EGraphDriver
@@ -42,12 +46,43 @@ public interface EGraphDriver
 
     Collection<? extends ProjectRelationship<?>> getRelationshipsDeclaredBy( ProjectVersionRef root );
 
+    /**
+     * Batch form of {@link #getRelationshipsDeclaredBy(ProjectVersionRef)}.
+     * 
+     * @return Relationships declared by each of the given projects, keyed by project. Projects that aren't stored are
+     *         left out.
+     */
+    Map<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>> getRelationshipsDeclaredBy( Collection<ProjectVersionRef> refs );
+
     Collection<? extends ProjectRelationship<?>> getRelationshipsTargeting( ProjectVersionRef root );
 
     Collection<ProjectRelationship<?>> getAllRelationships();
 
+    /**
+     * Streaming form of {@link #getAllRelationships()}: relationships are decoded as they're consumed, and only those of
+     * the given types (or all, if none are given) are returned. Close the cursor when done.
+     */
+    CloseableIterator<ProjectRelationship<?>> iterateAllRelationships( RelationshipType... types );
+
     Set<List<ProjectRelationship<?>>> getAllPathsTo( ProjectVersionRef... projectVersionRefs );
 
+    /**
+     * Same paths as {@link #getAllPathsTo(ProjectVersionRef...)}, held as the sub-graph they cover rather than
+     * enumerated, so widely used targets can't exhaust memory. NEVER null.
+     */
+    PathGraph getPathGraph( ProjectVersionRef... projectVersionRefs );
+
+    /**
+     * The path Maven would use from root to target: the nearest one, then the first by declaration order (see
+     * {@link RelationshipComparator}) at each step. Each project is only followed from its nearest occurrence, with the
+     * filter state it has there.
+     * 
+     * @param filter Applied along the path, with child filters, on top of any filter this graph has. May be null.
+     * @return The path, empty if root and target are the same, or null if there is none.
+     */
+    List<ProjectRelationship<?>> getShortestPath( ProjectVersionRef root, ProjectVersionRef target,
+                                                  ProjectRelationshipFilter filter );
+
     /**
      * Add the given relationships. Skip/return those that introduce cycles.
      * 
@@ -59,17 +94,51 @@ public interface EGraphDriver
 
     Set<ProjectVersionRef> getAllProjects();
 
+    /**
+     * Streaming form of {@link #getAllProjects()}. Close the cursor when done.
+     */
+    CloseableIterator<ProjectVersionRef> iterateAllProjects();
+
     void traverse( ProjectNetTraversal traversal, EProjectNet net, ProjectVersionRef root )
         throws GraphDriverException;
 
+    /**
+     * @return A number that goes up whenever the graph changes in a way a traversal could see: projects or
+     *         relationships added, cycles recorded, versions selected or cleared. If it hasn't moved, traversals give
+     *         the same results as before. Versions only mean something together with {@link #getGraphId()}.
+     */
+    long getGraphVersion();
+
+    /**
+     * @return Identifies the view of the graph this driver gives: the store it reads, plus anything that shapes what
+     *         it sees of it, like the roots and filter of a derived driver. Two drivers with the same id and
+     *         {@link #getGraphVersion()} give the same traversal results, also across restarts of a persistent store;
+     *         anything else gets an id of its own.
+     */
+    String getGraphId();
+
     boolean containsProject( ProjectVersionRef ref );
 
+    /**
+     * Batch form of {@link #containsProject(ProjectVersionRef)}.
+     * 
+     * @return The subset of the given projects contained in this graph.
+     */
+    Set<ProjectVersionRef> containsProjects( Collection<ProjectVersionRef> refs );
+
     boolean containsRelationship( ProjectRelationship<?> rel );
 
     boolean isDerivedFrom( EGraphDriver driver );
 
     boolean isMissing( ProjectVersionRef project );
 
+    /**
+     * Batch form of {@link #isMissing(ProjectVersionRef)}.
+     * 
+     * @return The subset of the given projects that are missing.
+     */
+    Set<ProjectVersionRef> getMissingProjects( Collection<ProjectVersionRef> refs );
+
     boolean hasMissingProjects();
 
     Set<ProjectVersionRef> getMissingProjects();
@@ -90,6 +159,13 @@ public interface EGraphDriver
 
     Map<String, String> getProjectMetadata( ProjectVersionRef ref );
 
+    /**
+     * Batch form of {@link #getProjectMetadata(ProjectVersionRef)}.
+     * 
+     * @return Metadata for each of the given projects, keyed by project. Projects that aren't stored are left out.
+     */
+    Map<ProjectVersionRef, Map<String, String>> getProjectMetadata( Collection<ProjectVersionRef> refs );
+
     void addProjectMetadata( ProjectVersionRef ref, String key, String value );
 
     void addProjectMetadata( ProjectVersionRef ref, Map<String, String> metadata );
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.rel;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.junit.Test;
+
+public class RelationshipIdentityTest
+{
+
+    private final ProjectVersionRef project = new ProjectVersionRef( "org.foo", "foobar", "1.0" );
+
+    private final ArtifactRef dep = new ArtifactRef( new ProjectVersionRef( "org.foo", "dep", "1.0" ), null, null,
+                                                     false );
+
+    @Test
+    public void equalRelationshipsFromDifferentSourcesShareIdentity()
+        throws Exception
+    {
+        final DependencyRelationship one =
+            new DependencyRelationship( new URI( "test:one" ), project, dep, DependencyScope.test, 0, false );
+        final DependencyRelationship two =
+            new DependencyRelationship( new URI( "test:two" ), project, dep, DependencyScope.test, 0, false,
+                                        new ProjectRef( "org.ex", "cluded" ) );
+
+        assertThat( one.getIdentity(), equalTo( two.getIdentity() ) );
+        assertThat( one.getIdentityCheck(), equalTo( two.getIdentityCheck() ) );
+        assertThat( one.getIdentity()
+                       .length(), equalTo( 22 ) );
+    }
+
+    @Test
+    public void identityDistinguishesWhatToStringDoes()
+        throws Exception
+    {
+        final URI source = new URI( "test:repo" );
+        final DependencyRelationship base =
+            new DependencyRelationship( source, project, dep, DependencyScope.compile, 0, false );
+
+        assertDifferent( base, new DependencyRelationship( source, project, dep, DependencyScope.test, 0, false ) );
+        assertDifferent( base, new DependencyRelationship( source, project, dep, DependencyScope.compile, 1, false ) );
+        assertDifferent( base, new DependencyRelationship( source, project, dep, DependencyScope.compile, 0, true ) );
+        assertDifferent( base, new DependencyRelationship( source, project, new ArtifactRef( dep, "zip", "sources",
+                                                                                             false ),
+                                                           DependencyScope.compile, 0, false ) );
+        assertDifferent( base, new PluginRelationship( source, project, dep, 0, false ) );
+
+        final ProjectRef plugin = new ProjectRef( "org.plugins", "plugin" );
+        assertDifferent( new PluginDependencyRelationship( source, project, plugin, dep, 0, false ),
+                         new PluginDependencyRelationship( source, project, new ProjectRef( "org.plugins", "other" ),
+                                                           dep, 0, false ) );
+    }
+
+    private void assertDifferent( final AbstractProjectRelationship<?> one, final AbstractProjectRelationship<?> two )
+    {
+        assertThat( one.getIdentity(), not( equalTo( two.getIdentity() ) ) );
+        assertThat( one.getIdentityCheck(), not( equalTo( two.getIdentityCheck() ) ) );
+    }
+
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.traverse.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.junit.Test;
+
+public class PathGraphTest
+{
+
+    private static final URI SOURCE = URI.create( "test:path-graph" );
+
+    private final ProjectVersionRef root = new ProjectVersionRef( "org.test", "root", "1" );
+
+    private final ProjectVersionRef a = new ProjectVersionRef( "org.test", "a", "1" );
+
+    private final ProjectVersionRef b = new ProjectVersionRef( "org.test", "b", "1" );
+
+    private final ProjectVersionRef t = new ProjectVersionRef( "org.test", "t", "1" );
+
+    private final ProjectVersionRef dead = new ProjectVersionRef( "org.test", "dead-end", "1" );
+
+    @Test
+    public void dropCycleAndDeadEndsThenCountIterateAndFindShortest()
+    {
+        final DependencyRelationship rootT = dep( root, t, 2 );
+
+        // added out of order, to check the builder sorts them.
+        final PathGraph.Builder builder = new PathGraph.Builder( Collections.singleton( root ), t );
+        builder.withRelationship( rootT )
+               .withRelationship( dep( root, dead, 1 ) )
+               .withRelationship( dep( root, a, 0 ) )
+               .withRelationship( dep( a, t, 1 ) )
+               .withRelationship( dep( a, b, 0 ) )
+               .withRelationship( dep( b, t, 1 ) )
+               .withRelationship( dep( b, a, 0 ) );
+
+        final PathGraph graph = builder.build();
+
+        // root -> a -> b -> t, root -> a -> t, root -> t; b -> a is only reached past a, and dead-end reaches nothing.
+        assertThat( graph.getPathCount(), equalTo( 3L ) );
+        assertThat( graph.getPathCount( a ), equalTo( 2L ) );
+        assertThat( graph.getProjects()
+                         .contains( dead ), equalTo( false ) );
+        assertThat( graph.getAllRelationships()
+                         .size(), equalTo( 5 ) );
+
+        final List<List<ProjectRelationship<?>>> paths = new ArrayList<List<ProjectRelationship<?>>>();
+        for ( final List<ProjectRelationship<?>> path : graph )
+        {
+            paths.add( path );
+        }
+
+        assertThat( paths.size(), equalTo( 3 ) );
+        assertThat( paths.get( 0 )
+                         .size(), equalTo( 3 ) );
+        assertThat( paths.get( 2 ), equalTo( Collections.<ProjectRelationship<?>> singletonList( rootT ) ) );
+
+        final Iterator<List<ProjectRelationship<?>>> limited = graph.iterator( 2 );
+        limited.next();
+        limited.next();
+        assertThat( limited.hasNext(), equalTo( false ) );
+
+        assertThat( graph.getShortestPath(), equalTo( Collections.<ProjectRelationship<?>> singletonList( rootT ) ) );
+    }
+
+    @Test
+    public void keepSimplePathsThroughCycleWhicheverWayItIsEntered()
+    {
+        final DependencyRelationship rootA = dep( root, a, 0 );
+        final DependencyRelationship rootB = dep( root, b, 1 );
+        final DependencyRelationship aT = dep( a, t, 1 );
+        final DependencyRelationship bA = dep( b, a, 0 );
+
+        final PathGraph.Builder builder = new PathGraph.Builder( Collections.singleton( root ), t );
+        builder.withRelationship( rootA )
+               .withRelationship( rootB )
+               .withRelationship( dep( a, b, 0 ) )
+               .withRelationship( bA )
+               .withRelationship( aT );
+
+        final PathGraph graph = builder.build();
+
+        // root -> a -> t, root -> b -> a -> t; a -> b only leads back to a.
+        assertThat( graph.getPathCount(), equalTo( 2L ) );
+        assertThat( graph.getPathCount( b ), equalTo( 1L ) );
+
+        final Set<ProjectRelationship<?>> onPaths =
+            new HashSet<ProjectRelationship<?>>( Arrays.<ProjectRelationship<?>> asList( rootA, rootB, bA, aT ) );
+        assertThat( graph.getAllRelationships(), equalTo( onPaths ) );
+
+        final List<List<ProjectRelationship<?>>> paths = new ArrayList<List<ProjectRelationship<?>>>();
+        for ( final List<ProjectRelationship<?>> path : graph )
+        {
+            paths.add( path );
+        }
+
+        assertThat( paths.size(), equalTo( 2 ) );
+        assertThat( paths.get( 0 ), equalTo( Arrays.<ProjectRelationship<?>> asList( rootA, aT ) ) );
+        assertThat( paths.get( 1 ), equalTo( Arrays.<ProjectRelationship<?>> asList( rootB, bA, aT ) ) );
+    }
+
+    private DependencyRelationship dep( final ProjectVersionRef from, final ProjectVersionRef to, final int index )
+    {
+        return new DependencyRelationship( SOURCE, from, new ArtifactRef( to, null, null, false ), null, index, false );
+    }
+
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.apache.maven.graph.effective.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ComponentGraphTest
+{
+
+    @Test
+    public void condenseCyclesAndOrderComponentsAfterSuccessors()
+    {
+        final Map<String, Collection<String>> edges = new LinkedHashMap<String, Collection<String>>();
+        edges.put( "app", Arrays.asList( "a", "lib" ) );
+        edges.put( "a", Arrays.asList( "b" ) );
+        edges.put( "b", Arrays.asList( "c" ) );
+        edges.put( "c", Arrays.asList( "a", "lib" ) );
+        edges.put( "self", Arrays.asList( "self" ) );
+
+        final ComponentGraph<String> graph = new ComponentGraph<String>( edges );
+
+        assertThat( graph.getComponentCount(), equalTo( 4 ) );
+
+        final int app = graph.getComponentOf( "app" );
+        final int cycle = graph.getComponentOf( "a" );
+        final int lib = graph.getComponentOf( "lib" );
+        final int self = graph.getComponentOf( "self" );
+
+        assertThat( graph.getComponentOf( "b" ), equalTo( cycle ) );
+        assertThat( graph.getComponentOf( "c" ), equalTo( cycle ) );
+        assertThat( graph.getComponentOf( "missing" ), equalTo( -1 ) );
+
+        assertThat( graph.getComponent( cycle ), equalTo( set( "a", "b", "c" ) ) );
+        assertThat( graph.isCyclic( cycle ), equalTo( true ) );
+        assertThat( graph.isCyclic( self ), equalTo( true ) );
+        assertThat( graph.isCyclic( app ), equalTo( false ) );
+        assertThat( graph.isCyclic( lib ), equalTo( false ) );
+
+        assertThat( lib < cycle, equalTo( true ) );
+        assertThat( cycle < app, equalTo( true ) );
+        assertThat( graph.getSuccessors( app ), equalTo( set( cycle, lib ) ) );
+        assertThat( graph.getSuccessors( cycle ), equalTo( set( lib ) ) );
+        assertThat( graph.getSuccessors( self )
+                         .isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void longChainDoesNotOverflowStack()
+    {
+        final Map<Integer, Collection<Integer>> edges = new LinkedHashMap<Integer, Collection<Integer>>();
+        final int length = 100000;
+        for ( int i = 0; i < length; i++ )
+        {
+            edges.put( i, Arrays.asList( i + 1 ) );
+        }
+
+        final ComponentGraph<Integer> graph = new ComponentGraph<Integer>( edges );
+
+        assertThat( graph.getComponentCount(), equalTo( length + 1 ) );
+        assertThat( graph.getComponentOf( length ), equalTo( 0 ) );
+        assertThat( graph.getComponentOf( 0 ), equalTo( length ) );
+    }
+
+    private <T> Set<T> set( final T... values )
+    {
+        return new HashSet<T>( Arrays.asList( values ) );
+    }
+
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.tck.effective;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectGraph;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.spi.effective.EGraphDriver;
+import org.junit.Test;
+
+public abstract class BatchLookupTCK
+    extends AbstractSPI_TCK
+{
+
+    @Test
+    public void batchLookupsMatchSingleLookups()
+        throws Exception
+    {
+        final ProjectVersionRef r = new ProjectVersionRef( "org.test", "root", "1" );
+        final ProjectVersionRef a = new ProjectVersionRef( "org.test", "a", "1.0" );
+        final ProjectVersionRef b = new ProjectVersionRef( "org.test", "b", "1.0" );
+        final ProjectVersionRef x = new ProjectVersionRef( "org.test", "x", "1.0" );
+        final ProjectVersionRef y = new ProjectVersionRef( "org.test", "y", "1.0" );
+        final ProjectVersionRef unknown = new ProjectVersionRef( "org.test", "unknown", "1.0" );
+
+        final URI source = sourceURI();
+
+        final EGraphDriver driver = newDriverInstance();
+        final EProjectGraph graph =
+            new EProjectGraph.Builder( source, r, driver ).withExactRelationships( dependency( source, r, a ),
+                                                                                   dependency( source, a, b ) )
+                                                          .build();
+
+        new EProjectGraph.Builder( source, x, driver ).withExactRelationships( dependency( source, x, y ) )
+                                                      .build();
+
+        final EGraphDriver d = graph.getDriver();
+        d.addProjectMetadata( r, "key", "value" );
+
+        final List<ProjectVersionRef> refs = Arrays.asList( r, a, b, x, y, unknown );
+
+        final Set<ProjectVersionRef> contained = new HashSet<ProjectVersionRef>();
+        final Set<ProjectVersionRef> missing = new HashSet<ProjectVersionRef>();
+        final Map<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>> declared =
+            new HashMap<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>>();
+        final Map<ProjectVersionRef, Map<String, String>> metadata = new HashMap<ProjectVersionRef, Map<String, String>>();
+
+        for ( final ProjectVersionRef ref : refs )
+        {
+            if ( d.containsProject( ref ) )
+            {
+                contained.add( ref );
+            }
+
+            if ( d.isMissing( ref ) )
+            {
+                missing.add( ref );
+            }
+
+            final Collection<? extends ProjectRelationship<?>> rels = d.getRelationshipsDeclaredBy( ref );
+            if ( rels != null )
+            {
+                declared.put( ref, rels );
+            }
+
+            final Map<String, String> md = d.getProjectMetadata( ref );
+            if ( md != null )
+            {
+                metadata.put( ref, md );
+            }
+        }
+
+        assertThat( contained.contains( r ), equalTo( true ) );
+        assertThat( contained.contains( unknown ), equalTo( false ) );
+
+        assertThat( d.containsProjects( refs ), equalTo( contained ) );
+        assertThat( d.getMissingProjects( refs ), equalTo( missing ) );
+        assertThat( d.getProjectMetadata( refs ), equalTo( metadata ) );
+        assertThat( d.getProjectMetadata( refs )
+                     .get( r )
+                     .get( "key" ), equalTo( "value" ) );
+
+        final Map<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>> batchDeclared =
+            d.getRelationshipsDeclaredBy( refs );
+
+        assertThat( batchDeclared.keySet(), equalTo( declared.keySet() ) );
+        for ( final Map.Entry<ProjectVersionRef, Collection<? extends ProjectRelationship<?>>> entry : declared.entrySet() )
+        {
+            assertThat( new HashSet<ProjectRelationship<?>>( batchDeclared.get( entry.getKey() ) ),
+                        equalTo( new HashSet<ProjectRelationship<?>>( entry.getValue() ) ) );
+        }
+    }
+
+    private DependencyRelationship dependency( final URI source, final ProjectVersionRef from,
+                                               final ProjectVersionRef to )
+    {
+        return new DependencyRelationship( source, from, new ArtifactRef( to, null, null, false ), null, 0, false );
+    }
+
+}
@@ -21,7 +21,9 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.maven.graph.common.ref.ArtifactRef;
@@ -32,6 +34,7 @@ import org.apache.maven.graph.effective.filter.DependencyFilter;
 import org.apache.maven.graph.effective.ref.EProjectKey;
 import org.apache.maven.graph.effective.rel.DependencyRelationship;
 import org.apache.maven.graph.effective.rel.PluginRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
 import org.apache.maven.graph.spi.effective.EGraphDriver;
 import org.apache.maven.graph.spi.effective.GloballyBackedGraphDriver;
 import org.junit.Test;
@@ -97,6 +100,107 @@ public abstract class CycleDetectionTCK
         }
     }
 
+    @Test
+    public void rejectRelationshipClosingLongCycleAddedOutOfOrder()
+        throws Exception
+    {
+        final URI source = sourceURI();
+        final int length = 50;
+
+        final List<ProjectVersionRef> refs = new ArrayList<ProjectVersionRef>();
+        for ( int i = 0; i <= length; i++ )
+        {
+            refs.add( new ProjectVersionRef( "org.chain", "p" + i, "1.0" ) );
+        }
+
+        // add the chain back to front, so every relationship goes against the order of the ones before it.
+        final List<DependencyRelationship> rels = new ArrayList<DependencyRelationship>();
+        for ( int i = length - 1; i > -1; i-- )
+        {
+            rels.add( new DependencyRelationship( source, refs.get( i ), new ArtifactRef( refs.get( i + 1 ), null, null,
+                                                                                          false ), null, 0, false ) );
+        }
+
+        final DependencyRelationship back =
+            new DependencyRelationship( source, refs.get( length ), new ArtifactRef( refs.get( 0 ), null, null, false ),
+                                        null, 0, false );
+
+        final EGraphDriver driver = newDriverInstance();
+        final Set<ProjectRelationship<?>> skipped =
+            driver.addRelationships( rels.toArray( new ProjectRelationship<?>[] {} ) );
+        assertThat( skipped.isEmpty(), equalTo( true ) );
+
+        final DependencyRelationship forward =
+            new DependencyRelationship( source, refs.get( 0 ), new ArtifactRef( refs.get( length ), null, null, false ),
+                                        null, 1, false );
+
+        assertThat( driver.introducesCycle( forward ), equalTo( false ) );
+        assertThat( driver.introducesCycle( back ), equalTo( true ) );
+
+        assertThat( driver.addRelationships( back )
+                          .contains( back ), equalTo( true ) );
+
+        final Set<EProjectCycle> cycles = driver.getCycles();
+        assertThat( cycles.size(), equalTo( 1 ) );
+        final Set<ProjectVersionRef> participants = cycles.iterator()
+                                                          .next()
+                                                          .getAllParticipatingProjects();
+        assertThat( participants, equalTo( (Set<ProjectVersionRef>) new HashSet<ProjectVersionRef>( refs ) ) );
+    }
+
+    @Test
+    public void cycleParticipationFollowsGraphChanges()
+        throws Exception
+    {
+        final URI source = sourceURI();
+
+        final ProjectVersionRef a = new ProjectVersionRef( "org.my", "a", "1.0" );
+        final ProjectVersionRef b = new ProjectVersionRef( "org.my", "b", "1.0" );
+        final ProjectVersionRef c = new ProjectVersionRef( "org.my", "c", "1.0" );
+        final ProjectVersionRef d = new ProjectVersionRef( "org.my", "d", "1.0" );
+
+        final DependencyRelationship ab =
+            new DependencyRelationship( source, a, new ArtifactRef( b, null, null, false ), null, 0, false );
+        final DependencyRelationship bc =
+            new DependencyRelationship( source, b, new ArtifactRef( c, null, null, false ), null, 0, false );
+        final DependencyRelationship ca =
+            new DependencyRelationship( source, c, new ArtifactRef( a, null, null, false ), null, 0, false );
+        final DependencyRelationship cd =
+            new DependencyRelationship( source, c, new ArtifactRef( d, null, null, false ), null, 1, false );
+        final DependencyRelationship dc =
+            new DependencyRelationship( source, d, new ArtifactRef( c, null, null, false ), null, 0, false );
+
+        final EGraphDriver driver = newDriverInstance();
+        driver.addRelationships( ab, bc, cd );
+
+        // asked before the graph changes, so a stale answer would show up below.
+        assertThat( driver.isCycleParticipant( a ), equalTo( false ) );
+        assertThat( driver.isCycleParticipant( ab ), equalTo( false ) );
+        assertThat( driver.getCycles()
+                          .isEmpty(), equalTo( true ) );
+
+        assertThat( driver.addRelationships( ca )
+                          .contains( ca ), equalTo( true ) );
+
+        assertThat( driver.isCycleParticipant( a ), equalTo( true ) );
+        assertThat( driver.isCycleParticipant( b ), equalTo( true ) );
+        assertThat( driver.isCycleParticipant( c ), equalTo( true ) );
+        assertThat( driver.isCycleParticipant( d ), equalTo( false ) );
+        assertThat( driver.isCycleParticipant( ab ), equalTo( true ) );
+        assertThat( driver.isCycleParticipant( ca ), equalTo( true ) );
+        assertThat( driver.isCycleParticipant( cd ), equalTo( false ) );
+        assertThat( driver.getCycles()
+                          .size(), equalTo( 1 ) );
+
+        assertThat( driver.addRelationships( dc )
+                          .contains( dc ), equalTo( true ) );
+
+        assertThat( driver.isCycleParticipant( d ), equalTo( true ) );
+        assertThat( driver.isCycleParticipant( cd ), equalTo( true ) );
+        assertThat( driver.getCycles()
+                          .size(), equalTo( 2 ) );
+    }
+
     @Test
     //    @Ignore
     public void buildGraphWithCycleBetweenDepLevelsAndRetrieveCycle()
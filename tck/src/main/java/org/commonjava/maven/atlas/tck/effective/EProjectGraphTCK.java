@@ -18,16 +18,34 @@ package org.commonjava.maven.atlas.tck.effective;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.RelationshipType;
+import org.apache.maven.graph.common.ref.ArtifactRef;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
 import org.apache.maven.graph.effective.EProjectGraph;
+import org.apache.maven.graph.effective.EProjectWeb;
+import org.apache.maven.graph.effective.filter.DependencyFilter;
+import org.apache.maven.graph.effective.ref.EProjectKey;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
 import org.apache.maven.graph.effective.rel.ParentRelationship;
+import org.apache.maven.graph.effective.rel.PluginRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
 import org.apache.maven.graph.effective.traverse.AncestryTraversal;
+import org.apache.maven.graph.effective.traverse.model.PathGraph;
+import org.apache.maven.graph.effective.util.CloseableIterator;
+import org.apache.maven.graph.effective.util.CloseableIterators;
 import org.apache.maven.graph.spi.effective.EGraphDriver;
 import org.commonjava.util.logging.Logger;
 import org.junit.Test;
@@ -74,4 +92,280 @@ public abstract class EProjectGraphTCK
         assertThat( iterator.next(), equalTo( r ) );
     }
 
+    @Test
+    public void iterateRelationshipsAndProjectsMatchesMaterializedCollections()
+        throws Exception
+    {
+        final ProjectVersionRef r = new ProjectVersionRef( "org.test", "root", "1" );
+        final ProjectVersionRef p = new ProjectVersionRef( "org.test", "parent", "1.0" );
+        final ProjectVersionRef d = new ProjectVersionRef( "org.test", "dep", "1.0" );
+        final ProjectVersionRef pl = new ProjectVersionRef( "org.test", "plugin", "1.0" );
+
+        final URI source = sourceURI();
+
+        final EGraphDriver driver = newDriverInstance();
+        final DependencyRelationship dep =
+            new DependencyRelationship( source, r, new ArtifactRef( d, null, null, false ), null, 0, false );
+
+        final EProjectGraph graph =
+            new EProjectGraph.Builder( source, r, driver ).withParent( new ParentRelationship( source, r, p ) )
+                                                          .withDependencies( dep )
+                                                          .withPlugins( new PluginRelationship( source, r, pl, 0, false ) )
+                                                          .build();
+
+        final Set<ProjectRelationship<?>> all = graph.getAllRelationships();
+        assertThat( all.size(), equalTo( 3 ) );
+        assertThat( CloseableIterators.toSet( graph.iterateAllRelationships() ), equalTo( all ) );
+        assertThat( graph.getExactAllRelationships(), equalTo( all ) );
+
+        final Set<ProjectRelationship<?>> deps =
+            CloseableIterators.toSet( graph.iterateAllRelationships( RelationshipType.DEPENDENCY ) );
+        assertThat( deps.size(), equalTo( 1 ) );
+        assertThat( deps.iterator()
+                        .next()
+                        .getTarget()
+                        .asProjectVersionRef(), equalTo( d ) );
+
+        assertThat( CloseableIterators.toSet( graph.iterateAllRelationships( RelationshipType.PARENT,
+                                                                             RelationshipType.PLUGIN ) )
+                                      .size(), equalTo( 2 ) );
+
+        final CloseableIterator<ProjectVersionRef> projects = graph.iterateAllProjects();
+        projects.close();
+        assertThat( projects.hasNext(), equalTo( false ) );
+
+        assertThat( CloseableIterators.toSet( graph.iterateAllProjects() ), equalTo( graph.getAllProjects() ) );
+    }
+
+    @Test
+    public void webRelationshipsSkipTerminalParents()
+        throws Exception
+    {
+        final ProjectVersionRef r = new ProjectVersionRef( "org.test", "root", "1" );
+        final ProjectVersionRef p = new ProjectVersionRef( "org.test", "parent", "1.0" );
+        final ProjectVersionRef d = new ProjectVersionRef( "org.test", "dep", "1.0" );
+
+        final URI source = sourceURI();
+
+        final Set<ProjectRelationship<?>> rels = new HashSet<ProjectRelationship<?>>();
+        rels.add( new ParentRelationship( source, r, p ) );
+        rels.add( new ParentRelationship( source, p ) );
+        rels.add( new DependencyRelationship( source, r, new ArtifactRef( d, null, null, false ), null, 0, false ) );
+
+        final EProjectWeb web = new EProjectWeb( rels, newDriverInstance() );
+
+        final Set<ProjectRelationship<?>> all = web.getAllRelationships();
+        assertThat( all.size(), equalTo( 2 ) );
+        assertThat( all.contains( new ParentRelationship( source, p ) ), equalTo( false ) );
+        assertThat( CloseableIterators.toSet( web.iterateAllRelationships() ), equalTo( all ) );
+        assertThat( CloseableIterators.toSet( web.iterateAllRelationships( RelationshipType.PARENT ) )
+                                      .size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void pathGraphCountsPathsWithoutEnumeratingThem()
+        throws Exception
+    {
+        final URI source = sourceURI();
+        final int levels = 20;
+
+        // a ladder: every project on one level depends on both projects on the next, doubling the paths per level.
+        final ProjectVersionRef root = new ProjectVersionRef( "org.ladder", "root", "1.0" );
+        final ProjectVersionRef target = new ProjectVersionRef( "org.ladder", "target", "1.0" );
+
+        final List<DependencyRelationship> rels = new ArrayList<DependencyRelationship>();
+        List<ProjectVersionRef> level = Collections.singletonList( root );
+        for ( int i = 0; i <= levels; i++ )
+        {
+            final List<ProjectVersionRef> next = new ArrayList<ProjectVersionRef>();
+            if ( i == levels )
+            {
+                next.add( target );
+            }
+            else
+            {
+                next.add( new ProjectVersionRef( "org.ladder", "a" + i, "1.0" ) );
+                next.add( new ProjectVersionRef( "org.ladder", "b" + i, "1.0" ) );
+            }
+
+            for ( final ProjectVersionRef from : level )
+            {
+                int idx = 0;
+                for ( final ProjectVersionRef to : next )
+                {
+                    rels.add( new DependencyRelationship( source, from, new ArtifactRef( to, null, null, false ), null,
+                                                          idx++, false ) );
+                }
+            }
+
+            level = next;
+        }
+
+        final ProjectVersionRef unrelated = new ProjectVersionRef( "org.other", "unrelated", "1.0" );
+        rels.add( new DependencyRelationship( source, root, new ArtifactRef( unrelated, null, null, false ), null, 2,
+                                              false ) );
+
+        final EProjectGraph graph =
+            new EProjectGraph.Builder( source, root, newDriverInstance() ).withDependencies( rels )
+                                                                           .build();
+
+        final PathGraph paths = graph.getPathGraph( target );
+
+        assertThat( paths.getPathCount(), equalTo( 1L << levels ) );
+        assertThat( paths.getProjects()
+                         .contains( unrelated ), equalTo( false ) );
+        assertThat( paths.getAllRelationships()
+                         .size(), equalTo( rels.size() - 1 ) );
+
+        final List<ProjectRelationship<?>> shortest = paths.getShortestPath();
+        assertThat( shortest.size(), equalTo( levels + 1 ) );
+        assertThat( shortest.get( 0 )
+                            .getDeclaring(), equalTo( root ) );
+        assertThat( shortest.get( levels )
+                            .getTarget()
+                            .asProjectVersionRef(), equalTo( target ) );
+
+        final Set<List<ProjectRelationship<?>>> some = new HashSet<List<ProjectRelationship<?>>>();
+        for ( final Iterator<List<ProjectRelationship<?>>> it = paths.iterator( 5 ); it.hasNext(); )
+        {
+            final List<ProjectRelationship<?>> path = it.next();
+            assertThat( path.size(), equalTo( levels + 1 ) );
+            assertThat( path.get( levels )
+                            .getTarget()
+                            .asProjectVersionRef(), equalTo( target ) );
+            some.add( path );
+        }
+
+        assertThat( some.size(), equalTo( 5 ) );
+
+        final PathGraph none = graph.getPathGraph( new ProjectVersionRef( "org.missing", "missing", "1.0" ) );
+        assertThat( none.isEmpty(), equalTo( true ) );
+        assertThat( none.getShortestPath(), nullValue() );
+        assertThat( none.iterator()
+                        .hasNext(), equalTo( false ) );
+    }
+
+    @Test
+    public void shortestPathIsNearestThenFirstDeclaredAndHonorsChildFilters()
+        throws Exception
+    {
+        final URI source = sourceURI();
+
+        final ProjectVersionRef root = new ProjectVersionRef( "org.my", "root", "1.0" );
+        final ProjectVersionRef a = new ProjectVersionRef( "org.my", "a", "1.0" );
+        final ProjectVersionRef b = new ProjectVersionRef( "org.my", "b", "1.0" );
+        final ProjectVersionRef c = new ProjectVersionRef( "org.my", "c", "1.0" );
+        final ProjectVersionRef d = new ProjectVersionRef( "org.my", "d", "1.0" );
+        final ProjectVersionRef t = new ProjectVersionRef( "org.other", "target", "1.0" );
+
+        final DependencyRelationship rootA =
+            new DependencyRelationship( source, root, new ArtifactRef( a, null, null, false ), null, 0, false,
+                                        t.asProjectRef() );
+        final DependencyRelationship rootB =
+            new DependencyRelationship( source, root, new ArtifactRef( b, null, null, false ), null, 1, false );
+        final DependencyRelationship aT =
+            new DependencyRelationship( source, a, new ArtifactRef( t, null, null, false ), null, 0, false );
+        final DependencyRelationship bT =
+            new DependencyRelationship( source, b, new ArtifactRef( t, null, null, false ), null, 0, false );
+
+        /* @formatter:off */
+        final EProjectGraph graph = new EProjectGraph.Builder( source, root, newDriverInstance() )
+            .withDependencies( rootB, rootA, aT, bT,
+                               new DependencyRelationship( source, root, new ArtifactRef( c, null, null, false ), null, 2, false ),
+                               new DependencyRelationship( source, c, new ArtifactRef( d, null, null, false ), null, 0, false ),
+                               new DependencyRelationship( source, d, new ArtifactRef( t, null, null, false ), null, 0, false )
+            )
+            .build();
+        /* @formatter:on */
+
+        assertThat( graph.getShortestPath( root, t, null ),
+                    equalTo( Arrays.<ProjectRelationship<?>> asList( rootA, aT ) ) );
+
+        // the exclusion on root -> a only shows up in the child filter used below a.
+        assertThat( graph.getShortestPath( root, t, new DependencyFilter() ),
+                    equalTo( Arrays.<ProjectRelationship<?>> asList( rootB, bT ) ) );
+
+        assertThat( graph.getShortestPath( root, root, null )
+                         .isEmpty(), equalTo( true ) );
+        assertThat( graph.getShortestPath( root, new ProjectVersionRef( "org.missing", "missing", "1.0" ), null ),
+                    nullValue() );
+    }
+
+    @Test
+    public void shortestPathHonorsGraphFilter()
+        throws Exception
+    {
+        final URI source = sourceURI();
+
+        final ProjectVersionRef root = new ProjectVersionRef( "org.my", "root", "1.0" );
+        final ProjectVersionRef a = new ProjectVersionRef( "org.my", "a", "1.0" );
+        final ProjectVersionRef b = new ProjectVersionRef( "org.my", "b", "1.0" );
+
+        final DependencyRelationship rootA =
+            new DependencyRelationship( source, root, new ArtifactRef( a, null, null, false ), DependencyScope.test, 0,
+                                        false );
+        final DependencyRelationship rootB =
+            new DependencyRelationship( source, root, new ArtifactRef( b, null, null, false ), DependencyScope.compile,
+                                        1, false );
+
+        final EProjectGraph graph =
+            new EProjectGraph.Builder( source, root, newDriverInstance() ).withDependencies( rootA, rootB )
+                                                                           .build();
+
+        assertThat( graph.getShortestPath( root, a, null ),
+                    equalTo( Arrays.<ProjectRelationship<?>> asList( rootA ) ) );
+
+        // a view of the graph through a filter searches through it, without being asked to.
+        final EProjectGraph runtime =
+            graph.getGraph( new DependencyFilter( DependencyScope.runtime ), new EProjectKey( source, root ) );
+
+        assertThat( runtime.getShortestPath( root, a, null ), nullValue() );
+        assertThat( runtime.getShortestPath( root, b, null ),
+                    equalTo( Arrays.<ProjectRelationship<?>> asList( rootB ) ) );
+    }
+
+    @Test
+    public void shortestPathDoesNotDependOnTargetAncestorCone()
+        throws Exception
+    {
+        final URI source = sourceURI();
+
+        final ProjectVersionRef root = new ProjectVersionRef( "org.my", "root", "1.0" );
+        final ProjectVersionRef a = new ProjectVersionRef( "org.my", "a", "1.0" );
+        final ProjectVersionRef t = new ProjectVersionRef( "org.other", "target", "1.0" );
+
+        final DependencyRelationship rootA =
+            new DependencyRelationship( source, root, new ArtifactRef( a, null, null, false ), null, 0, false );
+        final DependencyRelationship aT =
+            new DependencyRelationship( source, a, new ArtifactRef( t, null, null, false ), null, 0, false );
+
+        // many more projects lead to the target than the root can reach.
+        final List<ProjectRelationship<?>> cone = new ArrayList<ProjectRelationship<?>>();
+        for ( int i = 0; i < 300; i++ )
+        {
+            final ProjectVersionRef user = new ProjectVersionRef( "org.users", "user-" + i, "1.0" );
+            final ProjectVersionRef app = new ProjectVersionRef( "org.apps", "app-" + i, "1.0" );
+            cone.add( new DependencyRelationship( source, user, new ArtifactRef( t, null, null, false ), null, 0,
+                                                  false ) );
+            cone.add( new DependencyRelationship( source, app, new ArtifactRef( user, null, null, false ), null, 0,
+                                                  false ) );
+        }
+
+        final EGraphDriver driver = newDriverInstance();
+        driver.addRelationships( cone.toArray( new ProjectRelationship<?>[] {} ) );
+        driver.addRelationships( rootA, aT );
+
+        assertThat( driver.getShortestPath( root, t, null ),
+                    equalTo( Arrays.<ProjectRelationship<?>> asList( rootA, aT ) ) );
+        assertThat( driver.getShortestPath( root, new ProjectVersionRef( "org.users", "user-7", "1.0" ), null ),
+                    nullValue() );
+
+        // and from one of the cone's own roots, through the cone.
+        final ProjectVersionRef app = new ProjectVersionRef( "org.apps", "app-7", "1.0" );
+        final List<ProjectRelationship<?>> fromApp = driver.getShortestPath( app, t, null );
+        assertThat( fromApp.size(), equalTo( 2 ) );
+        assertThat( fromApp.get( 0 )
+                           .getDeclaring(), equalTo( app ) );
+    }
+
 }
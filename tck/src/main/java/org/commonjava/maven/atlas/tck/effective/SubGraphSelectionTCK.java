@@ -17,9 +17,14 @@
 package org.commonjava.maven.atlas.tck.effective;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -30,6 +35,7 @@ import org.apache.maven.graph.common.version.VersionUtils;
 import org.apache.maven.graph.effective.EProjectGraph;
 import org.apache.maven.graph.effective.ref.EProjectKey;
 import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
 import org.apache.maven.graph.spi.effective.EGraphDriver;
 import org.junit.Test;
 
@@ -68,6 +74,42 @@ public abstract class SubGraphSelectionTCK
 
         final Set<ProjectVersionRef> incomplete = graph.getIncompleteSubgraphs();
         assertThat( incomplete.contains( selDep ), equalTo( true ) );
+
+        // the dependency on the variable version is reported with the selected version as its target.
+        final Set<ProjectVersionRef> targets = new HashSet<ProjectVersionRef>();
+        for ( final ProjectRelationship<?> rel : graph.getAllRelationships() )
+        {
+            if ( rel.getDeclaring()
+                    .equals( project ) )
+            {
+                targets.add( rel.getTarget()
+                                .asProjectVersionRef() );
+            }
+        }
+
+        assertThat( targets, equalTo( Collections.singleton( selDep ) ) );
+
+        // reverse lookups see the same thing.
+        final Set<ProjectVersionRef> declaring = new HashSet<ProjectVersionRef>();
+        for ( final ProjectRelationship<?> rel : graph.getRelationshipsTargeting( selDep ) )
+        {
+            declaring.add( rel.getDeclaring() );
+        }
+
+        assertThat( declaring, equalTo( Collections.singleton( project ) ) );
+
+        final Set<ProjectRelationship<?>> toVariable = graph.getRelationshipsTargeting( varDep );
+        assertThat( toVariable == null || toVariable.isEmpty(), equalTo( true ) );
+
+        // and so does the shortest path search.
+        final List<ProjectRelationship<?>> path = graph.getShortestPath( project, selDep, null );
+        assertThat( path, notNullValue() );
+        assertThat( path.size(), equalTo( 1 ) );
+        assertThat( path.get( 0 )
+                        .getTarget()
+                        .asProjectVersionRef(), equalTo( selDep ) );
+
+        assertThat( graph.getShortestPath( project, varDep, null ), nullValue() );
     }
 
     @Test
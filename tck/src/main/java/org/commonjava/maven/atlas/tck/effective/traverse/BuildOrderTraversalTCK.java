@@ -21,9 +21,13 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.maven.graph.common.DependencyScope;
 import org.apache.maven.graph.common.ref.ArtifactRef;
@@ -295,6 +299,45 @@ public abstract class BuildOrderTraversalTCK
         assertRelativeOrder( relativeOrder, buildOrder );
     }
 
+    @Test
+    public void diamondDependencyBuildWaves()
+        throws Exception
+    {
+        final ProjectVersionRef c = new ProjectVersionRef( "group.id", "c", "3" );
+        final ProjectVersionRef b = new ProjectVersionRef( "group.id", "b", "2" );
+        final ProjectVersionRef a = new ProjectVersionRef( "group.id", "a", "1" );
+        final ProjectVersionRef d = new ProjectVersionRef( "group.id", "d", "4" );
+
+        final URI source = sourceURI();
+
+        /* @formatter:off */
+        final EProjectGraph graph = new EProjectGraph.Builder( source, c, newDriverInstance() )
+            .withDependencies( new DependencyRelationship( source, c, new ArtifactRef( a, null, null, false ), null, 0, false ),
+                               new DependencyRelationship( source, c, new ArtifactRef( b, null, null, false ), null, 1, false ),
+                               new DependencyRelationship( source, a, new ArtifactRef( d, null, null, false ), null, 0, false ),
+                               new DependencyRelationship( source, b, new ArtifactRef( d, null, null, false ), null, 0, false )
+            )
+           .build();
+        /* @formatter:on */
+
+        final BuildOrderTraversal bo = new BuildOrderTraversal();
+        graph.traverse( bo );
+
+        final BuildOrder buildOrder = bo.getBuildOrder();
+        final List<Set<ProjectRef>> waves = buildOrder.getWaves();
+
+        assertThat( waves.size(), equalTo( 3 ) );
+        assertThat( waves.get( 0 ), equalTo( Collections.singleton( d.asProjectRef() ) ) );
+        assertThat( waves.get( 1 ),
+                    equalTo( (Set<ProjectRef>) new HashSet<ProjectRef>( Arrays.asList( a.asProjectRef(),
+                                                                                        b.asProjectRef() ) ) ) );
+        assertThat( waves.get( 2 ), equalTo( Collections.singleton( c.asProjectRef() ) ) );
+        assertThat( buildOrder.getOrder()
+                              .size(), equalTo( 4 ) );
+        assertThat( buildOrder.getCycleGroups()
+                              .isEmpty(), equalTo( true ) );
+    }
+
     private void assertRelativeOrder( final Map<ProjectVersionRef, ProjectVersionRef> relativeOrder,
                                       final List<ProjectRef> buildOrder )
     {
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.tck.effective.traverse;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectGraph;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.effective.traverse.CriticalPathTraversal;
+import org.apache.maven.graph.effective.traverse.model.BuildSchedule;
+import org.apache.maven.graph.spi.effective.EGraphDriver;
+import org.commonjava.maven.atlas.tck.effective.AbstractSPI_TCK;
+import org.junit.Test;
+
+public abstract class CriticalPathTraversalTCK
+    extends AbstractSPI_TCK
+{
+
+    private static final String BUILD_TIME = "build-time";
+
+    @Test
+    public void weightedDiamondCriticalPath()
+        throws Exception
+    {
+        final ProjectVersionRef c = new ProjectVersionRef( "group.id", "c", "3" );
+        final ProjectVersionRef b = new ProjectVersionRef( "group.id", "b", "2" );
+        final ProjectVersionRef a = new ProjectVersionRef( "group.id", "a", "1" );
+        final ProjectVersionRef d = new ProjectVersionRef( "group.id", "d", "4" );
+
+        final URI source = sourceURI();
+
+        /* @formatter:off */
+        final EProjectGraph graph = new EProjectGraph.Builder( source, c, newDriverInstance() )
+            .withDependencies( new DependencyRelationship( source, c, new ArtifactRef( a, null, null, false ), null, 0, false ),
+                               new DependencyRelationship( source, c, new ArtifactRef( b, null, null, false ), null, 1, false ),
+                               new DependencyRelationship( source, a, new ArtifactRef( d, null, null, false ), null, 0, false ),
+                               new DependencyRelationship( source, b, new ArtifactRef( d, null, null, false ), null, 0, false )
+            )
+           .build();
+        /* @formatter:on */
+
+        final EGraphDriver driver = graph.getDriver();
+        driver.addProjectMetadata( c, BUILD_TIME, "1" );
+        driver.addProjectMetadata( a, BUILD_TIME, "5" );
+        driver.addProjectMetadata( b, BUILD_TIME, "not-a-number" );
+        driver.addProjectMetadata( d, BUILD_TIME, "3" );
+
+        final CriticalPathTraversal traversal = new CriticalPathTraversal( BUILD_TIME, 2 );
+        graph.traverse( traversal );
+
+        final BuildSchedule schedule = traversal.getBuildSchedule();
+
+        assertThat( schedule.getDuration(), equalTo( 9.0 ) );
+        assertThat( schedule.getCriticalPath(),
+                    equalTo( Arrays.asList( d.asProjectRef(), a.asProjectRef(), c.asProjectRef() ) ) );
+
+        assertThat( schedule.getWeights()
+                            .get( b.asProjectRef() ), equalTo( 2.0 ) );
+        assertThat( schedule.getEarliestStart( d.asProjectRef() ), equalTo( 0.0 ) );
+        assertThat( schedule.getEarliestStart( b.asProjectRef() ), equalTo( 3.0 ) );
+        assertThat( schedule.getLatestStart( b.asProjectRef() ), equalTo( 6.0 ) );
+        assertThat( schedule.getSlack( b.asProjectRef() ), equalTo( 3.0 ) );
+        assertThat( schedule.getSlack( a.asProjectRef() ), equalTo( 0.0 ) );
+        assertThat( schedule.getEarliestStart( c.asProjectRef() ), equalTo( 8.0 ) );
+        assertThat( schedule.getSlack( new ProjectRef( "group.id", "unknown" ) ), nullValue() );
+
+        assertThat( traversal.getBuildOrder()
+                             .getWaves()
+                             .size(), equalTo( 3 ) );
+    }
+
+}
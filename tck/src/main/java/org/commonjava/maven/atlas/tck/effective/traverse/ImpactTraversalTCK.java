@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.tck.effective.traverse;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectGraph;
+import org.apache.maven.graph.effective.rel.DependencyRelationship;
+import org.apache.maven.graph.effective.traverse.ImpactTraversal;
+import org.apache.maven.graph.effective.traverse.model.ImpactSummary;
+import org.commonjava.maven.atlas.tck.effective.AbstractSPI_TCK;
+import org.junit.Test;
+
+public abstract class ImpactTraversalTCK
+    extends AbstractSPI_TCK
+{
+
+    @Test
+    public void reverseWalkCountsPathsToImpactTarget()
+        throws Exception
+    {
+        final ProjectVersionRef app = new ProjectVersionRef( "org.my", "app", "1.0" );
+        final ProjectVersionRef lib1 = new ProjectVersionRef( "org.my", "lib1", "1.0" );
+        final ProjectVersionRef lib2 = new ProjectVersionRef( "org.my", "lib2", "1.0" );
+        final ProjectVersionRef other = new ProjectVersionRef( "org.other", "other", "1.0" );
+        final ProjectVersionRef vuln = new ProjectVersionRef( "org.other", "vuln", "1.0" );
+
+        final URI source = sourceURI();
+
+        /* @formatter:off */
+        final EProjectGraph graph = new EProjectGraph.Builder( source, app, newDriverInstance() )
+            .withDependencies( new DependencyRelationship( source, app, new ArtifactRef( lib1, null, null, false ), null, 0, false ),
+                               new DependencyRelationship( source, app, new ArtifactRef( lib2, null, null, false ), null, 1, false ),
+                               new DependencyRelationship( source, app, new ArtifactRef( vuln, null, null, false ), null, 0, true ),
+                               new DependencyRelationship( source, lib1, new ArtifactRef( lib2, null, null, false ), null, 0, false ),
+                               new DependencyRelationship( source, lib1, new ArtifactRef( vuln, null, null, false ), null, 1, false ),
+                               new DependencyRelationship( source, lib2, new ArtifactRef( vuln, null, null, false ), null, 0, false ),
+                               new DependencyRelationship( source, lib2, new ArtifactRef( other, null, null, false ), null, 1, false )
+            )
+           .build();
+        /* @formatter:on */
+
+        ImpactSummary summary = new ImpactTraversal( vuln ).analyzeImpact( graph );
+
+        final Set<ProjectVersionRef> impacted = new HashSet<ProjectVersionRef>();
+        Collections.addAll( impacted, app, lib1, lib2, vuln );
+
+        assertThat( summary.getImpactedProjects(), equalTo( impacted ) );
+        assertThat( summary.isImpacted( other ), equalTo( false ) );
+        assertThat( summary.getImpactedRoots(), equalTo( Collections.singleton( app ) ) );
+
+        // app -> lib1 -> vuln, app -> lib1 -> lib2 -> vuln, app -> lib2 -> vuln; the managed dependency is skipped.
+        assertThat( summary.getPathCount( app, vuln ), equalTo( 3L ) );
+        assertThat( summary.getPathCount( app ), equalTo( 3L ) );
+
+        summary = new ImpactTraversal( vuln ).analyzeImpact( graph, lib1, other );
+        assertThat( summary.getImpactedRoots(), equalTo( Collections.singleton( lib1 ) ) );
+        assertThat( summary.getPathCount( lib1, vuln ), equalTo( 2L ) );
+        assertThat( summary.getPathCount( other ), equalTo( 0L ) );
+
+        summary = new ImpactTraversal( true, vuln ).analyzeImpact( graph );
+        assertThat( summary.getPathCount( app, vuln ), equalTo( 4L ) );
+    }
+
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.tck.effective.traverse;
+
+import static org.apache.maven.graph.common.util.IdentityUtils.projectVersion;
+import static org.apache.maven.graph.effective.util.RelationshipUtils.dependency;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringWriter;
+import java.net.URI;
+
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.common.version.VersionUtils;
+import org.apache.maven.graph.effective.EProjectGraph;
+import org.apache.maven.graph.effective.rel.ProjectRelationship;
+import org.apache.maven.graph.effective.traverse.print.DependencyTreeRelationshipPrinter;
+import org.apache.maven.graph.effective.traverse.print.StreamingStructurePrinter;
+import org.apache.maven.graph.effective.traverse.print.StructurePrintingTraversal;
+import org.commonjava.maven.atlas.tck.effective.AbstractSPI_TCK;
+import org.junit.Test;
+
+public abstract class StructurePrintingTraversalTCK
+    extends AbstractSPI_TCK
+{
+
+    private final ProjectVersionRef root = projectVersion( "org.test", "root", "1" );
+
+    private final ProjectVersionRef a = projectVersion( "org.test", "a", "1.0" );
+
+    private final ProjectVersionRef b = projectVersion( "org.test", "b", "1.0" );
+
+    private final ProjectVersionRef c = projectVersion( "org.test", "c", "1.0" );
+
+    private final ProjectVersionRef d = projectVersion( "org.test", "d", "1.0" );
+
+    @Test
+    public void streamingOutputMatchesAccumulatedOutputForTree()
+        throws Exception
+    {
+        final URI source = sourceURI();
+        final EProjectGraph graph =
+            graph( source, dependency( source, root, a, 0 ), dependency( source, root, b, 1 ),
+                   dependency( source, a, c, 0 ) );
+
+        final StructurePrintingTraversal accumulating = new StructurePrintingTraversal();
+        graph.traverse( accumulating );
+
+        final StringWriter writer = new StringWriter();
+        new StreamingStructurePrinter( writer ).withHeader( "START" )
+                                               .withFooter( "END" )
+                                               .print( graph );
+
+        assertThat( writer.toString(), equalTo( accumulating.printStructure( root, "START", "END", "  " ) ) );
+    }
+
+    @Test
+    public void sharedProjectIsExpandedOnce()
+        throws Exception
+    {
+        final URI source = sourceURI();
+        final EProjectGraph graph =
+            graph( source, dependency( source, root, a, 0 ), dependency( source, root, b, 1 ),
+                   dependency( source, a, c, 0 ), dependency( source, b, c, 0 ), dependency( source, c, d, 0 ) );
+
+        final StringWriter writer = new StringWriter();
+        final StreamingStructurePrinter printer = new StreamingStructurePrinter( writer );
+        printer.print( graph );
+
+        assertThat( writer.toString(), equalTo( lines( root, "  " + a, "    " + c, "      " + d, "  " + b, "    " + c
+            + StreamingStructurePrinter.DUPLICATE_MARKER ) ) );
+        assertThat( printer.getPrintedLines(), equalTo( 5 ) );
+        assertThat( printer.isTruncated(), equalTo( false ) );
+    }
+
+    @Test
+    public void depthAndLineLimits()
+        throws Exception
+    {
+        final URI source = sourceURI();
+        final EProjectGraph graph =
+            graph( source, dependency( source, root, a, 0 ), dependency( source, root, b, 1 ),
+                   dependency( source, a, c, 0 ), dependency( source, c, d, 0 ) );
+
+        StringWriter writer = new StringWriter();
+        new StreamingStructurePrinter( writer ).withMaxDepth( 2 )
+                                               .print( graph );
+
+        assertThat( writer.toString(), equalTo( lines( root, "  " + a, "    " + c, "  " + b ) ) );
+
+        writer = new StringWriter();
+        final StreamingStructurePrinter printer = new StreamingStructurePrinter( writer ).withMaxLines( 2 );
+        printer.print( graph );
+
+        assertThat( writer.toString(), equalTo( lines( root, "  " + a, "    " + c, "      "
+            + StreamingStructurePrinter.TRUNCATED_MARKER ) ) );
+        assertThat( printer.isTruncated(), equalTo( true ) );
+    }
+
+    @Test
+    public void printDependencyTree()
+        throws Exception
+    {
+        final URI source = sourceURI();
+        final EProjectGraph graph =
+            graph( source, dependency( source, root, a, DependencyScope.compile, 0, false ),
+                   dependency( source, a, b, DependencyScope.test, 0, false ) );
+
+        final StringWriter writer = new StringWriter();
+        new StreamingStructurePrinter( writer, new DependencyTreeRelationshipPrinter() ).print( graph );
+
+        assertThat( writer.toString(), equalTo( lines( root, "  " + a + ":jar:compile", "    " + b + ":jar:test" ) ) );
+    }
+
+    @Test
+    public void selectedVersionIsPrintedInPlaceOfVariableOne()
+        throws Exception
+    {
+        final ProjectVersionRef varDep = new ProjectVersionRef( "org.other", "dep", "[1.0-SNAPSHOT,2.0)" );
+
+        final URI source = sourceURI();
+        final EProjectGraph graph =
+            graph( source, dependency( source, root, a, 0 ), dependency( source, root, varDep, 1 ),
+                   dependency( source, varDep, c, 0 ) );
+
+        final ProjectVersionRef selected =
+            graph.selectVersionFor( varDep, VersionUtils.createSingleVersion( "1.1" ) );
+
+        final StringWriter writer = new StringWriter();
+        new StreamingStructurePrinter( writer ).print( graph );
+
+        // the selected version hasn't been resolved yet, so there's nothing below it.
+        assertThat( writer.toString(), equalTo( lines( root, "  " + a, "  " + selected ) ) );
+    }
+
+    private EProjectGraph graph( final URI source, final ProjectRelationship<?>... rels )
+        throws Exception
+    {
+        return new EProjectGraph.Builder( source, root, newDriverInstance() ).withExactRelationships( rels )
+                                                                             .build();
+    }
+
+    private String lines( final Object... lines )
+    {
+        final StringBuilder sb = new StringBuilder();
+        for ( final Object line : lines )
+        {
+            sb.append( "\n" )
+              .append( line );
+        }
+
+        return sb.append( "\n" )
+                 .toString();
+    }
+
+}
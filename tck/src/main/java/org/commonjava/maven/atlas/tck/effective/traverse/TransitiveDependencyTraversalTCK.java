@@ -22,15 +22,22 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
 import java.net.URI;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.maven.graph.common.DependencyScope;
 import org.apache.maven.graph.common.ref.ArtifactRef;
 import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.common.version.VersionUtils;
 import org.apache.maven.graph.effective.EProjectGraph;
 import org.apache.maven.graph.effective.EProjectRelationships;
+import org.apache.maven.graph.effective.ref.EProjectKey;
 import org.apache.maven.graph.effective.rel.DependencyRelationship;
 import org.apache.maven.graph.effective.rel.ParentRelationship;
 import org.apache.maven.graph.effective.traverse.TransitiveDependencyTraversal;
+import org.apache.maven.graph.effective.traverse.TransitiveDependencyView;
+import org.apache.maven.graph.effective.traverse.TransitiveDependencyViews;
 import org.commonjava.maven.atlas.tck.effective.AbstractSPI_TCK;
 import org.junit.Test;
 
@@ -214,4 +221,131 @@ public abstract class TransitiveDependencyTraversalTCK
                        .renderStandard(), equalTo( "1.1.1" ) );
     }
 
+    @Test
+    public void batchedRootsMatchSeparateTraversals()
+        throws Exception
+    {
+        final URI source = sourceURI();
+
+        final ProjectVersionRef root = projectVersion( "group.id", "my-project", "1.0" );
+        final ProjectVersionRef parent = projectVersion( "group.id", "parent", "1" );
+        final ProjectVersionRef libA = projectVersion( "group.id", "lib-a", "1.0" );
+        final ProjectVersionRef libB = projectVersion( "group.id", "lib-b", "1.0" );
+        final ProjectVersionRef shared1 = projectVersion( "other.group", "shared", "1.0" );
+        final ProjectVersionRef shared2 = projectVersion( "other.group", "shared", "2.0" );
+        final ProjectVersionRef util = projectVersion( "other.group", "util", "1.0" );
+        final ProjectVersionRef missing = projectVersion( "other.group", "missing", "1.0" );
+
+        /* @formatter:off */
+        final EProjectGraph graph = new EProjectGraph.Builder( source, root, newDriverInstance() )
+            .withParent( new ParentRelationship( source, root, parent ) )
+            .withDependencies( dependency( source, root, libA, null, 0, false ),
+                               dependency( source, root, libB, null, 1, false ),
+                               dependency( source, root, projectVersion( "junit", "junit", "4.11" ),
+                                           DependencyScope.test, 2, false ),
+                               dependency( source, parent, projectVersion( "foo", "commons", "1.1" ), null, 0, false ),
+                               dependency( source, libA, shared1, null, 0, false ),
+                               dependency( source, libA, projectVersion( "foo", "commons", "1.0" ), null, 1, false ),
+                               dependency( source, libA, libB, null, 2, false ),
+                               dependency( source, libB, shared2, null, 0, false ),
+                               dependency( source, libB, util, DependencyScope.runtime, 1, false ),
+                               dependency( source, shared1, util, null, 0, false ),
+                               dependency( source, util, projectVersion( "junit", "junit", "3.8" ),
+                                           DependencyScope.test, 0, false ) )
+            .build();
+        /* @formatter:on */
+
+        final ProjectVersionRef[] roots = { root, libA, libB, shared1, parent, missing };
+
+        final Map<ProjectVersionRef, List<ArtifactRef>> batched =
+            new TransitiveDependencyTraversal().getArtifacts( graph, roots );
+
+        assertThat( batched.size(), equalTo( roots.length ) );
+        for ( final ProjectVersionRef r : roots )
+        {
+            final TransitiveDependencyTraversal single = new TransitiveDependencyTraversal();
+            graph.getDriver()
+                 .traverse( single, graph, r );
+
+            assertThat( r + " artifacts", batched.get( r ), equalTo( single.getArtifacts() ) );
+        }
+
+        assertThat( batched.get( root )
+                           .size(), equalTo( 5 ) );
+        assertThat( batched.get( missing )
+                           .isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void dependencyViewsFollowOnlyTheChangesThatReachThem()
+        throws Exception
+    {
+        final URI source = sourceURI();
+
+        final ProjectVersionRef root = projectVersion( "group.id", "my-project", "1.0" );
+        final ProjectVersionRef libA = projectVersion( "group.id", "lib-a", "1.0" );
+        final ProjectVersionRef shared = projectVersion( "other.group", "shared", "[1.0-SNAPSHOT,2.0)" );
+        final ProjectVersionRef other = projectVersion( "group.id", "other", "1.0" );
+        final ProjectVersionRef util = projectVersion( "other.group", "util", "1.0" );
+
+        /* @formatter:off */
+        final EProjectGraph graph = new EProjectGraph.Builder( new EProjectKey( source, root ), newDriverInstance() )
+            .withDependencies( dependency( source, root, libA, null, 0, false ),
+                               dependency( source, root, other, DependencyScope.test, 1, false ),
+                               dependency( source, libA, shared, null, 0, false ),
+                               dependency( source, other, util, null, 0, false ) )
+            .build();
+        /* @formatter:on */
+
+        final TransitiveDependencyViews views = graph.getDependencyViews();
+        final TransitiveDependencyView rootView = views.register( root, DependencyScope.runtime );
+        final TransitiveDependencyView otherView = views.register( other, DependencyScope.runtime );
+        assertThat( views.register( root, DependencyScope.runtime ) == rootView, equalTo( true ) );
+
+        assertThat( rootView.getArtifacts(), equalTo( traverse( graph, root ) ) );
+        assertThat( rootView.getArtifacts()
+                            .size(), equalTo( 2 ) );
+        assertThat( otherView.isStale(), equalTo( false ) );
+
+        graph.addAll( Collections.singleton( dependency( source, shared, projectVersion( "foo", "added", "1.0" ), null,
+                                                         0, false ) ) );
+        assertThat( rootView.isStale(), equalTo( true ) );
+        assertThat( otherView.isStale(), equalTo( false ) );
+
+        assertThat( rootView.getArtifacts(), equalTo( traverse( graph, root ) ) );
+        assertThat( rootView.getArtifacts()
+                            .size(), equalTo( 3 ) );
+
+        graph.addAll( Collections.singleton( dependency( source, util, projectVersion( "foo", "bar", "1.0" ), null, 0,
+                                                         false ) ) );
+        assertThat( rootView.isStale(), equalTo( false ) );
+        assertThat( otherView.isStale(), equalTo( true ) );
+        assertThat( otherView.getArtifacts(), equalTo( traverse( graph, other ) ) );
+
+        graph.selectVersionFor( shared, VersionUtils.createSingleVersion( "1.1" ) );
+        assertThat( rootView.isStale(), equalTo( true ) );
+        assertThat( otherView.isStale(), equalTo( false ) );
+        assertThat( rootView.getArtifacts(), equalTo( traverse( graph, root ) ) );
+        assertThat( rootView.getArtifacts()
+                            .get( 1 )
+                            .getVersionString(), equalTo( "1.1" ) );
+
+        graph.clearSelectedVersions();
+        assertThat( rootView.isStale(), equalTo( true ) );
+        assertThat( rootView.getArtifacts(), equalTo( traverse( graph, root ) ) );
+
+        assertThat( views.unregister( other, DependencyScope.runtime ), equalTo( true ) );
+        assertThat( views.getView( other, DependencyScope.runtime ), equalTo( null ) );
+    }
+
+    private List<ArtifactRef> traverse( final EProjectGraph graph, final ProjectVersionRef root )
+        throws Exception
+    {
+        final TransitiveDependencyTraversal traversal = new TransitiveDependencyTraversal();
+        graph.getDriver()
+             .traverse( traversal, graph, root );
+
+        return traversal.getArtifacts();
+    }
+
 }
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (C) 2013 John Casey.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.commonjava.maven.atlas.tck.effective.traverse;
+
+import static org.apache.maven.graph.effective.util.RelationshipUtils.dependency;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.graph.common.DependencyScope;
+import org.apache.maven.graph.common.ref.ArtifactRef;
+import org.apache.maven.graph.common.ref.ProjectVersionRef;
+import org.apache.maven.graph.effective.EProjectGraph;
+import org.apache.maven.graph.effective.filter.DependencyFilter;
+import org.apache.maven.graph.effective.ref.EProjectKey;
+import org.apache.maven.graph.effective.rel.ParentRelationship;
+import org.apache.maven.graph.effective.traverse.AncestryTraversal;
+import org.apache.maven.graph.effective.traverse.BuildOrderTraversal;
+import org.apache.maven.graph.effective.traverse.TransitiveDependencyTraversal;
+import org.apache.maven.graph.effective.traverse.TraversalCache;
+import org.apache.maven.graph.effective.traverse.model.BuildOrder;
+import org.commonjava.maven.atlas.tck.effective.AbstractSPI_TCK;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public abstract class TraversalCacheTCK
+    extends AbstractSPI_TCK
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void cachedResultsLastUntilTheGraphVersionMoves()
+        throws Exception
+    {
+        final URI source = sourceURI();
+
+        final ProjectVersionRef root = new ProjectVersionRef( "org.my", "app", "1.0" );
+        final ProjectVersionRef parent = new ProjectVersionRef( "org.my", "parent", "1" );
+        final ProjectVersionRef lib = new ProjectVersionRef( "org.my", "lib", "1.0" );
+
+        /* @formatter:off */
+        final EProjectGraph graph = new EProjectGraph.Builder( source, root, newDriverInstance() )
+            .withParent( new ParentRelationship( source, root, parent ) )
+            .withDependencies( dependency( source, root, lib, DependencyScope.compile, 0, false ),
+                               dependency( source, lib, new ProjectVersionRef( "org.other", "util", "1.0" ),
+                                           DependencyScope.compile, 0, false ) )
+            .build();
+        /* @formatter:on */
+
+        final long version = graph.getDriver()
+                                  .getGraphVersion();
+
+        final TraversalCache cache = new TraversalCache();
+
+        final TransitiveDependencyTraversal deps = new TransitiveDependencyTraversal( DependencyScope.runtime );
+        graph.traverse( deps );
+
+        List<ArtifactRef> artifacts = cache.getArtifacts( graph, root, DependencyScope.runtime );
+        assertThat( artifacts, equalTo( deps.getArtifacts() ) );
+        assertThat( cache.getArtifacts( graph, root, DependencyScope.runtime ), equalTo( artifacts ) );
+        assertThat( cache.getHitCount(), equalTo( 1L ) );
+
+        // equivalent filters share an entry; different ones don't.
+        cache.getArtifacts( graph, root, new TransitiveDependencyTraversal( DependencyScope.runtime ).getRootFilter() );
+        assertThat( cache.getHitCount(), equalTo( 2L ) );
+        cache.getArtifacts( graph, root, DependencyScope.test );
+        assertThat( cache.getMissCount(), equalTo( 2L ) );
+
+        final AncestryTraversal ancestry = new AncestryTraversal();
+        graph.traverse( ancestry );
+        assertThat( cache.getAncestry( graph, root ), equalTo( ancestry.getAncestry() ) );
+
+        final BuildOrderTraversal buildOrder = new BuildOrderTraversal( new DependencyFilter() );
+        graph.traverse( buildOrder );
+        final BuildOrder order = cache.getBuildOrder( graph, root, new DependencyFilter() );
+        assertThat( order.getOrder(), equalTo( buildOrder.getBuildOrder()
+                                                         .getOrder() ) );
+        assertThat( cache.getBuildOrder( graph, root, new DependencyFilter() ) == order, equalTo( true ) );
+        assertThat( cache.size(), equalTo( 4 ) );
+
+        graph.addAll( Collections.singleton( dependency( source, lib, new ProjectVersionRef( "org.other", "added",
+                                                                                             "1.0" ),
+                                                         DependencyScope.compile, 1, false ) ) );
+        assertThat( graph.getDriver()
+                         .getGraphVersion() > version, equalTo( true ) );
+
+        artifacts = cache.getArtifacts( graph, root, DependencyScope.runtime );
+        assertThat( artifacts.size(), equalTo( 3 ) );
+        assertThat( cache.getMissCount(), equalTo( 5L ) );
+
+        // entries for the old version can't be hit again, so they're gone.
+        assertThat( cache.size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void cacheKeepsGraphsApart()
+        throws Exception
+    {
+        final URI source = sourceURI();
+
+        final ProjectVersionRef root = new ProjectVersionRef( "org.my", "app", "1.0" );
+        final ProjectVersionRef lib = new ProjectVersionRef( "org.my", "lib", "1.0" );
+        final ProjectVersionRef other = new ProjectVersionRef( "org.my", "other-lib", "1.0" );
+
+        // same shape, so both graphs are likely at the same version.
+        /* @formatter:off */
+        final EProjectGraph first = new EProjectGraph.Builder( source, root, newDriverInstance() )
+            .withDependencies( dependency( source, root, lib, DependencyScope.compile, 0, false ) )
+            .build();
+
+        final EProjectGraph second = new EProjectGraph.Builder( source, root, newDriverInstance() )
+            .withDependencies( dependency( source, root, other, DependencyScope.compile, 0, false ) )
+            .build();
+        /* @formatter:on */
+
+        final TraversalCache cache = new TraversalCache();
+        assertThat( cache.getArtifacts( first, root, DependencyScope.runtime )
+                         .get( 0 )
+                         .asProjectVersionRef(), equalTo( lib ) );
+        assertThat( cache.getArtifacts( second, root, DependencyScope.runtime )
+                         .get( 0 )
+                         .asProjectVersionRef(), equalTo( other ) );
+        assertThat( cache.getHitCount(), equalTo( 0L ) );
+
+        // a view of the first graph through a filter of its own doesn't share its entries either.
+        final EProjectGraph filtered =
+            first.getGraph( new DependencyFilter( DependencyScope.test ), new EProjectKey( source, root ) );
+        assertThat( filtered.getDriver()
+                            .getGraphId()
+                            .equals( first.getDriver()
+                                          .getGraphId() ), equalTo( false ) );
+
+        cache.getArtifacts( filtered, root, DependencyScope.runtime );
+        assertThat( cache.getHitCount(), equalTo( 0L ) );
+        assertThat( cache.size(), equalTo( 3 ) );
+
+        assertThat( cache.getArtifacts( first, root, DependencyScope.runtime )
+                         .get( 0 )
+                         .asProjectVersionRef(), equalTo( lib ) );
+        assertThat( cache.getHitCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void cacheIsBoundedAndPersistent()
+        throws Exception
+    {
+        final URI source = sourceURI();
+
+        final ProjectVersionRef root = new ProjectVersionRef( "org.my", "app", "1.0" );
+        final ProjectVersionRef lib = new ProjectVersionRef( "org.my", "lib", "1.0" );
+        final ProjectVersionRef util = new ProjectVersionRef( "org.other", "util", "1.0" );
+
+        /* @formatter:off */
+        final EProjectGraph graph = new EProjectGraph.Builder( source, root, newDriverInstance() )
+            .withDependencies( dependency( source, root, lib, DependencyScope.compile, 0, false ),
+                               dependency( source, lib, util, DependencyScope.compile, 0, false ) )
+            .build();
+        /* @formatter:on */
+
+        final File file = new File( folder.newFolder( "cache" ), "traversals.bin" );
+
+        final TraversalCache cache = new TraversalCache( 2, file );
+        final List<ArtifactRef> artifacts = cache.getArtifacts( graph, root, DependencyScope.runtime );
+        cache.getArtifacts( graph, lib, DependencyScope.runtime );
+        cache.getArtifacts( graph, util, DependencyScope.runtime );
+        assertThat( cache.size(), equalTo( 2 ) );
+
+        // the least recently used entry (root) was evicted.
+        cache.getArtifacts( graph, lib, DependencyScope.runtime );
+        assertThat( cache.getHitCount(), equalTo( 1L ) );
+        cache.getArtifacts( graph, root, DependencyScope.runtime );
+        assertThat( cache.getHitCount(), equalTo( 1L ) );
+
+        cache.flush();
+
+        final TraversalCache reloaded = new TraversalCache( 2, file );
+        assertThat( reloaded.size(), equalTo( 2 ) );
+        assertThat( reloaded.getArtifacts( graph, root, DependencyScope.runtime ), equalTo( artifacts ) );
+        assertThat( reloaded.getHitCount(), equalTo( 1L ) );
+        assertThat( reloaded.getMissCount(), equalTo( 0L ) );
+    }
+
+}